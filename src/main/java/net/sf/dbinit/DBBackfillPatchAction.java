@@ -0,0 +1,315 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Patch action which processes a large table by chunks.
+ * <p>
+ * The table is split into {@link DBKeyRange ranges} of at most {@link #setChunkSize(int) chunkSize} keys and the
+ * {@link #setStatement(String) statement} is executed for each range, the lower (exclusive) and upper (inclusive)
+ * bounds of the range being bound to its two parameters, for example:
+ * <pre>
+ * UPDATE ITEM SET LABEL = UPPER(NAME) WHERE ID &gt; ? AND ID &lt;= ?
+ * </pre>
+ * Each chunk is committed on its own and, when the {@link DBInit#getParallelism() parallelism} (or the
+ * {@link #setParallelism(int) parallelism} of this action) is greater than 1, the chunks are processed concurrently,
+ * each one on its own connection. The throughput can be limited using {@link #setRowsPerSecond(long)}.
+ * <p>
+ * When a {@link DBInit#setStateTable(String) state table} is configured, the last key before which all chunks
+ * have been processed is saved there, so that a failed or interrupted patch resumes from this point. Chunks after
+ * this point may be processed again: the statement must be idempotent.
+ * <p>
+ * The script of the patch, and the work done before it in the same run, is committed before the first chunk while the
+ * version is only updated after the backfill: if the backfill fails, the next run executes the script of the patch
+ * again, which must therefore be re-entrant as well. In {@link DBInit#setSavepoints(boolean) savepoints} mode, a
+ * failure rolls the patch back to its last commit.
+ */
+public class DBBackfillPatchAction implements DBPatchAction, DBInitAware {
+
+    /**
+     * Logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(DBBackfillPatchAction.class);
+
+    /**
+     * Prefix of the state entries for the backfills
+     */
+    private static final String STATE_BACKFILL = "backfill:";
+
+    private final String name;
+    private final int patch;
+    private final String table;
+    private final String keyColumn;
+    private String statement;
+    private int chunkSize = 10000;
+    private int parallelism;
+    private long rowsPerSecond;
+    private DBInit dbInit;
+
+    /**
+     * Constructor
+     *
+     * @param name      Name of the backfill (used for logging and for the checkpoint)
+     * @param patch     Patch this backfill applies to
+     * @param table     Table to process
+     * @param keyColumn Numeric key of the table
+     */
+    public DBBackfillPatchAction(String name, int patch, String table, String keyColumn) {
+        Validate.notBlank(name, "The name of the backfill must not be null or blank");
+        Validate.notBlank(table, "The table must not be null or blank");
+        Validate.notBlank(keyColumn, "The key column must not be null or blank");
+        this.name = name;
+        this.patch = patch;
+        this.table = table;
+        this.keyColumn = keyColumn;
+    }
+
+    @Override
+    public void setDBInit(DBInit dbInit) {
+        this.dbInit = dbInit;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return String.format("Backfill %s", name);
+    }
+
+    @Override
+    public boolean appliesTo(int patch) {
+        return this.patch == patch;
+    }
+
+    @Override
+    public void apply(Connection connection, int patch) throws Exception {
+        // The changes of the patch must be visible from the other connections
+        commit(connection);
+        DBStateTable stateStore = dbInit != null ? dbInit.getStateStore() : null;
+        String checkpoint = STATE_BACKFILL + name;
+        Long after = null;
+        if (stateStore != null) {
+            stateStore.create(connection);
+            DBState state = stateStore.get(connection, checkpoint);
+            if (state != null && Integer.valueOf(patch).equals(state.getVersion())) {
+                after = Long.valueOf(state.getValue());
+                log.info("Resuming backfill {} after key {}", name, after);
+            }
+        }
+        List<DBKeyRange> ranges = DBKeyRange.split(connection, table, keyColumn, after, chunkSize);
+        log.info("Backfill {}: {} chunks to process", name, ranges.size());
+        // The checkpoint exists before the chunks, which then only update it
+        if (stateStore != null && !ranges.isEmpty()) {
+            stateStore.put(connection, checkpoint, String.valueOf(ranges.get(0).getFrom()), patch);
+            commit(connection);
+        }
+        DBRateLimiter limiter = new DBRateLimiter(rowsPerSecond);
+        Progress progress = new Progress(ranges, stateStore, checkpoint, patch);
+        int actualParallelism = getActualParallelism();
+        if (actualParallelism > 1 && ranges.size() > 1) {
+            DBTaskScheduler scheduler = new DBTaskScheduler(dbInit.getConnectionProvider(), actualParallelism, name);
+            for (int i = 0; i < ranges.size(); i++) {
+                scheduler.add(new ChunkTask(i, progress, limiter));
+            }
+            scheduler.execute();
+        } else {
+            for (int i = 0; i < ranges.size(); i++) {
+                new ChunkTask(i, progress, limiter).run(connection);
+                commit(connection);
+            }
+        }
+        // Done
+        if (stateStore != null) {
+            stateStore.remove(connection, checkpoint);
+        }
+        log.info("Backfill {} done ({} rows)", name, progress.getRows());
+    }
+
+    /**
+     * Commits the connection of the patch, whose savepoint is set again
+     */
+    private void commit(Connection connection) throws SQLException {
+        DBInit.commit(connection);
+        if (dbInit != null) {
+            dbInit.resetPatchSavepoint(connection);
+        }
+    }
+
+    private int getActualParallelism() {
+        if (dbInit == null) {
+            return 1;
+        } else if (parallelism > 0) {
+            return parallelism;
+        } else {
+            return dbInit.getParallelism();
+        }
+    }
+
+    /**
+     * Processes one chunk. By default, executes the {@link #setStatement(String) statement} with the bounds of the range.
+     *
+     * @param connection Connection to use
+     * @param range      Range of keys to process
+     * @return Number of processed rows
+     * @throws SQLException If the chunk cannot be processed
+     */
+    protected int process(Connection connection, DBKeyRange range) throws SQLException {
+        Validate.notBlank(statement, "The statement of the backfill must be set");
+        PreparedStatement ps = connection.prepareStatement(statement);
+        try {
+            ps.setLong(1, range.getFrom());
+            ps.setLong(2, range.getTo());
+            return ps.executeUpdate();
+        } finally {
+            ps.close();
+        }
+    }
+
+    /**
+     * Keeps track of the processed chunks and saves the checkpoint
+     */
+    private static class Progress {
+
+        private final List<DBKeyRange> ranges;
+        private final boolean[] done;
+        private final DBStateTable stateStore;
+        private final String checkpoint;
+        private final int patch;
+        private int next;
+        private long rows;
+
+        private Progress(List<DBKeyRange> ranges, DBStateTable stateStore, String checkpoint, int patch) {
+            this.ranges = ranges;
+            this.done = new boolean[ranges.size()];
+            this.stateStore = stateStore;
+            this.checkpoint = checkpoint;
+            this.patch = patch;
+        }
+
+        /**
+         * Marks a chunk as processed and saves the checkpoint, in the same transaction as the chunk.
+         * <p>
+         * The checkpoint is only saved when it moves forward, and while holding the lock, so that the updates of
+         * the different connections are made in the order of the checkpoints.
+         */
+        public synchronized void done(Connection connection, int index, int count) throws SQLException {
+            done[index] = true;
+            rows += count;
+            if (index == next) {
+                while (next < done.length && done[next]) {
+                    next++;
+                }
+                if (stateStore != null) {
+                    stateStore.put(connection, checkpoint, String.valueOf(ranges.get(next - 1).getTo()), patch);
+                }
+            }
+        }
+
+        public synchronized long getRows() {
+            return rows;
+        }
+    }
+
+    private class ChunkTask implements DBTask {
+
+        private final int index;
+        private final Progress progress;
+        private final DBRateLimiter limiter;
+
+        private ChunkTask(int index, Progress progress, DBRateLimiter limiter) {
+            this.index = index;
+            this.progress = progress;
+            this.limiter = limiter;
+        }
+
+        @Override
+        public String getName() {
+            return "chunk " + index;
+        }
+
+        @Override
+        public Collection<String> getDependencies() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void run(Connection connection) throws SQLException {
+            DBKeyRange range = progress.ranges.get(index);
+            try {
+                limiter.acquire(range.getCount());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(String.format("Backfill %s interrupted", name), ex);
+            }
+            log.debug("Backfill {}: processing {}", name, range);
+            int count = process(connection, range);
+            progress.done(connection, index, count);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getStatement() {
+        return statement;
+    }
+
+    /**
+     * @param statement Statement to execute for each chunk, with two parameters for the lower (exclusive) and
+     *                  upper (inclusive) bounds of the keys
+     */
+    public void setStatement(String statement) {
+        this.statement = statement;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize Maximum number of keys per chunk (10000 by default)
+     */
+    public void setChunkSize(int chunkSize) {
+        Validate.isTrue(chunkSize > 0, "The chunk size must be greater than 0");
+        this.chunkSize = chunkSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism Number of connections used to process the chunks (0, the default, to use the
+     *                    {@link DBInit#getParallelism() parallelism} of DBInit)
+     */
+    public void setParallelism(int parallelism) {
+        Validate.isTrue(parallelism >= 0, "The parallelism must not be negative");
+        this.parallelism = parallelism;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    /**
+     * @param rowsPerSecond Maximum number of rows processed per second, all connections together (0, the default, for no limit)
+     */
+    public void setRowsPerSecond(long rowsPerSecond) {
+        Validate.isTrue(rowsPerSecond >= 0, "The number of rows per second must not be negative");
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return getDisplayName();
+    }
+
+}
@@ -0,0 +1,196 @@
+package net.sf.dbinit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the background sections of the patches, after {@link DBInit#run()} has returned, on a dedicated
+ * connection and thread.
+ * <p>
+ * Each statement is committed on its own, at the {@link DBInit#setBackgroundRate(int) rate} configured on
+ * DBInit, together with the number of statements already executed for its patch in the
+ * {@link DBInit#setStateTable(String) state table}, which is therefore required. The thread does not prevent the JVM
+ * from exiting: an interrupted background patch is resumed by the next run. The completion of the patch is recorded
+ * with its last statement.
+ */
+public class DBBackgroundPatches implements Runnable {
+
+    /**
+     * Logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(DBBackgroundPatches.class);
+
+    /**
+     * Prefix of the state entries for the background patches
+     */
+    static final String STATE_BACKGROUND = "background:";
+
+    /**
+     * Value of the state entry once the background patch is done
+     */
+    static final String STATE_DONE = "done";
+
+    private final DBInit dbInit;
+    private final SortedMap<Integer, List<String>> patches;
+    private final Map<Integer, Integer> starts;
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final Map<Integer, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<Integer, Throwable>());
+    private final int total;
+    private volatile int executed;
+    private volatile Integer currentPatch;
+
+    /**
+     * Constructor
+     *
+     * @param dbInit   Configuration
+     * @param patches  Statements of the background sections, indexed by patch
+     * @param starts   Number of statements already executed, indexed by patch
+     */
+    public DBBackgroundPatches(DBInit dbInit, SortedMap<Integer, List<String>> patches, Map<Integer, Integer> starts) {
+        this.dbInit = dbInit;
+        this.patches = patches;
+        this.starts = starts;
+        int count = 0;
+        for (Map.Entry<Integer, List<String>> entry : patches.entrySet()) {
+            count += entry.getValue().size() - getStart(entry.getKey());
+        }
+        this.total = count;
+    }
+
+    private int getStart(int patch) {
+        Integer start = starts.get(patch);
+        return start != null ? start : 0;
+    }
+
+    /**
+     * Starts the background thread
+     */
+    public void start() {
+        Thread thread = new Thread(this, "dbinit-background");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            log.info("Applying background patches {} ({} statements)", patches.keySet(), total);
+            DBRateLimiter limiter = new DBRateLimiter(dbInit.getBackgroundRate());
+            DBStateTable stateStore = dbInit.getStateStore();
+            for (Map.Entry<Integer, List<String>> entry : patches.entrySet()) {
+                int patch = entry.getKey();
+                currentPatch = patch;
+                try {
+                    apply(patch, entry.getValue(), limiter, stateStore);
+                } catch (Exception ex) {
+                    log.error(String.format("Background patch %d failed", patch), ex);
+                    failures.put(patch, ex);
+                }
+            }
+            currentPatch = null;
+            log.info("End of background patches ({} statements executed, {} failures)", executed, failures.size());
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    private void apply(int patch, List<String> statements, DBRateLimiter limiter, DBStateTable stateStore) throws SQLException, InterruptedException {
+        log.info("Applying background patch {}...", patch);
+        String state = STATE_BACKGROUND + patch;
+        Connection connection = dbInit.getConnectionProvider().getConnection();
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                Statement st = connection.createStatement();
+                try {
+                    for (int index = getStart(patch); index < statements.size(); index++) {
+                        limiter.acquire(1);
+                        String sqlStatement = statements.get(index);
+                        log.debug("Executing in background\n" + sqlStatement);
+                        st.execute(sqlStatement);
+                        stateStore.put(connection, state, index + 1 < statements.size() ? String.valueOf(index + 1) : STATE_DONE, patch);
+                        DBInit.commit(connection);
+                        executed++;
+                    }
+                    // Nothing was left to execute
+                    if (getStart(patch) >= statements.size()) {
+                        stateStore.put(connection, state, STATE_DONE, patch);
+                        DBInit.commit(connection);
+                    }
+                } finally {
+                    st.close();
+                }
+            } catch (SQLException ex) {
+                DBInit.rollback(connection);
+                throw ex;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } finally {
+            connection.close();
+        }
+        log.info("End of background patch {}", patch);
+    }
+
+    /**
+     * Waits for the completion of the background patches
+     *
+     * @param timeout Maximum time to wait
+     * @param unit    Unit of the timeout
+     * @return <code>true</code> if the background patches are completed
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return latch.await(timeout, unit);
+    }
+
+    public boolean isDone() {
+        return latch.getCount() == 0;
+    }
+
+    /**
+     * @return Patches having background sections to apply
+     */
+    public Set<Integer> getPatches() {
+        return Collections.unmodifiableSet(patches.keySet());
+    }
+
+    /**
+     * @return Patch being applied (<code>null</code> if none)
+     */
+    public Integer getCurrentPatch() {
+        return currentPatch;
+    }
+
+    /**
+     * @return Total number of statements to execute
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return Number of statements executed so far
+     */
+    public int getExecuted() {
+        return executed;
+    }
+
+    /**
+     * @return Failures of the background patches, indexed by patch
+     */
+    public Map<Integer, Throwable> getFailures() {
+        synchronized (failures) {
+            return new LinkedHashMap<Integer, Throwable>(failures);
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Snapshot of an embedded H2 database in files, saved as a ZIP file with <code>BACKUP TO</code> and restored at the
+ * file level: the database is shut down, which closes all its connections, and its files are replaced by the ones of
+ * the backup. This is much faster than {@link DBScriptSnapshot running a script} for large databases.
+ * <p>
+ * The backup is first extracted in a <code>&lt;database&gt;.restore.tmp</code> directory next to the database, so that
+ * a failure or a crash during the extraction leaves the database untouched. The files of the database, that is, the
+ * <code>&lt;database&gt;.*.db</code> files and directories, are then moved to a
+ * <code>&lt;database&gt;.replaced.tmp</code> directory and replaced by the extracted ones, only by renaming them. The
+ * files created after the snapshot, like new LOB files, are therefore removed, while the other files of the directory
+ * are kept. Should the process crash during these renames, the previous files are still in the
+ * <code>&lt;database&gt;.replaced.tmp</code> directory and the restored ones in the
+ * <code>&lt;database&gt;.restore.tmp</code> directory; both directories are deleted by the next restore.
+ * <p>
+ * The connections used after a restore must therefore be new ones.
+ */
+public class DBBackupSnapshot implements DBSnapshot {
+
+    /**
+     * Logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(DBBackupSnapshot.class);
+
+    private final File file;
+    private File databaseDir;
+    private String databaseName;
+
+    /**
+     * @param file ZIP file the database is backed up to
+     */
+    public DBBackupSnapshot(File file) {
+        Validate.notNull(file, "The snapshot file must not be null");
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void take(Connection connection) throws SQLException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new SQLException("Cannot create the snapshot directory " + dir);
+        }
+        String databasePath = getDatabasePath(connection);
+        if (StringUtils.isBlank(databasePath)) {
+            throw new SQLException("Only the databases in files can be backed up");
+        }
+        File database = new File(databasePath).getAbsoluteFile();
+        databaseDir = database.getParentFile();
+        databaseName = database.getName();
+        execute(connection, String.format("BACKUP TO '%s'", file.getAbsolutePath().replace("'", "''")));
+    }
+
+    @Override
+    public void restore(Connection connection) throws SQLException {
+        Validate.validState(isTaken(), "No snapshot has been taken");
+        execute(connection, "SHUTDOWN");
+        File restoreDir = new File(databaseDir, databaseName + ".restore.tmp");
+        File replacedDir = new File(databaseDir, databaseName + ".replaced.tmp");
+        try {
+            // Leftovers of an interrupted restore
+            FileUtils.deleteQuietly(restoreDir);
+            FileUtils.deleteQuietly(replacedDir);
+            // The live files are only touched once the whole backup has been extracted
+            extract(restoreDir);
+            FileUtils.forceMkdir(replacedDir);
+            for (File current : listDatabaseFiles(databaseDir)) {
+                rename(current, new File(replacedDir, current.getName()));
+            }
+            for (File restored : listDatabaseFiles(restoreDir)) {
+                rename(restored, new File(databaseDir, restored.getName()));
+            }
+            FileUtils.forceDelete(restoreDir);
+            FileUtils.forceDelete(replacedDir);
+        } catch (IOException ex) {
+            throw new SQLException(String.format("Cannot restore the database from %s", file), ex);
+        }
+    }
+
+    private void extract(File dir) throws IOException {
+        FileUtils.forceMkdir(dir);
+        ZipFile zip = new ZipFile(file);
+        try {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                File target = new File(dir, entry.getName());
+                if (entry.isDirectory()) {
+                    FileUtils.forceMkdir(target);
+                } else {
+                    log.debug("Extracting {}", target);
+                    FileUtils.forceMkdir(target.getParentFile());
+                    InputStream in = zip.getInputStream(entry);
+                    try {
+                        OutputStream out = new FileOutputStream(target);
+                        try {
+                            IOUtils.copy(in, out);
+                        } finally {
+                            out.close();
+                        }
+                    } finally {
+                        in.close();
+                    }
+                }
+            }
+        } finally {
+            zip.close();
+        }
+    }
+
+    /**
+     * Lists the <code>&lt;database&gt;.*.db</code> files and directories of a directory
+     */
+    private File[] listDatabaseFiles(File dir) throws IOException {
+        final String prefix = databaseName + ".";
+        File[] files = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return f.getName().startsWith(prefix) && f.getName().endsWith(".db");
+            }
+        });
+        if (files == null) {
+            throw new IOException("Cannot list the files of " + dir);
+        }
+        return files;
+    }
+
+    private static void rename(File source, File target) throws IOException {
+        log.debug("Moving {} to {}", source, target);
+        if (!source.renameTo(target)) {
+            throw new IOException(String.format("Cannot move %s to %s", source, target));
+        }
+    }
+
+    @Override
+    public boolean isTaken() {
+        return databaseDir != null && file.exists();
+    }
+
+    private static String getDatabasePath(Connection connection) throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            ResultSet rs = st.executeQuery("CALL DATABASE_PATH()");
+            try {
+                return rs.next() ? rs.getString(1) : null;
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            st.execute(sql);
+        } finally {
+            st.close();
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package net.sf.dbinit;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Action which is run only when its content has changed, or when the version of the database
+ * has changed, provided a {@link DBInit#setStateTable(String) state table} is configured.
+ */
+public interface DBChecksumAction extends DBInitAction {
+
+    /**
+     * Key identifying the action in the state table (like the path to its script)
+     */
+    String getChecksumKey();
+
+    /**
+     * Checksum of the content of the action
+     */
+    String getChecksum();
+
+    /**
+     * Runs the action, reporting whether it has been applied. Its checksum is only stored when it has.
+     *
+     * @param executor   Executor of the scripts
+     * @param connection Connection to use
+     * @return <code>true</code> if the action was applied successfully, <code>false</code> if there was an error and
+     * the action was rolled back
+     * @throws SQLException If the action fails
+     */
+    boolean apply(DBExecutor executor, Connection connection) throws SQLException;
+
+}
@@ -0,0 +1,235 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <code>UPDATE</code> or <code>DELETE</code> statement executed by chunks of keys, each chunk being committed on its
+ * own, so that a statement on a large table does not hold locks and undo for the whole table.
+ * <p>
+ * It is declared in a script by a directive before the statement:
+ * <pre>
+ * -- &#64;chunked size=10000 key=ID
+ * UPDATE ITEM SET LABEL = UPPER(NAME) WHERE LABEL IS NULL;
+ * </pre>
+ * The table is walked one {@link DBKeyRange range} of at most <code>size</code> keys at a time, and the statement is
+ * executed with its condition restricted to the range, until there is no key left. The options are:
+ * <ul>
+ * <li><code>size</code> - maximum number of keys per chunk (10000 by default)</li>
+ * <li><code>key</code> - numeric key of the table (<code>ID</code> by default)</li>
+ * <li><code>table</code> - table to walk (by default, the table of the statement)</li>
+ * <li><code>rate</code> - maximum number of rows per second (0, the default, for no limit)</li>
+ * </ul>
+ * Since the chunks are committed, the work done before the statement is committed as well and a failure cannot
+ * roll back the chunks already processed: the statement must be idempotent.
+ * <p>
+ * The directive only applies to a statement of the same section, and a chunked statement of the initialisation
+ * script is executed at once, since the creation must not be committed before the version is set.
+ */
+public class DBChunkedStatement {
+
+    /**
+     * Logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(DBChunkedStatement.class);
+
+    /**
+     * Prefix of the statements declared as chunked
+     */
+    public static final String PREFIX = "-- @chunked ";
+
+    /**
+     * Table of the statement
+     */
+    private static final Pattern TABLE = Pattern.compile("^\\s*(?:UPDATE|DELETE\\s+FROM)\\s+([^\\s(]+)", Pattern.CASE_INSENSITIVE);
+
+    private final String statement;
+    private final String table;
+    private final String keyColumn;
+    private final int size;
+    private final long rowsPerSecond;
+
+    public DBChunkedStatement(String statement, String table, String keyColumn, int size, long rowsPerSecond) {
+        Validate.isTrue(StringUtils.isNotBlank(statement), "The chunked statement must not be blank");
+        Validate.isTrue(StringUtils.isNotBlank(table), "The table of the chunked statement must be set: %s", statement);
+        Validate.isTrue(StringUtils.isNotBlank(keyColumn), "The key of the chunked statement must be set: %s", statement);
+        Validate.isTrue(size > 0, "The chunk size must be greater than 0");
+        Validate.isTrue(rowsPerSecond >= 0, "The number of rows per second must not be negative");
+        this.statement = statement;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.size = size;
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    /**
+     * @param statement Statement of a script
+     * @return <code>true</code> if the statement is declared as chunked
+     */
+    public static boolean isChunked(String statement) {
+        return statement.startsWith(PREFIX);
+    }
+
+    /**
+     * Declares a statement as chunked, as it is kept in a parsed script
+     *
+     * @param options   Options of the directive
+     * @param statement Statement
+     * @return Statement of the script
+     */
+    public static String declare(String options, CharSequence statement) {
+        return PREFIX + options + "\n" + statement;
+    }
+
+    /**
+     * Parses a statement declared as chunked
+     *
+     * @param declaration Statement of the script, as returned by {@link #declare(String, CharSequence)}
+     * @return Chunked statement
+     */
+    public static DBChunkedStatement parse(String declaration) {
+        String options = StringUtils.substringBefore(declaration.substring(PREFIX.length()), "\n");
+        String statement = StringUtils.substringAfter(declaration, "\n").trim();
+        Map<String, String> values = DBLob.parseOptions(options);
+        String table = values.get("table");
+        if (StringUtils.isBlank(table)) {
+            Matcher m = TABLE.matcher(statement);
+            Validate.isTrue(m.find(), "Only UPDATE and DELETE statements can be chunked: %s", statement);
+            table = m.group(1);
+        }
+        try {
+            return new DBChunkedStatement(
+                    statement,
+                    table,
+                    StringUtils.defaultIfBlank(values.get("key"), "ID"),
+                    values.containsKey("size") ? Integer.parseInt(values.get("size")) : 10000,
+                    values.containsKey("rate") ? Long.parseLong(values.get("rate")) : 0);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("Invalid number in the chunked options: %s", options), ex);
+        }
+    }
+
+    /**
+     * @return Statement, with its condition restricted to a range of keys whose lower (exclusive) and upper
+     * (inclusive) bounds are the two parameters
+     */
+    public String getChunkStatement() {
+        String range = String.format("%1$s > ? AND %1$s <= ?", keyColumn);
+        int where = indexOfWhere(statement);
+        if (where < 0) {
+            return statement + " WHERE " + range;
+        } else {
+            int condition = where + "WHERE".length();
+            return statement.substring(0, condition) + " (" + statement.substring(condition).trim() + ") AND " + range;
+        }
+    }
+
+    /**
+     * Position of the top-level <code>WHERE</code> keyword, outside of parentheses and quotes
+     */
+    private static int indexOfWhere(String sql) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0
+                    && sql.regionMatches(true, i, "WHERE", 0, 5)
+                    && (i == 0 || !Character.isLetterOrDigit(sql.charAt(i - 1)))
+                    && (i + 5 == sql.length() || !Character.isLetterOrDigit(sql.charAt(i + 5)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Executes the statement chunk by chunk, committing after each chunk
+     *
+     * @param connection Connection to use
+     * @return Total number of affected rows
+     * @throws SQLException If a chunk fails
+     */
+    public long execute(Connection connection) throws SQLException {
+        String sql = getChunkStatement();
+        log.info("Executing by chunks of {} keys of {}: {}", new Object[]{size, table, sql});
+        long start = System.currentTimeMillis();
+        DBRateLimiter limiter = new DBRateLimiter(rowsPerSecond);
+        long rows = 0;
+        int chunks = 0;
+        // The changes made before the statement are visible from the chunks
+        DBInit.commit(connection);
+        PreparedStatement ps = connection.prepareStatement(sql);
+        try {
+            Long after = null;
+            DBKeyRange range;
+            while ((range = DBKeyRange.next(connection, table, keyColumn, after, size)) != null) {
+                try {
+                    limiter.acquire(range.getCount());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException(String.format("Chunked statement on %s interrupted", table), ex);
+                }
+                ps.setLong(1, range.getFrom());
+                ps.setLong(2, range.getTo());
+                rows += ps.executeUpdate();
+                DBInit.commit(connection);
+                chunks++;
+                log.info("Chunk {} of {} done: {} rows ({} rows/s)", new Object[]{range, table, rows, getRate(rows, start)});
+                after = range.getTo();
+            }
+        } finally {
+            ps.close();
+        }
+        log.info("Chunked statement on {} done: {} rows in {} chunks ({} rows/s)", new Object[]{table, rows, chunks, getRate(rows, start)});
+        return rows;
+    }
+
+    private static long getRate(long count, long start) {
+        return count * 1000 / Math.max(1, System.currentTimeMillis() - start);
+    }
+
+    public String getStatement() {
+        return statement;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (by chunks of %d %s)", statement, size, keyColumn);
+    }
+
+}
@@ -0,0 +1,19 @@
+package net.sf.dbinit;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Provides new connections to the database.
+ */
+public interface DBConnectionProvider {
+
+    /**
+     * Opens a new connection. The caller is responsible for closing it.
+     *
+     * @return New connection
+     * @throws SQLException If the connection cannot be opened
+     */
+    Connection getConnection() throws SQLException;
+
+}
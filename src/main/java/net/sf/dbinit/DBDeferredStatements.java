@@ -0,0 +1,95 @@
+package net.sf.dbinit;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang3.StringUtils.upperCase;
+
+/**
+ * Splits a list of statements between the ones to execute immediately and the index and constraint
+ * creations, which can be deferred until the data has been loaded.
+ * <p>
+ * Deferred statements are indexed by table, in order to be run in parallel for different tables. Foreign keys
+ * are kept apart since they must be created after the indexes and constraints of the tables they reference.
+ */
+public class DBDeferredStatements {
+
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "^\\s*CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s.*?\\sON\\s+([^\\s(]+)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Pattern ADD_CONSTRAINT = Pattern.compile(
+            "^\\s*ALTER\\s+TABLE\\s+([^\\s(]+)\\s+ADD\\s+CONSTRAINT\\s",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Pattern FOREIGN_KEY = Pattern.compile(
+            "\\sFOREIGN\\s+KEY\\s",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final List<String> immediate = new ArrayList<String>();
+    private final Map<String, List<String>> constraints = new LinkedHashMap<String, List<String>>();
+    private final Map<String, List<String>> foreignKeys = new LinkedHashMap<String, List<String>>();
+
+    /**
+     * Splits a list of statements
+     *
+     * @param statements Statements to split, in execution order
+     */
+    public DBDeferredStatements(List<String> statements) {
+        for (String statement : statements) {
+            Matcher index = CREATE_INDEX.matcher(statement);
+            Matcher constraint = ADD_CONSTRAINT.matcher(statement);
+            if (index.find()) {
+                add(constraints, index.group(1), statement);
+            } else if (constraint.find()) {
+                if (FOREIGN_KEY.matcher(statement).find()) {
+                    add(foreignKeys, constraint.group(1), statement);
+                } else {
+                    add(constraints, constraint.group(1), statement);
+                }
+            } else {
+                immediate.add(statement);
+            }
+        }
+    }
+
+    private static void add(Map<String, List<String>> index, String table, String statement) {
+        String key = upperCase(table);
+        List<String> list = index.get(key);
+        if (list == null) {
+            list = new ArrayList<String>();
+            index.put(key, list);
+        }
+        list.add(statement);
+    }
+
+    /**
+     * @return Statements to execute immediately, in their original order
+     */
+    public List<String> getImmediate() {
+        return immediate;
+    }
+
+    /**
+     * @return Index and constraint creations (foreign keys excepted), indexed by table
+     */
+    public Map<String, List<String>> getConstraints() {
+        return constraints;
+    }
+
+    /**
+     * @return Foreign key creations, indexed by table
+     */
+    public Map<String, List<String>> getForeignKeys() {
+        return foreignKeys;
+    }
+
+    /**
+     * @return <code>true</code> if at least one statement is deferred
+     */
+    public boolean isDeferred() {
+        return !constraints.isEmpty() || !foreignKeys.isEmpty();
+    }
+
+}
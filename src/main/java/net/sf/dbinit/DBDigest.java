@@ -0,0 +1,64 @@
+package net.sf.dbinit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digests, as hexadecimal strings.
+ */
+public final class DBDigest {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest digest;
+
+    public DBDigest() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    /**
+     * Adds a string to the digest, followed by a separator
+     */
+    public DBDigest update(String value) {
+        try {
+            digest.update(String.valueOf(value).getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+        digest.update((byte) 0);
+        return this;
+    }
+
+    /**
+     * Adds the content of a stream to the digest. The stream is not closed.
+     */
+    public DBDigest update(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            digest.update(buffer, 0, count);
+        }
+        return this;
+    }
+
+    /**
+     * @return Hexadecimal representation of the digest. The digest is reset.
+     */
+    public String toHex() {
+        byte[] bytes = digest.digest();
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0x0F];
+            chars[2 * i + 1] = HEX[bytes[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+
+}
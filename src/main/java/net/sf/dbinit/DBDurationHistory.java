@@ -0,0 +1,215 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Durations of the patches and of their statements measured by the previous runs, for each environment.
+ * <p>
+ * The history is kept in a properties file, each entry containing the average duration in milliseconds
+ * and the number of measures, for example <code>H2-1.patch.12=1534,3</code>.
+ * <p>
+ * The file can be shared by runs in parallel, in this JVM or in other processes: it is read and written under an
+ * exclusive lock on a <code>.lock</code> file next to it. When saving, the measures of this run are merged with the
+ * content of the file at that time, which is then replaced by renaming a temporary file, so that the measures of the
+ * other runs are kept and a reader never sees a partially written file.
+ */
+public class DBDurationHistory {
+
+    /**
+     * Serialises the locks of the runs of this JVM, which cannot hold two locks on the same file
+     */
+    private static final Object JVM_LOCK = new Object();
+
+    private final File file;
+    private final Properties durations = new Properties();
+
+    /**
+     * Measures added since the last load or save, indexed by key
+     */
+    private final Map<String, long[]> added = new LinkedHashMap<String, long[]>();
+
+    public DBDurationHistory(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Loads the history, if the file exists
+     *
+     * @throws IOException If the file cannot be read
+     */
+    public synchronized void load() throws IOException {
+        durations.clear();
+        added.clear();
+        if (file.exists()) {
+            synchronized (JVM_LOCK) {
+                FileLock lock = lock();
+                try {
+                    read(durations);
+                } finally {
+                    release(lock);
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the history, merging the measures added since the last load with the current content of the file
+     *
+     * @throws IOException If the file cannot be written
+     */
+    public synchronized void save() throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        synchronized (JVM_LOCK) {
+            FileLock lock = lock();
+            try {
+                Properties merged = new Properties();
+                read(merged);
+                for (Map.Entry<String, long[]> entry : added.entrySet()) {
+                    long[] measure = entry.getValue();
+                    merge(merged, entry.getKey(), measure[0], measure[1]);
+                }
+                write(merged);
+                durations.clear();
+                durations.putAll(merged);
+                added.clear();
+            } finally {
+                release(lock);
+            }
+        }
+    }
+
+    private FileLock lock() throws IOException {
+        File lockFile = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".lock");
+        FileChannel channel = new RandomAccessFile(lockFile, "rw").getChannel();
+        try {
+            return channel.lock();
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private static void release(FileLock lock) throws IOException {
+        try {
+            lock.release();
+        } finally {
+            lock.channel().close();
+        }
+    }
+
+    private void read(Properties properties) throws IOException {
+        if (file.exists()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    private void write(Properties properties) throws IOException {
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            properties.store(out, "DBInit durations (average millis, count)");
+        } finally {
+            out.close();
+        }
+        // The target must be removed first on some platforms; the lock keeps the other runs out meanwhile
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+            throw new IOException(String.format("Cannot replace %s by %s", file, temp));
+        }
+    }
+
+    /**
+     * Gets the average duration of a patch
+     *
+     * @param environment Environment
+     * @param patch       Patch
+     * @return Average duration in milliseconds or <code>null</code> if the patch has never been measured
+     */
+    public Long getPatch(String environment, int patch) {
+        return getAverage(getPatchKey(environment, patch));
+    }
+
+    /**
+     * Gets the average duration of a statement
+     *
+     * @param environment Environment
+     * @param patch       Patch
+     * @param index       Index of the statement in the patch
+     * @return Average duration in milliseconds or <code>null</code> if the statement has never been measured
+     */
+    public Long getStatement(String environment, int patch, int index) {
+        return getAverage(getPatchKey(environment, patch) + ".statement." + index);
+    }
+
+    public void addPatch(String environment, int patch, long durationMillis) {
+        add(getPatchKey(environment, patch), durationMillis);
+    }
+
+    public void addStatement(String environment, int patch, int index, long durationMillis) {
+        add(getPatchKey(environment, patch) + ".statement." + index, durationMillis);
+    }
+
+    private static String getPatchKey(String environment, int patch) {
+        return environment + ".patch." + patch;
+    }
+
+    private synchronized Long getAverage(String key) {
+        String value = durations.getProperty(key);
+        if (StringUtils.isNotBlank(value)) {
+            return Long.parseLong(StringUtils.substringBefore(value, ",").trim());
+        } else {
+            return null;
+        }
+    }
+
+    private synchronized void add(String key, long durationMillis) {
+        merge(durations, key, durationMillis, 1);
+        long[] measure = added.get(key);
+        if (measure == null) {
+            added.put(key, new long[]{durationMillis, 1});
+        } else {
+            measure[0] = (measure[0] * measure[1] + durationMillis) / (measure[1] + 1);
+            measure[1]++;
+        }
+    }
+
+    /**
+     * Adds measures to an entry
+     *
+     * @param properties     Entries
+     * @param key            Key of the entry
+     * @param durationMillis Average duration of the measures
+     * @param measures       Number of measures
+     */
+    private static void merge(Properties properties, String key, long durationMillis, long measures) {
+        String value = properties.getProperty(key);
+        long average = durationMillis;
+        long count = measures;
+        if (StringUtils.isNotBlank(value)) {
+            long previousAverage = Long.parseLong(StringUtils.substringBefore(value, ",").trim());
+            long previousCount = Long.parseLong(StringUtils.defaultIfBlank(StringUtils.substringAfter(value, ","), "1").trim());
+            count = previousCount + measures;
+            average = (previousAverage * previousCount + durationMillis * measures) / count;
+        }
+        properties.setProperty(key, average + "," + count);
+    }
+
+}
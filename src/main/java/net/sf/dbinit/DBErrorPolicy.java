@@ -0,0 +1,92 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * What to do when a statement of a patch fails, as declared by the <code>-- @onerror</code> directive of the patch:
+ * <ul>
+ * <li><code>fail</code> (default) - the patch fails, or is rolled back if it has a rollback section</li>
+ * <li><code>skip</code> - the statement is ignored and the next ones are executed</li>
+ * <li><code>retry [count] [delay]</code> - the statement is executed again, up to <code>count</code> times (3 by
+ * default), waiting <code>delay</code> milliseconds (0 by default) between two attempts, before the patch fails</li>
+ * </ul>
+ *
+ * @see DBInit#DIRECTIVE_ONERROR
+ */
+public class DBErrorPolicy {
+
+    public static enum Action {
+        FAIL, SKIP, RETRY
+    }
+
+    /**
+     * Default policy
+     */
+    public static final DBErrorPolicy FAIL = new DBErrorPolicy(Action.FAIL, 0, 0);
+
+    private final Action action;
+    private final int retries;
+    private final long delayMillis;
+
+    public DBErrorPolicy(Action action, int retries, long delayMillis) {
+        Validate.notNull(action, "The action must not be null");
+        Validate.isTrue(retries >= 0, "The number of retries must not be negative");
+        Validate.isTrue(delayMillis >= 0, "The delay must not be negative");
+        this.action = action;
+        this.retries = retries;
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Parses the value of a <code>-- @onerror</code> directive
+     *
+     * @param value Value of the directive (can be <code>null</code>)
+     * @return Policy
+     */
+    public static DBErrorPolicy parse(String value) {
+        if (StringUtils.isBlank(value)) {
+            return FAIL;
+        }
+        String[] tokens = StringUtils.split(value.trim().toUpperCase());
+        Action action;
+        try {
+            action = Action.valueOf(tokens[0]);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(String.format("Unknown error policy: %s", value));
+        }
+        Validate.isTrue(action == Action.RETRY || tokens.length == 1, "Unexpected parameters for the error policy: %s", value);
+        Validate.isTrue(tokens.length <= 3, "Expected 'retry [count] [delay]' but got: %s", value);
+        try {
+            int retries = tokens.length > 1 ? Integer.parseInt(tokens[1]) : (action == Action.RETRY ? 3 : 0);
+            long delay = tokens.length > 2 ? Long.parseLong(tokens[2]) : 0;
+            return new DBErrorPolicy(action, retries, delay);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("Expected 'retry [count] [delay]' but got: %s", value));
+        }
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * @return Maximum number of times a failed statement is executed again
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return Delay between two attempts, in milliseconds
+     */
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    @Override
+    public String toString() {
+        return action == Action.RETRY ? String.format("retry %d %d", retries, delayMillis) : action.name().toLowerCase();
+    }
+
+}
@@ -0,0 +1,295 @@
+package net.sf.dbinit;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Listener which records the phases of the runs as Java Flight Recorder events, so that the time spent by the
+ * migrations can be attributed in JDK Mission Control:
+ * <ul>
+ * <li><code>net.sf.dbinit.Run</code> - whole run</li>
+ * <li><code>net.sf.dbinit.VersionCheck</code> - reading of the version</li>
+ * <li><code>net.sf.dbinit.ScriptRead</code> and <code>net.sf.dbinit.ScriptParse</code> - reading and parsing of a
+ * script</li>
+ * <li><code>net.sf.dbinit.Patch</code> - application of a patch</li>
+ * <li><code>net.sf.dbinit.Statement</code> - statement of a patch, with its section, its SQL (truncated to
+ * {@value #MAX_SQL} characters) and the number of affected rows</li>
+ * <li><code>net.sf.dbinit.Action</code> - pre-action, post-action or patch action</li>
+ * </ul>
+ * A phase is only reported to this listener while its event is enabled in a recording, so nothing is created when
+ * no recording is running.
+ * <p>
+ * This class needs the <code>jdk.jfr</code> API (JDK 8u262 or later): it is only compiled by the <code>jfr</code>
+ * Maven profiles, which are active on these JDKs. It is registered by {@link DBInit}, by reflection, only when this
+ * API and this class are available.
+ *
+ * @see DBInit#setFlightRecorder(boolean)
+ */
+public class DBFlightRecorderListener implements DBInitListener {
+
+    /**
+     * Maximum length of the SQL of the statement events
+     */
+    public static final int MAX_SQL = 1000;
+
+    /**
+     * Patch of the events which are not related to a patch
+     */
+    private static final int NO_PATCH = -1;
+
+    private final Map<DBPhase, EventType> types = new EnumMap<DBPhase, EventType>(DBPhase.class);
+
+    /**
+     * Events started by each thread, indexed by phase. The phases can be nested in a phase of the same kind (a script
+     * read by an action of a patch, for example), so each phase has a stack of events.
+     */
+    private final ThreadLocal<Map<DBPhase, Deque<Event>>> events = new ThreadLocal<Map<DBPhase, Deque<Event>>>() {
+        @Override
+        protected Map<DBPhase, Deque<Event>> initialValue() {
+            return new EnumMap<DBPhase, Deque<Event>>(DBPhase.class);
+        }
+    };
+
+    public DBFlightRecorderListener() {
+        types.put(DBPhase.RUN, EventType.getEventType(RunEvent.class));
+        types.put(DBPhase.VERSION_CHECK, EventType.getEventType(VersionCheckEvent.class));
+        types.put(DBPhase.SCRIPT_READ, EventType.getEventType(ScriptReadEvent.class));
+        types.put(DBPhase.SCRIPT_PARSE, EventType.getEventType(ScriptParseEvent.class));
+        types.put(DBPhase.PATCH, EventType.getEventType(PatchEvent.class));
+        types.put(DBPhase.STATEMENT, EventType.getEventType(StatementEvent.class));
+        types.put(DBPhase.ACTION, EventType.getEventType(ActionEvent.class));
+    }
+
+    @Override
+    public boolean isEnabled(DBPhase phase) {
+        EventType type = types.get(phase);
+        return type != null && type.isEnabled();
+    }
+
+    @Override
+    public void phaseStarted(DBPhaseEvent event) {
+        Event recorded = create(event);
+        if (recorded != null) {
+            recorded.begin();
+            Map<DBPhase, Deque<Event>> started = events.get();
+            Deque<Event> stack = started.get(event.getPhase());
+            if (stack == null) {
+                stack = new ArrayDeque<Event>();
+                started.put(event.getPhase(), stack);
+            }
+            stack.push(recorded);
+        }
+    }
+
+    @Override
+    public void phaseFinished(DBPhaseEvent event) {
+        Deque<Event> stack = events.get().get(event.getPhase());
+        Event recorded = stack != null ? stack.poll() : null;
+        if (recorded != null) {
+            recorded.end();
+            if (recorded.shouldCommit()) {
+                complete(recorded, event);
+                recorded.commit();
+            }
+        }
+    }
+
+    @Override
+    public void progress(DBProgressEvent event) {
+    }
+
+    /**
+     * Creates the event of a phase which starts
+     */
+    private static Event create(DBPhaseEvent event) {
+        int patch = event.getPatch() != null ? event.getPatch() : NO_PATCH;
+        switch (event.getPhase()) {
+            case RUN:
+                return new RunEvent();
+            case VERSION_CHECK:
+                VersionCheckEvent versionCheck = new VersionCheckEvent();
+                versionCheck.table = event.getName();
+                return versionCheck;
+            case SCRIPT_READ:
+                ScriptReadEvent scriptRead = new ScriptReadEvent();
+                scriptRead.patch = patch;
+                scriptRead.path = event.getName();
+                return scriptRead;
+            case SCRIPT_PARSE:
+                ScriptParseEvent scriptParse = new ScriptParseEvent();
+                scriptParse.patch = patch;
+                scriptParse.path = event.getName();
+                return scriptParse;
+            case PATCH:
+                PatchEvent patchEvent = new PatchEvent();
+                patchEvent.patch = patch;
+                return patchEvent;
+            case STATEMENT:
+                StatementEvent statement = new StatementEvent();
+                statement.patch = patch;
+                statement.sql = truncate(event.getName());
+                return statement;
+            case ACTION:
+                ActionEvent action = new ActionEvent();
+                action.patch = patch;
+                action.action = event.getName();
+                return action;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Completes an event with the outcome of its phase
+     */
+    private static void complete(Event recorded, DBPhaseEvent event) {
+        String error = event.getError() != null ? event.getError().toString() : null;
+        if (recorded instanceof RunEvent) {
+            ((RunEvent) recorded).error = error;
+            ((RunEvent) recorded).regression = event.isRegression();
+        } else if (recorded instanceof VersionCheckEvent) {
+            ((VersionCheckEvent) recorded).error = error;
+        } else if (recorded instanceof ScriptReadEvent) {
+            ((ScriptReadEvent) recorded).error = error;
+        } else if (recorded instanceof ScriptParseEvent) {
+            ((ScriptParseEvent) recorded).error = error;
+        } else if (recorded instanceof PatchEvent) {
+            ((PatchEvent) recorded).error = error;
+        } else if (recorded instanceof StatementEvent) {
+            StatementEvent statement = (StatementEvent) recorded;
+            statement.section = event.getSection();
+            statement.rows = event.getRows();
+            statement.error = error;
+        } else if (recorded instanceof ActionEvent) {
+            ((ActionEvent) recorded).error = error;
+        }
+    }
+
+    private static String truncate(String sql) {
+        return sql != null && sql.length() > MAX_SQL ? sql.substring(0, MAX_SQL) : sql;
+    }
+
+    @Name("net.sf.dbinit.Run")
+    @Label("DBInit Run")
+    @Category("DBInit")
+    @Description("Initialisation or upgrade of a database")
+    public static class RunEvent extends Event {
+
+        @Label("Error")
+        String error;
+
+        @Label("Regression")
+        @Description("Some patches were slower than in the previous runs")
+        boolean regression;
+    }
+
+    @Name("net.sf.dbinit.VersionCheck")
+    @Label("DBInit Version Check")
+    @Category("DBInit")
+    @Description("Reading of the version of the database")
+    public static class VersionCheckEvent extends Event {
+
+        @Label("Version Table")
+        String table;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("net.sf.dbinit.ScriptRead")
+    @Label("DBInit Script Read")
+    @Category("DBInit")
+    @Description("Reading of a script, including its parsing")
+    public static class ScriptReadEvent extends Event {
+
+        @Label("Patch")
+        @Description("Patch being applied, -1 outside of the patches")
+        int patch;
+
+        @Label("Path")
+        String path;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("net.sf.dbinit.ScriptParse")
+    @Label("DBInit Script Parse")
+    @Category("DBInit")
+    @Description("Parsing of a script into statements")
+    public static class ScriptParseEvent extends Event {
+
+        @Label("Patch")
+        @Description("Patch being applied, -1 outside of the patches")
+        int patch;
+
+        @Label("Path")
+        String path;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("net.sf.dbinit.Patch")
+    @Label("DBInit Patch")
+    @Category("DBInit")
+    @Description("Application of a patch")
+    public static class PatchEvent extends Event {
+
+        @Label("Patch")
+        int patch;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("net.sf.dbinit.Statement")
+    @Label("DBInit Statement")
+    @Category("DBInit")
+    @Description("Execution of a statement of a patch")
+    public static class StatementEvent extends Event {
+
+        @Label("Patch")
+        int patch;
+
+        @Label("Section")
+        String section;
+
+        @Label("SQL")
+        String sql;
+
+        @Label("Rows")
+        @Description("Number of affected rows, -1 if unknown")
+        long rows;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("net.sf.dbinit.Action")
+    @Label("DBInit Action")
+    @Category("DBInit")
+    @Description("Execution of a pre-action, post-action or patch action")
+    public static class ActionEvent extends Event {
+
+        @Label("Patch")
+        @Description("Patch of a patch action, -1 for the other actions")
+        int patch;
+
+        @Label("Action")
+        String action;
+
+        @Label("Error")
+        String error;
+    }
+
+}
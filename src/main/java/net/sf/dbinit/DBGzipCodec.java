@@ -0,0 +1,22 @@
+package net.sf.dbinit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Codec for the GZIP compressed scripts (<code>.gz</code>)
+ */
+public class DBGzipCodec implements DBResourceCodec {
+
+    @Override
+    public String getExtension() {
+        return ".gz";
+    }
+
+    @Override
+    public InputStream decode(InputStream in) throws IOException {
+        return new GZIPInputStream(in, 64 * 1024);
+    }
+
+}
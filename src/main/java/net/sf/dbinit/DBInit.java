@@ -2,10 +2,12 @@ package net.sf.dbinit;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
 import java.io.*;
 import java.sql.*;
@@ -24,6 +26,172 @@ import static org.apache.commons.lang3.StringUtils.*;
  */
 public class DBInit implements DBExecutor, Runnable {
 
+    /**
+     * Task which runs an action on its own connection.
+     */
+    protected class ActionTask implements DBTask {
+
+        private final String name;
+        private final Collection<String> dependencies;
+        private final DBInitAction action;
+        private final Map<String, DBState> states;
+
+        public ActionTask(String name, Collection<String> dependencies, DBInitAction action, Map<String, DBState> states) {
+            this.name = name;
+            this.dependencies = dependencies;
+            this.action = action;
+            this.states = states;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Collection<String> getDependencies() {
+            return dependencies;
+        }
+
+        @Override
+        public void run(Connection connection) throws Exception {
+            runAction(connection, action, states);
+        }
+    }
+
+    /**
+     * Task which executes a list of statements on its own connection.
+     */
+    protected class StatementsTask implements DBTask {
+
+        private final String name;
+        private final Collection<String> dependencies;
+        private final List<String> statements;
+
+        public StatementsTask(String name, Collection<String> dependencies, List<String> statements) {
+            this.name = name;
+            this.dependencies = dependencies;
+            this.statements = statements;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Collection<String> getDependencies() {
+            return dependencies;
+        }
+
+        @Override
+        public void run(Connection connection) throws Exception {
+            Statement st = connection.createStatement();
+            try {
+                for (String sqlStatement : statements) {
+                    log.debug("Executing\n" + sqlStatement);
+                    st.execute(sqlStatement);
+                }
+            } finally {
+                st.close();
+            }
+        }
+    }
+
+    /**
+     * Task which applies a patch on its own connection.
+     */
+    protected class PatchTask implements DBTask {
+
+        private final int patch;
+        private final Collection<String> dependencies;
+        private final DBStatements statements;
+        private final PatchProgress progress;
+        private final boolean applied;
+
+        public PatchTask(int patch, Collection<String> dependencies, DBStatements statements, PatchProgress progress, boolean applied) {
+            this.patch = patch;
+            this.dependencies = dependencies;
+            this.statements = statements;
+            this.progress = progress;
+            this.applied = applied;
+        }
+
+        @Override
+        public String getName() {
+            return "patch " + patch;
+        }
+
+        @Override
+        public Collection<String> getDependencies() {
+            return dependencies;
+        }
+
+        @Override
+        public void run(Connection connection) throws Exception {
+            if (!applied) {
+                log.info("Applying patch " + patch + "...");
+                try {
+                    if (!runPatch(connection, patch, statements)) {
+                        throw new DBInitPatchException(patch, new SQLException("The patch has been rolled back"));
+                    }
+                } catch (DBInitPatchException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new DBInitPatchException(patch, ex);
+                }
+            }
+            progress.done(connection, patch);
+            if (!applied && lastRun != null) {
+                lastRun.addAppliedPatch(patch);
+            }
+            log.info("End of patch " + patch);
+        }
+    }
+
+    /**
+     * Keeps track of the patches applied concurrently and of the resulting version.
+     */
+    protected class PatchProgress {
+
+        private final SortedSet<Integer> pending;
+        private final SortedSet<Integer> recorded;
+        private int version;
+
+        public PatchProgress(int version, Collection<Integer> patches, Collection<Integer> applied) {
+            this.version = version;
+            this.pending = new TreeSet<Integer>(patches);
+            this.pending.removeAll(applied);
+            this.recorded = new TreeSet<Integer>(applied);
+        }
+
+        /**
+         * Records the completion of a patch and commits it. The version and the commit are serialised so that the
+         * version never goes backwards.
+         */
+        public synchronized void done(Connection connection, int patch) throws SQLException {
+            pending.remove(patch);
+            int newVersion = pending.isEmpty() ? DBInit.this.version : pending.first() - 1;
+            if (newVersion > version) {
+                version = newVersion;
+                updateVersion(connection, version);
+            }
+            DBStateTable stateStore = getStateStore();
+            if (stateStore != null) {
+                if (patch > version) {
+                    stateStore.put(connection, STATE_PATCH + patch, "done", patch);
+                    recorded.add(patch);
+                }
+                // The patches covered by the version do not need to be recorded any longer
+                while (!recorded.isEmpty() && recorded.first() <= version) {
+                    stateStore.remove(connection, STATE_PATCH + recorded.first());
+                    recorded.remove(recorded.first());
+                }
+            }
+            commit(connection);
+        }
+    }
+
     /**
      * Task which is executed at shutdwon.
      *
@@ -53,52 +221,279 @@ public class DBInit implements DBExecutor, Runnable {
      */
     public static final String SYSTEM_PROFILE = "dbinit.profile";
 
+    /**
+     * System property to set in order to force actions to run even if they have not changed. Value is {@value}.
+     * The property contains either <code>all</code> or a comma-separated list of action keys (the paths to the scripts).
+     */
+    public static final String SYSTEM_RERUN = "dbinit.rerun";
+
+    /**
+     * Prefix of the state entries for the actions
+     */
+    private static final String STATE_ACTION = "action:";
+
     /**
      * Rollback section
      */
     private static final String SECTION_ROLLBACK = "rollback";
 
+    /**
+     * Background section
+     */
+    private static final String SECTION_BACKGROUND = "background";
+
+    /**
+     * Directive declaring the patches a patch depends on
+     */
+    public static final String DIRECTIVE_DEPENDS = "depends";
+
+    /**
+     * Directive declaring the {@link DBErrorPolicy error policy} of a patch
+     */
+    public static final String DIRECTIVE_ONERROR = "onerror";
+
+    /**
+     * Directive declaring a {@link DBLob large object} to load from a file
+     */
+    public static final String DIRECTIVE_LOB = "lob";
+
+    /**
+     * Directive declaring the next statement as {@link DBChunkedStatement chunked}
+     */
+    public static final String DIRECTIVE_CHUNKED = "chunked";
+
+    /**
+     * Directive ending a reference data section, as a blank line does
+     */
+    public static final String DIRECTIVE_END = "end";
+
+    /**
+     * Maximum number of large objects loaded at once
+     */
+    private static final int LOB_BATCH_SIZE = 100;
+
+    /**
+     * Comments which are script-level directives instead of section names
+     */
+    private static final Set<String> SCRIPT_DIRECTIVES = new HashSet<String>(Arrays.asList(DIRECTIVE_DEPENDS, DIRECTIVE_ONERROR));
+
+    /**
+     * Prefix of the state entries for the patches applied out of order
+     */
+    private static final String STATE_PATCH = "patch:";
+
+    /**
+     * Prefix of the state entries for the schema fingerprint
+     */
+    private static final String STATE_SCHEMA = "schema:";
+
+    /**
+     * State entry of the schema fingerprint
+     */
+    private static final String STATE_SCHEMA_FINGERPRINT = STATE_SCHEMA + "fingerprint";
+
+    /**
+     * Prefix of the state entries for the description of the tables
+     */
+    private static final String STATE_SCHEMA_TABLE = STATE_SCHEMA + "table:";
+
+    /**
+     * Base class of the Java Flight Recorder events
+     */
+    private static final String FLIGHT_RECORDER_EVENT = "jdk.jfr.Event";
+
+    /**
+     * Listener recording the Java Flight Recorder events
+     */
+    private static final String FLIGHT_RECORDER_LISTENER = "net.sf.dbinit.DBFlightRecorderListener";
+
+    /**
+     * Minimum difference with the expected duration for a patch to be considered as regressed
+     */
+    private static final long REGRESSION_MIN_MILLIS = 100;
+
+    /**
+     * Prefix of the reference data sections
+     */
+    private static final String SECTION_REFDATA = "refdata";
+
+    /**
+     * Session section
+     */
+    private static final String SECTION_SESSION = "session";
+
+    /**
+     * Session restore section
+     */
+    private static final String SECTION_SESSION_RESTORE = "session-restore";
+
     /**
      * Logger
      */
     private static final Logger log = LoggerFactory.getLogger(DBInit.class);
 
     /**
-     * Reads resource as a string
+     * Codecs for the compressed scripts
+     */
+    private static final List<DBResourceCodec> codecs = loadCodecs();
+
+    private static List<DBResourceCodec> loadCodecs() {
+        List<DBResourceCodec> list = new ArrayList<DBResourceCodec>();
+        list.add(new DBGzipCodec());
+        for (DBResourceCodec codec : ServiceLoader.load(DBResourceCodec.class, DBInit.class.getClassLoader())) {
+            list.add(codec);
+        }
+        return list;
+    }
+
+    /**
+     * Opens a resource, using first the class path and then the file system.
+     * <p>
+     * Resources whose extension matches a {@link DBResourceCodec} are decoded on the fly. If the resource
+     * cannot be found, the path completed with the extension of each codec is tried, so that
+     * <code>update.1.sql.gz</code> is used when <code>update.1.sql</code> does not exist.
      *
      * @param path Resource path
-     * @return Resource content as a string
+     * @return Stream on the decoded content of the resource
      */
-    public static String readResource(String path) {
+    public static InputStream openResource(String path) {
         if (StringUtils.isBlank(path)) {
             throw new DBInitCannotGetResourceException(path);
-        } else {
-            InputStream in = DBInit.class.getResourceAsStream(path);
-            if (in == null) {
-                // Tries with a file
-                File file = new File(path);
-                if (file.exists()) {
-                    try {
-                        in = new FileInputStream(file);
-                    } catch (IOException ex) {
-                        throw new DBInitCannotReadResourceException(path, ex);
-                    }
+        }
+        InputStream in = openRawResource(path);
+        String actualPath = path;
+        if (in == null) {
+            for (DBResourceCodec codec : codecs) {
+                in = openRawResource(path + codec.getExtension());
+                if (in != null) {
+                    actualPath = path + codec.getExtension();
+                    break;
+                }
+            }
+        }
+        if (in == null) {
+            throw new DBInitCannotGetResourceException(path);
+        }
+        try {
+            for (DBResourceCodec codec : codecs) {
+                if (actualPath.endsWith(codec.getExtension())) {
+                    return codec.decode(in);
                 }
-                // Not found
-                else {
-                    throw new DBInitCannotGetResourceException(path);
+            }
+            return in;
+        } catch (IOException ex) {
+            IOUtils.closeQuietly(in);
+            throw new DBInitCannotReadResourceException(actualPath, ex);
+        }
+    }
+
+    private static InputStream openRawResource(String path) {
+        InputStream in = DBInit.class.getResourceAsStream(path);
+        if (in == null) {
+            // Tries with a file
+            File file = new File(path);
+            if (file.exists()) {
+                try {
+                    in = new FileInputStream(file);
+                } catch (IOException ex) {
+                    throw new DBInitCannotReadResourceException(path, ex);
                 }
             }
+        }
+        return in;
+    }
+
+    /**
+     * Reads resource as a string
+     *
+     * @param path Resource path
+     * @return Resource content as a string
+     * @see #openResource(String)
+     */
+    public static String readResource(String path) {
+        InputStream in = openResource(path);
+        try {
+            try {
+                String text = IOUtils.toString(in);
+                return text;
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            throw new DBInitCannotReadResourceException(path, ex);
+        }
+    }
+
+    /**
+     * Reads and splits a script, without loading its whole content in memory.
+     *
+     * @param path Resource path
+     * @return List of SQL statements, indexed by sections
+     * @see #openResource(String)
+     */
+    public static DBStatements readScript(String path) {
+        InputStream in = openResource(path);
+        try {
+            try {
+                return parseStatements(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            throw new DBInitCannotReadResourceException(path, ex);
+        } catch (IllegalArgumentException ex) {
+            // A statement which cannot be stored
+            throw new DBInitCannotReadResourceException(path, ex);
+        }
+    }
+
+    private static DBStatements parseStatements(InputStream in) throws IOException {
+        return parseStatements(new BufferedReader(new InputStreamReader(in), 64 * 1024));
+    }
+
+    /**
+     * Reads and splits a script like {@link #readScript(String)}, notifying the listeners of the
+     * {@link DBPhase#SCRIPT_READ reading} and {@link DBPhase#SCRIPT_PARSE parsing} of the script.
+     *
+     * @param path Resource path
+     * @return List of SQL statements, indexed by sections
+     */
+    protected DBStatements loadScript(String path) {
+        if (!isEnabled(DBPhase.SCRIPT_READ) && !isEnabled(DBPhase.SCRIPT_PARSE)) {
+            return readScript(path);
+        }
+        Integer patch = currentPatch.get();
+        long start = System.nanoTime();
+        fireStarted(new DBPhaseEvent(DBPhase.SCRIPT_READ, patch, path));
+        try {
+            InputStream in = openResource(path);
             try {
+                long parseStart = System.nanoTime();
+                fireStarted(new DBPhaseEvent(DBPhase.SCRIPT_PARSE, patch, path));
                 try {
-                    String text = IOUtils.toString(in);
-                    return text;
-                } finally {
-                    in.close();
+                    DBStatements statements = parseStatements(in);
+                    phaseFinished(DBPhase.SCRIPT_PARSE, patch, path, parseStart, null);
+                    phaseFinished(DBPhase.SCRIPT_READ, patch, path, start, null);
+                    return statements;
+                } catch (IOException ex) {
+                    phaseFinished(DBPhase.SCRIPT_PARSE, patch, path, parseStart, ex);
+                    throw ex;
+                } catch (IllegalArgumentException ex) {
+                    phaseFinished(DBPhase.SCRIPT_PARSE, patch, path, parseStart, ex);
+                    throw ex;
                 }
-            } catch (IOException ex) {
-                throw new DBInitCannotReadResourceException(path, ex);
+            } finally {
+                in.close();
             }
+        } catch (IOException ex) {
+            phaseFinished(DBPhase.SCRIPT_READ, patch, path, start, ex);
+            throw new DBInitCannotReadResourceException(path, ex);
+        } catch (IllegalArgumentException ex) {
+            phaseFinished(DBPhase.SCRIPT_READ, patch, path, start, ex);
+            throw new DBInitCannotReadResourceException(path, ex);
+        } catch (RuntimeException ex) {
+            phaseFinished(DBPhase.SCRIPT_READ, patch, path, start, ex);
+            throw ex;
         }
     }
 
@@ -136,48 +531,104 @@ public class DBInit implements DBExecutor, Runnable {
      */
     @Override
     public boolean runScript(Connection connection, String scriptPath) throws SQLException {
-        // Gets the SQL content
-        String sql = readResource(scriptPath);
+        // Reads and slices all statements
+        DBStatements statements = loadScript(scriptPath);
         // Applies the update
+        return runStatements(connection, statements);
+    }
+
+    /**
+     * Runs the statements of a script
+     *
+     * @param connection Connection to use
+     * @param statements Parsed script
+     * @return <code>true</code> if the script was applied successfully, <code>false</code> if there was an error and the script was rolled back
+     * @throws SQLException If an error occurs while executing the script
+     * @see #runScript(Connection, String)
+     */
+    protected boolean runStatements(Connection connection, DBStatements statements) throws SQLException {
         Statement st = connection.createStatement();
         try {
-            // Slices all statements
-            DBStatements statements = readStatements(sql);
             // Gets the default section
             DBSection defaultSection = getSection(statements);
+            // Statements of a patch are measured
+            Integer patch = currentPatch.get();
+            boolean statementEvents = patch != null && isEnabled(DBPhase.STATEMENT);
+            boolean tracked = patch != null && (history != null || statementLatencies != null || statementEvents);
+            // Error policy and savepoints: in a transaction, a failed statement must be rolled back before going on,
+            // whatever the savepoint mode (PostgreSQL rejects any statement after an error otherwise)
+            DBErrorPolicy policy = DBErrorPolicy.parse(statements.getDirective(DIRECTIVE_ONERROR));
+            boolean statementSavepoints = policy.getAction() != DBErrorPolicy.Action.FAIL && !connection.getAutoCommit();
+            // Large objects
+            DBLobLoader lobs = new DBLobLoader(connection, LOB_BATCH_SIZE);
             // Executes all statements
-            for (String sqlStatement : defaultSection.getStatements()) {
+            List<String> sqlStatements = defaultSection.getStatements();
+            for (int index = 0; index < sqlStatements.size(); index++) {
+                String sqlStatement = sqlStatements.get(index);
                 try {
-                    st.execute(sqlStatement);
+                    if (DBLobLoader.isLob(sqlStatement)) {
+                        lobs.add(sqlStatement);
+                        continue;
+                    } else {
+                        lobs.flush();
+                    }
                 } catch (SQLException ex) {
-                    log.debug(String.format("Looking for rollback section: %s", SECTION_ROLLBACK));
-                    // Performs a normal rollback
-                    connection.rollback();
-                    // Gets a rollback section
-                    DBSection rollbackSection = getRollbackSection(statements);
-                    if (rollbackSection != null) {
-                        log.debug("Applying rollback section");
-                        for (String rollbackStatement : rollbackSection.getStatements()) {
-                            try {
-                                st.execute(rollbackStatement);
-                            } catch (SQLException rollbackException) {
-                                throw new SQLException(
-                                        String.format(
-                                                "Could not rollback after error. Rollback exception is: %s",
-                                                rollbackException),
-                                        ex);
-                            }
+                    return rollback(connection, statements, st, ex);
+                }
+                boolean chunked = DBChunkedStatement.isChunked(sqlStatement);
+                String section = defaultSection.getName();
+                int attempt = 0;
+                while (true) {
+                    long start = 0;
+                    if (tracked) {
+                        start = System.nanoTime();
+                        if (statementEvents) {
+                            fireStarted(new DBPhaseEvent(DBPhase.STATEMENT, patch, sqlStatement));
                         }
-                        // Rollback done
-                        log.debug("Rollback applied");
-                        return false;
                     }
-                    // No rollback section, throws the exception
-                    else {
-                        throw ex;
+                    // The chunks are committed, which would release the savepoint
+                    Savepoint savepoint = statementSavepoints && !chunked ? connection.setSavepoint() : null;
+                    try {
+                        long rows;
+                        if (chunked) {
+                            rows = executeChunked(connection, sqlStatement);
+                        } else {
+                            rows = st.execute(sqlStatement) ? -1 : st.getUpdateCount();
+                        }
+                        if (tracked) {
+                            statementFinished(patch, index, section, sqlStatement, rows, start, null);
+                        }
+                        if (savepoint != null) {
+                            connection.releaseSavepoint(savepoint);
+                        }
+                        break;
+                    } catch (SQLException ex) {
+                        if (tracked) {
+                            statementFinished(patch, index, section, sqlStatement, -1, start, ex);
+                        }
+                        if (savepoint != null) {
+                            connection.rollback(savepoint);
+                        }
+                        if (policy.getAction() == DBErrorPolicy.Action.RETRY && attempt < policy.getRetries()) {
+                            attempt++;
+                            log.warn("Retrying ({}/{}) after error: {}", new Object[]{attempt, policy.getRetries(), ex});
+                            pause(policy.getDelayMillis());
+                        } else if (policy.getAction() == DBErrorPolicy.Action.SKIP) {
+                            log.warn("Skipping statement after error: {}", ex.toString());
+                            break;
+                        } else {
+                            return rollback(connection, statements, st, ex);
+                        }
                     }
                 }
             }
+            try {
+                lobs.flush();
+            } catch (SQLException ex) {
+                return rollback(connection, statements, st, ex);
+            }
+            // Reference data
+            syncRefData(connection, statements);
             // OK
             return true;
         } finally {
@@ -185,69 +636,399 @@ public class DBInit implements DBExecutor, Runnable {
         }
     }
 
-
     /**
-     * Gets the section to execute when rolling back, according to the profile.
+     * Rolls back a failed script, to the savepoint of the current patch if any, and runs its rollback section
      *
-     * @param statements All sections
-     * @return Section to execute
-     * @see #getProfile()
-     */
-    protected DBSection getRollbackSection(DBStatements statements) {
-        String profile = getProfile();
-        if (StringUtils.isNotBlank(profile)) {
-            DBSection section = statements.getSection(String.format("%s-%s", profile, SECTION_ROLLBACK));
-            if (section != null) {
-                return section;
+     * @return <code>false</code> if the rollback section has been applied
+     * @throws SQLException The error of the script if there is no rollback section
+     */
+    private boolean rollback(Connection connection, DBStatements statements, Statement st, SQLException ex) throws SQLException {
+        log.debug(String.format("Looking for rollback section: %s", SECTION_ROLLBACK));
+        Savepoint savepoint = patchSavepoint.get();
+        if (savepoint != null) {
+            // Keeps the work done before the patch
+            connection.rollback(savepoint);
+        } else {
+            // Performs a normal rollback
+            rollback(connection);
+        }
+        // Gets a rollback section
+        DBSection rollbackSection = getRollbackSection(statements);
+        if (rollbackSection != null) {
+            log.debug("Applying rollback section");
+            fireStarted(new DBPhaseEvent(DBPhase.ROLLBACK, currentPatch.get(), null));
+            for (String rollbackStatement : rollbackSection.getStatements()) {
+                try {
+                    st.execute(rollbackStatement);
+                } catch (SQLException rollbackException) {
+                    throw new SQLException(
+                            String.format(
+                                    "Could not rollback after error. Rollback exception is: %s",
+                                    rollbackException),
+                            ex);
+                }
             }
+            // Rollback done
+            log.debug("Rollback applied");
+            return false;
+        }
+        // No rollback section, throws the exception
+        else {
+            throw ex;
         }
-        return statements.getSection(SECTION_ROLLBACK);
     }
 
     /**
-     * Splits all statements
-     *
-     * @param sql Initial SQL file
-     * @return List of SQL statements, indexed by sections
+     * Executes a {@link DBChunkedStatement chunked statement}. The savepoint of the current patch, released by the
+     * commits, is set again after the statement.
      */
-    public static DBStatements readStatements(String sql) {
-        DBStatements statements = new DBStatements();
-        BufferedReader reader = new BufferedReader(new StringReader(sql));
+    private long executeChunked(Connection connection, String sqlStatement) throws SQLException {
+        DBChunkedStatement chunked;
         try {
-            try {
-                String line;
-                StringBuffer statement = new StringBuffer();
-                DBSection section = DBSection.createDefault();
-                statements.addSection(section);
-                while ((line = reader.readLine()) != null) {
-                    if (StringUtils.isNotBlank(line)) {
-                        // Comment
-                        if (line.startsWith("--")) {
-                            String commentValue = trim(substring(line, 2));
-                            if (startsWith(commentValue, "@")) {
-                                String sectionName = trim(substring(commentValue, 1));
-                                section = new DBSection(lowerCase(sectionName));
-                                statements.addSection(section);
-                            }
+            chunked = DBChunkedStatement.parse(sqlStatement);
+        } catch (IllegalArgumentException ex) {
+            throw new SQLException(ex.getMessage(), ex);
+        }
+        long rows = chunked.execute(connection);
+        resetPatchSavepoint(connection);
+        return rows;
+    }
+
+    /**
+     * Sets the savepoint of the current patch again, if any, after its transaction has been committed
+     *
+     * @param connection Connection of the patch
+     * @throws SQLException If the savepoint cannot be set
+     */
+    void resetPatchSavepoint(Connection connection) throws SQLException {
+        if (patchSavepoint.get() != null) {
+            patchSavepoint.set(connection.setSavepoint());
+        }
+    }
+
+    /**
+     * Commits the transaction of a connection. Nothing is done in auto-commit mode, where some drivers, like the SQLite
+     * one, reject the commits.
+     *
+     * @param connection Connection to commit
+     * @throws SQLException If the transaction cannot be committed
+     */
+    static void commit(Connection connection) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Rolls the transaction of a connection back. Nothing is done in auto-commit mode, where there is nothing to roll
+     * back.
+     *
+     * @param connection Connection to roll back
+     * @throws SQLException If the transaction cannot be rolled back
+     */
+    static void rollback(Connection connection) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+        }
+    }
+
+    private static void pause(long millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Synchronises the reference data sections of a script, according to the profile. Such a section is declared by
+     * <code>-- @refdata TABLE KEY[,KEY...]</code> (or <code>-- @&lt;profile&gt;-refdata TABLE KEY[,KEY...]</code>,
+     * which replaces the <code>refdata</code> section of the same table when the profile is active) and contains a
+     * header line with the names of the columns, followed by one line of comma-separated values per row, up to the
+     * first blank line or <code>-- @end</code>.
+     *
+     * @param connection Connection to use
+     * @param statements Parsed script
+     * @throws SQLException If a table cannot be synchronised
+     * @see DBRefData
+     * @see #getProfile()
+     */
+    protected void syncRefData(Connection connection, DBStatements statements) throws SQLException {
+        String profile = getProfile();
+        String profileRefData = StringUtils.isNotBlank(profile) ? String.format("%s-%s", profile, SECTION_REFDATA) : null;
+        // Tables having a section for the profile
+        Set<String> profileTables = new HashSet<String>();
+        for (DBSection section : statements.getSections()) {
+            String[] tokens = StringUtils.split(section.getName());
+            if (tokens[0].equals(profileRefData) && tokens.length > 1) {
+                profileTables.add(tokens[1].toUpperCase(Locale.ENGLISH));
+            }
+        }
+        for (DBSection section : statements.getSections()) {
+            String[] tokens = StringUtils.split(section.getName());
+            boolean forProfile = tokens[0].equals(profileRefData);
+            if (forProfile || SECTION_REFDATA.equals(tokens[0])) {
+                if (tokens.length != 3) {
+                    throw new DBInitSQLException("Reference data", new SQLException(String.format("Expected '%s TABLE KEY[,KEY...]' but got '%s'", tokens[0], section.getName())));
+                }
+                if (forProfile || !profileTables.contains(tokens[1].toUpperCase(Locale.ENGLISH))) {
+                    DBRefData data = DBRefData.parse(tokens[1], Arrays.asList(StringUtils.split(tokens[2], ",")), section.getStatements());
+                    data.sync(connection, 1000);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Records the duration of a statement of a patch and notifies the listeners
+     */
+    private void statementFinished(int patch, int index, String section, String sqlStatement, long rows, long start, Throwable error) {
+        long durationNanos = System.nanoTime() - start;
+        long duration = durationNanos / 1000000L;
+        DBLatencyHistogram latencies = statementLatencies;
+        if (latencies != null) {
+            latencies.record(durationNanos / 1000L);
+        }
+        Long expected = null;
+        if (history != null) {
+            expected = history.getStatement(environmentKey, patch, index);
+            if (error == null) {
+                history.addStatement(environmentKey, patch, index, duration);
+            }
+        }
+        if (isEnabled(DBPhase.STATEMENT)) {
+            fireFinished(new DBPhaseEvent(DBPhase.STATEMENT, patch, sqlStatement, durationNanos, error, expected, false, section, rows));
+            DBMigrationProgress progress = migrationProgress;
+            if (progress != null) {
+                fireProgress(progress.getProgress());
+            }
+        }
+    }
+
+    /**
+     * Gets the section to execute when rolling back, according to the profile.
+     *
+     * @param statements All sections
+     * @return Section to execute
+     * @see #getProfile()
+     */
+    protected DBSection getRollbackSection(DBStatements statements) {
+        return getProfileSection(statements, SECTION_ROLLBACK);
+    }
+
+    /**
+     * Gets a named section according to the profile: the <code>&lt;profile&gt;-&lt;name&gt;</code> section if it
+     * exists, the <code>&lt;name&gt;</code> section otherwise.
+     *
+     * @param statements All sections
+     * @param name       Name of the section
+     * @return Section or <code>null</code> if not found
+     * @see #getProfile()
+     */
+    protected DBSection getProfileSection(DBStatements statements, String name) {
+        String profile = getProfile();
+        if (StringUtils.isNotBlank(profile)) {
+            DBSection section = statements.getSection(String.format("%s-%s", profile, name));
+            if (section != null) {
+                return section;
+            }
+        }
+        return statements.getSection(name);
+    }
+
+    /**
+     * Gets the section to execute in the background, according to the profile.
+     *
+     * @param statements All sections
+     * @return Section to execute in the background or <code>null</code> if none
+     * @see #getProfile()
+     * @see DBBackgroundPatches
+     */
+    protected DBSection getBackgroundSection(DBStatements statements) {
+        return getProfileSection(statements, SECTION_BACKGROUND);
+    }
+
+    /**
+     * Runs the session or session restore section of the {@link #setResourceSession(String) session script}.
+     *
+     * @param connection Connection to tune
+     * @param session    Parsed session script (can be <code>null</code>)
+     * @param name       Name of the section to run
+     * @throws SQLException If a statement fails
+     */
+    protected void runSession(Connection connection, DBStatements session, String name) throws SQLException {
+        DBSection section = session != null ? getProfileSection(session, name) : null;
+        if (section != null) {
+            log.info("Running the {} section", name);
+            Statement st = connection.createStatement();
+            try {
+                for (String sqlStatement : section.getStatements()) {
+                    log.debug("Executing\n" + sqlStatement);
+                    st.execute(sqlStatement);
+                }
+            } finally {
+                st.close();
+            }
+        }
+    }
+
+    /**
+     * Checks that the background section of a patch, if any, can be resumed: its progress must be recorded in the
+     * {@link #setStateTable(String) state table}, since the background thread does not survive the JVM
+     *
+     * @param patch      Patch to apply
+     * @param statements Parsed script of the patch
+     * @throws IllegalStateException If the patch has a background section and there is no state table
+     */
+    protected void checkBackground(int patch, DBStatements statements) {
+        DBSection section = getBackgroundSection(statements);
+        Validate.validState(section == null || section.getStatements().isEmpty() || getStateStore() != null,
+                "Patch %d has a background section, which needs a state table (stateTable property)", patch);
+    }
+
+    /**
+     * Registers the background section of a patch, if any, to be applied after the run
+     *
+     * @param connection Connection to use
+     * @param patch      Patch which is applied
+     * @param statements Parsed script of the patch
+     * @throws SQLException If the background patch cannot be recorded in the state table
+     */
+    protected void queueBackground(Connection connection, int patch, DBStatements statements) throws SQLException {
+        DBSection section = getBackgroundSection(statements);
+        if (section != null && !section.getStatements().isEmpty()) {
+            log.info("Background section of patch {} is deferred", patch);
+            synchronized (backgroundQueue) {
+                backgroundQueue.put(patch, section.getStatements());
+            }
+            // Pending, recorded with the version of the patch
+            getStateStore().put(connection, DBBackgroundPatches.STATE_BACKGROUND + patch, "0", patch);
+        }
+    }
+
+    /**
+     * Registers the background patches which have not been completed by the previous runs
+     *
+     * @param connection Connection to use
+     * @return Number of statements already executed, indexed by patch
+     * @throws SQLException If the state table cannot be read
+     */
+    protected Map<Integer, Integer> resumeBackground(Connection connection) throws SQLException {
+        Map<Integer, Integer> starts = new HashMap<Integer, Integer>();
+        DBStateTable stateStore = getStateStore();
+        if (stateStore != null) {
+            for (DBState state : stateStore.load(connection, DBBackgroundPatches.STATE_BACKGROUND).values()) {
+                int patch = Integer.parseInt(state.getName().substring(DBBackgroundPatches.STATE_BACKGROUND.length()));
+                if (!DBBackgroundPatches.STATE_DONE.equals(state.getValue()) && !backgroundQueue.containsKey(patch) && patch <= version) {
+                    DBSection section = getBackgroundSection(loadScript(MessageFormat.format(resourceUpdate, patch)));
+                    if (section != null) {
+                        log.info("Resuming background patch {}", patch);
+                        backgroundQueue.put(patch, section.getStatements());
+                        starts.put(patch, Integer.parseInt(state.getValue()));
+                    }
+                }
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * Splits all statements
+     *
+     * @param sql Initial SQL file
+     * @return List of SQL statements, indexed by sections
+     */
+    public static DBStatements readStatements(String sql) {
+        try {
+            return parseStatements(new BufferedReader(new StringReader(sql)));
+        } catch (IOException ex) {
+            throw new DBInitCannotSplitStatementsException(sql, ex);
+        } catch (IllegalArgumentException ex) {
+            // A statement which cannot be stored
+            throw new DBInitCannotSplitStatementsException(sql, ex);
+        }
+    }
+
+    private static DBStatements parseStatements(BufferedReader reader) throws IOException {
+        DBStatements statements = new DBStatements();
+        try {
+            String line;
+            StringBuilder statement = new StringBuilder();
+            DBSection section = DBSection.createDefault();
+            statements.addSection(section);
+            boolean rows = false;
+            // Section of the statements after a reference data section
+            DBSection afterRows = null;
+            String chunked = null;
+            while ((line = reader.readLine()) != null) {
+                // End of the reference data
+                if (rows && (StringUtils.isBlank(line) || (line.startsWith("--") && ("@" + DIRECTIVE_END).equalsIgnoreCase(trim(substring(line, 2)))))) {
+                    rows = false;
+                    section = afterRows;
+                    continue;
+                }
+                if (StringUtils.isNotBlank(line)) {
+                    // Comment
+                    if (line.startsWith("--")) {
+                        String commentValue = trim(substring(line, 2));
+                        if (startsWith(commentValue, "@")) {
+                            String sectionName = trim(substring(commentValue, 1));
+                            String directive = lowerCase(substringBefore(sectionName, " "));
+                            if (SCRIPT_DIRECTIVES.contains(directive)) {
+                                statements.addDirective(directive, trim(substringAfter(sectionName, " ")));
+                            } else if (DIRECTIVE_LOB.equals(directive)) {
+                                // Loaded in order with the other statements
+                                section.addStatement(DBLobLoader.PREFIX + trim(substringAfter(sectionName, " ")));
+                            } else if (DIRECTIVE_CHUNKED.equals(directive)) {
+                                // Applies to the next statement
+                                chunked = trim(substringAfter(sectionName, " "));
+                            } else if (DIRECTIVE_END.equals(directive)) {
+                                // Reference data already ended by a blank line: nothing left to end
+                            } else if (SECTION_REFDATA.equals(directive) || directive.endsWith("-" + SECTION_REFDATA)) {
+                                // The names of the table and of the columns are kept as they are
+                                if (!rows) {
+                                    afterRows = section;
+                                }
+                                section = new DBSection(directive + " " + trim(substringAfter(sectionName, " ")));
+                                statements.addSection(section);
+                                rows = true;
+                                chunked = null;
+                            } else {
+                                section = new DBSection(lowerCase(sectionName));
+                                statements.addSection(section);
+                                rows = false;
+                                // A chunked directive does not apply across sections
+                                chunked = null;
+                            }
                         }
-                        // Anything else
-                        else {
-                            if (line.endsWith(";")) {
-                                line = stripEnd(line, ";");
-                                statement.append(line);
-                                section.addStatement(statement.toString());
-                                statement.setLength(0);
+                    }
+                    // Reference data: one row per line
+                    else if (rows) {
+                        section.addStatement(line.trim());
+                    }
+                    // Anything else
+                    else {
+                        if (line.endsWith(";")) {
+                            line = stripEnd(line, ";");
+                            statement.append(line);
+                            if (chunked != null) {
+                                section.addStatement(DBChunkedStatement.declare(chunked, statement));
+                                chunked = null;
                             } else {
-                                statement.append(line).append(" ");
+                                section.addStatement(statement);
                             }
+                            statement.setLength(0);
+                        } else {
+                            statement.append(line).append(" ");
                         }
                     }
                 }
-            } finally {
-                reader.close();
             }
-        } catch (IOException ex) {
-            throw new DBInitCannotSplitStatementsException(sql, ex);
+        } finally {
+            reader.close();
         }
         return statements;
     }
@@ -272,6 +1053,11 @@ public class DBInit implements DBExecutor, Runnable {
      */
     private String resourceUpdate;
 
+    /**
+     * Resource containing the session tuning
+     */
+    private String resourceSession;
+
     /**
      * Version to setup
      */
@@ -332,6 +1118,136 @@ public class DBInit implements DBExecutor, Runnable {
      */
     private List<? extends DBPatchAction> patchActions;
 
+    /**
+     * Maximum number of connections used at the same time for the tasks which can run in parallel
+     */
+    private int parallelism = 1;
+
+    /**
+     * Defers the creation of indexes and constraints after the data has been loaded
+     */
+    private boolean fastSeed;
+
+    /**
+     * Summary of the last run
+     */
+    private DBRunSummary lastRun;
+
+    /**
+     * Patches applied on the main connection during the run, which are lost if its transaction is rolled back
+     */
+    private final List<Integer> transactionPatches = new ArrayList<Integer>();
+
+    /**
+     * Table where DBInit keeps its own state
+     */
+    private String stateTable;
+
+    /**
+     * Maximum number of background statements per second
+     */
+    private int backgroundRate;
+
+    /**
+     * Background sections to apply after the current run
+     */
+    private final SortedMap<Integer, List<String>> backgroundQueue = new TreeMap<Integer, List<String>>();
+
+    /**
+     * Background patches of the last run
+     */
+    private volatile DBBackgroundPatches background;
+
+    /**
+     * Listeners
+     */
+    private final List<DBInitListener> listeners = new java.util.concurrent.CopyOnWriteArrayList<DBInitListener>();
+
+    /**
+     * File containing the durations measured by the previous runs
+     */
+    private String historyFile;
+
+    /**
+     * Environment the durations are associated with
+     */
+    private String environment;
+
+    /**
+     * Ratio between the actual and expected durations of a patch above which it is reported as regressed
+     */
+    private double regressionThreshold = 2.0;
+
+    /**
+     * Durations of the previous runs, during a run
+     */
+    private volatile DBDurationHistory history;
+
+    /**
+     * Environment of the current run
+     */
+    private volatile String environmentKey;
+
+    /**
+     * Progress of the patches of the current run
+     */
+    private volatile DBMigrationProgress migrationProgress;
+
+    /**
+     * Name of the management bean
+     */
+    private String jmxName;
+
+    /**
+     * Management bean, once registered
+     */
+    private DBInitManagement management;
+
+    /**
+     * Latencies of the statements of the patches, in microseconds, recorded without creating any event
+     */
+    private volatile DBLatencyHistogram statementLatencies;
+
+    /**
+     * Patch applied by the current thread
+     */
+    private final ThreadLocal<Integer> currentPatch = new ThreadLocal<Integer>();
+
+    /**
+     * Savepoint set before the patch applied by the current thread
+     */
+    private final ThreadLocal<Savepoint> patchSavepoint = new ThreadLocal<Savepoint>();
+
+    /**
+     * Savepoint mode
+     */
+    private boolean savepoints;
+
+    /**
+     * Schema fingerprint
+     */
+    private boolean fingerprint;
+
+    /**
+     * Failure when the schema has changed
+     */
+    private boolean failOnSchemaDrift;
+
+    /**
+     * Java Flight Recorder events
+     */
+    private boolean flightRecorder = true;
+
+    /**
+     * Listener recording the Java Flight Recorder events, once registered
+     */
+    private DBInitListener flightRecorderListener;
+
+    /**
+     * Snapshot taken before the patches
+     */
+    private DBSnapshot snapshot;
+
     /**
      * Applies one patch
      *
@@ -339,54 +1255,278 @@ public class DBInit implements DBExecutor, Runnable {
      * @param patch      Patch to apply
      */
     protected void applyPatch(Connection connection, int patch) {
+        applyPatch(connection, patch, null);
+    }
+
+    /**
+     * Applies one patch whose script may already have been read
+     *
+     * @param connection Connection to be used
+     * @param patch      Patch to apply
+     * @param statements Parsed script of the patch, or <code>null</code> to read it
+     */
+    private void applyPatch(Connection connection, int patch, DBStatements statements) {
         log.info("Applying patch " + patch + "...");
         try {
             // Read the update
-            String updatePath = MessageFormat.format(resourceUpdate, patch);
-            boolean success = runScript(connection, updatePath);
-            // Applying any suitable patch action
-            if (patchActions != null) {
-                for (DBPatchAction patchAction : patchActions) {
-                    if (patchAction.appliesTo(patch)) {
-                        log.info("Applying action [{}] for patch [{}]...", patchAction.getDisplayName(), patch);
-                        patchAction.apply(connection, patch);
-                    }
-                }
+            if (statements == null) {
+                String updatePath = MessageFormat.format(resourceUpdate, patch);
+                statements = loadScript(updatePath);
+            }
+            if (savepoints) {
+                patchSavepoint.set(connection.setSavepoint());
             }
             // Upgrading the version after success
-            if (success) {
-                setVersion(connection, patch);
+            if (runPatch(connection, patch, statements)) {
+                updateVersion(connection, patch);
+                if (lastRun != null) {
+                    lastRun.addAppliedPatch(patch);
+                    transactionPatches.add(patch);
+                }
             }
             // Ok
             log.info("End of patch " + patch);
         } catch (Exception ex) {
+            // Savepoint of the patch, or after its last chunked statement
+            Savepoint savepoint = patchSavepoint.get();
+            if (savepoint != null) {
+                keepPreviousPatches(connection, patch, savepoint);
+            }
             throw new DBInitPatchException(patch, ex);
+        } finally {
+            patchSavepoint.remove();
         }
     }
 
     /**
-     * Applies patches for the current version
-     *
-     * @param connection     Connection to be used
-     * @param currentVersion Version which patches must be applied from.
+     * Rolls a failed patch back to its savepoint and commits the patches applied before it
      */
-    protected void applyPatches(Connection connection, int currentVersion) {
-        List<Integer> patchList = getPatchList(currentVersion);
-        if (patchList.isEmpty()) {
-            log.info("No patch is needed for version " + currentVersion);
-        } else {
-            log.info("List of patches to apply : " + patchList);
-            // Applies all patches
-            for (int patch : patchList) {
-                applyPatch(connection, patch);
-            }
+    private void keepPreviousPatches(Connection connection, int patch, Savepoint savepoint) {
+        try {
+            connection.rollback(savepoint);
+            commit(connection);
+            log.info("Patch {} has been rolled back to its savepoint, the previous patches are kept", patch);
+        } catch (SQLException ex) {
+            log.error(String.format("Cannot roll patch %d back to its savepoint", patch), ex);
         }
     }
 
-    protected List<Integer> getPatchList(int currentVersion) {
-        if (version > currentVersion) {
-            List<Integer> patches = new ArrayList<Integer>();
-            for (int patch = currentVersion + 1; patch <= version; patch++) {
+    /**
+     * Runs the script and the actions of a patch, without updating the version
+     *
+     * @param connection Connection to be used
+     * @param patch      Patch to apply
+     * @param statements Parsed script of the patch
+     * @return <code>true</code> if the patch was applied successfully, <code>false</code> if it was rolled back
+     * @throws Exception If the patch cannot be applied
+     */
+    protected boolean runPatch(Connection connection, int patch, DBStatements statements) throws Exception {
+        DBMigrationProgress progress = migrationProgress;
+        if (progress != null) {
+            progress.started(patch);
+        }
+        fireStarted(new DBPhaseEvent(DBPhase.PATCH, patch, null));
+        long start = System.currentTimeMillis();
+        Throwable error = null;
+        currentPatch.set(patch);
+        try {
+            return doRunPatch(connection, patch, statements);
+        } catch (Exception ex) {
+            error = ex;
+            throw ex;
+        } finally {
+            currentPatch.remove();
+            patchFinished(patch, start, error);
+        }
+    }
+
+    /**
+     * Records the duration of a patch, checks it against the previous runs and notifies the listeners
+     */
+    private void patchFinished(int patch, long start, Throwable error) {
+        long duration = System.currentTimeMillis() - start;
+        DBMigrationProgress progress = migrationProgress;
+        Long expected = progress != null ? progress.getExpected(patch) : null;
+        boolean regression = false;
+        if (error == null) {
+            if (expected != null && duration > expected * regressionThreshold && duration - expected >= REGRESSION_MIN_MILLIS) {
+                regression = true;
+                log.warn("Patch {} took {} ms, while {} ms were expected from the previous runs", new Object[]{patch, duration, expected});
+                if (lastRun != null) {
+                    lastRun.addRegression(patch);
+                }
+            }
+            if (history != null) {
+                history.addPatch(environmentKey, patch, duration);
+            }
+        }
+        fireFinished(new DBPhaseEvent(DBPhase.PATCH, patch, null, duration * 1000000L, error, expected, regression));
+        if (progress != null) {
+            DBProgressEvent event = progress.finished(patch, duration);
+            log.info("Progress: {}", event);
+            fireProgress(event);
+        }
+    }
+
+    private void applyPatchAction(Connection connection, int patch, DBPatchAction patchAction) throws Exception {
+        if (!isEnabled(DBPhase.ACTION)) {
+            patchAction.apply(connection, patch);
+            return;
+        }
+        String name = patchAction.getDisplayName();
+        long start = System.nanoTime();
+        fireStarted(new DBPhaseEvent(DBPhase.ACTION, patch, name));
+        try {
+            patchAction.apply(connection, patch);
+            phaseFinished(DBPhase.ACTION, patch, name, start, null);
+        } catch (Exception ex) {
+            phaseFinished(DBPhase.ACTION, patch, name, start, ex);
+            throw ex;
+        }
+    }
+
+    private boolean doRunPatch(Connection connection, int patch, DBStatements statements) throws Exception {
+        checkBackground(patch, statements);
+        boolean success = runStatements(connection, statements);
+        // Applying any suitable patch action
+        if (patchActions != null) {
+            for (DBPatchAction patchAction : patchActions) {
+                if (patchAction.appliesTo(patch)) {
+                    log.info("Applying action [{}] for patch [{}]...", patchAction.getDisplayName(), patch);
+                    if (patchAction instanceof DBInitAware) {
+                        ((DBInitAware) patchAction).setDBInit(this);
+                    }
+                    applyPatchAction(connection, patch, patchAction);
+                }
+            }
+        }
+        if (success) {
+            queueBackground(connection, patch, statements);
+        }
+        return success;
+    }
+
+    /**
+     * Applies patches for the current version
+     *
+     * @param connection     Connection to be used
+     * @param currentVersion Version which patches must be applied from.
+     */
+    protected void applyPatches(Connection connection, int currentVersion) {
+        List<Integer> patchList = getPatchList(currentVersion);
+        if (patchList.isEmpty()) {
+            log.info("No patch is needed for version " + currentVersion);
+        } else {
+            log.info("List of patches to apply : " + patchList);
+            // Progress according to the previous runs
+            Map<Integer, Long> expected = new HashMap<Integer, Long>();
+            if (history != null) {
+                for (int patch : patchList) {
+                    Long patchMillis = history.getPatch(environmentKey, patch);
+                    if (patchMillis != null) {
+                        expected.put(patch, patchMillis);
+                    }
+                }
+            }
+            migrationProgress = new DBMigrationProgress(patchList, expected);
+            // Dependencies between the patches
+            Map<Integer, DBStatements> scripts = Collections.emptyMap();
+            boolean dependencies = false;
+            if (parallelism > 1 && patchList.size() > 1) {
+                scripts = new LinkedHashMap<Integer, DBStatements>();
+                for (int patch : patchList) {
+                    DBStatements statements = loadScript(MessageFormat.format(resourceUpdate, patch));
+                    scripts.put(patch, statements);
+                    dependencies = dependencies || statements.getDirective(DIRECTIVE_DEPENDS) != null;
+                }
+            }
+            if (dependencies) {
+                try {
+                    schedulePatches(connection, currentVersion, scripts);
+                } catch (SQLException ex) {
+                    throw new DBInitSQLException("Concurrent patches", ex);
+                }
+            } else {
+                // Applies all patches, reusing the scripts already read
+                for (int patch : patchList) {
+                    applyPatch(connection, patch, scripts.get(patch));
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies patches concurrently, each one on its own connection and in its own transaction, according to their
+     * {@link #DIRECTIVE_DEPENDS dependencies}. A patch which does not declare any dependency depends on the previous
+     * one.
+     * <p>
+     * The version is set to the highest patch before which all patches are completed. When a
+     * {@link #setStateTable(String) state table} is configured, the patches completed after this version are recorded
+     * there so that they are not applied again by the next run.
+     * <p>
+     * When the database is being created, its version is set before the creation is committed for the patches, so
+     * that a failed patch leaves a database which the next run can patch again.
+     *
+     * @param connection     Connection to be used
+     * @param currentVersion Version which patches must be applied from
+     * @param scripts        Parsed scripts of the patches to apply, in order
+     * @throws SQLException If the state of the patches cannot be read
+     * @throws DBInitTasksException If some patches have failed
+     */
+    protected void schedulePatches(Connection connection, int currentVersion, Map<Integer, DBStatements> scripts) throws SQLException {
+        // Patches already applied out of order
+        Set<Integer> applied = new HashSet<Integer>();
+        DBStateTable stateStore = getStateStore();
+        if (stateStore != null) {
+            for (DBState state : stateStore.load(connection, STATE_PATCH).values()) {
+                int patch = Integer.parseInt(state.getName().substring(STATE_PATCH.length()));
+                if (scripts.containsKey(patch)) {
+                    log.info("Patch {} has already been applied", patch);
+                    applied.add(patch);
+                }
+            }
+        }
+        // The creation is never committed without a version
+        if (lastRun != null && lastRun.isCreated()) {
+            updateVersion(connection, currentVersion);
+        }
+        // The patches must see the changes made so far
+        commit(connection);
+        PatchProgress progress = new PatchProgress(currentVersion, scripts.keySet(), applied);
+        DBTaskScheduler scheduler = new DBTaskScheduler(getConnectionProvider(), parallelism, "patches");
+        Integer previous = null;
+        for (Map.Entry<Integer, DBStatements> entry : scripts.entrySet()) {
+            int patch = entry.getKey();
+            List<String> dependencies = new ArrayList<String>();
+            String depends = entry.getValue().getDirective(DIRECTIVE_DEPENDS);
+            if (depends == null) {
+                if (previous != null) {
+                    dependencies.add("patch " + previous);
+                }
+            } else {
+                for (String token : StringUtils.split(depends, ", ")) {
+                    int dependency;
+                    try {
+                        dependency = Integer.parseInt(token);
+                    } catch (NumberFormatException ex) {
+                        throw new DBInitPatchException(patch, ex);
+                    }
+                    // Dependencies already applied are ignored
+                    if (scripts.containsKey(dependency)) {
+                        dependencies.add("patch " + dependency);
+                    }
+                }
+            }
+            scheduler.add(new PatchTask(patch, dependencies, entry.getValue(), progress, applied.contains(patch)));
+            previous = patch;
+        }
+        scheduler.execute();
+    }
+
+    protected List<Integer> getPatchList(int currentVersion) {
+        if (version > currentVersion) {
+            List<Integer> patches = new ArrayList<Integer>();
+            for (int patch = currentVersion + 1; patch <= version; patch++) {
                 patches.add(patch);
             }
             return patches;
@@ -404,22 +1544,34 @@ public class DBInit implements DBExecutor, Runnable {
      */
     protected void createTables(Connection connection) {
         try {
+            fireStarted(new DBPhaseEvent(DBPhase.CREATION, null, null));
+            long start = System.currentTimeMillis();
             Statement st = connection.createStatement();
             try {
-                // Reads the batch file
-                String sql = readResource(resourceInitialization);
-                // Slices all statements
-                DBStatements statements = readStatements(sql);
+                // Reads and slices the batch file
+                DBStatements statements = loadScript(resourceInitialization);
                 // Gets the default section
                 DBSection defaultSection = getSection(statements);
                 // Executes all statements
-                for (String sqlStatement : defaultSection.getStatements()) {
-                    log.debug("Executing\n" + sqlStatement);
-                    st.execute(sqlStatement);
+                if (fastSeed) {
+                    DBDeferredStatements deferredStatements = new DBDeferredStatements(defaultSection.getStatements());
+                    executeCreation(connection, st, deferredStatements.getImmediate());
+                    runDeferredStatements(connection, deferredStatements);
+                } else {
+                    executeCreation(connection, st, defaultSection.getStatements());
                 }
+                // Reference data
+                syncRefData(connection, statements);
+            } catch (SQLException ex) {
+                phaseFinished(DBPhase.CREATION, start, ex);
+                throw ex;
+            } catch (RuntimeException ex) {
+                phaseFinished(DBPhase.CREATION, start, ex);
+                throw ex;
             } finally {
                 st.close();
             }
+            phaseFinished(DBPhase.CREATION, start, null);
             // Apply patch for full version
             applyPatches(connection, 0);
         } catch (SQLException ex) {
@@ -427,6 +1579,75 @@ public class DBInit implements DBExecutor, Runnable {
         }
     }
 
+    private void executeCreation(Connection connection, Statement st, List<String> sqlStatements) throws SQLException {
+        DBLobLoader lobs = new DBLobLoader(connection, LOB_BATCH_SIZE);
+        for (String sqlStatement : sqlStatements) {
+            if (DBLobLoader.isLob(sqlStatement)) {
+                lobs.add(sqlStatement);
+            } else {
+                lobs.flush();
+                log.debug("Executing\n" + sqlStatement);
+                if (DBChunkedStatement.isChunked(sqlStatement)) {
+                    // Chunks would commit the creation before the version is set
+                    st.execute(DBChunkedStatement.parse(sqlStatement).getStatement());
+                } else {
+                    st.execute(sqlStatement);
+                }
+            }
+        }
+        lobs.flush();
+    }
+
+    /**
+     * Creates the indexes and constraints which have been deferred until the data was loaded.
+     * <p>
+     * When the {@link #getParallelism() parallelism} is greater than 1 and the connection is in auto-commit mode,
+     * the statements are run concurrently for the different tables, foreign keys being created last. Otherwise,
+     * they are run on the given connection, so that its transaction is never committed before the version is set.
+     *
+     * @param connection         Connection to be used
+     * @param deferredStatements Deferred statements
+     * @throws SQLException If an error occurs while executing the statements
+     */
+    protected void runDeferredStatements(Connection connection, DBDeferredStatements deferredStatements) throws SQLException {
+        if (!deferredStatements.isDeferred()) {
+            return;
+        }
+        log.info("Creating the deferred indexes and constraints");
+        // The other connections only see the data when it is already committed
+        if (parallelism > 1 && connection.getAutoCommit()) {
+            DBTaskScheduler scheduler = new DBTaskScheduler(getConnectionProvider(), parallelism, "deferred");
+            List<String> constraintTasks = new ArrayList<String>();
+            for (Map.Entry<String, List<String>> entry : deferredStatements.getConstraints().entrySet()) {
+                String name = "constraints " + entry.getKey();
+                scheduler.add(new StatementsTask(name, Collections.<String>emptyList(), entry.getValue()));
+                constraintTasks.add(name);
+            }
+            for (Map.Entry<String, List<String>> entry : deferredStatements.getForeignKeys().entrySet()) {
+                scheduler.add(new StatementsTask("foreign keys " + entry.getKey(), constraintTasks, entry.getValue()));
+            }
+            scheduler.execute();
+        } else {
+            Statement st = connection.createStatement();
+            try {
+                for (List<String> sqlStatements : deferredStatements.getConstraints().values()) {
+                    for (String sqlStatement : sqlStatements) {
+                        log.debug("Executing\n" + sqlStatement);
+                        st.execute(sqlStatement);
+                    }
+                }
+                for (List<String> sqlStatements : deferredStatements.getForeignKeys().values()) {
+                    for (String sqlStatement : sqlStatements) {
+                        log.debug("Executing\n" + sqlStatement);
+                        st.execute(sqlStatement);
+                    }
+                }
+            } finally {
+                st.close();
+            }
+        }
+    }
+
     /**
      * Gets the section to execute according to the profile.
      *
@@ -459,9 +1680,9 @@ public class DBInit implements DBExecutor, Runnable {
         String scripts = getProperty(attributeName);
         if (StringUtils.isNotBlank(scripts)) {
             String[] listScripts = StringUtils.split(scripts, ";");
+            Map<String, DBState> states = loadActionStates(connection);
             for (String script : listScripts) {
-                log.info("Executing script " + script);
-                runScript(connection, script);
+                runAction(connection, new DBInitScriptAction(script), states);
             }
         }
     }
@@ -481,6 +1702,21 @@ public class DBInit implements DBExecutor, Runnable {
         }
     }
 
+    /**
+     * Gets a provider for new connections, configured like the main one.
+     *
+     * @return Connection provider
+     * @see #getConnection()
+     */
+    public DBConnectionProvider getConnectionProvider() {
+        return new DBConnectionProvider() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return DBInit.this.getConnection();
+            }
+        };
+    }
+
     /**
      * Get the current installed version
      *
@@ -506,6 +1742,25 @@ public class DBInit implements DBExecutor, Runnable {
         }
     }
 
+    /**
+     * Gets the current version, notifying the listeners of the {@link DBPhase#VERSION_CHECK version check}
+     */
+    private Integer checkVersion(Connection connection) throws SQLException {
+        if (!isEnabled(DBPhase.VERSION_CHECK)) {
+            return getCurrentVersion(connection);
+        }
+        long start = System.nanoTime();
+        fireStarted(new DBPhaseEvent(DBPhase.VERSION_CHECK, null, versionTable));
+        try {
+            Integer currentVersion = getCurrentVersion(connection);
+            phaseFinished(DBPhase.VERSION_CHECK, null, versionTable, start, null);
+            return currentVersion;
+        } catch (SQLException ex) {
+            phaseFinished(DBPhase.VERSION_CHECK, null, versionTable, start, ex);
+            throw ex;
+        }
+    }
+
     /**
      * Gets the optional data source
      *
@@ -582,6 +1837,13 @@ public class DBInit implements DBExecutor, Runnable {
         return resourceUpdate;
     }
 
+    /**
+     * @return Resource path to the session script (can be <code>null</code>)
+     */
+    public String getResourceSession() {
+        return resourceSession;
+    }
+
     /**
      * Returns the SQL to execute at shutdown
      *
@@ -613,111 +1875,736 @@ public class DBInit implements DBExecutor, Runnable {
     }
 
     /**
-     * @return Name of the table that contains the version information
+     * @return Name of the table that contains the version information
+     */
+    public String getVersionTable() {
+        return versionTable;
+    }
+
+    /**
+     * Summary of the last execution of {@link #run()}
+     *
+     * @return Summary or <code>null</code> if the initialisation has not been run yet
+     */
+    public DBRunSummary getLastRun() {
+        return lastRun;
+    }
+
+    /**
+     * Gets the profile to apply by using the {@link #SYSTEM_PROFILE} system
+     * property.
+     */
+    protected String getProfile() {
+        return getProperty(SYSTEM_PROFILE);
+    }
+
+    /**
+     * Initialisation
+     */
+    @PostConstruct
+    @Override
+    public void run() {
+        // The background patches would be queued again
+        DBBackgroundPatches previous = background;
+        Validate.validState(previous == null || previous.isDone(),
+                "The background patches %s of the previous run are still in progress", previous != null ? previous.getPatches() : null);
+        log.info("Checking the DB");
+        lastRun = new DBRunSummary(version);
+        transactionPatches.clear();
+        backgroundQueue.clear();
+        background = null;
+        migrationProgress = null;
+        registerManagement();
+        registerFlightRecorder();
+        fireStarted(new DBPhaseEvent(DBPhase.RUN, null, null));
+        // Snapshot to restore if the patches fail
+        DBSnapshot restorable = null;
+        try {
+            // Registers the driver
+            if (StringUtils.isNotBlank(jdbcDriver)) {
+                try {
+                    Class.forName(jdbcDriver);
+                } catch (ClassNotFoundException ex) {
+                    throw new DBInitDriverNotFoundException(jdbcDriver, ex);
+                }
+            }
+            // Shutdown
+            if (StringUtils.isNotBlank(sqlAtShutdown)) {
+                Runtime.getRuntime().addShutdownHook(new Thread(new ShutdownTask(), "SQL at Shutdown"));
+            }
+            // Session tuning
+            DBStatements session = StringUtils.isNotBlank(resourceSession) ? loadScript(resourceSession) : null;
+            // Get a connection
+            Connection connection = getConnection();
+            boolean autoCommit = false;
+            // Transaction
+            boolean ok = false;
+            boolean schemaChanged = true;
+            Map<Integer, Integer> backgroundStarts = Collections.emptyMap();
+            try {
+                // Savepoints need a transaction
+                autoCommit = savepoints && connection.getAutoCommit();
+                if (autoCommit) {
+                    connection.setAutoCommit(false);
+                }
+                // Durations of the previous runs
+                if (StringUtils.isNotBlank(historyFile)) {
+                    environmentKey = getEnvironment(connection);
+                    history = loadHistory();
+                }
+                try {
+                    runSession(connection, session, SECTION_SESSION);
+                    // State table
+                    DBStateTable stateStore = getStateStore();
+                    if (stateStore != null) {
+                        stateStore.create(connection);
+                    }
+                    // Pre scripts
+                    preActions(connection);
+                    // Get the metadata
+                    DatabaseMetaData metaData = connection.getMetaData();
+                    // Get the list of tables
+                    ResultSet tables = metaData.getTables(null, null, versionTable, null);
+                    if (tables.next()) {
+                        log.info("DB is already created");
+                        // Get the current version
+                        Integer currentVersion = checkVersion(connection);
+                        if (currentVersion == null) {
+                            throw new DBInitIncompleteCreationException(versionTable);
+                        }
+                        log.info("DB current version is " + currentVersion);
+                        lastRun.setInitialVersion(currentVersion);
+                        // Drift of the schema since the last run
+                        if (fingerprint) {
+                            schemaChanged = checkFingerprint(connection, currentVersion);
+                        }
+                        // Different version
+                        if (!currentVersion.equals(version)) {
+                            log.info("DB must be patched");
+                            restorable = takeSnapshot(connection, currentVersion);
+                            applyPatches(connection, currentVersion);
+                            restorable = null;
+                            schemaChanged = true;
+                            ok = true;
+                        } else {
+                            log.info("DB version is ok ; no change is required");
+                            ok = true;
+                        }
+                    } else {
+                        log.info("The DB must be created");
+                        lastRun.setCreated(true);
+                        createTables(connection);
+                        updateVersion(connection, version);
+                        ok = true;
+                    }
+                    // Background patches left by the previous runs
+                    if (ok) {
+                        backgroundStarts = resumeBackground(connection);
+                    }
+                    // Post scripts
+                    if (ok) {
+                        postActions(connection);
+                    }
+                } finally {
+                    try {
+                        // Transaction end
+                        if (ok) {
+                            log.info("DB update OK. Committing changes.");
+                            commit(connection);
+                        } else {
+                            log.info("DB update went wrong. Rolling back changes (but structure updates).");
+                            rollback(connection);
+                            discardRolledBackPatches(connection);
+                        }
+                    } finally {
+                        // Restores the session, even after a failure
+                        try {
+                            runSession(connection, session, SECTION_SESSION_RESTORE);
+                        } catch (SQLException ex) {
+                            if (ok) {
+                                throw ex;
+                            } else {
+                                log.error("Cannot restore the session", ex);
+                            }
+                        }
+                    }
+                }
+            } finally {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+                connection.close();
+                saveHistory();
+            }
+            // Fingerprint of the new schema
+            if (fingerprint && schemaChanged) {
+                saveFingerprint();
+            }
+            // Background patches
+            if (!backgroundQueue.isEmpty()) {
+                lastRun.setBackgroundPatches(backgroundQueue.keySet());
+                background = new DBBackgroundPatches(this, new TreeMap<Integer, List<String>>(backgroundQueue), backgroundStarts);
+                background.start();
+            }
+            endRun(null);
+        } catch (SQLException ex) {
+            DBInitSQLException error = new DBInitSQLException("Initialisation", ex);
+            restoreSnapshot(restorable);
+            endRun(error);
+            throw error;
+        } catch (RuntimeException ex) {
+            restoreSnapshot(restorable);
+            endRun(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Removes from the summary the patches of the main connection which have been rolled back with its transaction,
+     * that is, the ones after the version which remains in the database
+     */
+    private void discardRolledBackPatches(Connection connection) {
+        if (transactionPatches.isEmpty()) {
+            return;
+        }
+        try {
+            if (connection.getAutoCommit()) {
+                return;
+            }
+            Integer kept = getCurrentVersion(connection);
+            List<Integer> rolledBack = new ArrayList<Integer>();
+            for (int patch : transactionPatches) {
+                if (kept == null || patch > kept) {
+                    rolledBack.add(patch);
+                }
+            }
+            if (!rolledBack.isEmpty()) {
+                log.info("The patches {} have been rolled back", rolledBack);
+                lastRun.removeAppliedPatches(rolledBack);
+            }
+        } catch (SQLException ex) {
+            log.warn("Cannot check which patches have been rolled back", ex);
+        }
+    }
+
+    /**
+     * Takes the {@link #setSnapshot(DBSnapshot) snapshot} before the patches, if any
+     *
+     * @param connection     Connection to use
+     * @param currentVersion Current version of the database
+     * @return Snapshot to restore if the patches fail, or <code>null</code> if there is none
+     */
+    private DBSnapshot takeSnapshot(Connection connection, Integer currentVersion) {
+        if (snapshot == null || getPatchList(currentVersion).isEmpty()) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            // The snapshot contains what has been done so far
+            commit(connection);
+            snapshot.take(connection);
+        } catch (SQLException ex) {
+            throw new DBInitSQLException("Snapshot", ex);
+        }
+        log.info("Snapshot of version {} taken in {} ms", currentVersion, System.currentTimeMillis() - start);
+        return snapshot;
+    }
+
+    /**
+     * Restores the database from the snapshot taken before the patches, on a new connection. A failure is only
+     * logged, the error of the patches being the one reported.
+     *
+     * @param restorable Snapshot to restore (nothing is done if <code>null</code>)
+     */
+    private void restoreSnapshot(DBSnapshot restorable) {
+        if (restorable == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            Connection connection = getConnection();
+            try {
+                restorable.restore(connection);
+            } finally {
+                if (!connection.isClosed()) {
+                    connection.close();
+                }
+            }
+            lastRun.setRestored(true);
+            lastRun.removeAppliedPatches(lastRun.getAppliedPatches());
+            log.info("Version {} restored from the snapshot in {} ms", lastRun.getInitialVersion(), System.currentTimeMillis() - start);
+        } catch (SQLException ex) {
+            log.error("Cannot restore the snapshot taken before the patches", ex);
+        } catch (RuntimeException ex) {
+            log.error("Cannot restore the snapshot taken before the patches", ex);
+        }
+    }
+
+    /**
+     * Compares the fingerprint of the schema with the one saved by the last run, if it was for the same version
+     *
+     * @param connection     Connection to use
+     * @param currentVersion Current version of the database
+     * @return <code>true</code> if no fingerprint was saved for this version. A drift keeps the saved fingerprint.
+     * @throws SQLException If the fingerprint cannot be computed
+     * @throws DBInitSchemaDriftException If the schema has changed and {@link #setFailOnSchemaDrift(boolean)} is set
+     */
+    protected boolean checkFingerprint(Connection connection, Integer currentVersion) throws SQLException {
+        DBStateTable stateStore = getStateStore();
+        Validate.validState(stateStore != null, "The schema fingerprint needs a state table");
+        Map<String, DBState> states = stateStore.load(connection, STATE_SCHEMA);
+        DBState saved = states.get(STATE_SCHEMA_FINGERPRINT);
+        if (saved == null || currentVersion == null || !currentVersion.equals(saved.getVersion())) {
+            return true;
+        }
+        long start = System.currentTimeMillis();
+        DBSchemaFingerprint current = DBSchemaFingerprint.compute(getConnectionProvider(), connection, parallelism);
+        if (current.getHash().equals(saved.getValue())) {
+            log.info("Schema fingerprint checked in {} ms", System.currentTimeMillis() - start);
+            return false;
+        }
+        Map<String, String> previous = new HashMap<String, String>();
+        for (DBState state : states.values()) {
+            if (state.getName().startsWith(STATE_SCHEMA_TABLE)) {
+                previous.put(state.getName().substring(STATE_SCHEMA_TABLE.length()), state.getValue());
+            }
+        }
+        List<String> diff = current.diff(previous);
+        log.warn("The schema has changed since the last run at version {}:\n{}", currentVersion, StringUtils.join(diff, "\n"));
+        lastRun.setSchemaDrift(diff);
+        if (failOnSchemaDrift) {
+            throw new DBInitSchemaDriftException(currentVersion, diff);
+        }
+        // The drift does not become the reference: it is reported until a run changes the schema
+        return false;
+    }
+
+    /**
+     * Saves the fingerprint of the schema in the state table
+     */
+    protected void saveFingerprint() throws SQLException {
+        DBStateTable stateStore = getStateStore();
+        Validate.validState(stateStore != null, "The schema fingerprint needs a state table");
+        Connection connection = getConnection();
+        try {
+            DBSchemaFingerprint current = DBSchemaFingerprint.compute(getConnectionProvider(), connection, parallelism);
+            for (String name : stateStore.load(connection, STATE_SCHEMA_TABLE).keySet()) {
+                if (!current.getTables().containsKey(name.substring(STATE_SCHEMA_TABLE.length()))) {
+                    stateStore.remove(connection, name);
+                }
+            }
+            for (String table : current.getTables().keySet()) {
+                stateStore.put(connection, STATE_SCHEMA_TABLE + table, current.getStoredDescription(table), version);
+            }
+            stateStore.put(connection, STATE_SCHEMA_FINGERPRINT, current.getHash(), version);
+            commit(connection);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Registers the management bean on the first run, if a {@link #setJmxName(String) name} is set. When another
+     * instance has already registered a bean under this name, a warning is logged and no bean is registered.
+     */
+    private synchronized void registerManagement() {
+        if (StringUtils.isNotBlank(jmxName) && management == null) {
+            try {
+                management = DBInitManagement.register(this, jmxName);
+            } catch (javax.management.JMException ex) {
+                log.warn(String.format("Cannot register the management bean %s", jmxName), ex);
+            }
+        }
+    }
+
+    /**
+     * Registers the <code>DBFlightRecorderListener</code> on the first run, if {@link #setFlightRecorder(boolean) enabled}
+     * and if the Java Flight Recorder API is available. The listener is created by reflection so that it is never
+     * loaded on the JVMs without this API.
+     */
+    private synchronized void registerFlightRecorder() {
+        if (flightRecorder && flightRecorderListener == null) {
+            try {
+                Class.forName(FLIGHT_RECORDER_EVENT);
+            } catch (ClassNotFoundException ex) {
+                log.debug("Java Flight Recorder is not available");
+                flightRecorder = false;
+                return;
+            }
+            try {
+                flightRecorderListener = (DBInitListener) Class.forName(FLIGHT_RECORDER_LISTENER).newInstance();
+                addListener(flightRecorderListener);
+            } catch (ClassNotFoundException ex) {
+                log.debug("The Java Flight Recorder events are not part of this build");
+                flightRecorder = false;
+            } catch (Exception ex) {
+                log.warn("Cannot register the Java Flight Recorder events", ex);
+                flightRecorder = false;
+            } catch (LinkageError ex) {
+                log.warn("Cannot register the Java Flight Recorder events", ex);
+                flightRecorder = false;
+            }
+        }
+    }
+
+    private void endRun(Throwable error) {
+        lastRun.end(error);
+        fireFinished(new DBPhaseEvent(DBPhase.RUN, null, null, lastRun.getDurationMillis() * 1000000L, error, null, !lastRun.getRegressions().isEmpty()));
+    }
+
+    /**
+     * Gets the environment the durations are associated with: the {@link #setEnvironment(String) environment} if set,
+     * the name and major version of the database otherwise.
+     *
+     * @param connection Connection to use
+     * @return Environment
+     * @throws SQLException If the metadata cannot be read
+     */
+    protected String getEnvironment(Connection connection) throws SQLException {
+        if (StringUtils.isNotBlank(environment)) {
+            return environment;
+        } else {
+            DatabaseMetaData metaData = connection.getMetaData();
+            return metaData.getDatabaseProductName().replaceAll("\\W+", "_") + "-" + metaData.getDatabaseMajorVersion();
+        }
+    }
+
+    private DBDurationHistory loadHistory() {
+        DBDurationHistory durations = new DBDurationHistory(new File(historyFile));
+        try {
+            durations.load();
+        } catch (IOException ex) {
+            log.warn(String.format("Cannot read the durations from %s", historyFile), ex);
+        }
+        return durations;
+    }
+
+    private void saveHistory() {
+        DBDurationHistory durations = history;
+        if (durations != null) {
+            history = null;
+            try {
+                durations.save();
+            } catch (IOException ex) {
+                log.warn(String.format("Cannot save the durations into %s", historyFile), ex);
+            }
+        }
+    }
+
+    /**
+     * Checks if at least one listener is interested in a phase
+     *
+     * @param phase Phase
+     * @return <code>true</code> if the events of this phase must be created
+     */
+    protected boolean isEnabled(DBPhase phase) {
+        for (DBInitListener listener : listeners) {
+            if (listener.isEnabled(phase)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void fireStarted(DBPhaseEvent event) {
+        for (DBInitListener listener : listeners) {
+            if (listener.isEnabled(event.getPhase())) {
+                try {
+                    listener.phaseStarted(event);
+                } catch (RuntimeException ex) {
+                    log.warn(String.format("Listener %s failed", listener), ex);
+                }
+            }
+        }
+    }
+
+    protected void fireFinished(DBPhaseEvent event) {
+        for (DBInitListener listener : listeners) {
+            if (listener.isEnabled(event.getPhase())) {
+                try {
+                    listener.phaseFinished(event);
+                } catch (RuntimeException ex) {
+                    log.warn(String.format("Listener %s failed", listener), ex);
+                }
+            }
+        }
+    }
+
+    protected void fireProgress(DBProgressEvent event) {
+        for (DBInitListener listener : listeners) {
+            try {
+                listener.progress(event);
+            } catch (RuntimeException ex) {
+                log.warn(String.format("Listener %s failed", listener), ex);
+            }
+        }
+    }
+
+    /**
+     * Notifies the listeners of the end of a phase
+     */
+    private void phaseFinished(DBPhase phase, long start, Throwable error) {
+        fireFinished(new DBPhaseEvent(phase, null, null, (System.currentTimeMillis() - start) * 1000000L, error, null, false));
+    }
+
+    /**
+     * Notifies the listeners of the end of a fine-grained phase
+     */
+    private void phaseFinished(DBPhase phase, Integer patch, String name, long startNanos, Throwable error) {
+        fireFinished(new DBPhaseEvent(phase, patch, name, System.nanoTime() - startNanos, error, null, false));
+    }
+
+    /**
+     * Runs the pre-actions. They are never skipped as unchanged: they run before the version is checked, so the
+     * version they would be recorded with may never be reached.
+     */
+    protected void preActions(Connection connection) throws SQLException {
+        log.info("Executing pre-actions");
+        runActions(connection, preActions, DBPhase.PRE_ACTIONS, false);
+    }
+
+    protected void postActions(Connection connection) throws SQLException {
+        log.info("Executing post-actions");
+        runActions(connection, postActions, DBPhase.POST_ACTIONS, true);
+    }
+
+    private void runActions(Connection connection, List<DBInitAction> actions, DBPhase phase, boolean checksums) throws SQLException {
+        fireStarted(new DBPhaseEvent(phase, null, null));
+        long start = System.currentTimeMillis();
+        try {
+            runActions(connection, actions, checksums);
+            phaseFinished(phase, start, null);
+        } catch (SQLException ex) {
+            phaseFinished(phase, start, ex);
+            throw ex;
+        } catch (RuntimeException ex) {
+            phaseFinished(phase, start, ex);
+            throw ex;
+        }
+    }
+
+    protected void runActions(Connection connection, List<DBInitAction> actions) throws SQLException {
+        runActions(connection, actions, true);
+    }
+
+    /**
+     * Runs a list of actions
+     *
+     * @param connection Connection to use
+     * @param actions    Actions to run (can be <code>null</code>)
+     * @param checksums  <code>true</code> if the unchanged {@link DBChecksumAction checksum actions} can be skipped
+     * @throws SQLException If an action fails
+     */
+    private void runActions(Connection connection, List<DBInitAction> actions, boolean checksums) throws SQLException {
+        if (actions != null) {
+            for (DBInitAction action : actions) {
+                if (action instanceof DBInitAware) {
+                    ((DBInitAware) action).setDBInit(this);
+                }
+            }
+        }
+        if (actions != null) {
+            Map<String, DBState> states = checksums ? loadActionStates(connection) : null;
+            if (isScheduled(actions)) {
+                // Scheduled actions run on their own connections and must see the changes, including the state table
+                commit(connection);
+                scheduleActions(actions, states);
+            } else {
+                for (DBInitAction action : actions) {
+                    runAction(connection, action, states);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the checksums of the actions which have already been run
+     *
+     * @param connection Connection to use
+     * @return States of the actions, indexed by key (empty if there is no state table)
+     * @throws SQLException If the state table cannot be read
+     * @see #getStateStore()
+     */
+    protected Map<String, DBState> loadActionStates(Connection connection) throws SQLException {
+        DBStateTable stateStore = getStateStore();
+        if (stateStore != null) {
+            return stateStore.load(connection, STATE_ACTION);
+        } else {
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Runs an action. A {@link DBChecksumAction} is skipped when a state table is configured and neither its
+     * checksum nor the version of the database has changed since its last successful execution.
+     *
+     * @param connection Connection to use
+     * @param action     Action to run
+     * @param states     States of the actions, indexed by key, or <code>null</code> if the action must not be
+     *                   skipped nor recorded
+     * @throws SQLException If the action fails
+     * @see #SYSTEM_RERUN
+     */
+    protected void runAction(Connection connection, DBInitAction action, Map<String, DBState> states) throws SQLException {
+        DBInitAction actual = action instanceof DBInitDependentAction ? ((DBInitDependentAction) action).getAction() : action;
+        DBStateTable stateStore = getStateStore();
+        String key = null;
+        String checksum = null;
+        if (stateStore != null && states != null && actual instanceof DBChecksumAction) {
+            DBChecksumAction checksumAction = (DBChecksumAction) actual;
+            key = STATE_ACTION + checksumAction.getChecksumKey();
+            checksum = checksumAction.getChecksum();
+            DBState state = states.get(key);
+            if (state != null && checksum.equals(state.getValue()) && Integer.valueOf(version).equals(state.getVersion())
+                    && !isRerun(checksumAction.getChecksumKey())) {
+                log.info(" - skipping " + action + " (unchanged)");
+                return;
+            }
+        }
+        log.info(" - running " + action);
+        boolean applied;
+        if (isEnabled(DBPhase.ACTION)) {
+            String name = action.toString();
+            long start = System.nanoTime();
+            fireStarted(new DBPhaseEvent(DBPhase.ACTION, currentPatch.get(), name));
+            try {
+                applied = doRunAction(connection, action, key != null ? (DBChecksumAction) actual : null);
+                phaseFinished(DBPhase.ACTION, currentPatch.get(), name, start, null);
+            } catch (SQLException ex) {
+                phaseFinished(DBPhase.ACTION, currentPatch.get(), name, start, ex);
+                throw ex;
+            } catch (RuntimeException ex) {
+                phaseFinished(DBPhase.ACTION, currentPatch.get(), name, start, ex);
+                throw ex;
+            }
+        } else {
+            applied = doRunAction(connection, action, key != null ? (DBChecksumAction) actual : null);
+        }
+        if (key != null) {
+            if (applied) {
+                stateStore.put(connection, key, checksum, version);
+            } else {
+                log.warn(" - {} has been rolled back and will run again", action);
+            }
+        }
+    }
+
+    /**
+     * Runs an action, through its checksum action if its result is recorded
+     *
+     * @return <code>true</code> if the action has been applied
      */
-    public String getVersionTable() {
-        return versionTable;
+    private boolean doRunAction(Connection connection, DBInitAction action, DBChecksumAction checksumAction) throws SQLException {
+        if (checksumAction != null) {
+            return checksumAction.apply(this, connection);
+        } else {
+            action.run(this, connection);
+            return true;
+        }
     }
 
     /**
-     * Gets the profile to apply by using the {@link #SYSTEM_PROFILE} system
-     * property.
-     */
-    protected String getProfile() {
-        return getProperty(SYSTEM_PROFILE);
+     * Checks if an action must be run even if it has not changed
+     *
+     * @param key Key of the action
+     * @return <code>true</code> if the action must be run
+     * @see #SYSTEM_RERUN
+     */
+    protected boolean isRerun(String key) {
+        String rerun = getProperty(SYSTEM_RERUN);
+        if (StringUtils.isBlank(rerun)) {
+            return false;
+        } else if ("all".equals(rerun.trim())) {
+            return true;
+        } else {
+            for (String token : StringUtils.split(rerun, ",")) {
+                if (key.equals(token.trim())) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
     /**
-     * Initialisation
+     * Checks if a list of actions must be run concurrently.
+     *
+     * @param actions List of actions (can be <code>null</code>)
+     * @return <code>true</code> if the actions are run by a {@link DBTaskScheduler}
+     * @see #getParallelism()
      */
-    @PostConstruct
-    @Override
-    public void run() {
-        log.info("Checking the DB");
-        try {
-            // Registers the driver
-            if (StringUtils.isNotBlank(jdbcDriver)) {
-                try {
-                    Class.forName(jdbcDriver);
-                } catch (ClassNotFoundException ex) {
-                    throw new DBInitDriverNotFoundException(jdbcDriver, ex);
+    protected boolean isScheduled(List<DBInitAction> actions) {
+        return parallelism > 1 && actions != null && actions.size() > 1;
+    }
+
+    /**
+     * Runs a list of actions concurrently, each one on its own connection.
+     * <p>
+     * {@link DBInitDependentAction Dependent actions} are ordered according to their group and
+     * dependencies. Any other action acts as a barrier: it starts after all the actions declared
+     * before it and all the actions declared after it wait for its completion.
+     *
+     * @param actions List of actions to run
+     * @param states  States of the actions, indexed by key
+     * @throws DBInitTasksException If some actions have failed
+     */
+    protected void scheduleActions(List<DBInitAction> actions, Map<String, DBState> states) {
+        // Names & groups
+        List<String> names = new ArrayList<String>();
+        Map<String, List<String>> groups = new HashMap<String, List<String>>();
+        for (DBInitAction action : actions) {
+            if (action instanceof DBInitDependentAction) {
+                DBInitDependentAction dependentAction = (DBInitDependentAction) action;
+                names.add(dependentAction.getName());
+                String group = dependentAction.getGroup();
+                if (group != null) {
+                    List<String> members = groups.get(group);
+                    if (members == null) {
+                        members = new ArrayList<String>();
+                        groups.put(group, members);
+                    }
+                    members.add(dependentAction.getName());
                 }
+            } else {
+                names.add(String.format("#%d %s", names.size() + 1, action));
             }
-            // Shutdown
-            if (StringUtils.isNotBlank(sqlAtShutdown)) {
-                Runtime.getRuntime().addShutdownHook(new Thread(new ShutdownTask(), "SQL at Shutdown"));
-            }
-            // Get a connection
-            Connection connection = getConnection();
-            // Transaction
-            boolean ok = false;
-            try {
-                try {
-                    // Pre scripts
-                    preActions(connection);
-                    // Get the metadata
-                    DatabaseMetaData metaData = connection.getMetaData();
-                    // Get the list of tables
-                    ResultSet tables = metaData.getTables(null, null, versionTable, null);
-                    if (tables.next()) {
-                        log.info("DB is already created");
-                        // Get the current version
-                        Integer currentVersion = getCurrentVersion(connection);
-                        log.info("DB current version is " + currentVersion);
-                        // Different version
-                        if (currentVersion == null || !currentVersion.equals(version)) {
-                            log.info("DB must be patched");
-                            applyPatches(connection, currentVersion);
-                            ok = true;
-                        } else {
-                            log.info("DB version is ok ; no change is required");
-                            ok = true;
-                        }
-                    } else {
-                        log.info("The DB must be created");
-                        createTables(connection);
-                        setVersion(connection, version);
-                        ok = true;
-                    }
-                    // Post scripts
-                    if (ok) {
-                        postActions(connection);
+        }
+        // Tasks
+        DBTaskScheduler scheduler = new DBTaskScheduler(getConnectionProvider(), parallelism, "actions");
+        Map<String, String> lastInGroup = new HashMap<String, String>();
+        String barrier = null;
+        for (int i = 0; i < actions.size(); i++) {
+            DBInitAction action = actions.get(i);
+            String name = names.get(i);
+            Set<String> dependencies = new LinkedHashSet<String>();
+            if (action instanceof DBInitDependentAction) {
+                DBInitDependentAction dependentAction = (DBInitDependentAction) action;
+                if (barrier != null) {
+                    dependencies.add(barrier);
+                }
+                String group = dependentAction.getGroup();
+                if (group != null) {
+                    String last = lastInGroup.put(group, name);
+                    if (last != null) {
+                        dependencies.add(last);
                     }
-                } finally {
-                    // Transaction end
-                    if (ok) {
-                        log.info("DB update OK. Committing changes.");
-                        connection.commit();
+                }
+                for (String dependency : dependentAction.getDependencies()) {
+                    if (groups.containsKey(dependency)) {
+                        dependencies.addAll(groups.get(dependency));
                     } else {
-                        log.info("DB update went wrong. Rolling back changes (but structure updates).");
-                        connection.rollback();
+                        dependencies.add(dependency);
                     }
                 }
-            } finally {
-                connection.close();
-            }
-        } catch (SQLException ex) {
-            throw new DBInitSQLException("Initialisation", ex);
-        }
-    }
-
-    protected void preActions(Connection connection) throws SQLException {
-        log.info("Executing pre-actions");
-        runActions(connection, preActions);
-    }
-
-    protected void postActions(Connection connection) throws SQLException {
-        log.info("Executing post-actions");
-        runActions(connection, postActions);
-    }
-
-    protected void runActions(Connection connection, List<DBInitAction> actions) throws SQLException {
-        if (actions != null) {
-            for (DBInitAction action : actions) {
-                log.info(" - running " + action);
-                action.run(this, connection);
+                dependencies.remove(name);
+            } else {
+                dependencies.addAll(names.subList(0, i));
+                barrier = name;
             }
+            scheduler.add(new ActionTask(name, dependencies, action, states));
         }
+        // Execution
+        scheduler.execute();
     }
 
     /**
@@ -788,6 +2675,18 @@ public class DBInit implements DBExecutor, Runnable {
         this.resourceInitialization = resourceInitialization;
     }
 
+    /**
+     * Sets the script containing the session tuning. Its <code>session</code> section (or
+     * <code>&lt;profile&gt;-session</code>) is run on the migration connection before anything else and its
+     * <code>session-restore</code> section (or <code>&lt;profile&gt;-session-restore</code>) is always run at the end,
+     * even after a failure.
+     *
+     * @param resourceSession Resource path to the session script (can be <code>null</code>)
+     */
+    public void setResourceSession(String resourceSession) {
+        this.resourceSession = resourceSession;
+    }
+
     /**
      * @param resourceUpdate Resource path to the update script (it contains a {0} token for the version placeholder)
      */
@@ -804,6 +2703,26 @@ public class DBInit implements DBExecutor, Runnable {
         this.sqlAtShutdown = sqlAtShutdown;
     }
 
+    /**
+     * Changes the version, notifying the listeners of the {@link DBPhase#VERSION_UPDATE version update}
+     */
+    private void updateVersion(Connection connection, int theVersion) throws SQLException {
+        if (!isEnabled(DBPhase.VERSION_UPDATE)) {
+            setVersion(connection, theVersion);
+            return;
+        }
+        long start = System.nanoTime();
+        String name = String.valueOf(theVersion);
+        fireStarted(new DBPhaseEvent(DBPhase.VERSION_UPDATE, null, name));
+        try {
+            setVersion(connection, theVersion);
+            phaseFinished(DBPhase.VERSION_UPDATE, null, name, start, null);
+        } catch (SQLException ex) {
+            phaseFinished(DBPhase.VERSION_UPDATE, null, name, start, ex);
+            throw ex;
+        }
+    }
+
     /**
      * Changes the version
      *
@@ -912,4 +2831,310 @@ public class DBInit implements DBExecutor, Runnable {
     public void setPatchActions(List<? extends DBPatchAction> patchActions) {
         this.patchActions = patchActions;
     }
+
+    /**
+     * Maximum number of connections used at the same time for the tasks which can run in parallel.
+     *
+     * @return Parallelism (1 by default, meaning that everything runs on the main connection)
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the maximum number of connections used at the same time for the tasks which can run in parallel.
+     * When greater than 1, the pre- and post-actions are run concurrently, each one on its own connection, and
+     * the changes are committed before running the post-actions.
+     *
+     * @param parallelism Parallelism (1 by default)
+     * @see DBInitDependentAction
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return <code>true</code> if the creation of indexes and constraints is deferred when creating the tables
+     */
+    public boolean isFastSeed() {
+        return fastSeed;
+    }
+
+    /**
+     * Defers the <code>CREATE INDEX</code> and <code>ALTER TABLE ... ADD CONSTRAINT</code> statements of the
+     * initialisation script until all its other statements have been executed.
+     *
+     * @param fastSeed <code>true</code> to defer the creation of indexes and constraints
+     * @see DBDeferredStatements
+     */
+    public void setFastSeed(boolean fastSeed) {
+        this.fastSeed = fastSeed;
+    }
+
+    /**
+     * @return Name of the table where DBInit keeps its own state (can be <code>null</code>)
+     */
+    public String getStateTable() {
+        return stateTable;
+    }
+
+    /**
+     * Sets the name of the table where DBInit keeps its own state, like the checksums of the actions
+     * already run. The table is created if it does not exist.
+     *
+     * @param stateTable Name of the state table (<code>null</code> to disable the features relying on it)
+     * @see DBStateTable
+     */
+    public void setStateTable(String stateTable) {
+        this.stateTable = stateTable;
+    }
+
+    /**
+     * Gets access to the state table
+     *
+     * @return State table or <code>null</code> if no {@link #setStateTable(String) state table} is configured
+     */
+    public DBStateTable getStateStore() {
+        return StringUtils.isNotBlank(stateTable) ? new DBStateTable(stateTable) : null;
+    }
+
+    public int getBackgroundRate() {
+        return backgroundRate;
+    }
+
+    /**
+     * @param backgroundRate Maximum number of statements per second executed by the background patches
+     *                       (0, the default, for no limit)
+     * @see DBBackgroundPatches
+     */
+    public void setBackgroundRate(int backgroundRate) {
+        this.backgroundRate = backgroundRate;
+    }
+
+    /**
+     * Gets the background patches started by the last run
+     *
+     * @return Background patches or <code>null</code> if the last run has not started any
+     */
+    public DBBackgroundPatches getBackground() {
+        return background;
+    }
+
+    /**
+     * Adds a listener notified of the progress of the runs
+     *
+     * @param listener Listener to add
+     */
+    public void addListener(DBInitListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DBInitListener listener) {
+        listeners.remove(listener);
+    }
+
+    public List<DBInitListener> getListeners() {
+        return Collections.unmodifiableList(listeners);
+    }
+
+    /**
+     * @param listeners Listeners notified of the progress of the runs (can be <code>null</code>)
+     */
+    public void setListeners(List<DBInitListener> listeners) {
+        this.listeners.clear();
+        if (listeners != null) {
+            this.listeners.addAll(listeners);
+        }
+    }
+
+    public String getHistoryFile() {
+        return historyFile;
+    }
+
+    /**
+     * Sets the file where the durations of the patches and of their statements are kept from one run to
+     * the other. They are used to estimate the remaining time of the runs and to detect the patches whose
+     * duration has regressed.
+     *
+     * @param historyFile Path to the file (<code>null</code> to disable the measures)
+     * @see DBDurationHistory
+     */
+    public void setHistoryFile(String historyFile) {
+        this.historyFile = historyFile;
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * @param environment Environment the durations are associated with (by default, the name and major version of the database)
+     */
+    public void setEnvironment(String environment) {
+        this.environment = environment;
+    }
+
+    public double getRegressionThreshold() {
+        return regressionThreshold;
+    }
+
+    /**
+     * @param regressionThreshold Ratio between the actual and expected durations of a patch above which it is reported as regressed (2.0 by default)
+     */
+    public void setRegressionThreshold(double regressionThreshold) {
+        this.regressionThreshold = regressionThreshold;
+    }
+
+    /**
+     * Gets the progress of the patches of the current or last run
+     *
+     * @return Progress or <code>null</code> if no patch has been applied
+     */
+    public DBMigrationProgress getMigrationProgress() {
+        return migrationProgress;
+    }
+
+    public String getJmxName() {
+        return jmxName;
+    }
+
+    /**
+     * Sets the name of the management bean registered on the first run, as
+     * <code>net.sf.dbinit:type=DBInit,name=&lt;jmxName&gt;</code>
+     *
+     * @param jmxName Name of the bean (<code>null</code> to not register any bean)
+     * @see DBInitManagement
+     */
+    public void setJmxName(String jmxName) {
+        this.jmxName = jmxName;
+    }
+
+    /**
+     * Sets the histogram where the latencies of the statements of the patches are recorded, in microseconds. Unlike
+     * the {@link DBPhase#STATEMENT} events, this does not create any object per statement.
+     *
+     * @param statementLatencies Histogram (<code>null</code> to stop recording)
+     * @see DBInitManagement
+     */
+    void setStatementLatencies(DBLatencyHistogram statementLatencies) {
+        this.statementLatencies = statementLatencies;
+    }
+
+    /**
+     * @return Management bean or <code>null</code> if not registered
+     */
+    public synchronized DBInitManagement getManagement() {
+        return management;
+    }
+
+    /**
+     * Releases the resources registered by the runs, that is, unregisters the {@link #getManagement() management bean}.
+     * It must be called when the instance is discarded, for example when an application is redeployed.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (management != null) {
+            try {
+                management.unregister();
+            } catch (javax.management.JMException ex) {
+                log.warn(String.format("Cannot unregister the management bean %s", management.getObjectName()), ex);
+            }
+            management = null;
+        }
+    }
+
+    public boolean isSavepoints() {
+        return savepoints;
+    }
+
+    /**
+     * Sets the savepoint mode. When enabled, a savepoint is set before each patch: a failed patch is only rolled back to
+     * this savepoint and the patches applied before it are committed. Independently of this mode, whenever the
+     * connection is in a transaction, the statements of the patches declaring a <code>skip</code> or
+     * <code>retry</code> {@link #DIRECTIVE_ONERROR error policy} get their own savepoints.
+     * Note that on some databases (like H2, MySQL or Oracle) DDL statements commit the transaction and cannot be
+     * rolled back this way.
+     *
+     * @param savepoints <code>true</code> to use savepoints (<code>false</code> by default)
+     */
+    public void setSavepoints(boolean savepoints) {
+        this.savepoints = savepoints;
+    }
+
+    public boolean isFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Enables the schema fingerprint. After each run which has changed the database, a hash of its structure is saved
+     * in the {@link #setStateTable(String) state table}. The next runs compare it with the current structure and
+     * report the differences when the schema has been changed outside of the patches.
+     *
+     * @param fingerprint <code>true</code> to check the schema fingerprint (<code>false</code> by default)
+     * @see DBSchemaFingerprint
+     */
+    public void setFingerprint(boolean fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public boolean isFailOnSchemaDrift() {
+        return failOnSchemaDrift;
+    }
+
+    /**
+     * @param failOnSchemaDrift <code>true</code> to make the run fail when the schema fingerprint has changed
+     *                          (<code>false</code> by default: the differences are only logged, and reported
+     *                          again until a run changes the schema)
+     */
+    public void setFailOnSchemaDrift(boolean failOnSchemaDrift) {
+        this.failOnSchemaDrift = failOnSchemaDrift;
+    }
+
+    public boolean isFlightRecorder() {
+        return flightRecorder;
+    }
+
+    /**
+     * Records the phases of the runs as Java Flight Recorder events when a recording is running, using a
+     * <code>DBFlightRecorderListener</code>. This has no effect on the JVMs without the <code>jdk.jfr</code> API.
+     *
+     * @param flightRecorder <code>false</code> to disable the Java Flight Recorder events (<code>true</code> by default)
+     */
+    public void setFlightRecorder(boolean flightRecorder) {
+        this.flightRecorder = flightRecorder;
+    }
+
+    public DBSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Sets a snapshot to take before the patches are applied. If a patch fails, the database is restored from this
+     * snapshot, so that it is left at its previous version even when the patches contain DDL which cannot be rolled
+     * back. This takes precedence over the {@link #setSavepoints(boolean) savepoints}.
+     *
+     * @param snapshot Snapshot of the database (<code>null</code>, the default, for no snapshot)
+     * @see DBScriptSnapshot
+     * @see DBBackupSnapshot
+     */
+    public void setSnapshot(DBSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Sets the file of the {@link #setSnapshot(DBSnapshot) snapshot} taken before the patches: a
+     * {@link DBBackupSnapshot backup} if the file is a ZIP file, a {@link DBScriptSnapshot script} otherwise.
+     * Both are specific to H2.
+     *
+     * @param snapshotFile Path of the snapshot file
+     */
+    public void setSnapshotFile(String snapshotFile) {
+        if (StringUtils.isBlank(snapshotFile)) {
+            this.snapshot = null;
+        } else if (snapshotFile.toLowerCase().endsWith(".zip")) {
+            this.snapshot = new DBBackupSnapshot(new File(snapshotFile));
+        } else {
+            this.snapshot = new DBScriptSnapshot(new File(snapshotFile));
+        }
+    }
 }
@@ -0,0 +1,16 @@
+package net.sf.dbinit;
+
+/**
+ * Implemented by the actions which need to access the {@link DBInit} instance running them,
+ * for example to open additional connections.
+ * <p>
+ * The instance is injected before the action is run.
+ */
+public interface DBInitAware {
+
+    /**
+     * @param dbInit Instance running the action
+     */
+    void setDBInit(DBInit dbInit);
+
+}
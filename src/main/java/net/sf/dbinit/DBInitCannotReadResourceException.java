@@ -11,6 +11,11 @@ public class DBInitCannotReadResourceException extends RuntimeException {
 		this.path = path;
 	}
 
+	public DBInitCannotReadResourceException(String path, IllegalArgumentException ex) {
+		super(String.format("Cannot split the statements of the resource at %s: %s", path, ex.getMessage()), ex);
+		this.path = path;
+	}
+
 	public String getPath() {
 		return path;
 	}
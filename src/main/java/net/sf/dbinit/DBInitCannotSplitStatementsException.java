@@ -11,6 +11,11 @@ public class DBInitCannotSplitStatementsException extends RuntimeException {
 		this.sql = sql;
 	}
 
+	public DBInitCannotSplitStatementsException(String sql, IllegalArgumentException ex) {
+		super(String.format("Cannot split statements for SQL=[%s]: %s", sql, ex.getMessage()), ex);
+		this.sql = sql;
+	}
+
 	public String getSql() {
 		return sql;
 	}
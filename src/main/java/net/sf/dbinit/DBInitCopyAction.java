@@ -0,0 +1,279 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Action which copies tables, or the result of queries, from a source database into the target one.
+ * <p>
+ * The source rows are streamed using the {@link #setFetchSize(int) fetch size} and inserted in batches. The large
+ * objects are streamed as well, the rows which contain some being inserted one at a time. When the
+ * {@link DBInit#getParallelism() parallelism} is greater than 1 and the given connection is in auto-commit mode, the
+ * tables are copied concurrently, each one on its own connection and in its own transaction, without committing the
+ * given connection. The target tables must already exist.
+ */
+public class DBInitCopyAction implements DBInitAction, DBInitAware {
+
+    /**
+     * Logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(DBInitCopyAction.class);
+
+    private final DBConnectionProvider source;
+    private final Map<String, String> queries = new LinkedHashMap<String, String>();
+    private int fetchSize = 1000;
+    private int batchSize = 1000;
+    private int progressInterval = 100000;
+    private int maxRows;
+    private DBInit dbInit;
+
+    /**
+     * @param source Source database
+     */
+    public DBInitCopyAction(final DataSource source) {
+        Validate.notNull(source, "The source data source must not be null");
+        this.source = new DBConnectionProvider() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return source.getConnection();
+            }
+        };
+    }
+
+    /**
+     * @param source Provider of connections to the source database
+     */
+    public DBInitCopyAction(DBConnectionProvider source) {
+        Validate.notNull(source, "The source connection provider must not be null");
+        this.source = source;
+    }
+
+    @Override
+    public void setDBInit(DBInit dbInit) {
+        this.dbInit = dbInit;
+    }
+
+    @Override
+    public void run(DBExecutor executor, Connection connection) throws SQLException {
+        // The target tables are only visible from the other connections if they are committed
+        if (dbInit != null && dbInit.getParallelism() > 1 && queries.size() > 1 && connection.getAutoCommit()) {
+            DBTaskScheduler scheduler = new DBTaskScheduler(dbInit.getConnectionProvider(), dbInit.getParallelism(), "copy");
+            for (final Map.Entry<String, String> entry : queries.entrySet()) {
+                scheduler.add(new DBTask() {
+                    @Override
+                    public String getName() {
+                        return entry.getKey();
+                    }
+
+                    @Override
+                    public Collection<String> getDependencies() {
+                        return Collections.emptyList();
+                    }
+
+                    @Override
+                    public void run(Connection target) throws Exception {
+                        copy(target, entry.getKey(), entry.getValue());
+                    }
+                });
+            }
+            scheduler.execute();
+        } else {
+            for (Map.Entry<String, String> entry : queries.entrySet()) {
+                copy(connection, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Copies the result of a query into a table
+     *
+     * @param target Target connection
+     * @param table  Target table
+     * @param query  Query on the source database
+     * @return Number of copied rows
+     * @throws SQLException If the copy fails
+     */
+    protected long copy(Connection target, String table, String query) throws SQLException {
+        log.info("Copying [{}] into {}", query, table);
+        long start = System.currentTimeMillis();
+        long count = 0;
+        Connection connection = source.getConnection();
+        try {
+            // Some drivers only stream the rows when not in auto-commit mode
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement ps = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                try {
+                    ps.setFetchSize(maxRows > 0 ? Math.min(fetchSize, maxRows) : fetchSize);
+                    ps.setMaxRows(maxRows);
+                    ResultSet rs = ps.executeQuery();
+                    try {
+                        ResultSetMetaData metaData = rs.getMetaData();
+                        int columnCount = metaData.getColumnCount();
+                        List<String> columns = new ArrayList<String>();
+                        int[] types = new int[columnCount + 1];
+                        for (int i = 1; i <= columnCount; i++) {
+                            columns.add(metaData.getColumnLabel(i));
+                            types[i] = metaData.getColumnType(i);
+                        }
+                        PreparedStatement insert = target.prepareStatement(String.format(
+                                "INSERT INTO %s (%s) VALUES (%s)",
+                                table,
+                                StringUtils.join(columns, ", "),
+                                StringUtils.repeat("?", ", ", columnCount)));
+                        try {
+                            int batch = 0;
+                            while (rs.next()) {
+                                boolean streamed = false;
+                                for (int i = 1; i <= columnCount; i++) {
+                                    streamed |= setValue(insert, i, types[i], rs.getObject(i));
+                                }
+                                insert.addBatch();
+                                count++;
+                                // The streams of the large objects are only valid on the current row
+                                if (++batch >= batchSize || streamed) {
+                                    insert.executeBatch();
+                                    batch = 0;
+                                }
+                                if (count % progressInterval == 0) {
+                                    log.info("Copied {} rows into {} ({} rows/s)", new Object[]{count, table, getRate(count, start)});
+                                }
+                            }
+                            if (batch > 0) {
+                                insert.executeBatch();
+                            }
+                        } finally {
+                            insert.close();
+                        }
+                    } finally {
+                        rs.close();
+                    }
+                } finally {
+                    ps.close();
+                }
+            } finally {
+                DBInit.rollback(connection);
+                connection.setAutoCommit(autoCommit);
+            }
+        } finally {
+            connection.close();
+        }
+        log.info("Copied {} rows into {} ({} rows/s)", new Object[]{count, table, getRate(count, start)});
+        return count;
+    }
+
+    private static long getRate(long count, long start) {
+        return count * 1000 / Math.max(1, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Sets a value on the insert statement. Large objects are streamed from the source connection, so the row must be
+     * inserted before the next one is read.
+     *
+     * @return <code>true</code> if the value is streamed
+     */
+    protected boolean setValue(PreparedStatement insert, int index, int type, Object value) throws SQLException {
+        if (value == null) {
+            insert.setNull(index, type);
+            return false;
+        } else if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            insert.setBinaryStream(index, blob.getBinaryStream(), blob.length());
+            return true;
+        } else if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            insert.setCharacterStream(index, clob.getCharacterStream(), clob.length());
+            return true;
+        } else {
+            insert.setObject(index, value);
+            return false;
+        }
+    }
+
+    /**
+     * Sets the tables to copy. Each table is entirely copied into a table with the same name.
+     *
+     * @param tables List of table names
+     */
+    public void setTables(List<String> tables) {
+        for (String table : tables) {
+            queries.put(table, "SELECT * FROM " + table);
+        }
+    }
+
+    /**
+     * Sets the queries to copy
+     *
+     * @param queries Queries on the source database, indexed by target table
+     */
+    public void setQueries(Map<String, String> queries) {
+        this.queries.putAll(queries);
+    }
+
+    /**
+     * @return Queries on the source database, indexed by target table
+     */
+    public Map<String, String> getQueries() {
+        return Collections.unmodifiableMap(queries);
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * @param fetchSize Number of rows fetched at once from the source database (1000 by default)
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize Number of rows inserted at once in the target database (1000 by default)
+     */
+    public void setBatchSize(int batchSize) {
+        Validate.isTrue(batchSize > 0, "The batch size must be greater than 0");
+        this.batchSize = batchSize;
+    }
+
+    public int getProgressInterval() {
+        return progressInterval;
+    }
+
+    /**
+     * @param progressInterval Number of rows between two progress reports (100000 by default)
+     */
+    public void setProgressInterval(int progressInterval) {
+        Validate.isTrue(progressInterval > 0, "The progress interval must be greater than 0");
+        this.progressInterval = progressInterval;
+    }
+
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * @param maxRows Maximum number of rows copied for each table or query (0, the default, for no limit)
+     */
+    public void setMaxRows(int maxRows) {
+        Validate.isTrue(maxRows >= 0, "The maximum number of rows must not be negative");
+        this.maxRows = maxRows;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Copy %s", queries.keySet());
+    }
+
+}
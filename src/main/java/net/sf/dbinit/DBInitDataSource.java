@@ -0,0 +1,147 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.Validate;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Data source which runs the initialisation of the database on the first request of a connection.
+ * <p>
+ * The initialisation is run only once: concurrent callers wait for the same run. If it fails, the callers waiting
+ * for it get the error and the next request of a connection tries again. The {@link DBInit} instance must not run
+ * on its own (for example through its <code>@PostConstruct</code> annotation), and it uses the target data source if
+ * it has none.
+ */
+public class DBInitDataSource implements DataSource {
+
+    private final DataSource target;
+    private final DBInit dbInit;
+    private final AtomicReference<FutureTask<Void>> initialisation = new AtomicReference<FutureTask<Void>>();
+    private volatile boolean initialised;
+
+    /**
+     * @param target Data source to decorate
+     * @param dbInit Initialisation to run
+     */
+    public DBInitDataSource(DataSource target, DBInit dbInit) {
+        Validate.notNull(target, "The target data source must not be null");
+        Validate.notNull(dbInit, "The initialisation must not be null");
+        this.target = target;
+        this.dbInit = dbInit;
+        if (dbInit.getJdbcDataSource() == null) {
+            dbInit.setJdbcDataSource(target);
+        }
+    }
+
+    public DataSource getTarget() {
+        return target;
+    }
+
+    public DBInit getDBInit() {
+        return dbInit;
+    }
+
+    /**
+     * @return <code>true</code> if the initialisation has been run successfully
+     */
+    public boolean isInitialised() {
+        return initialised;
+    }
+
+    /**
+     * Runs the initialisation if it has not been run yet, or waits for the run in progress
+     *
+     * @throws SQLException If the initialisation fails
+     */
+    public void initialise() throws SQLException {
+        if (initialised) {
+            return;
+        }
+        FutureTask<Void> task = initialisation.get();
+        if (task == null) {
+            FutureTask<Void> newTask = new FutureTask<Void>(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    dbInit.run();
+                    return null;
+                }
+            });
+            if (initialisation.compareAndSet(null, newTask)) {
+                task = newTask;
+                task.run();
+            } else {
+                task = initialisation.get();
+            }
+        }
+        try {
+            task.get();
+            initialised = true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the initialisation of the database", ex);
+        } catch (ExecutionException ex) {
+            // The next caller tries again
+            initialisation.compareAndSet(task, null);
+            throw new SQLException("The initialisation of the database has failed", ex.getCause());
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        initialise();
+        return target.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        initialise();
+        return target.getConnection(username, password);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    // Not annotated: this method only exists as of Java 7
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException("getParentLogger");
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+
+}
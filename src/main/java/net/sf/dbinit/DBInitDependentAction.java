@@ -0,0 +1,87 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.Validate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wraps an action in order to give it a name, an optional group and dependencies, so that
+ * it can be scheduled concurrently with other actions.
+ * <p>
+ * Actions in the same group are run one after the other, in declaration order. The dependencies
+ * are names of other actions or groups which must have completed before this action starts.
+ *
+ * @see DBInit#setParallelism(int)
+ */
+public class DBInitDependentAction implements DBInitAction, DBInitAware {
+
+    private final String name;
+    private final DBInitAction action;
+    private String group;
+    private List<String> dependencies = Collections.emptyList();
+
+    public DBInitDependentAction(String name, DBInitAction action) {
+        Validate.notBlank(name, "The name of the action must not be null or blank");
+        Validate.notNull(action, "The action must not be null");
+        this.name = name;
+        this.action = action;
+    }
+
+    @Override
+    public void run(DBExecutor executor, Connection connection) throws SQLException {
+        action.run(executor, connection);
+    }
+
+    @Override
+    public void setDBInit(DBInit dbInit) {
+        if (action instanceof DBInitAware) {
+            ((DBInitAware) action).setDBInit(dbInit);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DBInitAction getAction() {
+        return action;
+    }
+
+    /**
+     * @return Group of the action (can be <code>null</code>)
+     */
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * @param group Group of the action (can be <code>null</code>)
+     */
+    public void setGroup(String group) {
+        this.group = group;
+    }
+
+    /**
+     * @return Names of the actions or groups this action depends on
+     */
+    public List<String> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * @param dependencies Names of the actions or groups this action depends on (can be <code>null</code>)
+     */
+    public void setDependencies(List<String> dependencies) {
+        this.dependencies = dependencies != null ? new ArrayList<String>(dependencies) : Collections.<String>emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s", name, action);
+    }
+
+}
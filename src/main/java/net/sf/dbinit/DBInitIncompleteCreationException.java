@@ -0,0 +1,16 @@
+package net.sf.dbinit;
+
+public class DBInitIncompleteCreationException extends RuntimeException {
+
+	private final String versionTable;
+
+	public DBInitIncompleteCreationException(String versionTable) {
+		super(String.format("The version table %s contains no version: the creation of the database did not complete and it must be created again", versionTable));
+		this.versionTable = versionTable;
+	}
+
+	public String getVersionTable() {
+		return versionTable;
+	}
+
+}
@@ -0,0 +1,31 @@
+package net.sf.dbinit;
+
+/**
+ * Listener notified of the progress of a {@link DBInit#run()} execution.
+ * <p>
+ * Listeners are called from the threads running the phases, possibly concurrently. Any exception they
+ * throw is logged and ignored.
+ *
+ * @see DBInitListenerAdapter
+ */
+public interface DBInitListener {
+
+    /**
+     * Checks if this listener is interested in a phase. Used to avoid creating events for
+     * fine-grained phases like {@link DBPhase#STATEMENT statements}.
+     *
+     * @param phase Phase
+     * @return <code>true</code> if the events of this phase must be sent to this listener
+     */
+    boolean isEnabled(DBPhase phase);
+
+    void phaseStarted(DBPhaseEvent event);
+
+    void phaseFinished(DBPhaseEvent event);
+
+    /**
+     * Called each time a patch (or, when {@link DBPhase#STATEMENT statements} are enabled, a statement) is completed.
+     */
+    void progress(DBProgressEvent event);
+
+}
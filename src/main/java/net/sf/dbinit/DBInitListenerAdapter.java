@@ -0,0 +1,25 @@
+package net.sf.dbinit;
+
+/**
+ * Listener which ignores all events. It is enabled for all phases but the {@link DBPhase#STATEMENT statements}.
+ */
+public class DBInitListenerAdapter implements DBInitListener {
+
+    @Override
+    public boolean isEnabled(DBPhase phase) {
+        return phase != DBPhase.STATEMENT;
+    }
+
+    @Override
+    public void phaseStarted(DBPhaseEvent event) {
+    }
+
+    @Override
+    public void phaseFinished(DBPhaseEvent event) {
+    }
+
+    @Override
+    public void progress(DBProgressEvent event) {
+    }
+
+}
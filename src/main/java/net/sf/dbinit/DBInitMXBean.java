@@ -0,0 +1,77 @@
+package net.sf.dbinit;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Management interface of a {@link DBInit} instance.
+ *
+ * @see DBInitManagement
+ */
+public interface DBInitMXBean {
+
+    /**
+     * @return Version of the database, as known after the last run or check (-1 if unknown)
+     */
+    int getCurrentVersion();
+
+    int getTargetVersion();
+
+    /**
+     * @return Start of the last run (<code>null</code> if no run has been done)
+     */
+    Date getLastRunStart();
+
+    boolean isLastRunSuccess();
+
+    /**
+     * @return Error of the last run (<code>null</code> if successful)
+     */
+    String getLastRunError();
+
+    long getLastRunDurationMillis();
+
+    /**
+     * @return Durations of the phases of the last run, in milliseconds, indexed by phase. The duration of the
+     * patches is the sum of the durations of all patches. The statements are not listed: see their latencies.
+     */
+    Map<String, Long> getPhaseDurations();
+
+    /**
+     * @return Number of patches applied by the last run
+     */
+    long getPatchesApplied();
+
+    /**
+     * @return Number of rollback sections executed by the last run
+     */
+    long getRollbacks();
+
+    /**
+     * @return Number of statements of the patches executed by the last run
+     */
+    long getStatementCount();
+
+    /**
+     * @return Median latency of the statements of the patches of the last run, in microseconds
+     */
+    long getStatementLatencyP50Micros();
+
+    /**
+     * @return 99th percentile of the latency of the statements of the patches of the last run, in microseconds
+     */
+    long getStatementLatencyP99Micros();
+
+    /**
+     * @return Maximum latency of the statements of the patches of the last run, in microseconds
+     */
+    long getStatementLatencyMaxMicros();
+
+    /**
+     * Reads the version from the database
+     *
+     * @return Current version (-1 if the database is not initialised)
+     */
+    int checkVersion();
+
+}
@@ -0,0 +1,324 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line entry point.
+ * <p>
+ * The {@link DBInit} properties are read from an optional properties file (<code>--config=path</code>) and
+ * from the command line (<code>--name=value</code>), the latter taking precedence. Any other property must be a
+ * dotted name (like <code>dbinit.profile</code>) and is passed through {@link DBInit#setProperties(Properties)}: an
+ * unknown simple name, usually a misspelt {@link DBInit} property, is a usage error.
+ * <p>
+ * The background sections of the patches are run before exiting, since the program would otherwise stop them:
+ * <code>--backgroundTimeout=seconds</code> limits the time spent waiting for them (0 not to wait at all).
+ * <p>
+ * A JSON summary of the run is printed on the standard output and the exit code is {@link #EXIT_OK},
+ * {@link #EXIT_FAILURE}, {@link #EXIT_USAGE} or {@link #EXIT_BACKGROUND_PENDING}.
+ */
+public class DBInitMain {
+
+    /**
+     * Exit code when the database is up to date. Value is {@value}.
+     */
+    public static final int EXIT_OK = 0;
+
+    /**
+     * Exit code when the initialisation has failed. Value is {@value}.
+     */
+    public static final int EXIT_FAILURE = 1;
+
+    /**
+     * Exit code when the command line or the configuration is not valid. Value is {@value}.
+     */
+    public static final int EXIT_USAGE = 2;
+
+    /**
+     * Exit code when the database is up to date but some background sections have not completed before the
+     * {@link #OPTION_BACKGROUND_TIMEOUT timeout}: they are resumed by the next run. Value is {@value}.
+     */
+    public static final int EXIT_BACKGROUND_PENDING = 3;
+
+    /**
+     * Option to read the configuration from a properties file
+     */
+    private static final String OPTION_CONFIG = "config";
+
+    /**
+     * Option giving the maximum number of seconds to wait for the background sections. Value is {@value}.
+     */
+    public static final String OPTION_BACKGROUND_TIMEOUT = "backgroundTimeout";
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the initialisation
+     *
+     * @param args Command line arguments
+     * @param out  Output for the JSON summary
+     * @param err  Output for the usage
+     * @return Exit code
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        DBInit db = new DBInit();
+        long backgroundTimeout;
+        try {
+            Properties config = parse(args);
+            backgroundTimeout = getBackgroundTimeout((String) config.remove(OPTION_BACKGROUND_TIMEOUT));
+            configure(db, config);
+        } catch (IllegalArgumentException ex) {
+            err.println(ex.getMessage());
+            usage(err);
+            return EXIT_USAGE;
+        } catch (IOException ex) {
+            err.println(String.format("Cannot read the configuration: %s", ex));
+            return EXIT_USAGE;
+        }
+        int exit;
+        try {
+            db.run();
+            exit = EXIT_OK;
+        } catch (RuntimeException ex) {
+            exit = EXIT_FAILURE;
+        }
+        // The background sections would be stopped with the program
+        DBBackgroundPatches background = db.getBackground();
+        if (exit == EXIT_OK && background != null) {
+            exit = awaitBackground(background, backgroundTimeout, err);
+        }
+        out.println(toJSON(db.getLastRun(), background));
+        return exit;
+    }
+
+    private static long getBackgroundTimeout(String value) {
+        if (value == null) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            long timeout = Long.parseLong(value.trim());
+            if (timeout < 0) {
+                throw new IllegalArgumentException(String.format("%s must not be negative: %s", OPTION_BACKGROUND_TIMEOUT, value));
+            }
+            return timeout;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("%s must be an integer: %s", OPTION_BACKGROUND_TIMEOUT, value));
+        }
+    }
+
+    /**
+     * Waits for the background sections
+     *
+     * @return Exit code
+     */
+    private static int awaitBackground(DBBackgroundPatches background, long timeoutSeconds, PrintStream err) {
+        boolean done;
+        try {
+            done = background.await(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            done = false;
+        }
+        if (!background.getFailures().isEmpty()) {
+            return EXIT_FAILURE;
+        } else if (!done) {
+            err.println(String.format("The background sections of the patches %s are still in progress", background.getPatches()));
+            return EXIT_BACKGROUND_PENDING;
+        } else {
+            return EXIT_OK;
+        }
+    }
+
+    /**
+     * Parses the command line
+     *
+     * @param args Command line arguments
+     * @return Configuration
+     * @throws IOException If the configuration file cannot be read
+     */
+    public static Properties parse(String[] args) throws IOException {
+        Properties config = new Properties();
+        Properties options = new Properties();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--") || arg.length() == 2) {
+                throw new IllegalArgumentException(String.format("Unexpected argument: %s", arg));
+            }
+            String name = StringUtils.substringBefore(arg.substring(2), "=");
+            String value;
+            if (arg.contains("=")) {
+                value = StringUtils.substringAfter(arg, "=");
+            } else if (i + 1 < args.length) {
+                value = args[++i];
+            } else {
+                throw new IllegalArgumentException(String.format("Missing value for %s", arg));
+            }
+            if (OPTION_CONFIG.equals(name)) {
+                InputStream in = new FileInputStream(value);
+                try {
+                    config.load(in);
+                } finally {
+                    in.close();
+                }
+            } else {
+                options.setProperty(name, value);
+            }
+        }
+        config.putAll(options);
+        return config;
+    }
+
+    /**
+     * Sets the properties of a {@link DBInit} instance
+     *
+     * @param db     Instance to configure
+     * @param config Configuration
+     * @throws IllegalArgumentException If a value is not valid or if a property without any dot is not a
+     *                                  {@link DBInit} property
+     */
+    public static void configure(DBInit db, Properties config) {
+        Properties properties = new Properties();
+        for (String name : config.stringPropertyNames()) {
+            String value = config.getProperty(name);
+            Method setter = getSetter(name);
+            if (setter != null) {
+                Class<?> type = setter.getParameterTypes()[0];
+                Object arg;
+                if (type == int.class) {
+                    try {
+                        arg = Integer.parseInt(value.trim());
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException(String.format("%s must be an integer: %s", name, value));
+                    }
+                } else if (type == double.class) {
+                    try {
+                        arg = Double.parseDouble(value.trim());
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException(String.format("%s must be a number: %s", name, value));
+                    }
+                } else if (type == boolean.class) {
+                    arg = Boolean.valueOf(value.trim());
+                } else {
+                    arg = value;
+                }
+                try {
+                    setter.invoke(db, arg);
+                } catch (IllegalAccessException ex) {
+                    throw new IllegalStateException(ex);
+                } catch (InvocationTargetException ex) {
+                    throw new IllegalArgumentException(String.format("Cannot set %s: %s", name, ex.getCause()));
+                }
+            } else if (name.contains(".")) {
+                properties.setProperty(name, value);
+            } else {
+                String known = getPropertyIgnoreCase(name);
+                if (known != null) {
+                    throw new IllegalArgumentException(String.format("Unknown property %s, did you mean %s?", name, known));
+                } else {
+                    throw new IllegalArgumentException(String.format("Unknown property %s", name));
+                }
+            }
+        }
+        db.setProperties(properties);
+    }
+
+    private static String getPropertyIgnoreCase(String name) {
+        for (Method method : DBInit.class.getMethods()) {
+            if (method.getName().startsWith("set") && method.getName().substring(3).equalsIgnoreCase(name)) {
+                return StringUtils.uncapitalize(method.getName().substring(3));
+            }
+        }
+        return null;
+    }
+
+    private static Method getSetter(String name) {
+        String setterName = "set" + StringUtils.capitalize(name);
+        for (Method method : DBInit.class.getMethods()) {
+            if (method.getName().equals(setterName) && method.getParameterTypes().length == 1) {
+                Class<?> type = method.getParameterTypes()[0];
+                if (type == String.class || type == int.class || type == double.class || type == boolean.class) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * JSON representation of a run summary
+     *
+     * @param summary Summary to convert
+     * @return JSON object
+     */
+    public static String toJSON(DBRunSummary summary) {
+        return toJSON(summary, null);
+    }
+
+    /**
+     * JSON representation of a run summary and of its background sections
+     *
+     * @param summary    Summary to convert
+     * @param background Background sections of the run (<code>null</code> if none)
+     * @return JSON object
+     */
+    public static String toJSON(DBRunSummary summary, DBBackgroundPatches background) {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"success\":").append(summary.isSuccess());
+        json.append(",\"initialVersion\":").append(summary.getInitialVersion());
+        json.append(",\"targetVersion\":").append(summary.getTargetVersion());
+        json.append(",\"created\":").append(summary.isCreated());
+        json.append(",\"appliedPatches\":[").append(StringUtils.join(summary.getAppliedPatches(), ",")).append("]");
+        json.append(",\"regressions\":[").append(StringUtils.join(summary.getRegressions(), ",")).append("]");
+        json.append(",\"schemaDrift\":[");
+        for (int i = 0; i < summary.getSchemaDrift().size(); i++) {
+            json.append(i > 0 ? "," : "").append(toJSON(summary.getSchemaDrift().get(i)));
+        }
+        json.append("]");
+        json.append(",\"restored\":").append(summary.isRestored());
+        json.append(",\"backgroundPatches\":[").append(StringUtils.join(summary.getBackgroundPatches(), ",")).append("]");
+        json.append(",\"backgroundDone\":").append(background == null || background.isDone());
+        Collection<Integer> failures = background != null ? background.getFailures().keySet() : Collections.<Integer>emptySet();
+        json.append(",\"backgroundFailures\":[").append(StringUtils.join(failures, ",")).append("]");
+        json.append(",\"durationMillis\":").append(summary.getDurationMillis());
+        json.append(",\"error\":").append(toJSON(summary.getError()));
+        return json.append("}").toString();
+    }
+
+    private static String toJSON(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append("\"").toString();
+    }
+
+    private static void usage(PrintStream err) {
+        err.println("Usage: java net.sf.dbinit.DBInitMain [--config=<file.properties>] [--<property>=<value> ...]");
+        err.println("Properties: jdbcDriver, jdbcURL, jdbcUser, jdbcPassword, version, versionTable, versionColumnName,");
+        err.println("            versionColumnTimestamp, resourceInitialization, resourceUpdate, ... and any DBInit property");
+        err.println("Other properties must be dotted names, like dbinit.profile");
+        err.println("--backgroundTimeout=<seconds> limits the wait for the background sections (0 not to wait)");
+    }
+
+}
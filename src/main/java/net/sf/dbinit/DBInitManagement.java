@@ -0,0 +1,239 @@
+package net.sf.dbinit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Management bean of a {@link DBInit} instance, registered under
+ * <code>net.sf.dbinit:type=DBInit,name=&lt;name&gt;</code>. It listens to the runs of the instance, except to the
+ * statements, whose latencies are recorded by the instance directly in the histogram of the bean. All counters are
+ * reset at the start of each run.
+ *
+ * @see DBInit#setJmxName(String)
+ */
+public class DBInitManagement extends DBInitListenerAdapter implements DBInitMXBean {
+
+    /**
+     * Logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(DBInitManagement.class);
+
+    private final DBInit dbInit;
+    private final ObjectName objectName;
+    private final Map<DBPhase, AtomicLong> phaseNanos = new ConcurrentHashMap<DBPhase, AtomicLong>();
+    private final DBLatencyHistogram statementLatencies = new DBLatencyHistogram();
+    private final AtomicLong patchesApplied = new AtomicLong();
+    private final AtomicLong rollbacks = new AtomicLong();
+    private volatile int currentVersion = -1;
+
+    /**
+     * Creates the management bean and registers it as a listener of the instance. Use {@link #register(DBInit, String)}
+     * to also register it in the platform MBean server.
+     *
+     * @param dbInit Instance to manage
+     * @param name   Name of the instance
+     * @throws JMException If the name is not valid
+     */
+    public DBInitManagement(DBInit dbInit, String name) throws JMException {
+        this.dbInit = dbInit;
+        this.objectName = new ObjectName("net.sf.dbinit", new Hashtable<String, String>(getKeys(name)));
+        for (DBPhase phase : DBPhase.values()) {
+            phaseNanos.put(phase, new AtomicLong());
+        }
+        dbInit.addListener(this);
+        dbInit.setStatementLatencies(statementLatencies);
+    }
+
+    private static Map<String, String> getKeys(String name) {
+        Map<String, String> keys = new HashMap<String, String>();
+        keys.put("type", "DBInit");
+        keys.put("name", ObjectName.quote(name));
+        return keys;
+    }
+
+    /**
+     * Creates the management bean of an instance and registers it in the platform MBean server. The bean of another
+     * instance registered under the same name is never replaced: it must be {@link #unregister() unregistered} first,
+     * for example by {@link DBInit#close()}.
+     *
+     * @param dbInit Instance to manage
+     * @param name   Name of the instance
+     * @return Registered bean
+     * @throws javax.management.InstanceAlreadyExistsException If a bean is already registered under this name
+     * @throws JMException If the bean cannot be registered
+     */
+    public static DBInitManagement register(DBInit dbInit, String name) throws JMException {
+        DBInitManagement management = new DBInitManagement(dbInit, name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(management, management.objectName);
+        } catch (JMException ex) {
+            management.detach();
+            throw ex;
+        }
+        log.info("DBInit management bean registered as {}", management.objectName);
+        return management;
+    }
+
+    /**
+     * Unregisters the bean from the platform MBean server and stops listening to the instance
+     *
+     * @throws JMException If the bean cannot be unregistered
+     */
+    public void unregister() throws JMException {
+        detach();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    /**
+     * Stops listening to the instance
+     */
+    private void detach() {
+        dbInit.removeListener(this);
+        dbInit.setStatementLatencies(null);
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public void phaseStarted(DBPhaseEvent event) {
+        if (event.getPhase() == DBPhase.RUN) {
+            for (AtomicLong nanos : phaseNanos.values()) {
+                nanos.set(0);
+            }
+            statementLatencies.reset();
+            patchesApplied.set(0);
+            rollbacks.set(0);
+        } else if (event.getPhase() == DBPhase.ROLLBACK) {
+            rollbacks.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void phaseFinished(DBPhaseEvent event) {
+        phaseNanos.get(event.getPhase()).addAndGet(event.getDurationNanos());
+        switch (event.getPhase()) {
+            case PATCH:
+                if (event.getError() == null) {
+                    patchesApplied.incrementAndGet();
+                }
+                break;
+            case RUN:
+                if (event.getError() == null) {
+                    currentVersion = dbInit.getVersion();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public int getCurrentVersion() {
+        return currentVersion;
+    }
+
+    @Override
+    public int getTargetVersion() {
+        return dbInit.getVersion();
+    }
+
+    @Override
+    public Date getLastRunStart() {
+        DBRunSummary lastRun = dbInit.getLastRun();
+        return lastRun != null ? new Date(lastRun.getStart()) : null;
+    }
+
+    @Override
+    public boolean isLastRunSuccess() {
+        DBRunSummary lastRun = dbInit.getLastRun();
+        return lastRun != null && lastRun.isSuccess();
+    }
+
+    @Override
+    public String getLastRunError() {
+        DBRunSummary lastRun = dbInit.getLastRun();
+        return lastRun != null ? lastRun.getError() : null;
+    }
+
+    @Override
+    public long getLastRunDurationMillis() {
+        DBRunSummary lastRun = dbInit.getLastRun();
+        return lastRun != null ? lastRun.getDurationMillis() : 0;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseDurations() {
+        Map<String, Long> durations = new LinkedHashMap<String, Long>();
+        for (DBPhase phase : DBPhase.values()) {
+            // The statements are measured by their latencies
+            if (phase != DBPhase.ROLLBACK && phase != DBPhase.STATEMENT) {
+                durations.put(phase.name(), phaseNanos.get(phase).get() / 1000000L);
+            }
+        }
+        return durations;
+    }
+
+    @Override
+    public long getPatchesApplied() {
+        return patchesApplied.get();
+    }
+
+    @Override
+    public long getRollbacks() {
+        return rollbacks.get();
+    }
+
+    @Override
+    public long getStatementCount() {
+        return statementLatencies.getCount();
+    }
+
+    @Override
+    public long getStatementLatencyP50Micros() {
+        return statementLatencies.getPercentile(50);
+    }
+
+    @Override
+    public long getStatementLatencyP99Micros() {
+        return statementLatencies.getPercentile(99);
+    }
+
+    @Override
+    public long getStatementLatencyMaxMicros() {
+        return statementLatencies.getMax();
+    }
+
+    @Override
+    public int checkVersion() {
+        try {
+            Connection connection = dbInit.getConnectionProvider().getConnection();
+            try {
+                Integer version = dbInit.getCurrentVersion(connection);
+                currentVersion = version != null ? version : -1;
+            } finally {
+                connection.close();
+            }
+        } catch (SQLException ex) {
+            log.warn("Cannot read the version of the database", ex);
+            currentVersion = -1;
+        }
+        return currentVersion;
+    }
+
+}
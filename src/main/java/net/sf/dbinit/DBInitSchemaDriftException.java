@@ -0,0 +1,28 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class DBInitSchemaDriftException extends RuntimeException {
+
+	private final int version;
+	private final List<String> differences;
+
+	public DBInitSchemaDriftException(int version, List<String> differences) {
+		super(String.format("The schema has changed since the last run at version %d:%n%s", version, StringUtils.join(differences, String.format("%n"))));
+		this.version = version;
+		this.differences = Collections.unmodifiableList(new ArrayList<String>(differences));
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public List<String> getDifferences() {
+		return differences;
+	}
+
+}
@@ -2,10 +2,12 @@ package net.sf.dbinit;
 
 import org.apache.commons.lang3.Validate;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.SQLException;
 
-public class DBInitScriptAction implements DBInitAction {
+public class DBInitScriptAction implements DBChecksumAction {
 
     private final String path;
 
@@ -14,9 +16,37 @@ public class DBInitScriptAction implements DBInitAction {
         this.path = path;
     }
 
+    public String getPath() {
+        return path;
+    }
+
     @Override
     public void run(DBExecutor executor, Connection connection) throws SQLException {
-        executor.runScript(connection, path);
+        apply(executor, connection);
+    }
+
+    @Override
+    public boolean apply(DBExecutor executor, Connection connection) throws SQLException {
+        return executor.runScript(connection, path);
+    }
+
+    @Override
+    public String getChecksumKey() {
+        return path;
+    }
+
+    @Override
+    public String getChecksum() {
+        InputStream in = DBInit.openResource(path);
+        try {
+            try {
+                return new DBDigest().update(in).toHex();
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            throw new DBInitCannotReadResourceException(path, ex);
+        }
     }
 
     @Override
@@ -0,0 +1,54 @@
+package net.sf.dbinit;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregated report of the tasks which failed or were skipped while running a {@link DBTaskScheduler}.
+ */
+public class DBInitTasksException extends RuntimeException {
+
+    private final String label;
+    private final Map<String, Throwable> failures;
+    private final List<String> skipped;
+
+    public DBInitTasksException(String label, Map<String, Throwable> failures, List<String> skipped) {
+        super(getMessage(label, failures, skipped), failures.isEmpty() ? null : failures.values().iterator().next());
+        this.label = label;
+        this.failures = Collections.unmodifiableMap(failures);
+        this.skipped = Collections.unmodifiableList(skipped);
+    }
+
+    private static String getMessage(String label, Map<String, Throwable> failures, List<String> skipped) {
+        StringBuilder message = new StringBuilder();
+        message.append(String.format("%d task(s) failed and %d task(s) were skipped while running %s",
+                failures.size(), skipped.size(), label));
+        for (Map.Entry<String, Throwable> failure : failures.entrySet()) {
+            message.append(String.format("%n - %s failed: %s", failure.getKey(), failure.getValue()));
+        }
+        for (String name : skipped) {
+            message.append(String.format("%n - %s skipped", name));
+        }
+        return message.toString();
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Failed tasks, indexed by name, in order of failure
+     */
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Names of the tasks which were not run because one of their dependencies failed
+     */
+    public List<String> getSkipped() {
+        return skipped;
+    }
+
+}
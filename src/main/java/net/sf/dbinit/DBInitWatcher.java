@@ -0,0 +1,287 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Development mode which watches the initialisation and update scripts and re-applies them as soon as they change.
+ * <p>
+ * A {@link DBSnapshot snapshot} of the database is taken before the newest patch is applied. When only this patch
+ * changes, the snapshot is restored and the patch alone is applied again. When the initialisation script or an older
+ * patch changes, the database is dropped and entirely rebuilt. A new <code>update.N.sql</code> file following the
+ * newest patch raises the {@link DBInit#setVersion(int) version} and is applied on top of the current database.
+ * <p>
+ * The scripts are looked up like {@link DBInit#openResource(String)} does, and only the ones available as files
+ * (directly or on a class path directory) can be watched. The default implementations rely on H2.
+ */
+public class DBInitWatcher implements Runnable {
+
+    /**
+     * Logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(DBInitWatcher.class);
+
+    private final DBInit dbInit;
+    private final DBSnapshot snapshot;
+    private final List<File> files = new ArrayList<File>();
+    private final List<String> digests = new ArrayList<String>();
+    private long interval = 250;
+    private Integer snapshotVersion;
+    private volatile Thread thread;
+
+    /**
+     * @param dbInit   Configuration to watch
+     * @param snapshot Snapshot taken before the newest patch
+     */
+    public DBInitWatcher(DBInit dbInit, DBSnapshot snapshot) {
+        Validate.notNull(dbInit, "The DBInit instance must not be null");
+        Validate.notNull(snapshot, "The snapshot must not be null");
+        this.dbInit = dbInit;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Builds the database and starts watching the scripts on a daemon thread
+     */
+    public synchronized void start() {
+        Validate.validState(thread == null, "The watcher is already started");
+        scan();
+        build();
+        thread = new Thread(this, "dbinit-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the scripts
+     */
+    public void stop() {
+        Thread current = thread;
+        thread = null;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (thread == Thread.currentThread()) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException ex) {
+                break;
+            }
+            try {
+                check();
+            } catch (RuntimeException ex) {
+                log.error("Cannot apply the changed scripts", ex);
+            }
+        }
+    }
+
+    /**
+     * Checks the scripts once and applies the changes
+     *
+     * @return <code>true</code> if the database has been changed
+     */
+    public synchronized boolean check() {
+        int newest = dbInit.getVersion();
+        List<String> previous = new ArrayList<String>(digests);
+        scan();
+        int changed = 0;
+        while (changed < digests.size() && changed < previous.size() && equal(digests.get(changed), previous.get(changed))) {
+            changed++;
+        }
+        if (changed >= digests.size()) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        if (changed == newest + 1) {
+            if (digests.get(changed) == null) {
+                return false;
+            }
+            log.info("Applying the new patch {}", changed);
+            dbInit.setVersion(changed);
+            scan();
+            takeSnapshot(newest);
+            dbInit.run();
+        } else if (changed == newest && newest > 0 && snapshotVersion != null && snapshotVersion == newest - 1) {
+            log.info("Applying the patch {} again", newest);
+            restoreSnapshot();
+            dbInit.run();
+        } else {
+            log.info("{} has changed, rebuilding the database", files.get(changed));
+            rebuild();
+        }
+        log.info("Scripts applied in {} ms", System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /**
+     * Drops and rebuilds the whole database
+     */
+    public synchronized void rebuild() {
+        try {
+            Connection connection = dbInit.getConnection();
+            try {
+                drop(connection);
+                DBInit.commit(connection);
+            } finally {
+                connection.close();
+            }
+        } catch (SQLException ex) {
+            throw new DBInitSQLException("Drop", ex);
+        }
+        snapshotVersion = null;
+        build();
+    }
+
+    /**
+     * Upgrades the database to the version before the newest patch, takes the snapshot and applies the newest patch.
+     * The database is rebuilt if it is already beyond this version.
+     */
+    protected void build() {
+        int newest = dbInit.getVersion();
+        if (newest > 0) {
+            dbInit.setVersion(newest - 1);
+            try {
+                dbInit.run();
+            } catch (DBInitVersionException ex) {
+                dbInit.setVersion(newest);
+                rebuild();
+                return;
+            } finally {
+                dbInit.setVersion(newest);
+            }
+            takeSnapshot(newest - 1);
+        }
+        dbInit.run();
+    }
+
+    /**
+     * Drops all the objects of the database
+     *
+     * @param connection Connection to use
+     * @throws SQLException If the objects cannot be dropped
+     */
+    protected void drop(Connection connection) throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            st.execute("DROP ALL OBJECTS");
+        } finally {
+            st.close();
+        }
+    }
+
+    private void takeSnapshot(int version) {
+        try {
+            Connection connection = dbInit.getConnection();
+            try {
+                snapshot.take(connection);
+            } finally {
+                connection.close();
+            }
+        } catch (SQLException ex) {
+            throw new DBInitSQLException("Snapshot", ex);
+        }
+        snapshotVersion = version;
+    }
+
+    private void restoreSnapshot() {
+        try {
+            Connection connection = dbInit.getConnection();
+            try {
+                snapshot.restore(connection);
+            } finally {
+                connection.close();
+            }
+        } catch (SQLException ex) {
+            throw new DBInitSQLException("Restoring the snapshot", ex);
+        }
+    }
+
+    /**
+     * Computes the digests of the initialisation script, of the patches and of the next patch, if any
+     */
+    private void scan() {
+        files.clear();
+        digests.clear();
+        File init = getFile(dbInit.getResourceInitialization());
+        files.add(init);
+        File dir = init.getAbsoluteFile().getParentFile();
+        for (int patch = 1; patch <= dbInit.getVersion() + 1; patch++) {
+            String path = MessageFormat.format(dbInit.getResourceUpdate(), patch);
+            File file = getFile(path);
+            if (!file.exists() && dir != null) {
+                file = new File(dir, new File(path).getName());
+            }
+            files.add(file);
+            dir = file.getAbsoluteFile().getParentFile();
+        }
+        for (File file : files) {
+            digests.add(digest(file));
+        }
+    }
+
+    /**
+     * Gets the file behind a script
+     *
+     * @param path Resource path
+     * @return File (which may not exist)
+     */
+    protected File getFile(String path) {
+        URL url = DBInit.class.getResource(path);
+        if (url != null && "file".equals(url.getProtocol())) {
+            return FileUtils.toFile(url);
+        } else {
+            return new File(path);
+        }
+    }
+
+    private static String digest(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                return new DBDigest().update(in).toHex();
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            throw new DBInitCannotReadResourceException(file.getPath(), ex);
+        }
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * @param interval Interval between two checks of the scripts, in milliseconds (250 by default)
+     */
+    public void setInterval(long interval) {
+        Validate.isTrue(interval > 0, "The interval must be greater than 0");
+        this.interval = interval;
+    }
+
+}
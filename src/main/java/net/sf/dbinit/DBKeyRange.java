@@ -0,0 +1,128 @@
+package net.sf.dbinit;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Range of numeric keys of a table, from an exclusive lower bound to an inclusive upper bound.
+ */
+public class DBKeyRange {
+
+    private final long from;
+    private final long to;
+    private final int count;
+
+    public DBKeyRange(long from, long to, int count) {
+        this.from = from;
+        this.to = to;
+        this.count = count;
+    }
+
+    /**
+     * @return Exclusive lower bound
+     */
+    public long getFrom() {
+        return from;
+    }
+
+    /**
+     * @return Inclusive upper bound
+     */
+    public long getTo() {
+        return to;
+    }
+
+    /**
+     * @return Number of keys in the range
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Splits a table into ranges of keys using keyset pagination: only the key column is read, in order,
+     * and each range contains at most <code>size</code> keys.
+     *
+     * @param connection Connection to use
+     * @param table      Table to split
+     * @param keyColumn  Numeric key of the table
+     * @param after      Key after which the ranges start (<code>null</code> to start at the beginning of the table)
+     * @param size       Maximum number of keys per range
+     * @return Ordered list of ranges
+     * @throws SQLException If the keys cannot be read
+     */
+    public static List<DBKeyRange> split(Connection connection, String table, String keyColumn, Long after, int size) throws SQLException {
+        List<DBKeyRange> ranges = new ArrayList<DBKeyRange>();
+        long from = after != null ? after : Long.MIN_VALUE;
+        PreparedStatement ps = prepare(connection, table, keyColumn, size);
+        try {
+            while (true) {
+                DBKeyRange range = read(ps, from);
+                if (range == null) {
+                    break;
+                }
+                ranges.add(range);
+                if (range.getCount() < size) {
+                    break;
+                }
+                from = range.getTo();
+            }
+        } finally {
+            ps.close();
+        }
+        return ranges;
+    }
+
+    /**
+     * Gets the next range of keys of a table, so that a table can be walked one range at a time while it is modified.
+     *
+     * @param connection Connection to use
+     * @param table      Table to walk
+     * @param keyColumn  Numeric key of the table
+     * @param after      Key after which the range starts (<code>null</code> to start at the beginning of the table)
+     * @param size       Maximum number of keys in the range
+     * @return Range or <code>null</code> if there is no key after <code>after</code>
+     * @throws SQLException If the keys cannot be read
+     */
+    public static DBKeyRange next(Connection connection, String table, String keyColumn, Long after, int size) throws SQLException {
+        PreparedStatement ps = prepare(connection, table, keyColumn, size);
+        try {
+            return read(ps, after != null ? after : Long.MIN_VALUE);
+        } finally {
+            ps.close();
+        }
+    }
+
+    private static PreparedStatement prepare(Connection connection, String table, String keyColumn, int size) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(String.format("SELECT %2$s FROM %1$s WHERE %2$s > ? ORDER BY %2$s", table, keyColumn));
+        ps.setMaxRows(size);
+        ps.setFetchSize(Math.min(size, 10000));
+        return ps;
+    }
+
+    private static DBKeyRange read(PreparedStatement ps, long from) throws SQLException {
+        ps.setLong(1, from);
+        ResultSet rs = ps.executeQuery();
+        int count = 0;
+        long to = from;
+        try {
+            while (rs.next()) {
+                to = rs.getLong(1);
+                count++;
+            }
+        } finally {
+            rs.close();
+        }
+        return count > 0 ? new DBKeyRange(from, to, count) : null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("]%d, %d]", from, to);
+    }
+
+}
@@ -0,0 +1,135 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Large object to load from a file into a column, as declared by a
+ * <code>-- @lob table=DOC key=42 column=BODY file=/seed/doc42.json</code> line of a script.
+ * <p>
+ * The row is identified by the value of its <code>keyColumn</code> (<code>ID</code> by default). Text columns are
+ * read using the <code>charset</code> option (<code>UTF-8</code> by default). Values containing spaces are enclosed
+ * in double quotes.
+ *
+ * @see DBLobLoader
+ */
+public class DBLob {
+
+    private final String table;
+    private final String keyColumn;
+    private final String key;
+    private final String column;
+    private final String file;
+    private final String charset;
+
+    public DBLob(String table, String keyColumn, String key, String column, String file, String charset) {
+        Validate.isTrue(StringUtils.isNotBlank(table), "The table of the large object must be set");
+        Validate.isTrue(StringUtils.isNotBlank(keyColumn), "The key column of the large object must be set");
+        Validate.isTrue(key != null, "The key of the large object must be set");
+        Validate.isTrue(StringUtils.isNotBlank(column), "The column of the large object must be set");
+        Validate.isTrue(StringUtils.isNotBlank(file), "The file of the large object must be set");
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.key = key;
+        this.column = column;
+        this.file = file;
+        this.charset = StringUtils.defaultIfBlank(charset, "UTF-8");
+    }
+
+    /**
+     * Parses the options of a <code>-- @lob</code> directive
+     *
+     * @param options Options, like <code>table=DOC key=42 column=BODY file=/seed/doc42.json</code>
+     * @return Large object
+     */
+    public static DBLob parse(String options) {
+        Map<String, String> values = parseOptions(options);
+        return new DBLob(
+                values.get("table"),
+                StringUtils.defaultIfBlank(values.get("keycolumn"), "ID"),
+                values.get("key"),
+                values.get("column"),
+                values.get("file"),
+                values.get("charset"));
+    }
+
+    /**
+     * Parses options of a directive
+     *
+     * @param options List of <code>name=value</code> options, separated by spaces. The values may be quoted.
+     * @return Values indexed by lower case name
+     */
+    static Map<String, String> parseOptions(String options) {
+        Map<String, String> values = new HashMap<String, String>();
+        int i = 0;
+        int length = options.length();
+        while (i < length) {
+            while (i < length && Character.isWhitespace(options.charAt(i))) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+            int eq = options.indexOf('=', i);
+            Validate.isTrue(eq > i, "Expected name=value in the directive options: %s", options);
+            String name = options.substring(i, eq).trim().toLowerCase();
+            i = eq + 1;
+            StringBuilder value = new StringBuilder();
+            if (i < length && options.charAt(i) == '"') {
+                int end = options.indexOf('"', i + 1);
+                Validate.isTrue(end > 0, "Unclosed quote in the directive options: %s", options);
+                value.append(options, i + 1, end);
+                i = end + 1;
+            } else {
+                while (i < length && !Character.isWhitespace(options.charAt(i))) {
+                    value.append(options.charAt(i++));
+                }
+            }
+            values.put(name, value.toString());
+        }
+        return values;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * @return Path to the file, looked up like {@link DBInit#openResource(String)} does
+     */
+    public String getFile() {
+        return file;
+    }
+
+    public String getCharset() {
+        return charset;
+    }
+
+    /**
+     * @return <code>true</code> if both objects go into the same column, so that they can be loaded in the same batch
+     */
+    public boolean isSameColumn(DBLob lob) {
+        return table.equals(lob.table) && keyColumn.equals(lob.keyColumn) && column.equals(lob.column);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s.%s (%s=%s) from %s", table, column, keyColumn, key, file);
+    }
+
+}
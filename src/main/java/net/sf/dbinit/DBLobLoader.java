@@ -0,0 +1,222 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams files into large object columns, the content of the files being never loaded in memory by dbinit.
+ * <p>
+ * The objects going into the same column are buffered and updated in batches. A row which does not exist yet is
+ * inserted with its key and the large object only. When the driver does not report the number of rows updated by the
+ * batch ({@link Statement#SUCCESS_NO_INFO}), the existence of the rows is checked afterwards.
+ *
+ * @see DBLob
+ */
+public class DBLobLoader {
+
+    /**
+     * Logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(DBLobLoader.class);
+
+    /**
+     * Prefix of the statements which declare a large object
+     */
+    public static final String PREFIX = "-- @lob ";
+
+    private final Connection connection;
+    private final int batchSize;
+    private final List<DBLob> batch = new ArrayList<DBLob>();
+
+    /**
+     * @param connection Connection to use
+     * @param batchSize  Maximum number of objects (and therefore of open files) in a batch
+     */
+    public DBLobLoader(Connection connection, int batchSize) {
+        this.connection = connection;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param statement Statement of a script
+     * @return <code>true</code> if the statement declares a large object
+     */
+    public static boolean isLob(String statement) {
+        return statement.startsWith(PREFIX);
+    }
+
+    /**
+     * Adds a large object, loading the pending ones if they go into another column or if the batch is full
+     *
+     * @param statement Statement declaring the object
+     * @throws SQLException If the pending objects cannot be loaded
+     */
+    public void add(String statement) throws SQLException {
+        DBLob lob = DBLob.parse(statement.substring(PREFIX.length()));
+        if (!batch.isEmpty() && !batch.get(0).isSameColumn(lob)) {
+            flush();
+        }
+        batch.add(lob);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Loads the pending objects
+     *
+     * @throws SQLException If the objects cannot be loaded
+     */
+    public void flush() throws SQLException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            DBLob first = batch.get(0);
+            int[] types = getTypes(first);
+            List<DBLob> missing = new ArrayList<DBLob>();
+            List<Closeable> streams = new ArrayList<Closeable>();
+            PreparedStatement update = connection.prepareStatement(String.format("UPDATE %s SET %s = ? WHERE %s = ?",
+                    first.getTable(), first.getColumn(), first.getKeyColumn()));
+            try {
+                for (DBLob lob : batch) {
+                    log.debug("Loading {}", lob);
+                    streams.add(setLob(update, 1, types[1], lob));
+                    update.setObject(2, lob.getKey(), types[0]);
+                    update.addBatch();
+                }
+                int[] counts = update.executeBatch();
+                for (int i = 0; i < batch.size(); i++) {
+                    int count = i < counts.length ? counts[i] : Statement.SUCCESS_NO_INFO;
+                    if (count == 0 || (count == Statement.SUCCESS_NO_INFO && !exists(batch.get(i), types[0]))) {
+                        missing.add(batch.get(i));
+                    }
+                }
+            } finally {
+                update.close();
+                close(streams);
+            }
+            if (!missing.isEmpty()) {
+                insert(missing, types);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Checks if the row of an object exists
+     */
+    private boolean exists(DBLob lob, int keyType) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(String.format("SELECT 1 FROM %s WHERE %s = ?",
+                lob.getTable(), lob.getKeyColumn()));
+        try {
+            ps.setObject(1, lob.getKey(), keyType);
+            ResultSet rs = ps.executeQuery();
+            try {
+                return rs.next();
+            } finally {
+                rs.close();
+            }
+        } finally {
+            ps.close();
+        }
+    }
+
+    private void insert(List<DBLob> lobs, int[] types) throws SQLException {
+        DBLob first = lobs.get(0);
+        PreparedStatement insert = connection.prepareStatement(String.format("INSERT INTO %s (%s, %s) VALUES (?, ?)",
+                first.getTable(), first.getKeyColumn(), first.getColumn()));
+        List<Closeable> streams = new ArrayList<Closeable>();
+        try {
+            for (DBLob lob : lobs) {
+                insert.setObject(1, lob.getKey(), types[0]);
+                streams.add(setLob(insert, 2, types[1], lob));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        } finally {
+            insert.close();
+            close(streams);
+        }
+    }
+
+    private static void close(List<Closeable> streams) {
+        for (Closeable stream : streams) {
+            try {
+                stream.close();
+            } catch (IOException ex) {
+                log.warn("Cannot close the file of a large object", ex);
+            }
+        }
+    }
+
+    /**
+     * Gets the types of the key and of the large object columns
+     */
+    private int[] getTypes(DBLob lob) throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            ResultSet rs = st.executeQuery(String.format("SELECT %s, %s FROM %s WHERE 1 = 0",
+                    lob.getKeyColumn(), lob.getColumn(), lob.getTable()));
+            try {
+                ResultSetMetaData metaData = rs.getMetaData();
+                return new int[]{metaData.getColumnType(1), metaData.getColumnType(2)};
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+    }
+
+    /**
+     * Binds the content of the file as a stream
+     *
+     * @return Stream to close once the statement has been executed
+     */
+    private static Closeable setLob(PreparedStatement ps, int index, int type, DBLob lob) throws SQLException {
+        InputStream in = DBInit.openResource(lob.getFile());
+        if (isText(type)) {
+            InputStreamReader reader;
+            try {
+                reader = new InputStreamReader(in, lob.getCharset());
+            } catch (UnsupportedEncodingException ex) {
+                IOUtils.closeQuietly(in);
+                throw new IllegalArgumentException(String.format("Unknown charset for %s", lob), ex);
+            }
+            ps.setCharacterStream(index, reader);
+            return reader;
+        } else {
+            ps.setBinaryStream(index, in);
+            return in;
+        }
+    }
+
+    private static boolean isText(int type) {
+        switch (type) {
+            case Types.CLOB:
+            case Types.NCLOB:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.VARCHAR:
+            case Types.NVARCHAR:
+            case Types.CHAR:
+            case Types.NCHAR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+}
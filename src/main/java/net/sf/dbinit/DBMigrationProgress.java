@@ -0,0 +1,72 @@
+package net.sf.dbinit;
+
+import java.util.*;
+
+/**
+ * Tracks the patches applied by a run and estimates the remaining time from the durations
+ * of the previous runs.
+ */
+public class DBMigrationProgress {
+
+    private final List<Integer> patches;
+    private final Map<Integer, Long> expected;
+    private final Map<Integer, Long> started = new HashMap<Integer, Long>();
+    private final Set<Integer> done = new HashSet<Integer>();
+    private final long start = System.currentTimeMillis();
+    private long completedMillis;
+
+    /**
+     * @param patches  Patches to apply
+     * @param expected Expected durations of the patches, when known
+     */
+    public DBMigrationProgress(List<Integer> patches, Map<Integer, Long> expected) {
+        this.patches = new ArrayList<Integer>(patches);
+        this.expected = new HashMap<Integer, Long>(expected);
+    }
+
+    /**
+     * @return Expected duration of a patch (<code>null</code> if unknown)
+     */
+    public Long getExpected(int patch) {
+        return expected.get(patch);
+    }
+
+    public synchronized void started(int patch) {
+        started.put(patch, System.currentTimeMillis());
+    }
+
+    public synchronized DBProgressEvent finished(int patch, long durationMillis) {
+        started.remove(patch);
+        if (done.add(patch)) {
+            completedMillis += durationMillis;
+        }
+        return getProgress();
+    }
+
+    /**
+     * Current progress
+     */
+    public synchronized DBProgressEvent getProgress() {
+        long now = System.currentTimeMillis();
+        // Average of the patches completed so far, for the patches without history
+        Long fallback = done.isEmpty() ? null : completedMillis / done.size();
+        long eta = 0;
+        for (int patch : patches) {
+            if (!done.contains(patch)) {
+                Long patchMillis = expected.get(patch);
+                if (patchMillis == null) {
+                    patchMillis = fallback;
+                }
+                if (patchMillis == null) {
+                    eta = -1;
+                    break;
+                }
+                Long patchStart = started.get(patch);
+                long remaining = patchStart != null ? patchMillis - (now - patchStart) : patchMillis;
+                eta += Math.max(0, remaining);
+            }
+        }
+        return new DBProgressEvent(done.size(), patches.size(), now - start, eta);
+    }
+
+}
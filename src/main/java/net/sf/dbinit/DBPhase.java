@@ -0,0 +1,70 @@
+package net.sf.dbinit;
+
+/**
+ * Phases of a {@link DBInit#run()} execution, as reported to the {@link DBInitListener listeners}.
+ */
+public enum DBPhase {
+
+    /**
+     * Whole run
+     */
+    RUN,
+
+    /**
+     * Reading of the version of the database
+     */
+    VERSION_CHECK,
+
+    /**
+     * Update of the version of the database, after its creation or after a patch. The name of the event is the new
+     * version.
+     */
+    VERSION_UPDATE,
+
+    /**
+     * Reading of a script, including its parsing
+     */
+    SCRIPT_READ,
+
+    /**
+     * Parsing of a script into statements. Since the script is read as it is parsed, this phase includes the reading
+     * of its content, but not the opening of the resource.
+     */
+    SCRIPT_PARSE,
+
+    /**
+     * Pre-actions
+     */
+    PRE_ACTIONS,
+
+    /**
+     * Creation of the tables using the initialisation script
+     */
+    CREATION,
+
+    /**
+     * Application of one patch
+     */
+    PATCH,
+
+    /**
+     * Execution of one statement of a patch
+     */
+    STATEMENT,
+
+    /**
+     * Execution of one action (pre-action, post-action or patch action)
+     */
+    ACTION,
+
+    /**
+     * Execution of the rollback section of a script after an error (only the start of this phase is notified)
+     */
+    ROLLBACK,
+
+    /**
+     * Post-actions
+     */
+    POST_ACTIONS
+
+}
@@ -0,0 +1,113 @@
+package net.sf.dbinit;
+
+/**
+ * Start or end of a {@link DBPhase phase}.
+ */
+public class DBPhaseEvent {
+
+    private final DBPhase phase;
+    private final Integer patch;
+    private final String name;
+    private final long durationNanos;
+    private final Throwable error;
+    private final Long expectedMillis;
+    private final boolean regression;
+    private final String section;
+    private final long rows;
+
+    public DBPhaseEvent(DBPhase phase, Integer patch, String name) {
+        this(phase, patch, name, 0, null, null, false);
+    }
+
+    public DBPhaseEvent(DBPhase phase, Integer patch, String name, long durationNanos, Throwable error, Long expectedMillis, boolean regression) {
+        this(phase, patch, name, durationNanos, error, expectedMillis, regression, null, -1);
+    }
+
+    public DBPhaseEvent(DBPhase phase, Integer patch, String name, long durationNanos, Throwable error, Long expectedMillis, boolean regression, String section, long rows) {
+        this.phase = phase;
+        this.patch = patch;
+        this.name = name;
+        this.durationNanos = durationNanos;
+        this.error = error;
+        this.expectedMillis = expectedMillis;
+        this.regression = regression;
+        this.section = section;
+        this.rows = rows;
+    }
+
+    public DBPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return Patch being applied (<code>null</code> outside of the patches)
+     */
+    public Integer getPatch() {
+        return patch;
+    }
+
+    /**
+     * @return Description of the phase, like the SQL of a statement (can be <code>null</code>)
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Duration of the phase (only when the phase is finished)
+     */
+    public long getDurationMillis() {
+        return durationNanos / 1000000L;
+    }
+
+    /**
+     * @return Duration of the phase in nanoseconds (only when the phase is finished)
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return Error which made the phase fail (<code>null</code> if the phase is not finished or was successful)
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return Duration expected from the previous runs in the same environment (<code>null</code> if unknown)
+     * @see DBInit#setHistoryFile(String)
+     */
+    public Long getExpectedMillis() {
+        return expectedMillis;
+    }
+
+    /**
+     * @return <code>true</code> if the duration of the phase has regressed compared with the previous runs
+     * @see DBInit#setRegressionThreshold(double)
+     */
+    public boolean isRegression() {
+        return regression;
+    }
+
+    /**
+     * @return Section of the script a {@link DBPhase#STATEMENT statement} belongs to (<code>null</code> for the
+     * other phases)
+     */
+    public String getSection() {
+        return section;
+    }
+
+    /**
+     * @return Number of rows affected by a finished {@link DBPhase#STATEMENT statement} (-1 if unknown)
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%s%s", phase, patch != null ? " " + patch : "", name != null ? " [" + name + "]" : "");
+    }
+
+}
@@ -0,0 +1,53 @@
+package net.sf.dbinit;
+
+/**
+ * Progress of the patches applied by a {@link DBInit#run()} execution.
+ */
+public class DBProgressEvent {
+
+    private final int completed;
+    private final int total;
+    private final long elapsedMillis;
+    private final long etaMillis;
+
+    public DBProgressEvent(int completed, int total, long elapsedMillis, long etaMillis) {
+        this.completed = completed;
+        this.total = total;
+        this.elapsedMillis = elapsedMillis;
+        this.etaMillis = etaMillis;
+    }
+
+    /**
+     * @return Number of patches completed
+     */
+    public int getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return Number of patches to apply
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return Time elapsed since the first patch was started
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return Estimated remaining time, based on the durations of the previous runs, or -1 if unknown
+     */
+    public long getEtaMillis() {
+        return etaMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d patches, elapsed %d ms, ETA %s", completed, total, elapsedMillis, etaMillis >= 0 ? etaMillis + " ms" : "unknown");
+    }
+
+}
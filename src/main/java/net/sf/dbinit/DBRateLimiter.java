@@ -0,0 +1,47 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Limits the number of rows processed per second. The limiter can be shared between several threads:
+ * each call to {@link #acquire(long)} reserves a slot in time, and waits until this slot is reached.
+ */
+public class DBRateLimiter {
+
+    private final long rowsPerSecond;
+    private long next = System.nanoTime();
+
+    /**
+     * @param rowsPerSecond Maximum number of rows per second (0 for no limit)
+     */
+    public DBRateLimiter(long rowsPerSecond) {
+        Validate.isTrue(rowsPerSecond >= 0, "The number of rows per second must not be negative");
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    /**
+     * Waits until some rows can be processed
+     *
+     * @param rows Number of rows to process
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public void acquire(long rows) throws InterruptedException {
+        if (rowsPerSecond > 0 && rows > 0) {
+            long slot;
+            synchronized (this) {
+                long now = System.nanoTime();
+                slot = Math.max(next, now);
+                next = slot + rows * 1000000000L / rowsPerSecond;
+            }
+            long wait = slot - System.nanoTime();
+            if (wait > 0) {
+                Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,444 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.sql.Date;
+import java.util.*;
+
+/**
+ * Reference data of a table: the rows it must contain, identified by their key.
+ * <p>
+ * The {@link #sync(Connection, int) synchronisation} reads the table with one streaming query and compares a hash of
+ * each row with the hash of the expected row, so that only the missing, changed and extra rows are inserted, updated
+ * and deleted. Values are compared in their string form, once {@link #normalize(String, int) normalised} according to
+ * the JDBC type of their column, so that <code>1.50</code> and <code>1.5</code> are the same decimal, for example.
+ */
+public class DBRefData {
+
+    /**
+     * Logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(DBRefData.class);
+
+    private final String table;
+    private final List<String> keys;
+    private final List<String> columns;
+    private final Map<List<String>, List<String>> rows = new LinkedHashMap<List<String>, List<String>>();
+    private final int[] keyIndexes;
+
+    /**
+     * Constructor
+     *
+     * @param table   Table to synchronise
+     * @param keys    Columns of the key
+     * @param columns All columns, including the key
+     */
+    public DBRefData(String table, List<String> keys, List<String> columns) {
+        Validate.notBlank(table, "The table must not be null or blank");
+        Validate.notEmpty(keys, "The key must contain at least one column");
+        Validate.notEmpty(columns, "The columns must not be empty");
+        this.table = table;
+        this.keys = new ArrayList<String>(keys);
+        this.columns = new ArrayList<String>(columns);
+        this.keyIndexes = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            keyIndexes[i] = indexOf(columns, keys.get(i));
+            Validate.isTrue(keyIndexes[i] >= 0, "The key column %s is not part of the columns of %s", keys.get(i), table);
+        }
+    }
+
+    private static int indexOf(List<String> columns, String column) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses reference data. The first line contains the names of the columns and each following
+     * line contains a row, as comma-separated values.
+     *
+     * @param table Table to synchronise
+     * @param keys  Columns of the key
+     * @param lines Header and rows
+     * @return Reference data
+     * @see #parseRow(String)
+     */
+    public static DBRefData parse(String table, List<String> keys, List<String> lines) {
+        Validate.notEmpty(lines, "The reference data for %s must contain at least a header", table);
+        DBRefData data = new DBRefData(table, keys, parseRow(lines.get(0)));
+        for (String line : lines.subList(1, lines.size())) {
+            data.addRow(parseRow(line));
+        }
+        return data;
+    }
+
+    /**
+     * Parses a row of comma-separated values. Values can be quoted with double quotes, a double quote being
+     * escaped by doubling it. An empty value which is not quoted is <code>null</code>.
+     *
+     * @param line Line to parse
+     * @return Values
+     */
+    public static List<String> parseRow(String line) {
+        List<String> values = new ArrayList<String>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        value.append('"');
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == ',') {
+                values.add(toValue(value, quoted));
+                value.setLength(0);
+                quoted = false;
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(toValue(value, quoted));
+        return values;
+    }
+
+    private static String toValue(StringBuilder value, boolean quoted) {
+        if (quoted) {
+            return value.toString();
+        } else {
+            String s = value.toString().trim();
+            return s.length() > 0 ? s : null;
+        }
+    }
+
+    /**
+     * Adds a row
+     *
+     * @param values Values of the row, in the order of the columns
+     */
+    public void addRow(List<String> values) {
+        Validate.isTrue(values.size() == columns.size(), "Expected %d values for %s but got %s", columns.size(), table, values);
+        List<String> key = getKey(values);
+        Validate.isTrue(!rows.containsKey(key), "Duplicate key %s for %s", key, table);
+        rows.put(key, new ArrayList<String>(values));
+    }
+
+    private List<String> getKey(List<String> values) {
+        List<String> key = new ArrayList<String>(keyIndexes.length);
+        for (int index : keyIndexes) {
+            key.add(values.get(index));
+        }
+        return key;
+    }
+
+    private List<String> normalizeKey(List<String> key, int[] types) {
+        List<String> normalized = new ArrayList<String>(key.size());
+        for (int i = 0; i < keyIndexes.length; i++) {
+            normalized.add(normalize(key.get(i), types[keyIndexes[i]]));
+        }
+        return normalized;
+    }
+
+    private static String hash(List<String> values, int[] types) {
+        DBDigest digest = new DBDigest();
+        for (int i = 0; i < types.length; i++) {
+            String value = normalize(values.get(i), types[i]);
+            // Distinguishes null from any string
+            digest.update(value == null ? "\u0001" : "=" + value);
+        }
+        return digest.toHex();
+    }
+
+    /**
+     * Normalises a value for its comparison: numbers without their trailing zeros, dates and times in their JDBC
+     * escape format, fixed-length strings without their padding and booleans as <code>true</code> or
+     * <code>false</code>. A value which cannot be converted is kept as it is.
+     *
+     * @param value Value, as declared or as returned by the JDBC driver
+     * @param type  JDBC type of its column
+     * @return Normalised value
+     * @see Types
+     */
+    static String normalize(String value, int type) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            switch (type) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    BigDecimal number = new BigDecimal(value.trim());
+                    // stripTrailingZeros keeps the zeros of 0.00 before Java 8
+                    return number.signum() == 0 ? "0" : number.stripTrailingZeros().toPlainString();
+                case Types.DATE:
+                    return Date.valueOf(value.trim()).toString();
+                case Types.TIME:
+                    return Time.valueOf(value.trim()).toString();
+                case Types.TIMESTAMP:
+                    String timestamp = value.trim();
+                    // Date only
+                    if (timestamp.length() == 10) {
+                        timestamp += " 00:00:00";
+                    }
+                    return Timestamp.valueOf(timestamp).toString();
+                case Types.CHAR:
+                case Types.NCHAR:
+                    return StringUtils.stripEnd(value, " ");
+                case Types.BIT:
+                case Types.BOOLEAN:
+                    String bool = value.trim();
+                    if ("1".equals(bool)) {
+                        return "true";
+                    } else if ("0".equals(bool)) {
+                        return "false";
+                    } else {
+                        return bool.toLowerCase(Locale.ENGLISH);
+                    }
+                default:
+                    return value;
+            }
+        } catch (IllegalArgumentException ex) {
+            // Includes NumberFormatException
+            return value;
+        }
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public List<String> getKeys() {
+        return Collections.unmodifiableList(keys);
+    }
+
+    public List<String> getColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * @return Rows, in declaration order
+     */
+    public Collection<List<String>> getRows() {
+        return Collections.unmodifiableCollection(rows.values());
+    }
+
+    /**
+     * Synchronises the table with the reference data
+     *
+     * @param connection Connection to use
+     * @param batchSize  Maximum number of statements per batch
+     * @return Changes which have been applied
+     * @throws SQLException If the table cannot be read or updated
+     */
+    public Changes sync(Connection connection, int batchSize) throws SQLException {
+        // Hashes and declared rows, indexed by normalised key
+        Map<List<String>, String> expected = new HashMap<List<String>, String>();
+        Map<List<String>, List<String>> declared = new HashMap<List<String>, List<String>>();
+        // Compares with the current rows
+        Set<List<String>> found = new HashSet<List<String>>();
+        List<List<String>> updates = new ArrayList<List<String>>();
+        List<List<String>> deletes = new ArrayList<List<String>>();
+        int[] types = new int[columns.size()];
+        Statement st = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            st.setFetchSize(1000);
+            ResultSet rs = st.executeQuery(String.format("SELECT %s FROM %s", StringUtils.join(columns, ", "), table));
+            try {
+                ResultSetMetaData metaData = rs.getMetaData();
+                for (int i = 0; i < types.length; i++) {
+                    types[i] = metaData.getColumnType(i + 1);
+                }
+                // Hashes of the expected rows, once the types are known
+                for (Map.Entry<List<String>, List<String>> entry : rows.entrySet()) {
+                    List<String> key = normalizeKey(entry.getKey(), types);
+                    expected.put(key, hash(entry.getValue(), types));
+                    declared.put(key, entry.getValue());
+                }
+                List<String> values = new ArrayList<String>(columns.size());
+                while (rs.next()) {
+                    values.clear();
+                    for (int i = 1; i <= columns.size(); i++) {
+                        values.add(rs.getString(i));
+                    }
+                    List<String> key = getKey(values);
+                    List<String> normalizedKey = normalizeKey(key, types);
+                    String hash = expected.get(normalizedKey);
+                    if (hash == null) {
+                        deletes.add(key);
+                    } else {
+                        found.add(normalizedKey);
+                        if (!hash.equals(hash(values, types))) {
+                            updates.add(declared.get(normalizedKey));
+                        }
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+        List<List<String>> inserts = new ArrayList<List<String>>();
+        for (List<String> row : rows.values()) {
+            if (!found.contains(normalizeKey(getKey(row), types))) {
+                inserts.add(row);
+            }
+        }
+        // Applies the changes
+        int[] keyTypes = new int[keyIndexes.length];
+        for (int i = 0; i < keyIndexes.length; i++) {
+            keyTypes[i] = types[keyIndexes[i]];
+        }
+        if (!deletes.isEmpty()) {
+            execute(connection, String.format("DELETE FROM %s WHERE %s", table, getKeyCondition()), deletes, keyTypes, batchSize);
+        }
+        if (!updates.isEmpty()) {
+            List<String> assignments = new ArrayList<String>();
+            List<Integer> order = new ArrayList<Integer>();
+            for (int i = 0; i < columns.size(); i++) {
+                if (!isKey(i)) {
+                    assignments.add(columns.get(i) + " = ?");
+                    order.add(i);
+                }
+            }
+            if (!order.isEmpty()) {
+                for (int index : keyIndexes) {
+                    order.add(index);
+                }
+                String sql = String.format("UPDATE %s SET %s WHERE %s", table, StringUtils.join(assignments, ", "), getKeyCondition());
+                execute(connection, sql, reorder(updates, order), reorder(types, order), batchSize);
+            }
+        }
+        if (!inserts.isEmpty()) {
+            String sql = String.format("INSERT INTO %s (%s) VALUES (%s)", table, StringUtils.join(columns, ", "), StringUtils.repeat("?", ", ", columns.size()));
+            execute(connection, sql, inserts, types, batchSize);
+        }
+        Changes changes = new Changes(inserts.size(), updates.size(), deletes.size());
+        log.info("Reference data of {}: {}", table, changes);
+        return changes;
+    }
+
+    private boolean isKey(int index) {
+        for (int keyIndex : keyIndexes) {
+            if (keyIndex == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getKeyCondition() {
+        List<String> conditions = new ArrayList<String>();
+        for (String key : keys) {
+            conditions.add(key + " = ?");
+        }
+        return StringUtils.join(conditions, " AND ");
+    }
+
+    private static List<List<String>> reorder(List<List<String>> rows, List<Integer> order) {
+        List<List<String>> result = new ArrayList<List<String>>(rows.size());
+        for (List<String> row : rows) {
+            List<String> values = new ArrayList<String>(order.size());
+            for (int index : order) {
+                values.add(row.get(index));
+            }
+            result.add(values);
+        }
+        return result;
+    }
+
+    private static int[] reorder(int[] types, List<Integer> order) {
+        int[] result = new int[order.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = types[order.get(i)];
+        }
+        return result;
+    }
+
+    private static void execute(Connection connection, String sql, List<List<String>> rows, int[] types, int batchSize) throws SQLException {
+        log.debug("Executing {} times\n{}", rows.size(), sql);
+        PreparedStatement ps = connection.prepareStatement(sql);
+        try {
+            int batch = 0;
+            for (List<String> row : rows) {
+                for (int i = 0; i < types.length; i++) {
+                    String value = row.get(i);
+                    if (value == null) {
+                        ps.setNull(i + 1, types[i]);
+                    } else {
+                        ps.setObject(i + 1, value, types[i]);
+                    }
+                }
+                ps.addBatch();
+                if (++batch >= batchSize) {
+                    ps.executeBatch();
+                    batch = 0;
+                }
+            }
+            if (batch > 0) {
+                ps.executeBatch();
+            }
+        } finally {
+            ps.close();
+        }
+    }
+
+    /**
+     * Changes applied by a synchronisation
+     */
+    public static class Changes {
+
+        private final int inserted;
+        private final int updated;
+        private final int deleted;
+
+        public Changes(int inserted, int updated, int deleted) {
+            this.inserted = inserted;
+            this.updated = updated;
+            this.deleted = deleted;
+        }
+
+        public int getInserted() {
+            return inserted;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getDeleted() {
+            return deleted;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d inserted, %d updated, %d deleted", inserted, updated, deleted);
+        }
+    }
+
+}
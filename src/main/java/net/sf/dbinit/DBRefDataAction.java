@@ -0,0 +1,152 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.Validate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Action which synchronises a reference table with rows declared inline or read from a CSV resource
+ * whose first line contains the names of the columns.
+ * <p>
+ * When a {@link DBInit#setStateTable(String) state table} is configured, the synchronisation is skipped as long as
+ * the rows and the version of the database do not change.
+ *
+ * @see DBRefData
+ */
+public class DBRefDataAction implements DBChecksumAction {
+
+    private final String table;
+    private final List<String> keys;
+    private List<String> columns;
+    private List<List<String>> rows;
+    private String resource;
+    private int batchSize = 1000;
+
+    /**
+     * @param table Table to synchronise
+     * @param keys  Columns of the key
+     */
+    public DBRefDataAction(String table, List<String> keys) {
+        Validate.notBlank(table, "The table must not be null or blank");
+        Validate.notEmpty(keys, "The key must contain at least one column");
+        this.table = table;
+        this.keys = new ArrayList<String>(keys);
+    }
+
+    @Override
+    public void run(DBExecutor executor, Connection connection) throws SQLException {
+        apply(executor, connection);
+    }
+
+    @Override
+    public boolean apply(DBExecutor executor, Connection connection) throws SQLException {
+        getData().sync(connection, batchSize);
+        return true;
+    }
+
+    /**
+     * @return Reference data, from the inline rows or from the resource
+     */
+    public DBRefData getData() {
+        if (resource != null) {
+            return DBRefData.parse(table, keys, readLines());
+        } else {
+            Validate.notNull(columns, "The columns of %s must be set", table);
+            DBRefData data = new DBRefData(table, keys, columns);
+            if (rows != null) {
+                for (List<String> row : rows) {
+                    data.addRow(row);
+                }
+            }
+            return data;
+        }
+    }
+
+    private List<String> readLines() {
+        try {
+            InputStream in = DBInit.openResource(resource);
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+                List<String> lines = new ArrayList<String>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().length() > 0) {
+                        lines.add(line);
+                    }
+                }
+                return lines;
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            throw new DBInitCannotReadResourceException(resource, ex);
+        }
+    }
+
+    @Override
+    public String getChecksumKey() {
+        return "refdata:" + table;
+    }
+
+    @Override
+    public String getChecksum() {
+        DBRefData data = getData();
+        DBDigest digest = new DBDigest();
+        digest.update(String.valueOf(data.getKeys()));
+        digest.update(String.valueOf(data.getColumns()));
+        for (List<String> row : data.getRows()) {
+            digest.update(String.valueOf(row));
+        }
+        return digest.toHex();
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @param columns Columns of the inline rows, including the key
+     */
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * @param rows Inline rows, the values being in the order of the {@link #setColumns(List) columns}
+     */
+    public void setRows(List<List<String>> rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * @param resource Resource path to a CSV file, whose first line contains the names of the columns
+     */
+    public void setResource(String resource) {
+        this.resource = resource;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize Maximum number of statements per batch (1000 by default)
+     */
+    public void setBatchSize(int batchSize) {
+        Validate.isTrue(batchSize > 0, "The batch size must be greater than 0");
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Reference data %s", table);
+    }
+
+}
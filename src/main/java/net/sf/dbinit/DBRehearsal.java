@@ -0,0 +1,429 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rehearses the patches of a {@link DBInit} configuration on a shadow database, without changing the real one.
+ * <p>
+ * The tables of the real database (columns, primary keys and indexes, but no foreign keys) are created in the shadow
+ * database, a sample of their rows is copied (all the rows of the version and state tables, which drive the patches),
+ * and the patches are applied to the shadow database with the same
+ * configuration. The {@link DBRehearsalReport report} gives the duration of each patch, the heaviest statements and
+ * the failure, if any.
+ * <p>
+ * The shadow database is an in-memory H2 database by default. It is dropped at the end of the rehearsal.
+ */
+public class DBRehearsal {
+
+    /**
+     * Logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(DBRehearsal.class);
+
+    private final DBInit target;
+    private String shadowDriver = "org.h2.Driver";
+    private String shadowURL = "jdbc:h2:mem:dbinit-rehearsal";
+    private String shadowUser = "SA";
+    private String shadowPassword = "";
+    private String schema;
+    private int sampleRows = 1000;
+    private int maxStatements = 10;
+
+    /**
+     * @param target Configuration of the real database
+     */
+    public DBRehearsal(DBInit target) {
+        Validate.notNull(target, "The DBInit instance must not be null");
+        this.target = target;
+    }
+
+    /**
+     * Runs the rehearsal
+     *
+     * @return Report
+     */
+    public DBRehearsalReport rehearse() {
+        DBRehearsalReport report = new DBRehearsalReport(maxStatements);
+        for (String driver : new String[]{target.getJdbcDriver(), shadowDriver}) {
+            if (StringUtils.isNotBlank(driver)) {
+                try {
+                    Class.forName(driver);
+                } catch (ClassNotFoundException ex) {
+                    throw new DBInitDriverNotFoundException(driver, ex);
+                }
+            }
+        }
+        try {
+            // Keeps the shadow database alive until the end of the rehearsal
+            Connection shadow = DriverManager.getConnection(shadowURL, shadowUser, shadowPassword);
+            try {
+                copy(shadow, report);
+                run(report);
+            } finally {
+                dropShadow(shadow);
+                shadow.close();
+            }
+        } catch (SQLException ex) {
+            throw new DBInitSQLException("Rehearsal", ex);
+        }
+        log.info("Rehearsal: {}", report);
+        return report;
+    }
+
+    /**
+     * Creates the tables in the shadow database and copies a sample of their rows. The version and state tables are
+     * always copied in full, since the patches to apply depend on all their rows.
+     */
+    protected void copy(Connection shadow, DBRehearsalReport report) throws SQLException {
+        Connection connection = target.getConnection();
+        try {
+            List<String> tables = getTables(connection);
+            DBInitCopyAction copy = new DBInitCopyAction(target.getConnectionProvider());
+            copy.setMaxRows(sampleRows);
+            DBInitCopyAction fullCopy = new DBInitCopyAction(target.getConnectionProvider());
+            Statement st = shadow.createStatement();
+            try {
+                for (String table : tables) {
+                    for (String sql : getDefinition(connection, table)) {
+                        log.debug("Shadow: {}", sql);
+                        st.execute(sql);
+                    }
+                    long total = count(connection, table);
+                    long sampled;
+                    if (isMetadataTable(table)) {
+                        sampled = fullCopy.copy(shadow, table, "SELECT * FROM " + table);
+                    } else {
+                        sampled = sampleRows > 0 ? copy.copy(shadow, table, "SELECT * FROM " + table) : 0;
+                    }
+                    report.addRows(sampled, total);
+                }
+            } finally {
+                st.close();
+            }
+            DBInit.commit(shadow);
+            Integer version = null;
+            if (tables.contains(target.getVersionTable().toUpperCase()) || tables.contains(target.getVersionTable())) {
+                version = target.getCurrentVersion(connection);
+            }
+            report.setInitialVersion(version);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the table is the version table or the state table of the real database
+     */
+    private boolean isMetadataTable(String table) {
+        return table.equalsIgnoreCase(target.getVersionTable()) || table.equalsIgnoreCase(target.getStateTable());
+    }
+
+    /**
+     * Applies the patches to the shadow database and records their durations
+     */
+    protected void run(final DBRehearsalReport report) {
+        DBInit db = createShadowDBInit();
+        db.addListener(new DBInitListenerAdapter() {
+            @Override
+            public boolean isEnabled(DBPhase phase) {
+                return phase == DBPhase.PATCH || phase == DBPhase.STATEMENT;
+            }
+
+            @Override
+            public void phaseFinished(DBPhaseEvent event) {
+                if (event.getPhase() == DBPhase.PATCH && event.getError() == null) {
+                    report.addPatch(event.getPatch(), event.getDurationMillis());
+                } else if (event.getPhase() == DBPhase.STATEMENT) {
+                    report.addStatement(event);
+                }
+            }
+        });
+        try {
+            db.run();
+            DBBackgroundPatches background = db.getBackground();
+            if (background != null) {
+                background.await(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        } catch (DBInitPatchException ex) {
+            report.failed(ex.getPatch(), getMessage(ex.getCause()));
+        } catch (RuntimeException ex) {
+            report.failed(null, getMessage(ex));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            report.failed(null, "Interrupted");
+        }
+    }
+
+    /**
+     * Configuration applying the patches of the real database to the shadow one
+     */
+    protected DBInit createShadowDBInit() {
+        DBInit db = new DBInit();
+        db.setJdbcDriver(shadowDriver);
+        db.setJdbcURL(shadowURL);
+        db.setJdbcUser(shadowUser);
+        db.setJdbcPassword(shadowPassword);
+        db.setProperties(target.getProperties());
+        db.setResourceInitialization(target.getResourceInitialization());
+        db.setResourceUpdate(target.getResourceUpdate());
+        db.setResourceSession(target.getResourceSession());
+        db.setVersion(target.getVersion());
+        db.setVersionTable(target.getVersionTable());
+        db.setVersionColumnName(target.getVersionColumnName());
+        db.setVersionColumnTimestamp(target.getVersionColumnTimestamp());
+        db.setStateTable(target.getStateTable());
+        db.setSavepoints(target.isSavepoints());
+        if (target.getPatchActions() != null) {
+            db.setPatchActions(target.getPatchActions());
+        }
+        return db;
+    }
+
+    /**
+     * Gets the tables of the real database
+     */
+    protected List<String> getTables(Connection connection) throws SQLException {
+        List<String> tables = new ArrayList<String>();
+        ResultSet rs = connection.getMetaData().getTables(null, schema, "%", new String[]{"TABLE"});
+        try {
+            while (rs.next()) {
+                tables.add(rs.getString("TABLE_NAME"));
+            }
+        } finally {
+            rs.close();
+        }
+        return tables;
+    }
+
+    /**
+     * Gets the statements creating a table, its primary key and its indexes in the shadow database
+     */
+    protected List<String> getDefinition(Connection connection, String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        List<String> columns = new ArrayList<String>();
+        ResultSet rs = metaData.getColumns(null, schema, table, "%");
+        try {
+            while (rs.next()) {
+                String column = rs.getString("COLUMN_NAME") + " " + getType(rs.getInt("DATA_TYPE"), rs.getInt("COLUMN_SIZE"), rs.getInt("DECIMAL_DIGITS"));
+                if (rs.getInt("NULLABLE") == DatabaseMetaData.columnNoNulls) {
+                    column += " NOT NULL";
+                }
+                columns.add(column);
+            }
+        } finally {
+            rs.close();
+        }
+        Map<Short, String> primaryKey = new TreeMap<Short, String>();
+        rs = metaData.getPrimaryKeys(null, schema, table);
+        try {
+            while (rs.next()) {
+                primaryKey.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+            }
+        } finally {
+            rs.close();
+        }
+        if (!primaryKey.isEmpty()) {
+            columns.add(String.format("PRIMARY KEY (%s)", StringUtils.join(primaryKey.values(), ", ")));
+        }
+        List<String> statements = new ArrayList<String>();
+        statements.add(String.format("CREATE TABLE %s (%s)", table, StringUtils.join(columns, ", ")));
+        // Indexes
+        Map<String, List<String>> indexes = new LinkedHashMap<String, List<String>>();
+        Map<String, Boolean> unique = new LinkedHashMap<String, Boolean>();
+        rs = metaData.getIndexInfo(null, schema, table, false, true);
+        try {
+            while (rs.next()) {
+                String index = rs.getString("INDEX_NAME");
+                String column = rs.getString("COLUMN_NAME");
+                if (index != null && column != null && rs.getShort("TYPE") != DatabaseMetaData.tableIndexStatistic) {
+                    List<String> indexColumns = indexes.get(index);
+                    if (indexColumns == null) {
+                        indexColumns = new ArrayList<String>();
+                        indexes.put(index, indexColumns);
+                        unique.put(index, !rs.getBoolean("NON_UNIQUE"));
+                    }
+                    indexColumns.add(column);
+                }
+            }
+        } finally {
+            rs.close();
+        }
+        for (Map.Entry<String, List<String>> index : indexes.entrySet()) {
+            // The primary key has already been created
+            if (!index.getValue().equals(new ArrayList<String>(primaryKey.values()))) {
+                statements.add(String.format("CREATE %sINDEX IF NOT EXISTS %s ON %s (%s)",
+                        unique.get(index.getKey()) ? "UNIQUE " : "",
+                        index.getKey(), table, StringUtils.join(index.getValue(), ", ")));
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Gets the type of a column in the shadow database
+     *
+     * @param type     JDBC type
+     * @param size     Size of the column
+     * @param decimals Number of decimal digits
+     * @return Type
+     */
+    protected String getType(int type, int size, int decimals) {
+        switch (type) {
+            case Types.CHAR:
+            case Types.NCHAR:
+            case Types.VARCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+                return size > 0 && size < Integer.MAX_VALUE ? String.format("VARCHAR(%d)", size) : "VARCHAR";
+            case Types.CLOB:
+            case Types.NCLOB:
+                return "CLOB";
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return "BLOB";
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return size > 0 ? String.format("DECIMAL(%d, %d)", size, Math.max(0, decimals)) : "DECIMAL";
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return "INTEGER";
+            case Types.BIGINT:
+                return "BIGINT";
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return "DOUBLE";
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return "BOOLEAN";
+            case Types.DATE:
+                return "DATE";
+            case Types.TIME:
+                return "TIME";
+            case Types.TIMESTAMP:
+                return "TIMESTAMP";
+            default:
+                return "OTHER";
+        }
+    }
+
+    private static long count(Connection connection, String table) throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table);
+            try {
+                rs.next();
+                return rs.getLong(1);
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+    }
+
+    /**
+     * Drops the shadow database. Nothing is done by default since closing the last connection drops an in-memory
+     * H2 database.
+     *
+     * @param shadow Connection to the shadow database
+     * @throws SQLException If the database cannot be dropped
+     */
+    protected void dropShadow(Connection shadow) throws SQLException {
+    }
+
+    private static String getMessage(Throwable error) {
+        StringBuilder message = new StringBuilder(String.valueOf(error.getMessage()));
+        for (Throwable cause = error.getCause(); cause != null; cause = cause.getCause()) {
+            message.append(": ").append(cause.getMessage());
+        }
+        return message.toString();
+    }
+
+    public String getShadowDriver() {
+        return shadowDriver;
+    }
+
+    public void setShadowDriver(String shadowDriver) {
+        this.shadowDriver = shadowDriver;
+    }
+
+    public String getShadowURL() {
+        return shadowURL;
+    }
+
+    /**
+     * @param shadowURL JDBC URL of the shadow database (<code>jdbc:h2:mem:dbinit-rehearsal</code> by default)
+     */
+    public void setShadowURL(String shadowURL) {
+        this.shadowURL = shadowURL;
+    }
+
+    public String getShadowUser() {
+        return shadowUser;
+    }
+
+    public void setShadowUser(String shadowUser) {
+        this.shadowUser = shadowUser;
+    }
+
+    public String getShadowPassword() {
+        return shadowPassword;
+    }
+
+    public void setShadowPassword(String shadowPassword) {
+        this.shadowPassword = shadowPassword;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    /**
+     * @param schema Schema of the real database to copy (<code>null</code>, the default, for all schemas)
+     */
+    public void setSchema(String schema) {
+        this.schema = schema;
+    }
+
+    public int getSampleRows() {
+        return sampleRows;
+    }
+
+    /**
+     * @param sampleRows Maximum number of rows copied for each table (1000 by default, 0 for the structure only). The
+     *                   version and state tables are always copied in full.
+     */
+    public void setSampleRows(int sampleRows) {
+        Validate.isTrue(sampleRows >= 0, "The number of sample rows must not be negative");
+        this.sampleRows = sampleRows;
+    }
+
+    public int getMaxStatements() {
+        return maxStatements;
+    }
+
+    /**
+     * @param maxStatements Number of heaviest statements in the report (10 by default)
+     */
+    public void setMaxStatements(int maxStatements) {
+        Validate.isTrue(maxStatements >= 0, "The number of statements must not be negative");
+        this.maxStatements = maxStatements;
+    }
+
+}
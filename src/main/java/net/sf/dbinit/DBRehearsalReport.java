@@ -0,0 +1,146 @@
+package net.sf.dbinit;
+
+import java.util.*;
+
+/**
+ * Result of a {@link DBRehearsal rehearsal}.
+ */
+public class DBRehearsalReport {
+
+    private final Map<Integer, Long> patches = new LinkedHashMap<Integer, Long>();
+    private final List<DBPhaseEvent> statements = new ArrayList<DBPhaseEvent>();
+    private final int maxStatements;
+    private long sampledRows;
+    private long totalRows;
+    private Integer initialVersion;
+    private Integer failedPatch;
+    private String error;
+
+    /**
+     * @param maxStatements Number of heaviest statements to keep
+     */
+    public DBRehearsalReport(int maxStatements) {
+        this.maxStatements = maxStatements;
+    }
+
+    /**
+     * @return Duration of each patch applied on the shadow database, in milliseconds
+     */
+    public Map<Integer, Long> getPatches() {
+        return Collections.unmodifiableMap(patches);
+    }
+
+    void addPatch(int patch, long durationMillis) {
+        patches.put(patch, durationMillis);
+    }
+
+    /**
+     * @return Heaviest statements of the patches, the longest first
+     */
+    public List<DBPhaseEvent> getHeaviestStatements() {
+        return Collections.unmodifiableList(statements);
+    }
+
+    void addStatement(DBPhaseEvent event) {
+        int index = statements.size();
+        while (index > 0 && statements.get(index - 1).getDurationNanos() < event.getDurationNanos()) {
+            index--;
+        }
+        if (index < maxStatements) {
+            statements.add(index, event);
+            if (statements.size() > maxStatements) {
+                statements.remove(maxStatements);
+            }
+        }
+    }
+
+    /**
+     * @return Total duration of the patches on the shadow database, in milliseconds
+     */
+    public long getDurationMillis() {
+        long duration = 0;
+        for (long patch : patches.values()) {
+            duration += patch;
+        }
+        return duration;
+    }
+
+    /**
+     * @return Rough estimate of the duration on the real database, assuming that the duration of the patches grows
+     * linearly with the number of rows
+     */
+    public long getEstimatedMillis() {
+        return Math.round(getDurationMillis() * getScale());
+    }
+
+    /**
+     * @return Ratio between the number of rows of the real database and the number of rows copied in the shadow one
+     */
+    public double getScale() {
+        return sampledRows > 0 && totalRows > sampledRows ? (double) totalRows / sampledRows : 1.0;
+    }
+
+    public long getSampledRows() {
+        return sampledRows;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    void addRows(long sampled, long total) {
+        sampledRows += sampled;
+        totalRows += total;
+    }
+
+    /**
+     * @return Version of the real database (<code>null</code> if it has not been created)
+     */
+    public Integer getInitialVersion() {
+        return initialVersion;
+    }
+
+    void setInitialVersion(Integer initialVersion) {
+        this.initialVersion = initialVersion;
+    }
+
+    /**
+     * @return <code>true</code> if all the patches have been applied
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return Patch which has failed (<code>null</code> if none has failed, or if the failure is not related to a patch)
+     */
+    public Integer getFailedPatch() {
+        return failedPatch;
+    }
+
+    /**
+     * @return Message of the failure (<code>null</code> if the rehearsal was successful)
+     */
+    public String getError() {
+        return error;
+    }
+
+    void failed(Integer patch, String error) {
+        this.failedPatch = patch;
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        s.append(String.format("%d patches in %d ms (estimated to %d ms on %d rows)", patches.size(), getDurationMillis(), getEstimatedMillis(), totalRows));
+        if (error != null) {
+            s.append(String.format(", failed%s: %s", failedPatch != null ? " at patch " + failedPatch : "", error));
+        }
+        for (DBPhaseEvent statement : statements) {
+            s.append(String.format("%n  patch %d, %d ms: %s", statement.getPatch(), statement.getDurationMillis(), statement.getName()));
+        }
+        return s.toString();
+    }
+
+}
@@ -0,0 +1,30 @@
+package net.sf.dbinit;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decoder for compressed scripts, selected according to the extension of the resource.
+ * <p>
+ * Additional codecs can be registered using the {@link java.util.ServiceLoader} mechanism, in a
+ * <code>META-INF/services/net.sf.dbinit.DBResourceCodec</code> file.
+ *
+ * @see DBInit#openResource(String)
+ */
+public interface DBResourceCodec {
+
+    /**
+     * Extension of the resources this codec applies to, including the leading dot (like <code>.gz</code>)
+     */
+    String getExtension();
+
+    /**
+     * Wraps a stream in order to decode it on the fly
+     *
+     * @param in Raw stream
+     * @return Decoded stream
+     * @throws IOException If the stream cannot be decoded
+     */
+    InputStream decode(InputStream in) throws IOException;
+
+}
@@ -0,0 +1,171 @@
+package net.sf.dbinit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of a {@link DBInit#run()} execution.
+ */
+public class DBRunSummary {
+
+    private final int targetVersion;
+    private final long start = System.currentTimeMillis();
+    private final List<Integer> appliedPatches = new ArrayList<Integer>();
+    private final List<Integer> regressions = new ArrayList<Integer>();
+    private List<String> schemaDrift = Collections.emptyList();
+    private List<Integer> backgroundPatches = Collections.emptyList();
+    private Integer initialVersion;
+    private boolean created;
+    private boolean restored;
+    private long durationMillis;
+    private boolean success;
+    private String error;
+
+    public DBRunSummary(int targetVersion) {
+        this.targetVersion = targetVersion;
+    }
+
+    /**
+     * @return Version the database must be upgraded to
+     */
+    public int getTargetVersion() {
+        return targetVersion;
+    }
+
+    /**
+     * @return Start time, in milliseconds since the epoch
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return Version of the database before the run, or <code>null</code> if the database had to be created or its
+     * version could not be read
+     */
+    public Integer getInitialVersion() {
+        return initialVersion;
+    }
+
+    public void setInitialVersion(Integer initialVersion) {
+        this.initialVersion = initialVersion;
+    }
+
+    /**
+     * @return <code>true</code> if the tables have been created
+     */
+    public boolean isCreated() {
+        return created;
+    }
+
+    public void setCreated(boolean created) {
+        this.created = created;
+    }
+
+    /**
+     * @return <code>true</code> if the database has been restored from its snapshot after a failed patch
+     * @see DBInit#setSnapshot(DBSnapshot)
+     */
+    public boolean isRestored() {
+        return restored;
+    }
+
+    public void setRestored(boolean restored) {
+        this.restored = restored;
+    }
+
+    /**
+     * @return Patches applied successfully during the run and still in the database at its end, in order of
+     * application
+     */
+    public synchronized List<Integer> getAppliedPatches() {
+        return Collections.unmodifiableList(new ArrayList<Integer>(appliedPatches));
+    }
+
+    public synchronized void addAppliedPatch(int patch) {
+        appliedPatches.add(patch);
+    }
+
+    /**
+     * Removes patches which have been rolled back after having been applied
+     *
+     * @param patches Patches to remove
+     */
+    public synchronized void removeAppliedPatches(Collection<Integer> patches) {
+        appliedPatches.removeAll(patches);
+    }
+
+    /**
+     * @return Patches whose duration has regressed compared with the previous runs
+     * @see DBInit#setHistoryFile(String)
+     */
+    public synchronized List<Integer> getRegressions() {
+        return Collections.unmodifiableList(new ArrayList<Integer>(regressions));
+    }
+
+    public synchronized void addRegression(int patch) {
+        regressions.add(patch);
+    }
+
+    /**
+     * @return Differences between the schema and its fingerprint saved by the last run (empty if none)
+     * @see DBInit#setFingerprint(boolean)
+     */
+    public List<String> getSchemaDrift() {
+        return schemaDrift;
+    }
+
+    public void setSchemaDrift(List<String> schemaDrift) {
+        this.schemaDrift = Collections.unmodifiableList(new ArrayList<String>(schemaDrift));
+    }
+
+    /**
+     * @return Patches whose background sections are still to be applied after the run: the database is at the
+     * reached version, but their background statements are not completed yet
+     * @see DBInit#getBackground()
+     */
+    public List<Integer> getBackgroundPatches() {
+        return backgroundPatches;
+    }
+
+    public void setBackgroundPatches(Collection<Integer> backgroundPatches) {
+        this.backgroundPatches = Collections.unmodifiableList(new ArrayList<Integer>(backgroundPatches));
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * @return Message of the error which made the run fail (<code>null</code> if the run was successful)
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Marks the end of the run
+     *
+     * @param error Error which made the run fail, or <code>null</code> if the run was successful
+     */
+    public void end(Throwable error) {
+        this.durationMillis = System.currentTimeMillis() - start;
+        this.success = error == null;
+        if (error != null) {
+            StringBuilder message = new StringBuilder(String.valueOf(error.getMessage()));
+            for (Throwable cause = error.getCause(); cause != null; cause = cause.getCause()) {
+                message.append(": ").append(cause.getMessage());
+            }
+            this.error = message.toString();
+        } else {
+            this.error = null;
+        }
+    }
+
+}
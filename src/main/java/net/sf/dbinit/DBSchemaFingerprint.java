@@ -0,0 +1,294 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact fingerprint of the structure of a database: a hash over the tables, their columns, primary keys, indexes
+ * and foreign keys, read from the JDBC metadata.
+ * <p>
+ * The description of each table is kept as a list of lines, so that two fingerprints can be {@link #diff(Map)
+ * compared} table by table and line by line.
+ * <p>
+ * The columns of all tables are read with a single metadata query. The primary keys, indexes and foreign keys can only
+ * be read table by table through JDBC, which is why the tables can be described in parallel.
+ */
+public class DBSchemaFingerprint {
+
+    /**
+     * Descriptions longer than this size are only kept as their hash
+     */
+    static final int MAX_DESCRIPTION = 4000;
+
+    /**
+     * Prefix of the descriptions which are stored as hashes
+     */
+    static final String HASH_PREFIX = "#";
+
+    private final SortedMap<String, String> tables;
+
+    /**
+     * @param tables Description of each table, as produced by {@link #describe(DatabaseMetaData, String, String)}
+     */
+    public DBSchemaFingerprint(Map<String, String> tables) {
+        this.tables = new TreeMap<String, String>(tables);
+    }
+
+    /**
+     * Computes the fingerprint of a database
+     *
+     * @param connectionProvider Provider for the connections
+     * @param connection         Connection used to list the tables and, if the parallelism is 1, to describe them
+     * @param parallelism        Number of groups of tables described concurrently, each one on its own connection
+     * @return Fingerprint
+     * @throws SQLException If the metadata cannot be read
+     */
+    public static DBSchemaFingerprint compute(DBConnectionProvider connectionProvider, Connection connection, int parallelism) throws SQLException {
+        Validate.isTrue(parallelism > 0, "The parallelism must be greater than 0");
+        final List<String[]> tables = new ArrayList<String[]>();
+        ResultSet rs = connection.getMetaData().getTables(null, null, "%", new String[]{"TABLE"});
+        try {
+            while (rs.next()) {
+                tables.add(new String[]{rs.getString("TABLE_SCHEM"), rs.getString("TABLE_NAME")});
+            }
+        } finally {
+            rs.close();
+        }
+        final Map<String, List<String>> columns = readColumns(connection.getMetaData());
+        final Map<String, String> descriptions = new ConcurrentHashMap<String, String>();
+        int groups = Math.min(parallelism, tables.size());
+        if (groups <= 1) {
+            describe(connection.getMetaData(), tables, 0, 1, columns, descriptions);
+        } else {
+            DBTaskScheduler scheduler = new DBTaskScheduler(connectionProvider, groups, "fingerprint");
+            for (int group = 0; group < groups; group++) {
+                final int offset = group;
+                final int step = groups;
+                scheduler.add(new DBTask() {
+                    @Override
+                    public String getName() {
+                        return "tables-" + offset;
+                    }
+
+                    @Override
+                    public Collection<String> getDependencies() {
+                        return Collections.emptyList();
+                    }
+
+                    @Override
+                    public void run(Connection groupConnection) throws Exception {
+                        describe(groupConnection.getMetaData(), tables, offset, step, columns, descriptions);
+                    }
+                });
+            }
+            scheduler.execute();
+        }
+        return new DBSchemaFingerprint(descriptions);
+    }
+
+    private static void describe(DatabaseMetaData metaData, List<String[]> tables, int offset, int step, Map<String, List<String>> columns, Map<String, String> descriptions) throws SQLException {
+        for (int i = offset; i < tables.size(); i += step) {
+            String[] table = tables.get(i);
+            String key = getKey(table[0], table[1]);
+            List<String> tableColumns = columns.get(key);
+            descriptions.put(key, describe(metaData, table[0], table[1], tableColumns != null ? tableColumns : Collections.<String>emptyList()));
+        }
+    }
+
+    private static String getKey(String schema, String table) {
+        return schema != null ? schema + "." + table : table;
+    }
+
+    /**
+     * Reads the columns of all tables with one query
+     *
+     * @return Descriptions of the columns, in order, indexed by table
+     */
+    private static Map<String, List<String>> readColumns(DatabaseMetaData metaData) throws SQLException {
+        Map<String, List<String>> columns = new HashMap<String, List<String>>();
+        ResultSet rs = metaData.getColumns(null, null, "%", "%");
+        try {
+            while (rs.next()) {
+                String key = getKey(rs.getString("TABLE_SCHEM"), rs.getString("TABLE_NAME"));
+                List<String> tableColumns = columns.get(key);
+                if (tableColumns == null) {
+                    tableColumns = new ArrayList<String>();
+                    columns.put(key, tableColumns);
+                }
+                tableColumns.add(describeColumn(rs));
+            }
+        } finally {
+            rs.close();
+        }
+        return columns;
+    }
+
+    private static String describeColumn(ResultSet rs) throws SQLException {
+        return String.format("column %s %s(%d,%d)%s",
+                rs.getString("COLUMN_NAME"),
+                rs.getString("TYPE_NAME"),
+                rs.getInt("COLUMN_SIZE"),
+                rs.getInt("DECIMAL_DIGITS"),
+                rs.getInt("NULLABLE") == DatabaseMetaData.columnNoNulls ? " not null" : "");
+    }
+
+    /**
+     * Describes the structure of a table
+     *
+     * @param metaData Metadata of the database
+     * @param schema   Schema of the table (can be <code>null</code>)
+     * @param table    Name of the table
+     * @return Description, one line per column, key or index
+     * @throws SQLException If the metadata cannot be read
+     */
+    public static String describe(DatabaseMetaData metaData, String schema, String table) throws SQLException {
+        List<String> columns = new ArrayList<String>();
+        ResultSet rs = metaData.getColumns(null, schema, table, "%");
+        try {
+            while (rs.next()) {
+                columns.add(describeColumn(rs));
+            }
+        } finally {
+            rs.close();
+        }
+        return describe(metaData, schema, table, columns);
+    }
+
+    private static String describe(DatabaseMetaData metaData, String schema, String table, List<String> columns) throws SQLException {
+        // Columns, in order
+        List<String> lines = new ArrayList<String>(columns);
+        // Primary key
+        SortedMap<Short, String> primaryKey = new TreeMap<Short, String>();
+        ResultSet rs = metaData.getPrimaryKeys(null, schema, table);
+        try {
+            while (rs.next()) {
+                primaryKey.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+            }
+        } finally {
+            rs.close();
+        }
+        if (!primaryKey.isEmpty()) {
+            lines.add("primary key " + StringUtils.join(primaryKey.values(), ","));
+        }
+        // Indexes and foreign keys, described by their columns only since their names may be generated
+        Map<String, String> indexes = new LinkedHashMap<String, String>();
+        rs = metaData.getIndexInfo(null, schema, table, false, true);
+        try {
+            while (rs.next()) {
+                String index = rs.getString("INDEX_NAME");
+                if (index != null && rs.getShort("TYPE") != DatabaseMetaData.tableIndexStatistic) {
+                    append(indexes, (rs.getBoolean("NON_UNIQUE") ? "index " : "index unique ") + index, rs.getString("COLUMN_NAME"));
+                }
+            }
+        } finally {
+            rs.close();
+        }
+        Map<String, String> foreignKeys = new LinkedHashMap<String, String>();
+        rs = metaData.getImportedKeys(null, schema, table);
+        try {
+            while (rs.next()) {
+                append(foreignKeys, rs.getString("PKTABLE_NAME") + " " + rs.getString("FK_NAME"), rs.getString("FKCOLUMN_NAME") + ">" + rs.getString("PKCOLUMN_NAME"));
+            }
+        } finally {
+            rs.close();
+        }
+        List<String> constraints = new ArrayList<String>();
+        String primaryKeyIndex = "index unique " + StringUtils.join(primaryKey.values(), ",");
+        for (Map.Entry<String, String> index : indexes.entrySet()) {
+            String line = StringUtils.substringBeforeLast(index.getKey(), " ") + " " + index.getValue();
+            // The index of the primary key is already described by the primary key
+            if (!line.equals(primaryKeyIndex)) {
+                constraints.add(line);
+            }
+        }
+        for (Map.Entry<String, String> foreignKey : foreignKeys.entrySet()) {
+            constraints.add(String.format("foreign key %s -> %s", foreignKey.getValue(), StringUtils.substringBeforeLast(foreignKey.getKey(), " ")));
+        }
+        Collections.sort(constraints);
+        lines.addAll(constraints);
+        return StringUtils.join(lines, "\n");
+    }
+
+    private static void append(Map<String, String> constraints, String name, String column) {
+        String columns = constraints.get(name);
+        constraints.put(name, columns != null ? columns + "," + column : column);
+    }
+
+    /**
+     * @return Hash of the whole structure
+     */
+    public String getHash() {
+        DBDigest digest = new DBDigest();
+        for (Map.Entry<String, String> table : tables.entrySet()) {
+            digest.update(table.getKey()).update(getStoredDescription(table.getKey()));
+        }
+        return digest.toHex();
+    }
+
+    /**
+     * @return Description of each table, indexed by table
+     */
+    public SortedMap<String, String> getTables() {
+        return Collections.unmodifiableSortedMap(tables);
+    }
+
+    /**
+     * Gets the description of a table as it can be stored: the description itself, or its hash when it is too long
+     *
+     * @param table Table
+     * @return Stored description
+     */
+    public String getStoredDescription(String table) {
+        String description = tables.get(table);
+        if (description == null || description.length() <= MAX_DESCRIPTION) {
+            return description;
+        } else {
+            return HASH_PREFIX + new DBDigest().update(description).toHex();
+        }
+    }
+
+    /**
+     * Compares this fingerprint with a previous one
+     *
+     * @param previous Stored descriptions of the previous fingerprint, indexed by table
+     * @return Differences, one per line, with a <code>+</code> for what has been added and a <code>-</code> for what
+     * has been removed
+     */
+    public List<String> diff(Map<String, String> previous) {
+        List<String> diff = new ArrayList<String>();
+        SortedSet<String> names = new TreeSet<String>(previous.keySet());
+        names.addAll(tables.keySet());
+        for (String table : names) {
+            String before = previous.get(table);
+            String after = getStoredDescription(table);
+            if (before == null) {
+                diff.add("+ table " + table);
+            } else if (after == null) {
+                diff.add("- table " + table);
+            } else if (!before.equals(after)) {
+                if (before.startsWith(HASH_PREFIX) || after.startsWith(HASH_PREFIX)) {
+                    diff.add("~ table " + table);
+                } else {
+                    List<String> beforeLines = Arrays.asList(StringUtils.split(before, "\n"));
+                    List<String> afterLines = Arrays.asList(StringUtils.split(after, "\n"));
+                    for (String line : beforeLines) {
+                        if (!afterLines.contains(line)) {
+                            diff.add(String.format("- %s: %s", table, line));
+                        }
+                    }
+                    for (String line : afterLines) {
+                        if (!beforeLines.contains(line)) {
+                            diff.add(String.format("+ %s: %s", table, line));
+                        }
+                    }
+                }
+            }
+        }
+        return diff;
+    }
+
+}
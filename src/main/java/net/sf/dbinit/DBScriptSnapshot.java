@@ -0,0 +1,65 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.Validate;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * H2 snapshot, saved as a SQL script with <code>SCRIPT TO</code> and restored by dropping all the objects before
+ * running the script again.
+ */
+public class DBScriptSnapshot implements DBSnapshot {
+
+    private final File file;
+
+    /**
+     * @param file File the script is written to
+     */
+    public DBScriptSnapshot(File file) {
+        Validate.notNull(file, "The snapshot file must not be null");
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void take(Connection connection) throws SQLException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new SQLException("Cannot create the snapshot directory " + dir);
+        }
+        execute(connection, String.format("SCRIPT TO '%s'", getPath()));
+    }
+
+    @Override
+    public void restore(Connection connection) throws SQLException {
+        Validate.validState(isTaken(), "No snapshot has been taken");
+        execute(connection, "DROP ALL OBJECTS");
+        execute(connection, String.format("RUNSCRIPT FROM '%s'", getPath()));
+        DBInit.commit(connection);
+    }
+
+    @Override
+    public boolean isTaken() {
+        return file.exists();
+    }
+
+    private String getPath() {
+        return file.getAbsolutePath().replace("'", "''");
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            st.execute(sql);
+        } finally {
+            st.close();
+        }
+    }
+
+}
@@ -1,7 +1,8 @@
 package net.sf.dbinit;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
 
 public class DBSection {
 
@@ -15,7 +16,8 @@ public class DBSection {
 	}
 
 	private final String name;
-	private final List<String> statements = new ArrayList<String>();
+	private final DBStatementArena statements = new DBStatementArena();
+	private final List<String> statementList = new StatementList();
 
 	public DBSection(String name) {
 		this.name = name;
@@ -29,8 +31,40 @@ public class DBSection {
 		statements.add(statement);
 	}
 
+	public void addStatement(CharSequence statement) {
+		statements.add(statement);
+	}
+
+	/**
+	 * Gets the statements of this section. The returned list is a view on the compact
+	 * storage of the statements, each statement being decoded only when it is accessed.
+	 *
+	 * @return List of statements (statements can only be appended to it)
+	 */
 	public List<String> getStatements() {
-		return statements;
+		return statementList;
+	}
+
+	private class StatementList extends AbstractList<String> implements RandomAccess {
+
+		@Override
+		public String get(int index) {
+			return statements.get(index);
+		}
+
+		@Override
+		public int size() {
+			return statements.size();
+		}
+
+		@Override
+		public void add(int index, String statement) {
+			if (index != statements.size()) {
+				throw new UnsupportedOperationException("Statements can only be appended to a section");
+			}
+			statements.add(statement);
+			modCount++;
+		}
 	}
 
 }
@@ -0,0 +1,34 @@
+package net.sf.dbinit;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Snapshot of a database, which can be restored later.
+ *
+ * @see DBScriptSnapshot
+ */
+public interface DBSnapshot {
+
+    /**
+     * Takes the snapshot, replacing any previous one
+     *
+     * @param connection Connection to the database
+     * @throws SQLException If the snapshot cannot be taken
+     */
+    void take(Connection connection) throws SQLException;
+
+    /**
+     * Restores the database as it was when the snapshot was taken
+     *
+     * @param connection Connection to the database
+     * @throws SQLException If the snapshot cannot be restored
+     */
+    void restore(Connection connection) throws SQLException;
+
+    /**
+     * @return <code>true</code> if a snapshot has been taken
+     */
+    boolean isTaken();
+
+}
@@ -0,0 +1,41 @@
+package net.sf.dbinit;
+
+import java.sql.Timestamp;
+
+/**
+ * Entry of the {@link DBStateTable state table}.
+ */
+public class DBState {
+
+    private final String name;
+    private final String value;
+    private final Integer version;
+    private final Timestamp date;
+
+    public DBState(String name, String value, Integer version, Timestamp date) {
+        this.name = name;
+        this.value = value;
+        this.version = version;
+        this.date = date;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return Version of the database when the entry was saved (can be <code>null</code>)
+     */
+    public Integer getVersion() {
+        return version;
+    }
+
+    public Timestamp getDate() {
+        return date;
+    }
+
+}
@@ -0,0 +1,192 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.Validate;
+
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.apache.commons.lang3.StringUtils.lowerCase;
+import static org.apache.commons.lang3.StringUtils.upperCase;
+
+/**
+ * Table where DBInit keeps its own state, as name/value entries associated with the version of
+ * the database. The table is created if it does not exist.
+ */
+public class DBStateTable {
+
+    private final String table;
+
+    public DBStateTable(String table) {
+        Validate.notBlank(table, "The name of the state table must not be null or blank");
+        this.table = table;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Checks if the table exists
+     *
+     * @param connection Connection to use
+     * @return <code>true</code> if the table exists
+     * @throws SQLException If the metadata cannot be read
+     */
+    public boolean exists(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String name : new String[]{table, upperCase(table), lowerCase(table)}) {
+            ResultSet rs = metaData.getTables(null, null, name, null);
+            try {
+                if (rs.next()) {
+                    return true;
+                }
+            } finally {
+                rs.close();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the table if it does not exist yet
+     *
+     * @param connection Connection to use
+     * @throws SQLException If the table cannot be created
+     */
+    public void create(Connection connection) throws SQLException {
+        if (!exists(connection)) {
+            Statement st = connection.createStatement();
+            try {
+                st.execute("CREATE TABLE " + table + " (" +
+                        "STATE_NAME VARCHAR(200) NOT NULL, " +
+                        "STATE_VALUE VARCHAR(4000), " +
+                        "STATE_VERSION INTEGER, " +
+                        "STATE_DATE TIMESTAMP NOT NULL, " +
+                        "CONSTRAINT PK_" + table + " PRIMARY KEY (STATE_NAME))");
+            } finally {
+                st.close();
+            }
+        }
+    }
+
+    /**
+     * Loads all the entries whose name starts with a prefix
+     *
+     * @param connection Connection to use
+     * @param prefix     Prefix of the names
+     * @return Entries indexed by name
+     * @throws SQLException If the entries cannot be read
+     */
+    public Map<String, DBState> load(Connection connection, String prefix) throws SQLException {
+        Map<String, DBState> states = new LinkedHashMap<String, DBState>();
+        PreparedStatement ps = connection.prepareStatement("SELECT STATE_NAME, STATE_VALUE, STATE_VERSION, STATE_DATE FROM " + table + " WHERE STATE_NAME LIKE ? ORDER BY STATE_NAME");
+        try {
+            ps.setString(1, prefix + "%");
+            ResultSet rs = ps.executeQuery();
+            try {
+                while (rs.next()) {
+                    DBState state = read(rs);
+                    // The prefix may contain LIKE wildcards
+                    if (state.getName().startsWith(prefix)) {
+                        states.put(state.getName(), state);
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            ps.close();
+        }
+        return states;
+    }
+
+    /**
+     * Gets one entry
+     *
+     * @param connection Connection to use
+     * @param name       Name of the entry
+     * @return Entry or <code>null</code> if not found
+     * @throws SQLException If the entry cannot be read
+     */
+    public DBState get(Connection connection, String name) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement("SELECT STATE_NAME, STATE_VALUE, STATE_VERSION, STATE_DATE FROM " + table + " WHERE STATE_NAME = ?");
+        try {
+            ps.setString(1, name);
+            ResultSet rs = ps.executeQuery();
+            try {
+                return rs.next() ? read(rs) : null;
+            } finally {
+                rs.close();
+            }
+        } finally {
+            ps.close();
+        }
+    }
+
+    private static DBState read(ResultSet rs) throws SQLException {
+        int version = rs.getInt(3);
+        return new DBState(rs.getString(1), rs.getString(2), rs.wasNull() ? null : version, rs.getTimestamp(4));
+    }
+
+    /**
+     * Creates or updates an entry
+     *
+     * @param connection Connection to use
+     * @param name       Name of the entry
+     * @param value      Value of the entry (can be <code>null</code>)
+     * @param version    Version of the database (can be <code>null</code>)
+     * @throws SQLException If the entry cannot be saved
+     */
+    public void put(Connection connection, String name, String value, Integer version) throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        PreparedStatement update = connection.prepareStatement("UPDATE " + table + " SET STATE_VALUE = ?, STATE_VERSION = ?, STATE_DATE = ? WHERE STATE_NAME = ?");
+        try {
+            update.setString(1, value);
+            setVersion(update, 2, version);
+            update.setTimestamp(3, now);
+            update.setString(4, name);
+            if (update.executeUpdate() > 0) {
+                return;
+            }
+        } finally {
+            update.close();
+        }
+        PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table + " (STATE_NAME, STATE_VALUE, STATE_VERSION, STATE_DATE) VALUES (?, ?, ?, ?)");
+        try {
+            insert.setString(1, name);
+            insert.setString(2, value);
+            setVersion(insert, 3, version);
+            insert.setTimestamp(4, now);
+            insert.executeUpdate();
+        } finally {
+            insert.close();
+        }
+    }
+
+    private static void setVersion(PreparedStatement ps, int index, Integer version) throws SQLException {
+        if (version != null) {
+            ps.setInt(index, version);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+
+    /**
+     * Deletes an entry
+     *
+     * @param connection Connection to use
+     * @param name       Name of the entry
+     * @throws SQLException If the entry cannot be deleted
+     */
+    public void remove(Connection connection, String name) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement("DELETE FROM " + table + " WHERE STATE_NAME = ?");
+        try {
+            ps.setString(1, name);
+            ps.executeUpdate();
+        } finally {
+            ps.close();
+        }
+    }
+
+}
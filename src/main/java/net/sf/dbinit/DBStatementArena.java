@@ -0,0 +1,125 @@
+package net.sf.dbinit;
+
+import java.nio.charset.Charset;
+
+/**
+ * Compact storage for a list of statements.
+ * <p>
+ * All the statements are stored as UTF-8 bytes in a single growable array, indexed by a table of offsets,
+ * and are decoded only when they are read. This avoids keeping one UTF-16 {@link String} per statement
+ * for large scripts.
+ */
+public class DBStatementArena {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Maximum size of the arrays, some VMs reserving a few header words in them
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final byte[] NO_BYTES = new byte[0];
+
+    /**
+     * Allocated by the first statement, so that empty sections do not hold any buffer
+     */
+    private byte[] bytes = NO_BYTES;
+    private int length;
+    /**
+     * <code>offsets[i]</code> is the start of the i-th statement and <code>offsets[count]</code> the end of the last one.
+     */
+    private int[] offsets = new int[16];
+    private int count;
+
+    /**
+     * Adds a statement
+     *
+     * @param statement Statement to add
+     * @throws IllegalArgumentException If the statement contains an unpaired surrogate, which cannot be encoded
+     * @throws IllegalStateException    If the arena cannot hold the statement
+     */
+    public void add(CharSequence statement) {
+        int size = statement.length();
+        // Worst case is 3 bytes per char (surrogate pairs take 4 bytes for 2 chars)
+        ensureBytes(length + 3L * size);
+        int start = length;
+        for (int i = 0; i < size; i++) {
+            char c = statement.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(statement.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, statement.charAt(++i));
+                bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+                length = start;
+                throw new IllegalArgumentException(String.format("Unpaired surrogate U+%04X at index %d of the statement", (int) c, i));
+            } else {
+                bytes[length++] = (byte) (0xE0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        if (count + 2 > offsets.length) {
+            if (count + 2L > MAX_ARRAY_SIZE) {
+                length = start;
+                throw new IllegalStateException(String.format("Cannot hold more than %d statements", count));
+            }
+            int[] newOffsets = new int[grow(offsets.length, count + 2L)];
+            System.arraycopy(offsets, 0, newOffsets, 0, count + 1);
+            offsets = newOffsets;
+        }
+        offsets[++count] = length;
+    }
+
+    private void ensureBytes(long capacity) {
+        if (capacity > bytes.length) {
+            if (capacity > MAX_ARRAY_SIZE) {
+                throw new IllegalStateException(String.format("Cannot hold more than %d bytes of statements, %d are needed", MAX_ARRAY_SIZE, capacity));
+            }
+            byte[] newBytes = new byte[grow(bytes.length, capacity)];
+            System.arraycopy(bytes, 0, newBytes, 0, length);
+            bytes = newBytes;
+        }
+    }
+
+    /**
+     * New size of an array, doubling it up to the maximum size
+     */
+    private static int grow(int size, long capacity) {
+        return (int) Math.min(MAX_ARRAY_SIZE, Math.max(capacity, size * 2L));
+    }
+
+    /**
+     * Decodes a statement
+     *
+     * @param index Index of the statement
+     * @return Statement
+     */
+    public String get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, count));
+        }
+        return new String(bytes, offsets[index], offsets[index + 1] - offsets[index], UTF_8);
+    }
+
+    /**
+     * @return Number of statements
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return Number of bytes used by the statements
+     */
+    public int getByteSize() {
+        return length;
+    }
+
+}
@@ -1,11 +1,15 @@
 package net.sf.dbinit;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class DBStatements {
 
-	private final Map<String, DBSection> sections = new HashMap<String, DBSection>();
+	private final Map<String, DBSection> sections = new LinkedHashMap<String, DBSection>();
+	private final Map<String, String> directives = new HashMap<String, String>();
 
 	public void addSection(DBSection section) {
 		sections.put(section.getName(), section);
@@ -24,4 +28,34 @@ public class DBStatements {
 		return sections.get(name);
 	}
 
+	/**
+	 * @return All sections, in declaration order
+	 */
+	public Collection<DBSection> getSections() {
+		return Collections.unmodifiableCollection(sections.values());
+	}
+
+	/**
+	 * Registers a script-level directive, like <code>-- @depends 12,15</code>
+	 * 
+	 * @param name
+	 *            Name of the directive
+	 * @param value
+	 *            Value of the directive (can be empty)
+	 */
+	public void addDirective(String name, String value) {
+		directives.put(name, value);
+	}
+
+	/**
+	 * Gets the value of a script-level directive
+	 * 
+	 * @param name
+	 *            Name of the directive
+	 * @return Value of the directive or <code>null</code> if it is not declared
+	 */
+	public String getDirective(String name) {
+		return directives.get(name);
+	}
+
 }
@@ -0,0 +1,32 @@
+package net.sf.dbinit;
+
+import java.sql.Connection;
+import java.util.Collection;
+
+/**
+ * Unit of work which can be run by a {@link DBTaskScheduler}.
+ */
+public interface DBTask {
+
+    /**
+     * Unique name of the task (used for dependencies and logging)
+     */
+    String getName();
+
+    /**
+     * Names of the tasks which must have completed successfully before this one can start.
+     *
+     * @return List of task names (never <code>null</code>)
+     */
+    Collection<String> getDependencies();
+
+    /**
+     * Runs the task
+     *
+     * @param connection Connection dedicated to this task. It is committed after the task has completed and rolled
+     *                   back if the task fails.
+     * @throws Exception In case of problem
+     */
+    void run(Connection connection) throws Exception;
+
+}
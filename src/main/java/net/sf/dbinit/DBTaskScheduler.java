@@ -0,0 +1,230 @@
+package net.sf.dbinit;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a set of {@link DBTask tasks} concurrently, each one on its own connection, while respecting
+ * the dependencies between them.
+ * <p>
+ * A task is started as soon as all its dependencies have completed successfully. When a task fails, the
+ * tasks depending on it (directly or not) are skipped, while the independent ones go on. All failures are
+ * reported at the end through a {@link DBInitTasksException}. Dependency cycles are rejected before any task
+ * is started.
+ */
+public class DBTaskScheduler {
+
+    /**
+     * Logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(DBTaskScheduler.class);
+
+    private final DBConnectionProvider connectionProvider;
+    private final int parallelism;
+    private final String label;
+    private final Map<String, DBTask> tasks = new LinkedHashMap<String, DBTask>();
+
+    /**
+     * Constructor
+     *
+     * @param connectionProvider Provider for the connections dedicated to each task
+     * @param parallelism        Maximum number of tasks running at the same time
+     * @param label              Name of the set of tasks (used for logging and thread names)
+     */
+    public DBTaskScheduler(DBConnectionProvider connectionProvider, int parallelism, String label) {
+        Validate.notNull(connectionProvider, "The connection provider must not be null");
+        Validate.isTrue(parallelism > 0, "The parallelism must be greater than 0");
+        this.connectionProvider = connectionProvider;
+        this.parallelism = parallelism;
+        this.label = label;
+    }
+
+    /**
+     * Adds a task to run
+     *
+     * @param task Task to add
+     */
+    public void add(DBTask task) {
+        Validate.isTrue(!tasks.containsKey(task.getName()), "Task %s is declared twice", task.getName());
+        tasks.put(task.getName(), task);
+    }
+
+    /**
+     * Runs all the tasks and waits for their completion.
+     *
+     * @throws DBInitTasksException If at least one task has failed
+     */
+    public void execute() {
+        // Dependency graph
+        Map<String, Integer> waiting = new HashMap<String, Integer>();
+        Map<String, List<String>> dependents = new HashMap<String, List<String>>();
+        List<String> ready = new ArrayList<String>();
+        for (DBTask task : tasks.values()) {
+            Set<String> dependencies = new HashSet<String>(task.getDependencies());
+            for (String dependency : dependencies) {
+                Validate.isTrue(tasks.containsKey(dependency), "Task %s depends on unknown task %s", task.getName(), dependency);
+                List<String> list = dependents.get(dependency);
+                if (list == null) {
+                    list = new ArrayList<String>();
+                    dependents.put(dependency, list);
+                }
+                list.add(task.getName());
+            }
+            waiting.put(task.getName(), dependencies.size());
+            if (dependencies.isEmpty()) {
+                ready.add(task.getName());
+            }
+        }
+        // Cycles are rejected before anything is run
+        checkCycles(ready, waiting, dependents);
+        // Execution
+        Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+        List<String> skipped = new ArrayList<String>();
+        Set<String> done = new HashSet<String>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, tasks.size())), new TaskThreadFactory());
+        try {
+            CompletionService<String> completionService = new ExecutorCompletionService<String>(executor);
+            Map<Future<String>, String> running = new HashMap<Future<String>, String>();
+            for (String name : ready) {
+                running.put(completionService.submit(new TaskCallable(tasks.get(name))), name);
+            }
+            while (!running.isEmpty()) {
+                Future<String> future = completionService.take();
+                String name = running.remove(future);
+                done.add(name);
+                try {
+                    future.get();
+                    // Starts the tasks which are now ready
+                    List<String> list = dependents.get(name);
+                    if (list != null) {
+                        for (String dependent : list) {
+                            int count = waiting.get(dependent) - 1;
+                            waiting.put(dependent, count);
+                            if (count == 0 && !done.contains(dependent)) {
+                                running.put(completionService.submit(new TaskCallable(tasks.get(dependent))), dependent);
+                            }
+                        }
+                    }
+                } catch (ExecutionException ex) {
+                    log.error(String.format("Task %s failed in %s", name, label), ex.getCause());
+                    failures.put(name, ex.getCause());
+                    skip(name, dependents, done, skipped);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            for (String name : tasks.keySet()) {
+                if (!done.contains(name)) {
+                    failures.put(name, ex);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // Report
+        if (!failures.isEmpty()) {
+            throw new DBInitTasksException(label, failures, skipped);
+        }
+    }
+
+    /**
+     * Checks that all the tasks can be reached from the ones without dependencies
+     *
+     * @throws IllegalArgumentException If some tasks depend on each other, directly or not
+     */
+    private void checkCycles(List<String> ready, Map<String, Integer> waiting, Map<String, List<String>> dependents) {
+        Map<String, Integer> remaining = new HashMap<String, Integer>(waiting);
+        LinkedList<String> queue = new LinkedList<String>(ready);
+        int reached = 0;
+        while (!queue.isEmpty()) {
+            String name = queue.removeFirst();
+            reached++;
+            List<String> list = dependents.get(name);
+            if (list != null) {
+                for (String dependent : list) {
+                    int count = remaining.get(dependent) - 1;
+                    remaining.put(dependent, count);
+                    if (count == 0) {
+                        queue.add(dependent);
+                    }
+                }
+            }
+        }
+        if (reached < tasks.size()) {
+            List<String> cycle = new ArrayList<String>();
+            for (String name : tasks.keySet()) {
+                if (remaining.get(name) > 0) {
+                    cycle.add(name);
+                }
+            }
+            throw new IllegalArgumentException(String.format("Dependency cycle involving the tasks %s of %s", cycle, label));
+        }
+    }
+
+    private void skip(String name, Map<String, List<String>> dependents, Set<String> done, List<String> skipped) {
+        List<String> list = dependents.get(name);
+        if (list != null) {
+            for (String dependent : list) {
+                if (done.add(dependent)) {
+                    log.warn("Task {} is skipped in {} because {} did not complete", new Object[]{dependent, label, name});
+                    skipped.add(dependent);
+                    skip(dependent, dependents, done, skipped);
+                }
+            }
+        }
+    }
+
+    private class TaskCallable implements Callable<String> {
+
+        private final DBTask task;
+
+        public TaskCallable(DBTask task) {
+            this.task = task;
+        }
+
+        @Override
+        public String call() throws Exception {
+            log.info("Running task {} in {}", task.getName(), label);
+            Connection connection = connectionProvider.getConnection();
+            try {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    task.run(connection);
+                    DBInit.commit(connection);
+                } catch (Exception ex) {
+                    try {
+                        DBInit.rollback(connection);
+                    } catch (SQLException rollbackException) {
+                        log.error(String.format("Cannot rollback task %s", task.getName()), rollbackException);
+                    }
+                    throw ex;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            } finally {
+                connection.close();
+            }
+            log.info("End of task {} in {}", task.getName(), label);
+            return task.getName();
+        }
+    }
+
+    private class TaskThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, String.format("dbinit-%s-%d", label, count.incrementAndGet()));
+        }
+    }
+
+}
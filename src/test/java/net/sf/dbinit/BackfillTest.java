@@ -0,0 +1,234 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the chunked backfill patch action.
+ */
+public class BackfillTest {
+
+    private static final String DIR_DB = "target/dbinit/backfill";
+
+    private static final String FILE_DB = DIR_DB + "/db";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + FILE_DB + ";MVCC=TRUE";
+
+    private static final String UPDATE = "UPDATE ITEM SET LABEL = UPPER(NAME) WHERE ID > ? AND ID <= ?";
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    private DBInit create(int version, DBPatchAction action) {
+        return configure(new DBInit(), version, action);
+    }
+
+    private DBInit configure(DBInit db, int version, DBPatchAction action) {
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/backfill/init.sql");
+        db.setResourceUpdate("/dbinit/backfill/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setStateTable("DBINIT_STATE");
+        db.setPatchActions(Collections.singletonList(action));
+        db.setVersion(version);
+        return db;
+    }
+
+    @Test
+    public void split() throws SQLException {
+        create(0, new DBBackfillPatchAction("label", 1, "ITEM", "ID")).run();
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            List<DBKeyRange> ranges = DBKeyRange.split(c, "ITEM", "ID", 900L, 40);
+            assertEquals(3, ranges.size());
+            assertEquals(900, ranges.get(0).getFrom());
+            assertEquals(940, ranges.get(0).getTo());
+            assertEquals(1000, ranges.get(2).getTo());
+            assertEquals(20, ranges.get(2).getCount());
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void parallel() throws SQLException {
+        create(0, new DBBackfillPatchAction("label", 1, "ITEM", "ID")).run();
+        DBBackfillPatchAction action = new DBBackfillPatchAction("label", 1, "ITEM", "ID");
+        action.setStatement(UPDATE);
+        action.setChunkSize(100);
+        action.setParallelism(4);
+        create(1, action).run();
+        assertEquals(0, count("SELECT COUNT(*) FROM ITEM WHERE LABEL IS NULL OR LABEL <> UPPER(NAME)"));
+        assertEquals(0, count("SELECT COUNT(*) FROM DBINIT_STATE"));
+    }
+
+    @Test
+    public void resume() throws SQLException {
+        create(0, new DBBackfillPatchAction("label", 1, "ITEM", "ID")).run();
+        // Fails in the middle
+        DBBackfillPatchAction failing = new DBBackfillPatchAction("label", 1, "ITEM", "ID") {
+            @Override
+            protected int process(Connection connection, DBKeyRange range) throws SQLException {
+                if (range.getTo() > 500) {
+                    throw new SQLException("Interrupted");
+                }
+                return super.process(connection, range);
+            }
+        };
+        failing.setStatement(UPDATE);
+        failing.setChunkSize(100);
+        try {
+            create(1, failing).run();
+            fail("The patch should have failed");
+        } catch (DBInitPatchException ex) {
+            assertEquals(1, ex.getPatch());
+        }
+        assertEquals(500, count("SELECT COUNT(*) FROM ITEM WHERE LABEL IS NOT NULL"));
+        // Resumes
+        final AtomicInteger chunks = new AtomicInteger();
+        DBBackfillPatchAction resuming = new DBBackfillPatchAction("label", 1, "ITEM", "ID") {
+            @Override
+            protected int process(Connection connection, DBKeyRange range) throws SQLException {
+                chunks.incrementAndGet();
+                return super.process(connection, range);
+            }
+        };
+        resuming.setStatement(UPDATE);
+        resuming.setChunkSize(100);
+        create(1, resuming).run();
+        assertEquals(5, chunks.get());
+        assertEquals(0, count("SELECT COUNT(*) FROM ITEM WHERE LABEL IS NULL"));
+    }
+
+    @Test
+    public void savepoints() throws SQLException {
+        create(0, new DBBackfillPatchAction("label", 1, "ITEM", "ID")).run();
+        DBBackfillPatchAction failing = new DBBackfillPatchAction("label", 1, "ITEM", "ID") {
+            @Override
+            protected int process(Connection connection, DBKeyRange range) throws SQLException {
+                if (range.getTo() > 500) {
+                    throw new SQLException("Interrupted");
+                }
+                return super.process(connection, range);
+            }
+        };
+        failing.setStatement(UPDATE);
+        failing.setChunkSize(100);
+        // Records the rollbacks to a savepoint which fail
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        DBInit db = configure(new DBInit() {
+            @Override
+            protected Connection getConnection() throws SQLException {
+                final Connection connection = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException ex) {
+                            if ("rollback".equals(method.getName()) && args != null) {
+                                errors.add(ex.getCause());
+                            }
+                            throw ex.getCause();
+                        }
+                    }
+                });
+            }
+        }, 1, failing);
+        db.setSavepoints(true);
+        try {
+            db.run();
+            fail("The patch should have failed");
+        } catch (DBInitPatchException ex) {
+            assertEquals(1, ex.getPatch());
+        }
+        // The savepoint of the patch is set again after each commit
+        assertEquals(Collections.<Throwable>emptyList(), errors);
+        assertEquals(500, count("SELECT COUNT(*) FROM ITEM WHERE LABEL IS NOT NULL"));
+    }
+
+    @Test
+    public void parallelCheckpoint() throws SQLException {
+        create(0, new DBBackfillPatchAction("label", 1, "ITEM", "ID")).run();
+        // The first chunks complete last, and the chunks after 500 fail
+        DBBackfillPatchAction failing = new DBBackfillPatchAction("label", 1, "ITEM", "ID") {
+            @Override
+            protected int process(Connection connection, DBKeyRange range) throws SQLException {
+                if (range.getTo() > 500) {
+                    throw new SQLException("Interrupted");
+                }
+                try {
+                    Thread.sleep((500 - range.getTo()) / 5);
+                } catch (InterruptedException ex) {
+                    throw new SQLException(ex);
+                }
+                return super.process(connection, range);
+            }
+        };
+        failing.setStatement(UPDATE);
+        failing.setChunkSize(100);
+        failing.setParallelism(4);
+        try {
+            create(1, failing).run();
+            fail("The patch should have failed");
+        } catch (DBInitPatchException ex) {
+            assertEquals(1, ex.getPatch());
+        }
+        assertEquals(500, count("SELECT COUNT(*) FROM ITEM WHERE LABEL IS NOT NULL"));
+        // The checkpoint never moves backwards
+        assertEquals(500, count("SELECT STATE_VALUE FROM DBINIT_STATE WHERE STATE_NAME = 'backfill:label'"));
+    }
+
+    @Test
+    public void rateLimiter() throws InterruptedException {
+        DBRateLimiter limiter = new DBRateLimiter(1000);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(50);
+        }
+        // The first call is not delayed
+        assertTrue(System.currentTimeMillis() - start >= 190);
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery(sql);
+                rs.next();
+                return rs.getInt(1);
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+}
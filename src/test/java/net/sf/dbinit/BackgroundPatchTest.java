@@ -0,0 +1,165 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the background sections of the patches.
+ */
+public class BackgroundPatchTest {
+
+    private static final String DIR_DB = "target/dbinit/background";
+
+    private static final String FILE_DB = DIR_DB + "/db";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + FILE_DB;
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    private DBInit create(int version) {
+        DBInit db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/background/init.sql");
+        db.setResourceUpdate("/dbinit/background/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setStateTable("DBINIT_STATE");
+        db.setVersion(version);
+        return db;
+    }
+
+    @Test
+    public void background() throws SQLException, InterruptedException {
+        create(0).run();
+        DBInit db = create(1);
+        db.run();
+        DBBackgroundPatches background = db.getBackground();
+        assertNotNull(background);
+        assertEquals(2, background.getTotal());
+        assertTrue(background.await(10, TimeUnit.SECONDS));
+        assertTrue(background.getFailures().isEmpty());
+        assertEquals(2, background.getExecuted());
+        assertEquals(0, count("SELECT COUNT(*) FROM ITEM WHERE LABEL IS NULL"));
+        assertEquals(1, count("SELECT COUNT(*) FROM DBINIT_STATE WHERE STATE_NAME = 'background:1' AND STATE_VALUE = 'done'"));
+        // Nothing to do on the next run
+        db = create(1);
+        db.run();
+        assertNull(db.getBackground());
+    }
+
+    @Test
+    public void resume() throws SQLException, InterruptedException {
+        create(0).run();
+        DBInit db = create(1);
+        db.run();
+        assertTrue(db.getBackground().await(10, TimeUnit.SECONDS));
+        // Simulates an interruption after the creation of the index
+        execute("UPDATE ITEM SET LABEL = NULL");
+        execute("UPDATE DBINIT_STATE SET STATE_VALUE = '1' WHERE STATE_NAME = 'background:1'");
+        // Resumes (the index must not be created again)
+        db = create(1);
+        db.run();
+        DBBackgroundPatches background = db.getBackground();
+        assertNotNull(background);
+        assertEquals(1, background.getTotal());
+        assertTrue(background.await(10, TimeUnit.SECONDS));
+        assertTrue(background.getFailures().isEmpty());
+        assertEquals(0, count("SELECT COUNT(*) FROM ITEM WHERE LABEL IS NULL"));
+    }
+
+    @Test
+    public void summary() throws SQLException, InterruptedException {
+        create(0).run();
+        DBInit db = create(1);
+        db.run();
+        assertEquals(Arrays.asList(1), db.getLastRun().getBackgroundPatches());
+        assertTrue(db.getBackground().await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void withoutStateTable() throws SQLException {
+        create(0).run();
+        DBInit db = create(1);
+        db.setStateTable(null);
+        try {
+            db.run();
+            fail("The patch must not be applied without a state table");
+        } catch (RuntimeException ex) {
+            assertTrue(ExceptionUtils.getStackTrace(ex).contains("Patch 1 has a background section"));
+        }
+        assertEquals(0, count("SELECT MAX(VALUE) FROM VERSION"));
+        assertNull(db.getBackground());
+    }
+
+    @Test
+    public void inProgress() throws SQLException, InterruptedException {
+        create(0).run();
+        DBInit db = create(1);
+        db.setBackgroundRate(1);
+        db.run();
+        DBBackgroundPatches background = db.getBackground();
+        try {
+            db.run();
+            fail("The run must be refused while the background patches are in progress");
+        } catch (IllegalStateException ex) {
+            assertEquals("The background patches [1] of the previous run are still in progress", ex.getMessage());
+        }
+        assertSame(background, db.getBackground());
+        assertTrue(background.await(10, TimeUnit.SECONDS));
+        assertEquals(2, background.getExecuted());
+        // Can be run again once completed
+        db.run();
+        assertNull(db.getBackground());
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                st.executeUpdate(sql);
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery(sql);
+                rs.next();
+                return rs.getInt(1);
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+}
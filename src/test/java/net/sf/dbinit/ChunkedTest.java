@@ -0,0 +1,152 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the chunked statements.
+ */
+public class ChunkedTest {
+
+    private static final String DIR_DB = "target/dbinit/chunked";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + DIR_DB + "/db";
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    private DBInit create(int version) {
+        DBInit db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/chunked/init.sql");
+        db.setResourceUpdate("/dbinit/chunked/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setVersion(version);
+        return db;
+    }
+
+    @Test
+    public void parse() {
+        DBStatements statements = DBInit.readStatements("-- @chunked size=500 key=CODE\nUPDATE ITEM SET LABEL = NULL;\nDELETE FROM ITEM;\n");
+        DBChunkedStatement chunked = DBChunkedStatement.parse(statements.getSection(DBSection.SECTION_DEFAULT).getStatements().get(0));
+        assertEquals("ITEM", chunked.getTable());
+        assertEquals("CODE", chunked.getKeyColumn());
+        assertEquals(500, chunked.getSize());
+        assertEquals("UPDATE ITEM SET LABEL = NULL WHERE CODE > ? AND CODE <= ?", chunked.getChunkStatement());
+        assertFalse(DBChunkedStatement.isChunked(statements.getSection(DBSection.SECTION_DEFAULT).getStatements().get(1)));
+    }
+
+    @Test
+    public void section() {
+        DBStatements statements = DBInit.readStatements("-- @chunked size=500\n-- @post\nUPDATE ITEM SET LABEL = NULL;\n");
+        assertFalse(DBChunkedStatement.isChunked(statements.getSection("post").getStatements().get(0)));
+    }
+
+    @Test
+    public void creation() throws SQLException {
+        DBInit db = create(0);
+        db.setResourceInitialization("/dbinit/chunked/creation.sql");
+        // In a transaction
+        db.setSavepoints(true);
+        try {
+            db.run();
+            fail("The creation must fail");
+        } catch (RuntimeException ex) {
+            // Expected
+        }
+        // The chunked statement is not committed on its own during the creation
+        assertEquals(0, count("SELECT COUNT(*) FROM ITEM"));
+    }
+
+    @Test
+    public void condition() {
+        DBChunkedStatement chunked = DBChunkedStatement.parse(DBChunkedStatement.declare("",
+                "UPDATE ITEM SET LABEL = (SELECT MAX(NAME) FROM OTHER WHERE OTHER.ID = ITEM.ID) WHERE LABEL IS NULL OR LABEL = 'where'"));
+        assertEquals(10000, chunked.getSize());
+        assertEquals("ID", chunked.getKeyColumn());
+        assertEquals("UPDATE ITEM SET LABEL = (SELECT MAX(NAME) FROM OTHER WHERE OTHER.ID = ITEM.ID) WHERE (LABEL IS NULL OR LABEL = 'where') AND ID > ? AND ID <= ?",
+                chunked.getChunkStatement());
+    }
+
+    @Test
+    public void table() {
+        DBChunkedStatement chunked = DBChunkedStatement.parse(DBChunkedStatement.declare("table=ITEM rate=1000", "DELETE FROM V_ITEM"));
+        assertEquals("ITEM", chunked.getTable());
+        assertEquals(1000, chunked.getRowsPerSecond());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void insert() {
+        DBChunkedStatement.parse(DBChunkedStatement.declare("size=10", "INSERT INTO ITEM (ID) VALUES (1)"));
+    }
+
+    @Test
+    public void patch() throws SQLException {
+        create(1).run();
+        assertEquals(2000, count("SELECT COUNT(*) FROM ITEM"));
+        assertEquals(1000, count("SELECT COUNT(*) FROM ITEM WHERE LABEL IS NOT NULL"));
+        assertEquals(0, count("SELECT COUNT(*) FROM ITEM WHERE MOD(ID, 2) = 1 AND LABEL IS NOT NULL"));
+        assertEquals(1, count("SELECT MAX(VALUE) FROM VERSION"));
+    }
+
+    @Test
+    public void savepoints() throws SQLException {
+        create(1).run();
+        DBInit db = create(2);
+        db.setSavepoints(true);
+        try {
+            db.run();
+            fail("Patch 2 must fail");
+        } catch (DBInitPatchException ex) {
+            assertEquals(2, ex.getPatch());
+        }
+        // The chunks, and what was done before them, are committed
+        assertEquals(2000, count("SELECT COUNT(*) FROM ITEM WHERE LABEL = 'chunked'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM ITEM WHERE ID = 1 AND NAME = 'patched'"));
+        // What was done after them is rolled back
+        assertEquals(0, count("SELECT COUNT(*) FROM ITEM WHERE ID = 2 AND NAME = 'patched'"));
+        assertEquals(1, count("SELECT MAX(VALUE) FROM VERSION"));
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery(sql);
+                try {
+                    rs.next();
+                    return rs.getInt(1);
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.sql.*;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for the compressed scripts.
+ */
+public class CompressedScriptTest {
+
+    private static final String DIR_DB = "target/dbinit/compressed";
+
+    private static final String FILE_DB = DIR_DB + "/db";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + FILE_DB;
+
+    private DBInit db;
+
+    @Before
+    public void before() throws IOException {
+        // Clean-up
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+        // Compressed scripts
+        File scripts = new File(dir, "scripts");
+        FileUtils.forceMkdir(scripts);
+        compress("/dbinit/test/init.sql", new File(scripts, "init.sql.gz"));
+        compress("/dbinit/test/update.1.sql", new File(scripts, "update.1.sql.gz"));
+        // General initialisation
+        db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization(scripts.getPath() + "/init.sql");
+        db.setResourceUpdate(scripts.getPath() + "/update.{0}.sql.gz");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setVersion(1);
+    }
+
+    private void compress(String resource, File file) throws IOException {
+        InputStream in = getClass().getResourceAsStream(resource);
+        try {
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+            try {
+                IOUtils.copy(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void read() {
+        assertEquals(DBInit.readResource("/dbinit/test/init.sql"), DBInit.readResource(DIR_DB + "/scripts/init.sql.gz"));
+        assertEquals(2, DBInit.readScript(DIR_DB + "/scripts/init.sql").getDefaultSection().getStatements().size());
+    }
+
+    @Test
+    public void run() throws SQLException {
+        db.run();
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            ResultSet rs = c.getMetaData().getColumns(null, null, "PROJECT", "URL");
+            try {
+                assertTrue(rs.next());
+            } finally {
+                rs.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+}
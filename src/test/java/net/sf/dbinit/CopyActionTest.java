@@ -0,0 +1,169 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link DBInitCopyAction}.
+ */
+public class CopyActionTest {
+
+    private static final String DIR_DB = "target/dbinit/copy";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + DIR_DB + "/db";
+
+    private static final String SOURCE_JDBC_URL = "jdbc:h2:file:" + DIR_DB + "/source";
+
+    private DBInit db;
+
+    private DBInitCopyAction action;
+
+    @Before
+    public void before() throws IOException, SQLException {
+        // Clean-up
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+        // Source database
+        Connection c = DriverManager.getConnection(SOURCE_JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                st.execute("CREATE TABLE PROJECT (ID INTEGER NOT NULL, NAME VARCHAR(40) NOT NULL)");
+                st.execute("CREATE TABLE BRANCH (ID INTEGER NOT NULL, PROJECT INTEGER NOT NULL, NAME VARCHAR(40))");
+                st.execute("CREATE TABLE DOCUMENT (ID INTEGER NOT NULL, CONTENT BLOB, TEXT CLOB)");
+                for (int i = 1; i <= 10; i++) {
+                    st.execute(String.format("INSERT INTO PROJECT (ID, NAME) VALUES (%d, 'P%d')", i, i));
+                    for (int j = 1; j <= 100; j++) {
+                        st.execute(String.format("INSERT INTO BRANCH (ID, PROJECT, NAME) VALUES (%d, %d, %s)", i * 1000 + j, i, j % 2 == 0 ? "NULL" : "'B" + j + "'"));
+                    }
+                }
+            } finally {
+                st.close();
+            }
+            // Large objects
+            PreparedStatement ps = c.prepareStatement("INSERT INTO DOCUMENT (ID, CONTENT, TEXT) VALUES (?, ?, ?)");
+            try {
+                for (int i = 1; i <= 3; i++) {
+                    ps.setInt(1, i);
+                    ps.setBytes(2, content(i));
+                    ps.setString(3, text(i));
+                    ps.executeUpdate();
+                }
+            } finally {
+                ps.close();
+            }
+        } finally {
+            c.close();
+        }
+        JdbcDataSource source = new JdbcDataSource();
+        source.setURL(SOURCE_JDBC_URL);
+        source.setUser("SA");
+        source.setPassword("");
+        action = new DBInitCopyAction(source);
+        action.setTables(Arrays.asList("PROJECT", "DOCUMENT"));
+        action.setQueries(Collections.singletonMap("BRANCH", "SELECT ID, PROJECT, NAME FROM BRANCH WHERE PROJECT <= 5"));
+        action.setBatchSize(30);
+        action.setFetchSize(50);
+        // General initialisation
+        db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/copy/init.sql");
+        db.setResourceUpdate("/dbinit/copy/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setVersion(0);
+        db.setPostActions(Arrays.<DBInitAction>asList(action));
+    }
+
+    @Test
+    public void sequential() throws SQLException {
+        db.run();
+        check();
+    }
+
+    @Test
+    public void parallel() throws SQLException {
+        db.setParallelism(2);
+        db.run();
+        check();
+    }
+
+    @Test
+    public void parallelInTransaction() throws SQLException {
+        db.setParallelism(2);
+        db.setSavepoints(true);
+        db.run();
+        check();
+    }
+
+    private void check() throws SQLException {
+        assertEquals(10, count("SELECT COUNT(*) FROM PROJECT"));
+        assertEquals(500, count("SELECT COUNT(*) FROM BRANCH"));
+        assertEquals(250, count("SELECT COUNT(*) FROM BRANCH WHERE NAME IS NULL"));
+        // Large objects
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery("SELECT ID, CONTENT, TEXT FROM DOCUMENT ORDER BY ID");
+                for (int i = 1; i <= 3; i++) {
+                    assertTrue(rs.next());
+                    assertEquals(i, rs.getInt(1));
+                    assertArrayEquals(content(i), rs.getBytes(2));
+                    assertEquals(text(i), rs.getString(3));
+                }
+                assertFalse(rs.next());
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    private static byte[] content(int id) {
+        byte[] content = new byte[id * 50000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * id);
+        }
+        return content;
+    }
+
+    private static String text(int id) {
+        return StringUtils.repeat("Document " + id + "\n", id * 5000);
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery(sql);
+                rs.next();
+                return rs.getInt(1);
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the data source initialising the database on the first connection.
+ */
+public class DBInitDataSourceTest {
+
+    private static final String DIR_DB = "target/dbinit/lazy";
+
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    private DBInitDataSource create(String init) {
+        JdbcDataSource target = new JdbcDataSource();
+        target.setURL("jdbc:h2:file:" + DIR_DB + "/db");
+        target.setUser("SA");
+        target.setPassword("");
+        DBInit db = new DBInit() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+                super.run();
+            }
+        };
+        db.setResourceInitialization(init);
+        db.setResourceUpdate("/dbinit/test/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setVersion(0);
+        return new DBInitDataSource(target, db);
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        final DBInitDataSource dataSource = create("/dbinit/seed/init.sql");
+        assertFalse(dataSource.isInitialised());
+        assertEquals(0, runs.get());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws SQLException {
+                        Connection c = dataSource.getConnection();
+                        try {
+                            Statement st = c.createStatement();
+                            try {
+                                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM PROJECT");
+                                rs.next();
+                                return rs.getInt(1);
+                            } finally {
+                                st.close();
+                            }
+                        } finally {
+                            c.close();
+                        }
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(Integer.valueOf(2), future.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, runs.get());
+        assertTrue(dataSource.isInitialised());
+    }
+
+    @Test
+    public void retryAfterFailure() throws SQLException {
+        DBInitDataSource dataSource = create("/dbinit/missing.sql");
+        for (int i = 0; i < 2; i++) {
+            try {
+                dataSource.getConnection();
+                fail("The initialisation should have failed");
+            } catch (SQLException ex) {
+                // Expected
+            }
+        }
+        assertEquals(2, runs.get());
+        assertFalse(dataSource.isInitialised());
+    }
+
+}
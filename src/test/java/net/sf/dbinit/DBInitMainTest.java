@@ -0,0 +1,127 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link DBInitMain}.
+ */
+public class DBInitMainTest {
+
+    private static final String DIR_DB = "target/dbinit/main";
+
+    private static final String FILE_DB = DIR_DB + "/db";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + FILE_DB;
+
+    @Before
+    public void before() throws IOException {
+        // Clean-up
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    private String[] args(int version) {
+        return args("test", version);
+    }
+
+    private String[] args(String name, int version, String... options) {
+        String[] args = new String[]{
+                "--jdbcDriver=org.h2.Driver",
+                "--jdbcURL=" + JDBC_URL,
+                "--jdbcUser", "SA",
+                "--jdbcPassword=",
+                "--resourceInitialization=/dbinit/" + name + "/init.sql",
+                "--resourceUpdate=/dbinit/" + name + "/update.{0}.sql",
+                "--versionTable=VERSION",
+                "--versionColumnName=value",
+                "--versionColumnTimestamp=value_date",
+                "--dbinit.profile=default",
+                "--version=" + version
+        };
+        String[] all = new String[args.length + options.length];
+        System.arraycopy(args, 0, all, 0, args.length);
+        System.arraycopy(options, 0, all, args.length, options.length);
+        return all;
+    }
+
+    @Test
+    public void run() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(DBInitMain.EXIT_OK, DBInitMain.run(args(0), new PrintStream(out), System.err));
+        assertTrue(out.toString(), out.toString().startsWith("{\"success\":true,\"initialVersion\":null,\"targetVersion\":0,\"created\":true,\"appliedPatches\":[]"));
+        out.reset();
+        assertEquals(DBInitMain.EXIT_OK, DBInitMain.run(args(2), new PrintStream(out), System.err));
+        assertTrue(out.toString(), out.toString().startsWith("{\"success\":true,\"initialVersion\":0,\"targetVersion\":2,\"created\":false,\"appliedPatches\":[1,2]"));
+    }
+
+    @Test
+    public void failure() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String[] args = args(0);
+        args[0] = "--jdbcDriver=my.dummy.Driver";
+        assertEquals(DBInitMain.EXIT_FAILURE, DBInitMain.run(args, new PrintStream(out), System.err));
+        assertTrue(out.toString(), out.toString().contains("\"error\":\"Cannot find JDBC driver my.dummy.Driver: my.dummy.Driver\""));
+    }
+
+    @Test
+    public void usage() {
+        assertEquals(DBInitMain.EXIT_USAGE, DBInitMain.run(new String[]{"--version=x"}, System.out, System.err));
+    }
+
+    @Test
+    public void background() throws SQLException {
+        assertEquals(DBInitMain.EXIT_OK, DBInitMain.run(args("background", 0, "--stateTable=DBINIT_STATE"), System.out, System.err));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(DBInitMain.EXIT_OK, DBInitMain.run(args("background", 1, "--stateTable=DBINIT_STATE"), new PrintStream(out), System.err));
+        assertTrue(out.toString(), out.toString().contains("\"backgroundPatches\":[1],\"backgroundDone\":true,\"backgroundFailures\":[]"));
+        // The background section is completed before the program exits
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM ITEM WHERE LABEL IS NULL");
+                rs.next();
+                assertEquals(0, rs.getInt(1));
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void backgroundTimeout() {
+        assertEquals(DBInitMain.EXIT_USAGE, DBInitMain.run(args("background", 0, "--backgroundTimeout=-1"), System.out, System.err));
+        assertFalse(new File(DIR_DB).exists());
+    }
+
+    @Test
+    public void misspelt() {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        String[] args = args(0);
+        args[1] = "--jdbcUrl=" + JDBC_URL;
+        assertEquals(DBInitMain.EXIT_USAGE, DBInitMain.run(args, System.out, new PrintStream(err)));
+        assertTrue(err.toString(), err.toString().startsWith("Unknown property jdbcUrl, did you mean jdbcURL?"));
+        assertFalse(new File(DIR_DB).exists());
+    }
+
+}
@@ -0,0 +1,86 @@
+package net.sf.dbinit;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for {@link DBSection}.
+ */
+public class DBSectionTest {
+
+    @Test
+    public void statements() {
+        DBSection section = new DBSection("test");
+        section.addStatement("CREATE TABLE A (ID INTEGER)");
+        section.addStatement(new StringBuilder("INSERT INTO A (NAME) VALUES ('Fran\u00e7ois \u20ac \ud83d\ude00')"));
+        section.getStatements().add("DROP TABLE A");
+        for (int i = 0; i < 1000; i++) {
+            section.addStatement("INSERT INTO A (ID) VALUES (" + i + ")");
+        }
+        assertEquals(1003, section.getStatements().size());
+        assertEquals(Arrays.asList(
+                "CREATE TABLE A (ID INTEGER)",
+                "INSERT INTO A (NAME) VALUES ('Fran\u00e7ois \u20ac \ud83d\ude00')",
+                "DROP TABLE A"), section.getStatements().subList(0, 3));
+        assertEquals("INSERT INTO A (ID) VALUES (999)", section.getStatements().get(1002));
+    }
+
+    @Test
+    public void unpairedSurrogate() {
+        DBSection section = new DBSection("test");
+        section.addStatement("CREATE TABLE A (ID INTEGER)");
+        try {
+            section.addStatement("INSERT INTO A (NAME) VALUES ('\ud83d')");
+            fail("An unpaired surrogate cannot be encoded");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Unpaired surrogate U+D83D at index 30 of the statement", ex.getMessage());
+        }
+        section.addStatement("DROP TABLE A");
+        assertEquals(Arrays.asList("CREATE TABLE A (ID INTEGER)", "DROP TABLE A"), section.getStatements());
+    }
+
+    @Test
+    public void unpairedSurrogateInScript() {
+        try {
+            DBInit.readStatements("INSERT INTO A (NAME) VALUES ('\ud83d');\n");
+            fail("An unpaired surrogate cannot be encoded");
+        } catch (DBInitCannotSplitStatementsException ex) {
+            assertTrue(ex.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void tooLarge() {
+        DBStatementArena arena = new DBStatementArena();
+        // Worst case of 3 bytes per char overflows an int
+        arena.add(new CharSequence() {
+            @Override
+            public int length() {
+                return 800000000;
+            }
+
+            @Override
+            public char charAt(int index) {
+                return 'A';
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void insert() {
+        DBSection section = new DBSection("test");
+        section.addStatement("CREATE TABLE A (ID INTEGER)");
+        section.getStatements().add(0, "DROP TABLE A");
+    }
+
+}
@@ -0,0 +1,148 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the deferred creation of indexes and constraints.
+ */
+public class FastSeedTest {
+
+    private static final String DIR_DB = "target/dbinit/seed";
+
+    private static final String FILE_DB = DIR_DB + "/db";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + FILE_DB;
+
+    private DBInit db;
+
+    @Before
+    public void before() throws IOException {
+        // Clean-up
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+        // General initialisation
+        db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/seed/init.sql");
+        db.setResourceUpdate("/dbinit/seed/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setVersion(0);
+        db.setFastSeed(true);
+    }
+
+    @Test
+    public void split() {
+        DBDeferredStatements statements = new DBDeferredStatements(Arrays.asList(
+                "CREATE TABLE A (ID INTEGER)",
+                "create unique index IDX_A on a (ID)",
+                "INSERT INTO A (ID) VALUES (1)",
+                "ALTER TABLE B ADD CONSTRAINT FK_B FOREIGN KEY (A) REFERENCES A(ID)",
+                "ALTER TABLE A ADD CONSTRAINT UQ_A UNIQUE (ID)",
+                "ALTER TABLE A ADD COLUMN NAME VARCHAR(40)"
+        ));
+        assertEquals(Arrays.asList("CREATE TABLE A (ID INTEGER)", "INSERT INTO A (ID) VALUES (1)", "ALTER TABLE A ADD COLUMN NAME VARCHAR(40)"), statements.getImmediate());
+        assertEquals(Arrays.asList("create unique index IDX_A on a (ID)", "ALTER TABLE A ADD CONSTRAINT UQ_A UNIQUE (ID)"), statements.getConstraints().get("A"));
+        assertEquals(1, statements.getForeignKeys().get("B").size());
+    }
+
+    @Test
+    public void sequential() throws SQLException {
+        db.run();
+        check();
+    }
+
+    @Test
+    public void parallel() throws SQLException {
+        db.setParallelism(4);
+        db.run();
+        check();
+    }
+
+    @Test
+    public void parallelInTransaction() throws SQLException {
+        db.setParallelism(4);
+        db.setSavepoints(true);
+        db.run();
+        check();
+    }
+
+    @Test
+    public void sequentialFailure() {
+        failure();
+    }
+
+    @Test
+    public void parallelFailure() {
+        db.setParallelism(4);
+        failure();
+    }
+
+    /**
+     * A deferred statement fails: the next run must report the incomplete creation
+     */
+    private void failure() {
+        db.setResourceInitialization("/dbinit/seed-error/init.sql");
+        try {
+            db.run();
+            fail("The deferred statement should have failed");
+        } catch (DBInitIncompleteCreationException ex) {
+            fail("The first run should fail on the deferred statement");
+        } catch (RuntimeException ex) {
+            // Expected
+        }
+        try {
+            db.run();
+            fail("The creation should be reported as incomplete");
+        } catch (DBInitIncompleteCreationException ex) {
+            assertEquals("VERSION", ex.getVersionTable());
+        }
+    }
+
+    private void check() throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            // Indexes
+            Set<String> indexes = new HashSet<String>();
+            ResultSet rs = c.getMetaData().getIndexInfo(null, null, "BRANCH", false, false);
+            try {
+                while (rs.next()) {
+                    indexes.add(rs.getString("INDEX_NAME"));
+                }
+            } finally {
+                rs.close();
+            }
+            assertTrue(indexes.contains("IDX_BRANCH_NAME"));
+            // Foreign key
+            Statement st = c.createStatement();
+            try {
+                st.execute("INSERT INTO BRANCH (ID, PROJECT, NAME) VALUES (3, 3, 'B3')");
+                fail("The foreign key should have been created");
+            } catch (SQLException ex) {
+                // Expected
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+}
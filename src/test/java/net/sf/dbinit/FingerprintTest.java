@@ -0,0 +1,132 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the schema fingerprint.
+ */
+public class FingerprintTest {
+
+    private static final String DIR_DB = "target/dbinit/fingerprint";
+
+    private static final String FILE_DB = DIR_DB + "/db";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + FILE_DB;
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    private DBInit create(int version) {
+        DBInit db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/fingerprint/init.sql");
+        db.setResourceUpdate("/dbinit/fingerprint/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setStateTable("DBINIT_STATE");
+        db.setFingerprint(true);
+        db.setVersion(version);
+        return db;
+    }
+
+    private List<String> run(DBInit db) {
+        db.run();
+        return db.getLastRun().getSchemaDrift();
+    }
+
+    @Test
+    public void unchanged() throws SQLException {
+        assertEquals(Collections.<String>emptyList(), run(create(0)));
+        assertEquals(Collections.<String>emptyList(), run(create(0)));
+        assertEquals(Collections.<String>emptyList(), run(create(1)));
+        assertEquals(Collections.<String>emptyList(), run(create(1)));
+    }
+
+    @Test
+    public void hotFix() throws SQLException {
+        run(create(0));
+        execute("ALTER TABLE CUSTOMER ADD COLUMN EMAIL VARCHAR(120)");
+        List<String> drift = run(create(0));
+        assertEquals(Collections.singletonList("+ PUBLIC.CUSTOMER: column EMAIL VARCHAR(120,0)"), drift);
+        // The drift is not the new reference
+        assertEquals(drift, run(create(0)));
+        // Until the schema is patched
+        run(create(1));
+        assertEquals(Collections.<String>emptyList(), run(create(1)));
+    }
+
+    @Test
+    public void tables() throws SQLException {
+        run(create(0));
+        execute("DROP TABLE PRODUCT");
+        execute("CREATE TABLE AUDIT (ID INTEGER)");
+        List<String> drift = run(create(0));
+        assertTrue(drift.toString(), drift.contains("+ table PUBLIC.AUDIT"));
+        assertTrue(drift.toString(), drift.contains("- table PUBLIC.PRODUCT"));
+    }
+
+    @Test
+    public void parallel() throws SQLException {
+        DBInit db = create(0);
+        db.setParallelism(3);
+        run(db);
+        execute("DROP INDEX UQ_CUSTOMER_NAME");
+        db = create(0);
+        db.setParallelism(3);
+        List<String> drift = run(db);
+        assertTrue(drift.toString(), drift.contains("- PUBLIC.CUSTOMER: index unique NAME"));
+    }
+
+    @Test
+    public void failOnSchemaDrift() throws SQLException {
+        run(create(0));
+        execute("ALTER TABLE ORDERS DROP CONSTRAINT FK_ORDERS_CUSTOMER");
+        DBInit db = create(0);
+        db.setFailOnSchemaDrift(true);
+        try {
+            db.run();
+            fail("The schema drift must be detected");
+        } catch (DBInitSchemaDriftException ex) {
+            assertEquals(0, ex.getVersion());
+            assertTrue(ex.getDifferences().toString(), ex.getDifferences().contains("- PUBLIC.ORDERS: foreign key CUSTOMER>ID -> CUSTOMER"));
+        }
+        assertFalse(db.getLastRun().isSuccess());
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                st.execute(sql);
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+}
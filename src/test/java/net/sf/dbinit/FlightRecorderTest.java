@@ -0,0 +1,177 @@
+package net.sf.dbinit;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Unit test for the Java Flight Recorder events.
+ */
+public class FlightRecorderTest {
+
+    private static final String DIR_DB = "target/dbinit/jfr";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + DIR_DB + "/db";
+
+    @Before
+    public void before() throws IOException {
+        assumeTrue(isAvailable());
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+    }
+
+    private DBInit create(int version) {
+        DBInit db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/jfr/init.sql");
+        db.setResourceUpdate("/dbinit/jfr/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setPostActions(Collections.<DBInitAction>singletonList(new DBInitScriptAction("/dbinit/jfr/post.sql")));
+        db.setVersion(version);
+        return db;
+    }
+
+    @Test
+    public void disabled() {
+        DBFlightRecorderListener listener = new DBFlightRecorderListener();
+        for (DBPhase phase : DBPhase.values()) {
+            assertFalse(phase.name(), listener.isEnabled(phase));
+        }
+    }
+
+    @Test
+    public void events() throws IOException {
+        create(0).run();
+        List<RecordedEvent> events = record(create(2));
+        assertEquals(1, count(events, "net.sf.dbinit.Run"));
+        assertEquals(1, count(events, "net.sf.dbinit.VersionCheck"));
+        assertEquals(2, count(events, "net.sf.dbinit.Patch"));
+        assertEquals(4, count(events, "net.sf.dbinit.Statement"));
+        assertEquals(1, count(events, "net.sf.dbinit.Action"));
+        // Patches and post action
+        assertEquals(3, count(events, "net.sf.dbinit.ScriptRead"));
+        assertEquals(3, count(events, "net.sf.dbinit.ScriptParse"));
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals("net.sf.dbinit.Statement") && event.getInt("patch") == 2) {
+                assertEquals("UPDATE PROJECT SET NAME = UPPER(NAME)", event.getString("sql"));
+                assertEquals(DBSection.SECTION_DEFAULT, event.getString("section"));
+                assertEquals(3, event.getLong("rows"));
+                assertNull(event.getString("error"));
+            }
+        }
+    }
+
+    @Test
+    public void truncated() throws IOException {
+        DBFlightRecorderListener listener = new DBFlightRecorderListener();
+        StringBuilder sql = new StringBuilder("SELECT 1");
+        while (sql.length() <= DBFlightRecorderListener.MAX_SQL) {
+            sql.append(" + 1");
+        }
+        Recording recording = new Recording();
+        try {
+            recording.enable("net.sf.dbinit.Statement");
+            recording.start();
+            assertTrue(listener.isEnabled(DBPhase.STATEMENT));
+            listener.phaseStarted(new DBPhaseEvent(DBPhase.STATEMENT, 1, sql.toString()));
+            listener.phaseFinished(new DBPhaseEvent(DBPhase.STATEMENT, 1, sql.toString(), 1000, null, null, false, "default", 1));
+            recording.stop();
+            List<RecordedEvent> events = read(recording);
+            assertEquals(1, events.size());
+            assertEquals(DBFlightRecorderListener.MAX_SQL, events.get(0).getString("sql").length());
+        } finally {
+            recording.close();
+        }
+    }
+
+    @Test
+    public void nested() throws IOException {
+        DBFlightRecorderListener listener = new DBFlightRecorderListener();
+        Recording recording = new Recording();
+        try {
+            recording.enable("net.sf.dbinit.ScriptRead");
+            recording.start();
+            listener.phaseStarted(new DBPhaseEvent(DBPhase.SCRIPT_READ, 1, "/outer.sql"));
+            listener.phaseStarted(new DBPhaseEvent(DBPhase.SCRIPT_READ, 1, "/inner.sql"));
+            listener.phaseFinished(new DBPhaseEvent(DBPhase.SCRIPT_READ, 1, "/inner.sql", 1000, null, null, false));
+            listener.phaseFinished(new DBPhaseEvent(DBPhase.SCRIPT_READ, 1, "/outer.sql", 2000, null, null, false));
+            recording.stop();
+            List<String> paths = new ArrayList<String>();
+            for (RecordedEvent event : read(recording)) {
+                paths.add(event.getString("path"));
+            }
+            Collections.sort(paths);
+            assertEquals(Arrays.asList("/inner.sql", "/outer.sql"), paths);
+        } finally {
+            recording.close();
+        }
+    }
+
+    private List<RecordedEvent> record(DBInit db) throws IOException {
+        Recording recording = new Recording();
+        try {
+            for (String name : new String[]{"Run", "VersionCheck", "ScriptRead", "ScriptParse", "Patch", "Statement", "Action"}) {
+                recording.enable("net.sf.dbinit." + name);
+            }
+            recording.start();
+            db.run();
+            recording.stop();
+            return read(recording);
+        } finally {
+            recording.close();
+        }
+    }
+
+    private static List<RecordedEvent> read(Recording recording) throws IOException {
+        File file = new File(DIR_DB, "recording.jfr");
+        FileUtils.forceMkdir(file.getParentFile());
+        recording.dump(file.toPath());
+        List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if (event.getEventType().getName().startsWith("net.sf.dbinit.")) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    private static int count(List<RecordedEvent> events, String name) {
+        int count = 0;
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
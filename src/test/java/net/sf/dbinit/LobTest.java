@@ -0,0 +1,155 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the large objects loaded from files.
+ */
+public class LobTest {
+
+    private static final String DIR_DB = "target/dbinit/lob";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + DIR_DB + "/db";
+
+    private DBInit db;
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+        db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/lob/init.sql");
+        db.setResourceUpdate("/dbinit/lob/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+    }
+
+    @Test
+    public void parse() {
+        DBLob lob = DBLob.parse("table=DOC key=42 column=BODY file=\"/seed/my doc.json\" charset=ISO-8859-1");
+        assertEquals("DOC", lob.getTable());
+        assertEquals("ID", lob.getKeyColumn());
+        assertEquals("42", lob.getKey());
+        assertEquals("BODY", lob.getColumn());
+        assertEquals("/seed/my doc.json", lob.getFile());
+        assertEquals("ISO-8859-1", lob.getCharset());
+        assertTrue(lob.isSameColumn(DBLob.parse("table=DOC key=43 column=BODY file=x")));
+        assertFalse(lob.isSameColumn(DBLob.parse("table=DOC key=43 keyColumn=NAME column=BODY file=x")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_missing_file() {
+        DBLob.parse("table=DOC key=42 column=BODY");
+    }
+
+    @Test
+    public void no_info() throws SQLException {
+        db.run();
+        final Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            // Like some drivers, does not report the number of updated rows of the batches
+            Connection noInfo = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    final Object result = LobTest.invoke(c, method, args);
+                    if (!"prepareStatement".equals(method.getName())) {
+                        return result;
+                    }
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            Object value = LobTest.invoke(result, method, args);
+                            if ("executeBatch".equals(method.getName())) {
+                                int[] counts = (int[]) value;
+                                Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+                            }
+                            return value;
+                        }
+                    });
+                }
+            });
+            DBLobLoader loader = new DBLobLoader(noInfo, 10);
+            loader.add(DBLobLoader.PREFIX + "table=DOC key=1 column=BODY file=/dbinit/lob/doc1.json");
+            loader.add(DBLobLoader.PREFIX + "table=DOC key=2 column=BODY file=/dbinit/lob/doc2.json");
+            loader.flush();
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery("SELECT ID, NAME, BODY FROM DOC ORDER BY ID");
+                assertTrue(rs.next());
+                assertEquals("One", rs.getString("NAME"));
+                assertEquals("{\"id\": 1, \"title\": \"caf\u00e9\"}\n", rs.getString("BODY"));
+                // Inserted
+                assertTrue(rs.next());
+                assertEquals(2, rs.getInt("ID"));
+                assertEquals("{\"id\": 2}\n", rs.getString("BODY"));
+                assertFalse(rs.next());
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @Test
+    public void load() throws SQLException, IOException {
+        db.setVersion(1);
+        db.run();
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery("SELECT ID, NAME, BODY, IMAGE FROM DOC ORDER BY ID");
+                assertTrue(rs.next());
+                assertEquals("Loaded", rs.getString("NAME"));
+                assertEquals("{\"id\": 1, \"title\": \"caf\u00e9\"}\n", rs.getString("BODY"));
+                assertArrayEquals(new byte[]{0, 1, 2, (byte) 0xFF, (byte) 0xFE}, IOUtils.toByteArray(rs.getBinaryStream("IMAGE")));
+                // Inserted
+                assertTrue(rs.next());
+                assertEquals(2, rs.getInt("ID"));
+                assertEquals("Loaded", rs.getString("NAME"));
+                assertEquals("{\"id\": 2}\n", rs.getString("BODY"));
+                assertFalse(rs.next());
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the management bean.
+ */
+public class ManagementTest {
+
+    private static final String DIR_DB = "target/dbinit/management";
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    private DBInit create(int version) {
+        DBInit db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL("jdbc:h2:file:" + DIR_DB + "/db");
+        db.setResourceInitialization("/dbinit/test/init.sql");
+        db.setResourceUpdate("/dbinit/test/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setJmxName("management-test");
+        db.setVersion(version);
+        return db;
+    }
+
+    @Test
+    public void histogram() {
+        DBLatencyHistogram histogram = new DBLatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        long p50 = histogram.getPercentile(50);
+        assertTrue("p50 = " + p50, p50 >= 500 && p50 <= 625);
+        long p99 = histogram.getPercentile(99);
+        assertTrue("p99 = " + p99, p99 >= 990 && p99 <= 1000);
+        for (int bucket = 0; bucket < 200; bucket++) {
+            assertEquals(bucket, DBLatencyHistogram.getBucket(DBLatencyHistogram.getLowerBound(bucket)));
+        }
+    }
+
+    @Test
+    public void noStatementEvent() throws Exception {
+        DBInit db = create(2);
+        try {
+            db.run();
+            assertFalse(db.isEnabled(DBPhase.STATEMENT));
+            assertTrue(db.getManagement().getStatementCount() > 0);
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void collision() throws Exception {
+        DBInit first = create(0);
+        DBInit second = create(2);
+        try {
+            first.run();
+            ObjectName name = first.getManagement().getObjectName();
+            // The name is already taken: the bean of the first instance is kept
+            second.run();
+            assertNull(second.getManagement());
+            assertEquals(0, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "TargetVersion"));
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test
+    public void bean() throws Exception {
+        DBInit first = create(0);
+        first.run();
+        first.close();
+        assertNull(first.getManagement());
+        DBInit db = create(2);
+        db.run();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = db.getManagement().getObjectName();
+        try {
+            assertTrue(server.isRegistered(name));
+            assertEquals(2, server.getAttribute(name, "CurrentVersion"));
+            assertEquals(2, server.getAttribute(name, "TargetVersion"));
+            assertEquals(true, server.getAttribute(name, "LastRunSuccess"));
+            assertEquals(2L, server.getAttribute(name, "PatchesApplied"));
+            assertTrue((Long) server.getAttribute(name, "StatementCount") > 0);
+            assertTrue(server.getAttribute(name, "PhaseDurations") instanceof TabularData);
+            assertEquals(2, server.invoke(name, "checkVersion", new Object[0], new String[0]));
+            // The counters are the ones of the last run
+            db.run();
+            assertEquals(0L, server.getAttribute(name, "PatchesApplied"));
+            assertEquals(0L, server.getAttribute(name, "StatementCount"));
+            assertEquals(0L, server.getAttribute(name, "StatementLatencyMaxMicros"));
+        } finally {
+            db.close();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+}
@@ -0,0 +1,207 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the parallel execution of the actions.
+ */
+public class ParallelActionsTest {
+
+    private static final String DIR_DB = "target/dbinit/actions";
+
+    private static final String FILE_DB = DIR_DB + "/db";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + FILE_DB;
+
+    private DBInit db;
+
+    @Before
+    public void before() throws IOException {
+        // Clean-up
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+        // General initialisation
+        db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/actions/init.sql");
+        db.setResourceUpdate("/dbinit/actions/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setVersion(0);
+        db.setParallelism(4);
+    }
+
+    private DBInitDependentAction action(String name, String... dependencies) {
+        DBInitDependentAction action = new DBInitDependentAction(name, new DBInitScriptAction("/dbinit/actions/" + name + ".sql"));
+        action.setDependencies(Arrays.asList(dependencies));
+        return action;
+    }
+
+    @Test
+    public void dependencies() throws SQLException {
+        db.setPostActions(Arrays.<DBInitAction>asList(
+                action("report", "views", "audit"),
+                action("views"),
+                action("audit")
+        ));
+        db.run();
+        // Checks
+        assertTrue(exists("AUDIT_REPORT"));
+    }
+
+    @Test
+    public void failures() throws SQLException {
+        db.setPostActions(Arrays.<DBInitAction>asList(
+                action("error"),
+                action("views", "error"),
+                action("audit")
+        ));
+        try {
+            db.run();
+            fail("Actions should have failed");
+        } catch (DBInitTasksException ex) {
+            assertEquals(Collections.singleton("error"), ex.getFailures().keySet());
+            assertEquals(Collections.singletonList("views"), ex.getSkipped());
+        }
+        // Independent actions have been run
+        assertTrue(exists("AUDIT"));
+        assertFalse(exists("PROJECT_NAMES"));
+    }
+
+    @Test
+    public void concurrent() {
+        // Both tasks must be running at the same time to pass the barrier
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        DBTaskScheduler scheduler = new DBTaskScheduler(db.getConnectionProvider(), 2, "test");
+        for (String name : new String[]{"a", "b"}) {
+            scheduler.add(new TestTask(name, null) {
+                @Override
+                public void run(Connection connection) throws Exception {
+                    barrier.await(5, TimeUnit.SECONDS);
+                }
+            });
+        }
+        scheduler.execute();
+    }
+
+    @Test
+    public void order() {
+        DBTaskScheduler scheduler = new DBTaskScheduler(db.getConnectionProvider(), 4, "test");
+        scheduler.add(new TestTask("report", "views", "audit"));
+        scheduler.add(new TestTask("views", "names"));
+        scheduler.add(new TestTask("names"));
+        scheduler.add(new TestTask("audit"));
+        scheduler.execute();
+        assertEquals(8, events.size());
+        assertBefore("end names", "start views");
+        assertBefore("end views", "start report");
+        assertBefore("end audit", "start report");
+    }
+
+    @Test
+    public void cycle() {
+        DBTaskScheduler scheduler = new DBTaskScheduler(db.getConnectionProvider(), 4, "test");
+        scheduler.add(new TestTask("independent"));
+        scheduler.add(new TestTask("a", "b"));
+        scheduler.add(new TestTask("b", "a"));
+        try {
+            scheduler.execute();
+            fail("The cycle must be detected");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("[a, b]"));
+        }
+        // Nothing has been run
+        assertEquals(Collections.<String>emptyList(), events);
+    }
+
+    @Test
+    public void ownGroup() throws SQLException {
+        // The first action of the group depends on the whole group, including the next action
+        DBInitDependentAction views = action("views", "reports");
+        views.setGroup("reports");
+        DBInitDependentAction report = action("report");
+        report.setGroup("reports");
+        db.setPostActions(Arrays.<DBInitAction>asList(action("audit"), views, report));
+        try {
+            db.run();
+            fail("The cycle must be detected");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("[views, report]"));
+        }
+        // The independent action has not been run either
+        assertFalse(exists("AUDIT"));
+    }
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+    private void assertBefore(String first, String second) {
+        assertTrue(events.toString(), events.indexOf(first) >= 0 && events.indexOf(first) < events.indexOf(second));
+    }
+
+    private class TestTask implements DBTask {
+
+        private final String name;
+        private final List<String> dependencies;
+
+        private TestTask(String name, String... dependencies) {
+            this.name = name;
+            this.dependencies = dependencies != null ? Arrays.asList(dependencies) : Collections.<String>emptyList();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Collection<String> getDependencies() {
+            return dependencies;
+        }
+
+        @Override
+        public void run(Connection connection) throws Exception {
+            events.add("start " + name);
+            Thread.sleep(20);
+            events.add("end " + name);
+        }
+    }
+
+    private boolean exists(String table) throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            ResultSet rs = c.getMetaData().getTables(null, null, table, null);
+            try {
+                return rs.next();
+            } finally {
+                rs.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the concurrent application of the patches according to their dependencies.
+ */
+public class PatchGraphTest {
+
+    private static final String DIR_DB = "target/dbinit/graph";
+
+    private static final String FILE_DB = DIR_DB + "/db";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + FILE_DB;
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    private DBInit create(String name, int version) {
+        DBInit db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/" + name + "/init.sql");
+        db.setResourceUpdate("/dbinit/" + name + "/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setStateTable("DBINIT_STATE");
+        db.setParallelism(4);
+        db.setVersion(version);
+        return db;
+    }
+
+    @Test
+    public void directive() {
+        DBStatements statements = DBInit.readStatements("-- @depends 2, 3\nINSERT INTO A (ID) VALUES (1);\n");
+        assertEquals("2, 3", statements.getDirective(DBInit.DIRECTIVE_DEPENDS));
+        assertEquals(1, statements.getDefaultSection().getStatements().size());
+    }
+
+    @Test
+    public void graph() throws SQLException {
+        create("graph", 0).run();
+        DBInit db = create("graph", 4);
+        db.run();
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 2, 3, 4)), new HashSet<Integer>(db.getLastRun().getAppliedPatches()));
+        assertEquals(4, count("SELECT VALUE FROM VERSION"));
+        assertEquals(1, count("SELECT COUNT(*) FROM BRANCH"));
+    }
+
+    @Test
+    public void failure() throws SQLException {
+        create("graph-error", 0).run();
+        try {
+            create("graph-error", 3).run();
+            fail("Patch 2 should have failed");
+        } catch (DBInitTasksException ex) {
+            assertEquals(Arrays.asList("patch 2"), Arrays.asList(ex.getFailures().keySet().toArray()));
+        }
+        // Highest contiguous version
+        assertEquals(1, count("SELECT VALUE FROM VERSION"));
+        // Patch 3 is recorded and not applied again
+        assertEquals(1, count("SELECT COUNT(*) FROM DBINIT_STATE WHERE STATE_NAME = 'patch:3'"));
+        DBInit db = create("graph-error", 3);
+        try {
+            db.run();
+            fail("Patch 2 should have failed");
+        } catch (DBInitTasksException ex) {
+            assertEquals(Arrays.asList("patch 2"), Arrays.asList(ex.getFailures().keySet().toArray()));
+        }
+        assertTrue(db.getLastRun().getAppliedPatches().isEmpty());
+    }
+
+    @Test
+    public void creationFailure() throws SQLException {
+        try {
+            create("graph-creation", 2).run();
+            fail("Patch 1 should have failed");
+        } catch (DBInitTasksException ex) {
+            assertEquals(Arrays.asList("patch 1"), Arrays.asList(ex.getFailures().keySet().toArray()));
+        }
+        // The creation is committed with a version
+        assertEquals(0, count("SELECT VALUE FROM VERSION"));
+        assertEquals(1, count("SELECT COUNT(*) FROM DBINIT_STATE WHERE STATE_NAME = 'patch:2'"));
+        // The next run patches the database again
+        try {
+            create("graph-creation", 2).run();
+            fail("Patch 1 should have failed");
+        } catch (DBInitTasksException ex) {
+            assertEquals(Arrays.asList("patch 1"), Arrays.asList(ex.getFailures().keySet().toArray()));
+        }
+    }
+
+    @Test
+    public void sequential() throws SQLException {
+        create("progress", 0).run();
+        DBInit db = create("progress", 3);
+        final List<String> reads = new ArrayList<String>();
+        db.addListener(new DBInitListenerAdapter() {
+            @Override
+            public void phaseStarted(DBPhaseEvent event) {
+                if (event.getPhase() == DBPhase.SCRIPT_READ) {
+                    reads.add(event.getName());
+                }
+            }
+        });
+        db.run();
+        // Without dependencies, the scripts read for the graph are reused
+        assertEquals(Arrays.asList("/dbinit/progress/update.1.sql", "/dbinit/progress/update.2.sql", "/dbinit/progress/update.3.sql"), reads);
+        assertEquals(3, count("SELECT VALUE FROM VERSION"));
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery(sql);
+                rs.next();
+                return rs.getInt(1);
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the progress events and the durations of the previous runs.
+ */
+public class ProgressTest {
+
+    private static final String DIR_DB = "target/dbinit/progress";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + DIR_DB + "/db";
+
+    private static final File HISTORY = new File(DIR_DB, "durations.properties");
+
+    private final List<DBPhaseEvent> finished = new ArrayList<DBPhaseEvent>();
+
+    private final List<DBProgressEvent> progress = new ArrayList<DBProgressEvent>();
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    private DBInit create(int version) {
+        DBInit db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/progress/init.sql");
+        db.setResourceUpdate("/dbinit/progress/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setHistoryFile(HISTORY.getPath());
+        db.setEnvironment("test");
+        db.setVersion(version);
+        db.addListener(new DBInitListenerAdapter() {
+            @Override
+            public boolean isEnabled(DBPhase phase) {
+                return true;
+            }
+
+            @Override
+            public synchronized void phaseFinished(DBPhaseEvent event) {
+                finished.add(event);
+            }
+
+            @Override
+            public synchronized void progress(DBProgressEvent event) {
+                progress.add(event);
+            }
+        });
+        return db;
+    }
+
+    private List<DBPhaseEvent> getFinished(DBPhase phase) {
+        List<DBPhaseEvent> events = new ArrayList<DBPhaseEvent>();
+        for (DBPhaseEvent event : finished) {
+            if (event.getPhase() == phase) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    @Test
+    public void progress() throws SQLException, IOException {
+        create(3).run();
+        // Phases
+        assertEquals(1, getFinished(DBPhase.CREATION).size());
+        assertEquals(1, getFinished(DBPhase.RUN).size());
+        List<DBPhaseEvent> patches = getFinished(DBPhase.PATCH);
+        assertEquals(3, patches.size());
+        assertNull(patches.get(0).getExpectedMillis());
+        assertEquals(5, getFinished(DBPhase.STATEMENT).size());
+        // Creation and patches
+        List<DBPhaseEvent> versions = getFinished(DBPhase.VERSION_UPDATE);
+        assertEquals(4, versions.size());
+        assertEquals("3", versions.get(3).getName());
+        // Progress
+        DBProgressEvent last = progress.get(progress.size() - 1);
+        assertEquals(3, last.getCompleted());
+        assertEquals(3, last.getTotal());
+        assertEquals(0, last.getEtaMillis());
+        // History
+        DBDurationHistory history = new DBDurationHistory(HISTORY);
+        history.load();
+        assertNotNull(history.getPatch("test", 2));
+        assertTrue(history.getPatch("test", 2) >= 200);
+        assertNotNull(history.getStatement("test", 3, 1));
+        assertNull(history.getPatch("other", 2));
+    }
+
+    @Test
+    public void eta() throws SQLException, IOException {
+        create(3).run();
+        // New database, same environment
+        FileUtils.forceDelete(new File(DIR_DB, "db.h2.db"));
+        finished.clear();
+        progress.clear();
+        create(3).run();
+        List<DBPhaseEvent> patches = getFinished(DBPhase.PATCH);
+        assertNotNull(patches.get(1).getExpectedMillis());
+        // The ETA is known from the start
+        for (DBProgressEvent event : progress) {
+            assertTrue(event.getEtaMillis() >= 0);
+        }
+    }
+
+    @Test
+    public void concurrentHistory() throws IOException {
+        // Two runs which have loaded the same history
+        DBDurationHistory first = new DBDurationHistory(HISTORY);
+        first.load();
+        DBDurationHistory second = new DBDurationHistory(HISTORY);
+        second.load();
+        first.addPatch("test", 2, 100);
+        second.addPatch("test", 2, 300);
+        second.addPatch("test", 3, 50);
+        first.save();
+        second.save();
+        // Both measures are kept
+        DBDurationHistory history = new DBDurationHistory(HISTORY);
+        history.load();
+        assertEquals(Long.valueOf(200), history.getPatch("test", 2));
+        assertEquals(Long.valueOf(50), history.getPatch("test", 3));
+        assertEquals("200,2", FileUtils.readFileToString(HISTORY).replaceAll("(?s).*test\\.patch\\.2=([0-9,]+).*", "$1"));
+        assertFalse(new File(HISTORY.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void regression() throws SQLException, IOException {
+        DBDurationHistory history = new DBDurationHistory(HISTORY);
+        history.addPatch("test", 2, 10);
+        history.save();
+        DBInit db = create(3);
+        db.run();
+        assertEquals(Arrays.asList(2), db.getLastRun().getRegressions());
+        assertTrue(getFinished(DBPhase.PATCH).get(1).isRegression());
+    }
+
+}
@@ -0,0 +1,207 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the synchronisation of the reference data.
+ */
+public class RefDataTest {
+
+    private static final String DIR_DB = "target/dbinit/refdata";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + DIR_DB + "/db";
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    private DBInit create(int version) {
+        DBInit db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/refdata/init.sql");
+        db.setResourceUpdate("/dbinit/refdata/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setVersion(version);
+        return db;
+    }
+
+    @Test
+    public void parseRow() {
+        assertEquals(Arrays.asList("FR", "France, Republic of", null, "", "a\"b"), DBRefData.parseRow("FR,\"France, Republic of\",,\"\",\"a\"\"b\""));
+    }
+
+    @Test
+    public void sections() throws SQLException {
+        create(0).run();
+        assertEquals("BE=Belgium=1,FR=France=2,LU=Luxembourg=null", countries());
+        create(1).run();
+        assertEquals("BE=Belgium=1,FR=France, Republic of=2,NL=Netherlands=3", countries());
+    }
+
+    @Test
+    public void changes() throws SQLException {
+        create(0).run();
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            DBRefData data = new DBRefData("COUNTRY", Arrays.asList("CODE"), Arrays.asList("CODE", "NAME", "RANK"));
+            data.addRow(Arrays.asList("BE", "Belgium", "1"));
+            data.addRow(Arrays.asList("FR", "France", "2"));
+            data.addRow(Arrays.asList("LU", "Luxembourg", null));
+            DBRefData.Changes changes = data.sync(c, 10);
+            assertEquals(0, changes.getInserted() + changes.getUpdated() + changes.getDeleted());
+            data = new DBRefData("COUNTRY", Arrays.asList("CODE"), Arrays.asList("CODE", "NAME", "RANK"));
+            data.addRow(Arrays.asList("BE", "Belgium", "1"));
+            data.addRow(Arrays.asList("FR", "France", "20"));
+            data.addRow(Arrays.asList("NL", "Netherlands", null));
+            changes = data.sync(c, 10);
+            assertEquals(1, changes.getInserted());
+            assertEquals(1, changes.getUpdated());
+            assertEquals(1, changes.getDeleted());
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void endOfSection() throws SQLException {
+        create(2).run();
+        assertEquals("BE=Belgium=1", countries());
+        // The statements after the sections are not rows
+        assertEquals(2, count("SELECT COUNT(*) FROM CURRENCY"));
+    }
+
+    @Test
+    public void profile() throws SQLException {
+        DBInit db = create(2);
+        Properties properties = new Properties();
+        properties.setProperty(DBInit.SYSTEM_PROFILE, "test");
+        db.setProperties(properties);
+        db.run();
+        assertEquals("BE=Belgium (test)=1", countries());
+        assertEquals(2, count("SELECT COUNT(*) FROM CURRENCY"));
+    }
+
+    @Test
+    public void types() throws SQLException {
+        create(0).run();
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                st.execute("CREATE TABLE PRICE (CODE CHAR(4) NOT NULL PRIMARY KEY, AMOUNT DECIMAL(10,2), VALID_FROM TIMESTAMP, ACTIVE BOOLEAN)");
+            } finally {
+                st.close();
+            }
+            DBRefData data = new DBRefData("PRICE", Arrays.asList("CODE"), Arrays.asList("CODE", "AMOUNT", "VALID_FROM", "ACTIVE"));
+            data.addRow(Arrays.asList("A", "1.5", "2020-01-01", "1"));
+            data.addRow(Arrays.asList("B", "10", "2020-01-01 12:30:00", "false"));
+            DBRefData.Changes changes = data.sync(c, 10);
+            assertEquals(2, changes.getInserted());
+            // Same values, in the form returned by the database
+            changes = data.sync(c, 10);
+            assertEquals(0, changes.getInserted() + changes.getUpdated() + changes.getDeleted());
+            // Changed value
+            data = new DBRefData("PRICE", Arrays.asList("CODE"), Arrays.asList("CODE", "AMOUNT", "VALID_FROM", "ACTIVE"));
+            data.addRow(Arrays.asList("A", "1.50", "2020-01-01 00:00:00.0", "true"));
+            data.addRow(Arrays.asList("B", "10.01", "2020-01-01 12:30:00", "false"));
+            changes = data.sync(c, 10);
+            assertEquals(0, changes.getInserted() + changes.getDeleted());
+            assertEquals(1, changes.getUpdated());
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void normalize() {
+        assertEquals("1.5", DBRefData.normalize("1.50", Types.DECIMAL));
+        assertEquals("0", DBRefData.normalize("0.00", Types.DECIMAL));
+        assertEquals("100", DBRefData.normalize("1E+2", Types.DOUBLE));
+        assertEquals("2020-01-01 00:00:00.0", DBRefData.normalize("2020-01-01", Types.TIMESTAMP));
+        assertEquals("A", DBRefData.normalize("A   ", Types.CHAR));
+        assertEquals("A   ", DBRefData.normalize("A   ", Types.VARCHAR));
+        assertEquals("true", DBRefData.normalize("TRUE", Types.BOOLEAN));
+        assertEquals("abc", DBRefData.normalize("abc", Types.INTEGER));
+    }
+
+    @Test
+    public void action() throws SQLException {
+        DBRefDataAction action = new DBRefDataAction("CURRENCY", Arrays.asList("CODE"));
+        action.setResource("/dbinit/refdata/currency.csv");
+        DBInit db = create(0);
+        db.setPostActions(Collections.<DBInitAction>singletonList(action));
+        db.run();
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM CURRENCY");
+                rs.next();
+                assertEquals(2, rs.getInt(1));
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery(sql);
+                rs.next();
+                return rs.getInt(1);
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    private String countries() throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery("SELECT CODE, NAME, RANK FROM COUNTRY ORDER BY CODE");
+                StringBuilder s = new StringBuilder();
+                while (rs.next()) {
+                    if (s.length() > 0) {
+                        s.append(",");
+                    }
+                    s.append(rs.getString(1)).append("=").append(rs.getString(2)).append("=").append(rs.getString(3));
+                }
+                return s.toString();
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the rehearsal of the patches on a shadow database.
+ */
+public class RehearsalTest {
+
+    private static final String DIR_DB = "target/dbinit/rehearsal";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + DIR_DB + "/db";
+
+    private DBInit db;
+
+    @Before
+    public void before() throws IOException, SQLException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+        db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/rehearsal/init.sql");
+        db.setResourceUpdate("/dbinit/rehearsal/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setVersion(0);
+        db.run();
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                for (int i = 1; i <= 50; i++) {
+                    st.execute(String.format("INSERT INTO ITEM (ID, NAME) VALUES (%d, 'Item %d')", i, i));
+                }
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    private void assertUnchanged() throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            assertEquals(0, db.getCurrentVersion(c).intValue());
+            ResultSet rs = c.getMetaData().getColumns(null, null, "ITEM", "PRICE");
+            try {
+                assertFalse(rs.next());
+            } finally {
+                rs.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void definition() throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            List<String> statements = new DBRehearsal(db).getDefinition(c, "ITEM");
+            assertEquals("CREATE TABLE ITEM (ID INTEGER NOT NULL, NAME VARCHAR(40) NOT NULL, PRIMARY KEY (ID))", statements.get(0));
+            assertEquals("CREATE INDEX IF NOT EXISTS IDX_ITEM_NAME ON ITEM (NAME)", statements.get(1));
+            assertEquals(2, statements.size());
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void success() throws SQLException {
+        db.setVersion(1);
+        DBRehearsal rehearsal = new DBRehearsal(db);
+        rehearsal.setSampleRows(10);
+        DBRehearsalReport report = rehearsal.rehearse();
+        assertTrue(report.getError(), report.isSuccess());
+        assertEquals(0, report.getInitialVersion().intValue());
+        assertEquals(1, report.getPatches().size());
+        assertTrue(report.getPatches().containsKey(1));
+        // 10 items and the version
+        assertEquals(11, report.getSampledRows());
+        assertEquals(51, report.getTotalRows());
+        assertEquals(2, report.getHeaviestStatements().size());
+        assertEquals(1, report.getHeaviestStatements().get(0).getPatch().intValue());
+        assertUnchanged();
+    }
+
+    @Test
+    public void structureOnly() throws SQLException {
+        db.setVersion(1);
+        DBRehearsal rehearsal = new DBRehearsal(db);
+        rehearsal.setSampleRows(0);
+        DBRehearsalReport report = rehearsal.rehearse();
+        assertTrue(report.getError(), report.isSuccess());
+        assertEquals(0, report.getInitialVersion().intValue());
+        assertEquals(1, report.getPatches().size());
+        // The version only
+        assertEquals(1, report.getSampledRows());
+        assertUnchanged();
+    }
+
+    @Test
+    public void fullStateTable() throws SQLException {
+        db.setStateTable("DBINIT_STATE");
+        db.run();
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        int states;
+        try {
+            DBStateTable stateTable = db.getStateStore();
+            for (int i = 1; i <= 5; i++) {
+                stateTable.put(c, "rehearsal:" + i, "done", 0);
+            }
+            states = stateTable.load(c, "").size();
+        } finally {
+            c.close();
+        }
+        db.setVersion(1);
+        DBRehearsal rehearsal = new DBRehearsal(db);
+        rehearsal.setSampleRows(2);
+        DBRehearsalReport report = rehearsal.rehearse();
+        assertTrue(report.getError(), report.isSuccess());
+        assertEquals(1, report.getPatches().size());
+        // 2 items, the version and all the states
+        assertTrue(states >= 5);
+        assertEquals(3 + states, report.getSampledRows());
+    }
+
+    @Test
+    public void failure() throws SQLException {
+        db.setVersion(2);
+        DBRehearsal rehearsal = new DBRehearsal(db);
+        rehearsal.setMaxStatements(1);
+        DBRehearsalReport report = rehearsal.rehearse();
+        assertFalse(report.isSuccess());
+        assertEquals(2, report.getFailedPatch().intValue());
+        assertTrue(report.getError(), report.getError().contains("MISSING"));
+        assertEquals(1, report.getPatches().size());
+        assertEquals(1, report.getHeaviestStatements().size());
+        assertUnchanged();
+    }
+
+    @Test
+    public void heaviest_statements() {
+        DBRehearsalReport report = new DBRehearsalReport(2);
+        for (long duration : new long[]{5, 1, 9, 3}) {
+            report.addStatement(new DBPhaseEvent(DBPhase.STATEMENT, 1, "S" + duration, duration, null, null, false));
+        }
+        assertEquals("S9", report.getHeaviestStatements().get(0).getName());
+        assertEquals("S5", report.getHeaviestStatements().get(1).getName());
+    }
+
+}
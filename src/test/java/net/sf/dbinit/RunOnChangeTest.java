@@ -0,0 +1,121 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for the skipping of the unchanged post actions.
+ */
+public class RunOnChangeTest {
+
+    private static final String DIR_DB = "target/dbinit/rerun";
+
+    private static final String FILE_DB = DIR_DB + "/db";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + FILE_DB;
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    private DBInit create(int version, Properties properties) {
+        DBInit db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/rerun/init.sql");
+        db.setResourceUpdate("/dbinit/rerun/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setStateTable("DBINIT_STATE");
+        db.setPostActions(Collections.<DBInitAction>singletonList(new DBInitScriptAction("/dbinit/rerun/post.sql")));
+        db.setVersion(version);
+        db.setProperties(properties);
+        return db;
+    }
+
+    @Test
+    public void unchanged() throws SQLException {
+        create(0, new Properties()).run();
+        create(0, new Properties()).run();
+        assertEquals(1, countRuns());
+    }
+
+    @Test
+    public void forced() throws SQLException {
+        create(0, new Properties()).run();
+        Properties properties = new Properties();
+        properties.setProperty(DBInit.SYSTEM_RERUN, "/dbinit/rerun/post.sql");
+        create(0, properties).run();
+        properties.setProperty(DBInit.SYSTEM_RERUN, "all");
+        create(0, properties).run();
+        assertEquals(3, countRuns());
+    }
+
+    @Test
+    public void versionChanged() throws SQLException {
+        create(0, new Properties()).run();
+        create(1, new Properties()).run();
+        create(1, new Properties()).run();
+        assertEquals(2, countRuns());
+    }
+
+    @Test
+    public void rolledBack() throws SQLException {
+        for (int i = 0; i < 2; i++) {
+            DBInit db = create(0, new Properties());
+            db.setPostActions(Collections.<DBInitAction>singletonList(new DBInitScriptAction("/dbinit/rerun/failing.sql")));
+            db.run();
+        }
+        // The script has been rolled back, so its checksum is not stored
+        assertEquals(2, count("SELECT COUNT(*) FROM RUNS WHERE NAME = 'rollback'"));
+    }
+
+    @Test
+    public void preActions() throws SQLException {
+        for (int i = 0; i < 2; i++) {
+            DBInit db = create(0, new Properties());
+            db.setPreActions(Collections.<DBInitAction>singletonList(new DBInitScriptAction("/dbinit/rerun/pre.sql")));
+            db.run();
+        }
+        // Pre-actions are never skipped
+        assertEquals(2, count("SELECT COUNT(*) FROM PRE_RUNS"));
+        assertEquals(1, countRuns());
+    }
+
+    private int countRuns() throws SQLException {
+        return count("SELECT COUNT(*) FROM RUNS");
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery(sql);
+                rs.next();
+                return rs.getInt(1);
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+}
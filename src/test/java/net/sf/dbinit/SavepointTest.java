@@ -0,0 +1,204 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the savepoint mode and the error policies.
+ */
+public class SavepointTest {
+
+    private static final String DIR_DB = "target/dbinit/savepoint";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + DIR_DB + "/db";
+
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+
+    private DBInit db;
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+        db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/savepoint/init.sql");
+        db.setResourceUpdate("/dbinit/savepoint/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setSavepoints(true);
+        db.addListener(new DBInitListenerAdapter() {
+            @Override
+            public boolean isEnabled(DBPhase phase) {
+                return true;
+            }
+
+            @Override
+            public void phaseFinished(DBPhaseEvent event) {
+                if (event.getPhase() == DBPhase.STATEMENT && event.getError() != null) {
+                    failures.add(event.getPatch() + ":" + event.getName());
+                }
+            }
+        });
+    }
+
+    private String query(String sql) throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery(sql);
+                List<String> values = new ArrayList<String>();
+                while (rs.next()) {
+                    values.add(rs.getString(1));
+                }
+                return values.toString();
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void policies() {
+        DBErrorPolicy.parse(null);
+        assertEquals(DBErrorPolicy.Action.FAIL, DBErrorPolicy.parse(" ").getAction());
+        assertEquals(DBErrorPolicy.Action.SKIP, DBErrorPolicy.parse("skip").getAction());
+        DBErrorPolicy retry = DBErrorPolicy.parse("retry");
+        assertEquals(3, retry.getRetries());
+        retry = DBErrorPolicy.parse("RETRY 5 100");
+        assertEquals(5, retry.getRetries());
+        assertEquals(100, retry.getDelayMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void policy_unknown() {
+        DBErrorPolicy.parse("ignore");
+    }
+
+    @Test
+    public void skip() throws SQLException {
+        db.setVersion(2);
+        db.run();
+        assertEquals("[1, 2, 3]", query("SELECT ID FROM PROJECT ORDER BY ID"));
+        assertEquals("[2]", query("SELECT VALUE FROM VERSION"));
+        assertEquals(1, failures.size());
+    }
+
+    @Test
+    public void auto_commit_without_commit() throws SQLException {
+        // Like the SQLite driver, rejects the commits and rollbacks in auto-commit mode
+        db = new DBInit() {
+            @Override
+            protected Connection getConnection() throws SQLException {
+                final Connection connection = DriverManager.getConnection(JDBC_URL, "SA", "");
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (("commit".equals(method.getName()) || "rollback".equals(method.getName())) && args == null && connection.getAutoCommit()) {
+                            throw new SQLException("database in auto-commit mode");
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                    }
+                });
+            }
+        };
+        db.setResourceInitialization("/dbinit/savepoint/init.sql");
+        db.setResourceUpdate("/dbinit/savepoint/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setVersion(2);
+        db.run();
+        assertEquals("[1, 2, 3]", query("SELECT ID FROM PROJECT ORDER BY ID"));
+        assertEquals("[2]", query("SELECT VALUE FROM VERSION"));
+    }
+
+    @Test
+    public void skip_in_transaction_without_savepoint_mode() throws SQLException {
+        final AtomicInteger savepoints = new AtomicInteger();
+        db = new DBInit() {
+            @Override
+            protected Connection getConnection() throws SQLException {
+                final Connection connection = DriverManager.getConnection(JDBC_URL, "SA", "");
+                connection.setAutoCommit(false);
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("setSavepoint".equals(method.getName())) {
+                            savepoints.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                    }
+                });
+            }
+        };
+        db.setResourceInitialization("/dbinit/savepoint/init.sql");
+        db.setResourceUpdate("/dbinit/savepoint/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setVersion(2);
+        db.run();
+        assertEquals("[1, 2, 3]", query("SELECT ID FROM PROJECT ORDER BY ID"));
+        assertEquals("[2]", query("SELECT VALUE FROM VERSION"));
+        // One per statement of the patch declaring the policy
+        assertEquals(3, savepoints.get());
+    }
+
+    @Test
+    public void retry_and_keep_previous_patches() throws SQLException {
+        db.setVersion(1);
+        db.run();
+        db.setVersion(3);
+        try {
+            db.run();
+            fail("Patch 3 must fail");
+        } catch (DBInitPatchException ex) {
+            assertEquals(3, ex.getPatch());
+        }
+        // Skipped in patch 2, executed three times in patch 3
+        assertEquals(4, failures.size());
+        assertTrue(failures.get(0).startsWith("2:"));
+        assertTrue(failures.get(3).startsWith("3:"));
+        // Patch 2 is kept, patch 3 is rolled back
+        assertEquals("[2]", query("SELECT VALUE FROM VERSION"));
+        assertEquals("[1, 2, 3]", query("SELECT ID FROM PROJECT ORDER BY ID"));
+    }
+
+}
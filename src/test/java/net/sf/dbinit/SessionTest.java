@@ -0,0 +1,141 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the session tuning sections.
+ */
+public class SessionTest {
+
+    private static final String DIR_DB = "target/dbinit/session";
+
+    private static final String FILE_DB = DIR_DB + "/db";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + FILE_DB;
+
+    /**
+     * Value of the session variable when the migration connection is closed
+     */
+    private Integer valueAtClose;
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+        valueAtClose = null;
+    }
+
+    private DBInit create(int version, String profile) {
+        DBInit db = new DBInit();
+        db.setJdbcDataSource(new SessionDataSource());
+        db.setResourceInitialization("/dbinit/session/init.sql");
+        db.setResourceUpdate("/dbinit/session/update.{0}.sql");
+        db.setResourceSession("/dbinit/session/session.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setVersion(version);
+        Properties properties = new Properties();
+        properties.setProperty(DBInit.SYSTEM_PROFILE, profile);
+        db.setProperties(properties);
+        return db;
+    }
+
+    @Test
+    public void session() throws SQLException {
+        create(0, "test").run();
+        assertEquals(1, tuning());
+        assertEquals(Integer.valueOf(0), valueAtClose);
+    }
+
+    @Test
+    public void profile() throws SQLException {
+        create(0, "other").run();
+        assertEquals(2, tuning());
+        // No restore section for this profile, the default one is used
+        assertEquals(Integer.valueOf(0), valueAtClose);
+    }
+
+    @Test
+    public void restoreOnFailure() throws SQLException {
+        create(0, "test").run();
+        valueAtClose = null;
+        try {
+            create(1, "test").run();
+            fail("The patch should have failed");
+        } catch (DBInitPatchException ex) {
+            // Expected
+        }
+        assertEquals(Integer.valueOf(0), valueAtClose);
+    }
+
+    private int tuning() throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery("SELECT VALUE FROM TUNING");
+                assertTrue(rs.next());
+                return rs.getInt(1);
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Data source which reads the session variable before closing the connection
+     */
+    private class SessionDataSource extends JdbcDataSource {
+
+        private SessionDataSource() {
+            setURL(JDBC_URL);
+            setUser("SA");
+            setPassword("");
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if ("close".equals(method.getName())) {
+                        Statement st = connection.createStatement();
+                        try {
+                            ResultSet rs = st.executeQuery("SELECT @SESSION_TUNED");
+                            rs.next();
+                            valueAtClose = rs.getInt(1);
+                        } finally {
+                            st.close();
+                        }
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                }
+            });
+        }
+    }
+
+}
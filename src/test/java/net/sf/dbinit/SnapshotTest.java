@@ -0,0 +1,174 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the snapshot taken before the patches.
+ */
+public class SnapshotTest {
+
+    private static final String DIR_DB = "target/dbinit/snapshot";
+
+    private static final String JDBC_URL = "jdbc:h2:file:" + DIR_DB + "/db";
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    private DBInit create(int version) {
+        return configure(new DBInit(), version);
+    }
+
+    private DBInit configure(DBInit db, int version) {
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL(JDBC_URL);
+        db.setResourceInitialization("/dbinit/snapshot/init.sql");
+        db.setResourceUpdate("/dbinit/snapshot/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setVersion(version);
+        return db;
+    }
+
+    @Test
+    public void withoutSnapshot() throws SQLException {
+        create(1).run();
+        runFailing(create(3));
+        // The DDL of patch 2 cannot be rolled back
+        assertEquals(1, count("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'TASK'"));
+        assertEquals(2, count("SELECT MAX(VALUE) FROM VERSION"));
+    }
+
+    @Test
+    public void transactionRolledBack() throws SQLException {
+        create(1).run();
+        DBInit db = configure(new DBInit() {
+            @Override
+            protected Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                connection.setAutoCommit(false);
+                return connection;
+            }
+        }, 3);
+        runFailing(db);
+        // Patch 2 has been rolled back with the transaction
+        assertEquals(1, count("SELECT MAX(VALUE) FROM VERSION"));
+        assertTrue(db.getLastRun().getAppliedPatches().isEmpty());
+    }
+
+    @Test
+    public void script() throws SQLException {
+        create(1).run();
+        DBInit db = create(3);
+        db.setSnapshot(new DBScriptSnapshot(new File(DIR_DB, "snapshot.sql")));
+        runFailing(db);
+        assertRestored(db);
+    }
+
+    @Test
+    public void backup() throws SQLException {
+        create(1).run();
+        DBInit db = create(3);
+        db.setSnapshotFile(DIR_DB + "/snapshot.zip");
+        assertTrue(db.getSnapshot() instanceof DBBackupSnapshot);
+        runFailing(db);
+        assertRestored(db);
+        // The restored database can be patched again
+        create(2).run();
+        assertEquals(2, count("SELECT MAX(VALUE) FROM VERSION"));
+    }
+
+    @Test
+    public void backupRemovesNewFiles() throws SQLException {
+        create(1).run();
+        final File newFile = new File(DIR_DB, "db.new.db");
+        DBInit db = create(3);
+        db.setSnapshot(new DBBackupSnapshot(new File(DIR_DB, "snapshot.zip")) {
+            @Override
+            public void take(Connection connection) throws SQLException {
+                super.take(connection);
+                try {
+                    // Like a LOB file created by the patches
+                    FileUtils.touch(newFile);
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        });
+        runFailing(db);
+        assertRestored(db);
+        assertFalse(newFile.exists());
+        // Only the files of the database are replaced
+        assertTrue(new File(DIR_DB, "snapshot.zip").exists());
+        assertFalse(new File(DIR_DB, "db.restore.tmp").exists());
+        assertFalse(new File(DIR_DB, "db.replaced.tmp").exists());
+    }
+
+    @Test
+    public void noPatch() throws SQLException {
+        create(1).run();
+        DBInit db = create(1);
+        db.setSnapshot(new DBScriptSnapshot(new File(DIR_DB, "snapshot.sql")));
+        db.run();
+        assertFalse(db.getSnapshot().isTaken());
+        assertFalse(db.getLastRun().isRestored());
+    }
+
+    private static void runFailing(DBInit db) {
+        try {
+            db.run();
+            fail("Patch 3 must fail");
+        } catch (DBInitPatchException ex) {
+            assertEquals(3, ex.getPatch());
+        }
+    }
+
+    private void assertRestored(DBInit db) throws SQLException {
+        assertTrue(db.getLastRun().isRestored());
+        assertTrue(db.getLastRun().getAppliedPatches().isEmpty());
+        assertEquals(1, count("SELECT MAX(VALUE) FROM VERSION"));
+        assertEquals(0, count("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'TASK'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'PROJECT' AND COLUMN_NAME = 'CODE'"));
+        assertEquals(2, count("SELECT COUNT(*) FROM PROJECT WHERE NAME <> 'Changed'"));
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection c = DriverManager.getConnection(JDBC_URL, "SA", "");
+        try {
+            Statement st = c.createStatement();
+            try {
+                ResultSet rs = st.executeQuery(sql);
+                try {
+                    rs.next();
+                    return rs.getInt(1);
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                st.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+package net.sf.dbinit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the watch mode.
+ */
+public class WatchTest {
+
+    private static final String DIR_DB = "target/dbinit/watch";
+
+    private static final String DIR_SCRIPTS = DIR_DB + "/scripts";
+
+    private final AtomicInteger drops = new AtomicInteger();
+
+    private DBInit db;
+
+    private DBInitWatcher watcher;
+
+    @Before
+    public void before() throws IOException {
+        File dir = new File(DIR_DB);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+        write("init.sql", "CREATE TABLE VERSION (VALUE INTEGER NOT NULL, VALUE_DATE TIMESTAMP NOT NULL);");
+        write("update.1.sql", "CREATE TABLE PROJECT (ID INTEGER NOT NULL, NAME VARCHAR(40) NOT NULL);");
+        write("update.2.sql", "ALTER TABLE PROJECT ADD URL VARCHAR(200);");
+        db = new DBInit();
+        db.setJdbcDriver("org.h2.Driver");
+        db.setJdbcUser("SA");
+        db.setJdbcPassword("");
+        db.setJdbcURL("jdbc:h2:file:" + DIR_DB + "/db");
+        db.setResourceInitialization(DIR_SCRIPTS + "/init.sql");
+        db.setResourceUpdate(DIR_SCRIPTS + "/update.{0}.sql");
+        db.setVersionTable("VERSION");
+        db.setVersionColumnName("value");
+        db.setVersionColumnTimestamp("value_date");
+        db.setVersion(2);
+        watcher = new DBInitWatcher(db, new DBScriptSnapshot(new File(DIR_DB, "snapshot.sql"))) {
+            @Override
+            protected void drop(Connection connection) throws SQLException {
+                drops.incrementAndGet();
+                super.drop(connection);
+            }
+        };
+        // The test checks the scripts itself
+        watcher.setInterval(3600000);
+    }
+
+    @After
+    public void after() {
+        watcher.stop();
+    }
+
+    private static void write(String name, String sql) throws IOException {
+        FileUtils.writeStringToFile(new File(DIR_SCRIPTS, name), sql);
+    }
+
+    private boolean hasColumn(String column) throws SQLException {
+        Connection connection = db.getConnection();
+        try {
+            ResultSet rs = connection.getMetaData().getColumns(null, null, "PROJECT", column);
+            try {
+                return rs.next();
+            } finally {
+                rs.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void newest_patch() throws Exception {
+        watcher.start();
+        assertTrue(hasColumn("URL"));
+        assertFalse(watcher.check());
+        write("update.2.sql", "ALTER TABLE PROJECT ADD HOME VARCHAR(200);");
+        assertTrue(watcher.check());
+        assertFalse(hasColumn("URL"));
+        assertTrue(hasColumn("HOME"));
+        assertEquals(0, drops.get());
+        // Only the newest patch has been applied again
+        assertEquals(1, db.getLastRun().getInitialVersion().intValue());
+        assertEquals(2, db.getVersion());
+    }
+
+    @Test
+    public void older_patch() throws Exception {
+        watcher.start();
+        write("update.1.sql", "CREATE TABLE PROJECT (ID INTEGER NOT NULL, NAME VARCHAR(40) NOT NULL, OWNER VARCHAR(40));");
+        assertTrue(watcher.check());
+        assertEquals(1, drops.get());
+        assertTrue(hasColumn("OWNER"));
+        assertTrue(hasColumn("URL"));
+        // The snapshot is taken again before the newest patch
+        write("update.2.sql", "ALTER TABLE PROJECT ADD HOME VARCHAR(200);");
+        assertTrue(watcher.check());
+        assertEquals(1, drops.get());
+        assertTrue(hasColumn("OWNER"));
+        assertTrue(hasColumn("HOME"));
+        assertFalse(hasColumn("URL"));
+    }
+
+    @Test
+    public void new_patch() throws Exception {
+        watcher.start();
+        write("update.3.sql", "ALTER TABLE PROJECT ADD HOME VARCHAR(200);");
+        assertTrue(watcher.check());
+        assertEquals(3, db.getVersion());
+        assertTrue(hasColumn("HOME"));
+        assertTrue(hasColumn("URL"));
+        write("update.3.sql", "ALTER TABLE PROJECT ADD OWNER VARCHAR(40);");
+        assertTrue(watcher.check());
+        assertFalse(hasColumn("HOME"));
+        assertTrue(hasColumn("OWNER"));
+        assertEquals(0, drops.get());
+    }
+
+    @Test
+    public void existing_database() throws Exception {
+        db.run();
+        // Already at the newest version, the database is rebuilt
+        watcher.start();
+        assertEquals(1, drops.get());
+        assertTrue(hasColumn("URL"));
+    }
+
+}
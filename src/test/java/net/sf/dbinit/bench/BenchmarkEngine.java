@@ -0,0 +1,146 @@
+package net.sf.dbinit.bench;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.text.MessageFormat;
+
+/**
+ * Embedded database engine used by the benchmarks.
+ */
+public class BenchmarkEngine {
+
+    private static final File DIR = new File("target/dbinit/bench/db");
+
+    public static BenchmarkEngine h2File() {
+        return new BenchmarkEngine("h2-file", "org.h2.Driver", "jdbc:h2:file:" + DIR.getPath() + "/h2-file/{0}/db", "SA", "", false);
+    }
+
+    public static BenchmarkEngine h2Memory() {
+        return new BenchmarkEngine("h2-mem", "org.h2.Driver", "jdbc:h2:mem:{0}", "SA", "", true);
+    }
+
+    public static BenchmarkEngine hsqldbFile() {
+        return new BenchmarkEngine("hsqldb-file", "org.hsqldb.jdbc.JDBCDriver", "jdbc:hsqldb:file:" + DIR.getPath() + "/hsqldb-file/{0}/db;shutdown=true", "SA", "", false);
+    }
+
+    public static BenchmarkEngine hsqldbMemory() {
+        return new BenchmarkEngine("hsqldb-mem", "org.hsqldb.jdbc.JDBCDriver", "jdbc:hsqldb:mem:{0};shutdown=true", "SA", "", true);
+    }
+
+    public static BenchmarkEngine derbyFile() {
+        BenchmarkEngine engine = new BenchmarkEngine("derby-file", "org.apache.derby.jdbc.EmbeddedDriver", "jdbc:derby:" + DIR.getPath() + "/derby-file/{0}/db;create=true", "", "", false);
+        engine.setShutdownURL("jdbc:derby:" + DIR.getPath() + "/derby-file/{0}/db;shutdown=true");
+        return engine;
+    }
+
+    public static BenchmarkEngine sqliteFile() {
+        return new BenchmarkEngine("sqlite-file", "org.sqlite.JDBC", "jdbc:sqlite:" + DIR.getPath() + "/sqlite-file/{0}/db", "", "", false);
+    }
+
+    private final String name;
+    private final String driver;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final boolean inMemory;
+    private String shutdownURL;
+    private Connection keepAlive;
+
+    /**
+     * @param url      JDBC URL, with a {0} placeholder for the name of the database
+     * @param inMemory <code>true</code> if a connection must be kept open for the database to survive between two runs
+     */
+    public BenchmarkEngine(String name, String driver, String url, String user, String password, boolean inMemory) {
+        this.name = name;
+        this.driver = driver;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.inMemory = inMemory;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDriver() {
+        return driver;
+    }
+
+    public String getURL(String database) {
+        return MessageFormat.format(url, database);
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * @param shutdownURL JDBC URL, with a {0} placeholder for the name of the database, to connect to in order to
+     *                    release the files of the database before it is dropped
+     */
+    public void setShutdownURL(String shutdownURL) {
+        this.shutdownURL = shutdownURL;
+    }
+
+    /**
+     * @return <code>true</code> if the JDBC driver is on the class path
+     */
+    public boolean isAvailable() {
+        try {
+            Class.forName(driver);
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Prepares a new empty database
+     */
+    public void open(String database) throws SQLException, IOException {
+        close(database);
+        if (!inMemory) {
+            FileUtils.forceMkdir(new File(DIR, name + "/" + database));
+        }
+        if (inMemory) {
+            try {
+                Class.forName(driver);
+            } catch (ClassNotFoundException ex) {
+                throw new IllegalStateException(ex);
+            }
+            keepAlive = DriverManager.getConnection(getURL(database), user, password);
+        }
+    }
+
+    /**
+     * Drops the database
+     */
+    public void close(String database) throws SQLException, IOException {
+        if (keepAlive != null) {
+            keepAlive.close();
+            keepAlive = null;
+        }
+        if (shutdownURL != null) {
+            try {
+                DriverManager.getConnection(MessageFormat.format(shutdownURL, database), user, password).close();
+            } catch (SQLException ignored) {
+                // Expected when the database is shut down, or when it does not exist
+            }
+        }
+        File dir = new File(DIR, name + "/" + database);
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+}
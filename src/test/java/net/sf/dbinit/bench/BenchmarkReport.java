@@ -0,0 +1,122 @@
+package net.sf.dbinit.bench;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes the benchmark results as JSON lines, one object per scenario.
+ */
+public class BenchmarkReport {
+
+    private final PrintWriter writer;
+    private final Map<String, Object> header = new LinkedHashMap<String, Object>();
+
+    public BenchmarkReport(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        writer = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+        header.put("dbinit", System.getProperty("dbinit.bench.version", "unknown"));
+        header.put("java", System.getProperty("java.version"));
+        header.put("timestamp", System.currentTimeMillis());
+    }
+
+    /**
+     * Writes the result of one scenario
+     *
+     * @param values         Identification and specific values of the scenario
+     * @param statements     Number of statements executed in one iteration
+     * @param nanos          Duration of each iteration
+     * @param statementNanos Duration of each statement of the patches during the measured iterations (the statements
+     *                       of the initialisation script are not reported one by one)
+     * @param peakHeap       Peak heap usage during the scenario
+     * @param allocated      Bytes allocated by the thread calling {@link net.sf.dbinit.DBInit#run()} during the
+     *                       measured iterations, without the worker threads
+     */
+    public void write(Map<String, Object> values, int statements, long[] nanos, long[] statementNanos, long peakHeap, long allocated) {
+        long total = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (long n : nanos) {
+            total += n;
+            min = Math.min(min, n);
+            max = Math.max(max, n);
+        }
+        Map<String, Object> run = new LinkedHashMap<String, Object>();
+        run.put("min", millis(min));
+        run.put("mean", millis(total / nanos.length));
+        run.put("max", millis(max));
+        Map<String, Object> result = new LinkedHashMap<String, Object>(header);
+        result.putAll(values);
+        result.put("statements", statements);
+        result.put("iterations", nanos.length);
+        result.put("statementsPerSecond", Math.round(statements * nanos.length * 1e9 / total));
+        result.put("runMillis", run);
+        result.put("statementLatencyMillis", latency(statementNanos));
+        result.put("peakHeapBytes", peakHeap);
+        result.put("mainThreadAllocatedBytesPerSecond", allocated < 0 ? null : Math.round(allocated * 1e9 / total));
+        writer.println(toJSON(result));
+        writer.flush();
+    }
+
+    /**
+     * Writes any other information, after the common header
+     */
+    public void write(Map<String, Object> values) {
+        Map<String, Object> result = new LinkedHashMap<String, Object>(header);
+        result.putAll(values);
+        writer.println(toJSON(result));
+        writer.flush();
+    }
+
+    public void close() {
+        writer.close();
+    }
+
+    /**
+     * Percentiles of the durations of the statements, or <code>null</code> if none has been recorded
+     */
+    private static Map<String, Object> latency(long[] nanos) {
+        if (nanos.length == 0) {
+            return null;
+        }
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        Map<String, Object> latency = new LinkedHashMap<String, Object>();
+        latency.put("count", sorted.length);
+        latency.put("p50", millis(percentile(sorted, 50)));
+        latency.put("p90", millis(percentile(sorted, 90)));
+        latency.put("p99", millis(percentile(sorted, 99)));
+        latency.put("max", millis(sorted[sorted.length - 1]));
+        return latency;
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    private static String toJSON(Object value) {
+        if (value == null) {
+            return "null";
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        } else if (value instanceof Map) {
+            StringBuilder s = new StringBuilder("{");
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (s.length() > 1) {
+                    s.append(",");
+                }
+                s.append(toJSON(String.valueOf(entry.getKey()))).append(":").append(toJSON(entry.getValue()));
+            }
+            return s.append("}").toString();
+        } else {
+            return "\"" + value.toString().replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r") + "\"";
+        }
+    }
+
+}
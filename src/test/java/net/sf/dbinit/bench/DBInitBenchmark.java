@@ -0,0 +1,325 @@
+package net.sf.dbinit.bench;
+
+import net.sf.dbinit.DBInit;
+import net.sf.dbinit.DBInitListenerAdapter;
+import net.sf.dbinit.DBPhase;
+import net.sf.dbinit.DBPhaseEvent;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+
+/**
+ * End-to-end benchmarks of {@link DBInit#run()} on synthetic workloads.
+ * <p>
+ * Run with <code>mvn test -P benchmark</code>. The results are written in <code>target/dbinit-benchmark.json</code>,
+ * one JSON object per scenario. The <code>dbinit.bench.scale</code> system property can be set to <code>full</code>
+ * in order to run the largest workloads (up to 10^6 statements and 2000 patches).
+ */
+public class DBInitBenchmark {
+
+    private static final boolean FULL = "full".equals(System.getProperty("dbinit.bench.scale"));
+
+    private static final int ITERATIONS = Integer.getInteger("dbinit.bench.iterations", 5);
+
+    /**
+     * Records the duration of the statements of the patches
+     */
+    private static class StatementRecorder extends DBInitListenerAdapter {
+
+        private long[] nanos = new long[1024];
+        private int count;
+
+        @Override
+        public boolean isEnabled(DBPhase phase) {
+            return phase == DBPhase.STATEMENT;
+        }
+
+        @Override
+        public synchronized void phaseFinished(DBPhaseEvent event) {
+            if (event.getPhase() == DBPhase.STATEMENT) {
+                if (count == nanos.length) {
+                    nanos = Arrays.copyOf(nanos, count * 2);
+                }
+                nanos[count++] = event.getDurationNanos();
+            }
+        }
+
+        public synchronized long[] getNanos() {
+            return Arrays.copyOf(nanos, count);
+        }
+    }
+
+    /**
+     * Scenario to measure
+     */
+    protected abstract static class Scenario {
+
+        private final Map<String, Object> values = new LinkedHashMap<String, Object>();
+
+        protected Scenario(String name, int size) {
+            values.put("scenario", name);
+            values.put("size", size);
+        }
+
+        public Map<String, Object> getValues() {
+            return values;
+        }
+
+        public String getId() {
+            return values.get("scenario") + "-" + values.get("size");
+        }
+
+        /**
+         * Generates the scripts
+         *
+         * @return Number of statements executed by the measured run
+         */
+        public abstract int generate(SyntheticSchema schema) throws Exception;
+
+        /**
+         * Prepares the database before the measured run
+         */
+        public void prepare(DBInit db) {
+        }
+
+        /**
+         * Configures the measured run
+         */
+        public abstract void configure(DBInit db);
+
+    }
+
+    protected List<Scenario> getScenarios() {
+        List<Scenario> scenarios = new ArrayList<Scenario>();
+        // Large initialisation scripts
+        for (int rows : FULL ? new int[]{1000, 10000, 100000, 1000000} : new int[]{1000, 10000}) {
+            scenarios.add(seed("seed", rows));
+        }
+        // Patch chains
+        for (int patches : FULL ? new int[]{1, 10, 100, 500, 2000} : new int[]{1, 10, 100}) {
+            scenarios.add(patches(patches));
+        }
+        // Profile sections
+        for (final int sections : FULL ? new int[]{10, 100, 1000} : new int[]{10, 100}) {
+            scenarios.add(new Scenario("profiles", sections) {
+                @Override
+                public int generate(SyntheticSchema schema) throws Exception {
+                    return schema.profiles(sections, 100);
+                }
+
+                @Override
+                public void configure(DBInit db) {
+                    Properties properties = new Properties();
+                    properties.setProperty(DBInit.SYSTEM_PROFILE, "p" + sections);
+                    db.setProperties(properties);
+                    db.setVersion(0);
+                }
+            });
+        }
+        // Wide tables
+        for (final int columns : FULL ? new int[]{100, 1000} : new int[]{100}) {
+            scenarios.add(new Scenario("wide", columns) {
+                @Override
+                public int generate(SyntheticSchema schema) throws Exception {
+                    return schema.wide(columns, 1000);
+                }
+
+                @Override
+                public void configure(DBInit db) {
+                    db.setVersion(0);
+                }
+            });
+        }
+        // Version check only
+        scenarios.add(noop());
+        return scenarios;
+    }
+
+    /**
+     * Creation of a database with one table and <code>rows</code> inserts
+     */
+    protected Scenario seed(String name, final int rows) {
+        return new Scenario(name, rows) {
+            @Override
+            public int generate(SyntheticSchema schema) throws Exception {
+                return schema.seed(rows);
+            }
+
+            @Override
+            public void configure(DBInit db) {
+                db.setVersion(0);
+            }
+        };
+    }
+
+    /**
+     * Upgrade of an empty database through a chain of <code>patches</code> patches
+     */
+    protected Scenario patches(final int patches) {
+        return new Scenario("patches", patches) {
+            @Override
+            public int generate(SyntheticSchema schema) throws Exception {
+                return schema.patches(patches, 10);
+            }
+
+            @Override
+            public void prepare(DBInit db) {
+                db.setVersion(0);
+                db.run();
+            }
+
+            @Override
+            public void configure(DBInit db) {
+                db.setVersion(patches);
+            }
+        };
+    }
+
+    /**
+     * Version check of an up-to-date database
+     */
+    protected Scenario noop() {
+        return new Scenario("noop", 0) {
+            @Override
+            public int generate(SyntheticSchema schema) throws Exception {
+                schema.seed(0);
+                return 0;
+            }
+
+            @Override
+            public void prepare(DBInit db) {
+                db.setVersion(0);
+                db.run();
+            }
+
+            @Override
+            public void configure(DBInit db) {
+                db.setVersion(0);
+            }
+        };
+    }
+
+    protected List<BenchmarkEngine> getEngines() {
+        return Arrays.asList(BenchmarkEngine.h2File(), BenchmarkEngine.h2Memory());
+    }
+
+    protected DBInit createDBInit(BenchmarkEngine engine, String database, SyntheticSchema schema) {
+        DBInit db = new DBInit();
+        db.setJdbcDriver(engine.getDriver());
+        db.setJdbcURL(engine.getURL(database));
+        db.setJdbcUser(engine.getUser());
+        db.setJdbcPassword(engine.getPassword());
+        db.setResourceInitialization(schema.getResourceInitialization());
+        db.setResourceUpdate(schema.getResourceUpdate());
+        db.setVersionTable("DB_VERSION");
+        db.setVersionColumnName("VERSION_NUMBER");
+        db.setVersionColumnTimestamp("VERSION_DATE");
+        return db;
+    }
+
+    protected File getReportFile() {
+        return new File("target/dbinit-benchmark.json");
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        BenchmarkReport report = new BenchmarkReport(getReportFile());
+        try {
+            for (Scenario scenario : getScenarios()) {
+                SyntheticSchema schema = new SyntheticSchema(new File("target/dbinit/bench/scripts/" + scenario.getId()));
+                int statements = scenario.generate(schema);
+                for (BenchmarkEngine engine : getEngines()) {
+                    run(report, engine, scenario, schema, statements);
+                }
+                scenarioCompleted(report, scenario);
+            }
+        } finally {
+            report.close();
+        }
+    }
+
+    protected void run(BenchmarkReport report, BenchmarkEngine engine, Scenario scenario, SyntheticSchema schema, int statements) throws Exception {
+        int iterations = statements >= 100000 ? Math.min(ITERATIONS, 2) : ITERATIONS;
+        boolean warmUp = statements < 100000;
+        long[] nanos = new long[iterations];
+        StatementRecorder statementRecorder = new StatementRecorder();
+        long allocated = 0;
+        System.gc();
+        resetPeakHeap();
+        for (int i = warmUp ? -1 : 0; i < iterations; i++) {
+            String database = scenario.getId() + "-" + (i + 1);
+            engine.open(database);
+            try {
+                DBInit db = createDBInit(engine, database, schema);
+                scenario.prepare(db);
+                scenario.configure(db);
+                if (i >= 0) {
+                    db.addListener(statementRecorder);
+                }
+                long allocatedStart = getAllocatedBytes();
+                long start = System.nanoTime();
+                db.run();
+                long duration = System.nanoTime() - start;
+                long allocatedEnd = getAllocatedBytes();
+                if (i >= 0) {
+                    nanos[i] = duration;
+                    allocated = allocated < 0 || allocatedStart < 0 ? -1 : allocated + allocatedEnd - allocatedStart;
+                }
+            } finally {
+                engine.close(database);
+            }
+        }
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        values.put("engine", engine.getName());
+        values.putAll(scenario.getValues());
+        completed(engine, scenario, values);
+        report.write(values, statements, nanos, statementRecorder.getNanos(), getPeakHeap(), allocated);
+    }
+
+    /**
+     * Called after the iterations of a scenario on an engine, before the result is written
+     *
+     * @param values Identification and specific values of the scenario, which can be completed
+     */
+    protected void completed(BenchmarkEngine engine, Scenario scenario, Map<String, Object> values) {
+    }
+
+    /**
+     * Called once a scenario has been run on all the engines
+     */
+    protected void scenarioCompleted(BenchmarkReport report, Scenario scenario) {
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        } else {
+            return -1;
+        }
+    }
+
+}
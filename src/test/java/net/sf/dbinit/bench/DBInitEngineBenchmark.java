@@ -0,0 +1,186 @@
+package net.sf.dbinit.bench;
+
+import net.sf.dbinit.DBInit;
+import net.sf.dbinit.DBInitListenerAdapter;
+import net.sf.dbinit.DBPhase;
+import net.sf.dbinit.DBPhaseEvent;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Compatibility and performance matrix of {@link DBInit#run()} on several embedded engines: H2 (file and memory),
+ * HSQLDB (file and memory), Apache Derby and SQLite.
+ * <p>
+ * Run with <code>mvn test -P benchmark</code>, which adds the drivers to the class path. The results are written in
+ * <code>target/dbinit-engines.json</code>: one JSON object per scenario and engine, with the time spent creating the
+ * database (<code>creationMillis</code>), in the patches (<code>patchMillis</code>) and in the updates of the version
+ * (<code>versionMillis</code>, the {@link DBPhase#VERSION_UPDATE} phases) during the last iteration. An engine on
+ * which a scenario fails gets an <code>error</code> entry instead. When an engine is more than
+ * <code>dbinit.bench.slowRatio</code> times (5 by default) slower than the fastest one on one of these paths, a
+ * <code>slowPath</code> entry is written (<code>runScript</code> or <code>setVersion</code>).
+ */
+public class DBInitEngineBenchmark extends DBInitBenchmark {
+
+    private static final boolean FULL = "full".equals(System.getProperty("dbinit.bench.scale"));
+
+    private static final double SLOW_RATIO = Double.parseDouble(System.getProperty("dbinit.bench.slowRatio", "5"));
+
+    /**
+     * Differences below this duration are not reported as slow paths
+     */
+    private static final double SLOW_MIN_MILLIS = 20;
+
+    /**
+     * Measured paths, associated with the DBInit code they exercise
+     */
+    private static final Map<String, String> PATHS = new LinkedHashMap<String, String>();
+
+    static {
+        PATHS.put("creationMillis", "runScript");
+        PATHS.put("patchMillis", "runScript");
+        PATHS.put("versionMillis", "setVersion");
+    }
+
+    /**
+     * Records the duration of the phases of a run
+     */
+    private static class PhaseRecorder extends DBInitListenerAdapter {
+
+        private long creationNanos;
+        private long patchNanos;
+        private long versionNanos;
+
+        @Override
+        public void phaseStarted(DBPhaseEvent event) {
+            if (event.getPhase() == DBPhase.RUN) {
+                creationNanos = 0;
+                patchNanos = 0;
+                versionNanos = 0;
+            }
+        }
+
+        @Override
+        public void phaseFinished(DBPhaseEvent event) {
+            switch (event.getPhase()) {
+                case CREATION:
+                    creationNanos += event.getDurationNanos();
+                    break;
+                case PATCH:
+                    patchNanos += event.getDurationNanos();
+                    break;
+                case VERSION_UPDATE:
+                    versionNanos += event.getDurationNanos();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private final PhaseRecorder recorder = new PhaseRecorder();
+
+    /**
+     * Results of the current scenario, indexed by engine
+     */
+    private final Map<String, Map<String, Object>> results = new LinkedHashMap<String, Map<String, Object>>();
+
+    @Override
+    protected List<Scenario> getScenarios() {
+        return Arrays.asList(
+                seed("create", 100),
+                patches(100),
+                noop(),
+                seed("seed", FULL ? 100000 : 10000));
+    }
+
+    @Override
+    protected List<BenchmarkEngine> getEngines() {
+        List<BenchmarkEngine> engines = new ArrayList<BenchmarkEngine>();
+        for (BenchmarkEngine engine : Arrays.asList(
+                BenchmarkEngine.h2File(),
+                BenchmarkEngine.h2Memory(),
+                BenchmarkEngine.hsqldbFile(),
+                BenchmarkEngine.hsqldbMemory(),
+                BenchmarkEngine.derbyFile(),
+                BenchmarkEngine.sqliteFile())) {
+            if (engine.isAvailable()) {
+                engines.add(engine);
+            }
+        }
+        return engines;
+    }
+
+    @Override
+    protected DBInit createDBInit(BenchmarkEngine engine, String database, SyntheticSchema schema) {
+        DBInit db = super.createDBInit(engine, database, schema);
+        db.addListener(recorder);
+        return db;
+    }
+
+    @Override
+    protected File getReportFile() {
+        return new File("target/dbinit-engines.json");
+    }
+
+    @Override
+    protected void run(BenchmarkReport report, BenchmarkEngine engine, Scenario scenario, SyntheticSchema schema, int statements) throws Exception {
+        try {
+            super.run(report, engine, scenario, schema, statements);
+        } catch (Exception ex) {
+            Map<String, Object> values = new LinkedHashMap<String, Object>();
+            values.put("engine", engine.getName());
+            values.putAll(scenario.getValues());
+            StringBuilder error = new StringBuilder(String.valueOf(ex));
+            for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+                error.append(": ").append(cause);
+            }
+            values.put("error", error.toString());
+            report.write(values);
+        }
+    }
+
+    @Override
+    protected void completed(BenchmarkEngine engine, Scenario scenario, Map<String, Object> values) {
+        values.put("creationMillis", millis(recorder.creationNanos));
+        values.put("patchMillis", millis(recorder.patchNanos));
+        values.put("versionMillis", millis(recorder.versionNanos));
+        results.put(engine.getName(), values);
+    }
+
+    @Override
+    protected void scenarioCompleted(BenchmarkReport report, Scenario scenario) {
+        for (Map.Entry<String, String> path : PATHS.entrySet()) {
+            String metric = path.getKey();
+            String fastest = null;
+            double fastestMillis = Double.MAX_VALUE;
+            for (Map.Entry<String, Map<String, Object>> result : results.entrySet()) {
+                double value = (Double) result.getValue().get(metric);
+                if (value < fastestMillis) {
+                    fastest = result.getKey();
+                    fastestMillis = value;
+                }
+            }
+            for (Map.Entry<String, Map<String, Object>> result : results.entrySet()) {
+                double value = (Double) result.getValue().get(metric);
+                if (value > fastestMillis * SLOW_RATIO && value - fastestMillis >= SLOW_MIN_MILLIS) {
+                    Map<String, Object> values = new LinkedHashMap<String, Object>();
+                    values.put("slowPath", path.getValue());
+                    values.put("metric", metric);
+                    values.put("engine", result.getKey());
+                    values.putAll(scenario.getValues());
+                    values.put("millis", value);
+                    values.put("fastestEngine", fastest);
+                    values.put("fastestMillis", fastestMillis);
+                    report.write(values);
+                }
+            }
+        }
+        results.clear();
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+}
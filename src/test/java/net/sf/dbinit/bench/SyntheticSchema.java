@@ -0,0 +1,155 @@
+package net.sf.dbinit.bench;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+
+/**
+ * Generates synthetic initialisation and update scripts for the benchmarks.
+ */
+public class SyntheticSchema {
+
+    private final File dir;
+
+    /**
+     * @param dir Directory where the scripts are generated. It is deleted first.
+     */
+    public SyntheticSchema(File dir) throws IOException {
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+        FileUtils.forceMkdir(dir);
+        this.dir = dir;
+    }
+
+    /**
+     * @return Path to the initialisation script
+     */
+    public String getResourceInitialization() {
+        return new File(dir, "init.sql").getAbsolutePath();
+    }
+
+    /**
+     * @return Pattern path to the update scripts
+     */
+    public String getResourceUpdate() {
+        return new File(dir, "update.{0}.sql").getAbsolutePath();
+    }
+
+    /**
+     * Initialisation script with one table and <code>rows</code> inserts
+     *
+     * @return Number of generated statements
+     */
+    public int seed(int rows) throws IOException {
+        PrintWriter writer = open("init.sql");
+        try {
+            version(writer);
+            writer.println("CREATE TABLE ITEM (");
+            writer.println("\tID INTEGER NOT NULL,");
+            writer.println("\tNAME VARCHAR(80) NOT NULL,");
+            writer.println("\tPRICE DECIMAL(10,2),");
+            writer.println("\tCONSTRAINT PK_ITEM PRIMARY KEY(ID)");
+            writer.println(");");
+            for (int i = 1; i <= rows; i++) {
+                writer.printf("INSERT INTO ITEM (ID, NAME, PRICE) VALUES (%d, 'Item %d', %d.%02d);%n", i, i, i % 1000, i % 100);
+            }
+            return rows + 2;
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Minimal initialisation script and a chain of <code>patches</code> update scripts
+     *
+     * @return Number of generated statements in the update scripts
+     */
+    public int patches(int patches, int rowsPerPatch) throws IOException {
+        PrintWriter writer = open("init.sql");
+        try {
+            version(writer);
+        } finally {
+            writer.close();
+        }
+        for (int patch = 1; patch <= patches; patch++) {
+            writer = open(String.format("update.%d.sql", patch));
+            try {
+                writer.printf("CREATE TABLE T_%d (%n\tID INTEGER NOT NULL,%n\tLABEL VARCHAR(40),%n\tCONSTRAINT PK_T_%d PRIMARY KEY(ID)%n);%n", patch, patch);
+                for (int i = 1; i <= rowsPerPatch; i++) {
+                    writer.printf("INSERT INTO T_%d (ID, LABEL) VALUES (%d, 'Label %d');%n", patch, i, i);
+                }
+                writer.println("-- @rollback");
+                writer.printf("DROP TABLE IF EXISTS T_%d;%n", patch);
+            } finally {
+                writer.close();
+            }
+        }
+        return patches * (rowsPerPatch + 1);
+    }
+
+    /**
+     * Initialisation script with <code>sections</code> profile sections named <code>p1</code>, <code>p2</code>, etc.
+     *
+     * @return Number of generated statements in one section
+     */
+    public int profiles(int sections, int rows) throws IOException {
+        PrintWriter writer = open("init.sql");
+        try {
+            for (int section = 1; section <= sections; section++) {
+                writer.printf("-- @p%d%n", section);
+                version(writer);
+                writer.printf("CREATE TABLE ITEM (%n\tID INTEGER NOT NULL,%n\tNAME VARCHAR(80) NOT NULL%n);%n");
+                for (int i = 1; i <= rows; i++) {
+                    writer.printf("INSERT INTO ITEM (ID, NAME) VALUES (%d, 'Item %d in section %d');%n", i, i, section);
+                }
+            }
+            return rows + 2;
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Initialisation script with a table of <code>columns</code> columns and <code>rows</code> inserts
+     *
+     * @return Number of generated statements
+     */
+    public int wide(int columns, int rows) throws IOException {
+        PrintWriter writer = open("init.sql");
+        try {
+            version(writer);
+            writer.println("CREATE TABLE WIDE (");
+            writer.println("\tID INTEGER NOT NULL,");
+            for (int column = 1; column <= columns; column++) {
+                writer.printf("\tC%d VARCHAR(40),%n", column);
+            }
+            writer.println("\tCONSTRAINT PK_WIDE PRIMARY KEY(ID)");
+            writer.println(");");
+            for (int i = 1; i <= rows; i++) {
+                StringBuilder names = new StringBuilder("ID");
+                StringBuilder values = new StringBuilder().append(i);
+                for (int column = 1; column <= columns; column++) {
+                    names.append(", C").append(column);
+                    values.append(", 'R").append(i).append("C").append(column).append("'");
+                }
+                writer.printf("INSERT INTO WIDE (%s) VALUES (%s);%n", names, values);
+            }
+            return rows + 2;
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void version(PrintWriter writer) {
+        writer.println("CREATE TABLE DB_VERSION (");
+        writer.println("\tVERSION_NUMBER INTEGER NOT NULL,");
+        writer.println("\tVERSION_DATE TIMESTAMP NOT NULL");
+        writer.println(");");
+    }
+
+    private PrintWriter open(String name) throws IOException {
+        return new PrintWriter(new BufferedWriter(new FileWriter(new File(dir, name))));
+    }
+
+}
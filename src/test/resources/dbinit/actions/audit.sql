@@ -0,0 +1,5 @@
+CREATE TABLE AUDIT (
+	ID INTEGER NOT NULL,
+	PROJECT_NAME VARCHAR(40) NOT NULL,
+	CONSTRAINT PK_AUDIT PRIMARY KEY(ID)
+);
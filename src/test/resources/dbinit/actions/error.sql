@@ -0,0 +1 @@
+CREATE VIEW ERROR_VIEW AS SELECT * FROM NO_SUCH_TABLE;
@@ -0,0 +1 @@
+CREATE VIEW AUDIT_REPORT AS SELECT A.ID, P.NAME FROM AUDIT A, PROJECT_NAMES P WHERE A.PROJECT_NAME = P.NAME;
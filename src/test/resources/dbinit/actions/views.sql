@@ -0,0 +1 @@
+CREATE VIEW PROJECT_NAMES AS SELECT NAME FROM PROJECT;
@@ -0,0 +1,2 @@
+-- The backfill may resume after a failure: the patch must be re-entrant
+CREATE INDEX IF NOT EXISTS IDX_ITEM_NAME ON ITEM(NAME);
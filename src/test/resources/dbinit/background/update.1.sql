@@ -0,0 +1,8 @@
+CREATE TABLE AUDIT (
+	ID INTEGER NOT NULL,
+	ITEM INTEGER NOT NULL
+);
+
+-- @background
+CREATE INDEX IDX_ITEM_NAME ON ITEM(NAME);
+UPDATE ITEM SET LABEL = UPPER(NAME);
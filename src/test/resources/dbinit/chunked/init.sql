@@ -0,0 +1,13 @@
+CREATE TABLE VERSION (
+	VALUE INTEGER NOT NULL,
+	VALUE_DATE TIMESTAMP NOT NULL
+);
+
+CREATE TABLE ITEM (
+	ID INTEGER NOT NULL,
+	NAME VARCHAR(40) NOT NULL,
+	LABEL VARCHAR(40),
+	CONSTRAINT PK_ITEM PRIMARY KEY(ID)
+);
+
+INSERT INTO ITEM (ID, NAME) SELECT X, 'item ' || X FROM SYSTEM_RANGE(1, 2500);
@@ -0,0 +1,6 @@
+-- @chunked size=1000 key=ID
+UPDATE ITEM SET LABEL = UPPER(NAME)
+	WHERE MOD(ID, 2) = 0;
+
+-- @chunked size=400
+DELETE FROM ITEM WHERE ID > 2000;
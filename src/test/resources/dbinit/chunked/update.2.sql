@@ -0,0 +1,8 @@
+UPDATE ITEM SET NAME = 'patched' WHERE ID = 1;
+
+-- @chunked size=1000
+UPDATE ITEM SET LABEL = 'chunked';
+
+UPDATE ITEM SET NAME = 'patched' WHERE ID = 2;
+
+INSERT INTO MISSING (ID) VALUES (1);
@@ -0,0 +1,25 @@
+CREATE TABLE VERSION (
+	VALUE INTEGER NOT NULL,
+	VALUE_DATE TIMESTAMP NOT NULL,
+	CONSTRAINT PK_VERSION PRIMARY KEY(VALUE)
+);
+
+CREATE TABLE PROJECT (
+	ID INTEGER NOT NULL,
+	NAME VARCHAR(40) NOT NULL,
+	CONSTRAINT PK_PROJECT PRIMARY KEY(ID)
+);
+
+CREATE TABLE BRANCH (
+	ID INTEGER NOT NULL,
+	PROJECT INTEGER NOT NULL,
+	NAME VARCHAR(40),
+	CONSTRAINT PK_BRANCH PRIMARY KEY(ID)
+);
+
+CREATE TABLE DOCUMENT (
+	ID INTEGER NOT NULL,
+	CONTENT BLOB,
+	TEXT CLOB,
+	CONSTRAINT PK_DOCUMENT PRIMARY KEY(ID)
+);
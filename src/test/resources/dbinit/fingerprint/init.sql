@@ -0,0 +1,8 @@
+CREATE TABLE VERSION (VALUE INTEGER NOT NULL, VALUE_DATE TIMESTAMP NOT NULL);
+
+CREATE TABLE CUSTOMER (ID INTEGER NOT NULL, NAME VARCHAR(80) NOT NULL, CONSTRAINT PK_CUSTOMER PRIMARY KEY (ID));
+CREATE UNIQUE INDEX UQ_CUSTOMER_NAME ON CUSTOMER (NAME);
+
+CREATE TABLE ORDERS (ID INTEGER NOT NULL, CUSTOMER INTEGER NOT NULL, AMOUNT DECIMAL(10,2), CONSTRAINT PK_ORDERS PRIMARY KEY (ID), CONSTRAINT FK_ORDERS_CUSTOMER FOREIGN KEY (CUSTOMER) REFERENCES CUSTOMER (ID));
+
+CREATE TABLE PRODUCT (ID INTEGER NOT NULL, LABEL VARCHAR(40), CONSTRAINT PK_PRODUCT PRIMARY KEY (ID));
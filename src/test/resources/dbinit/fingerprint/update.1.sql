@@ -0,0 +1 @@
+ALTER TABLE PRODUCT ADD COLUMN PRICE DECIMAL(10,2);
@@ -0,0 +1,2 @@
+-- @depends
+INSERT INTO UNKNOWN (ID) VALUES (1);
@@ -0,0 +1,5 @@
+-- @depends
+CREATE TABLE PROJECT (
+	ID INTEGER NOT NULL,
+	NAME VARCHAR(40) NOT NULL
+);
@@ -0,0 +1,2 @@
+-- @depends 1
+INSERT INTO UNKNOWN (ID) VALUES (1);
@@ -0,0 +1,5 @@
+CREATE TABLE VERSION (
+	VALUE INTEGER NOT NULL,
+	VALUE_DATE TIMESTAMP NOT NULL,
+	CONSTRAINT PK_VERSION PRIMARY KEY(VALUE)
+);
@@ -0,0 +1,4 @@
+CREATE TABLE PROJECT (
+	ID INTEGER NOT NULL,
+	NAME VARCHAR(40) NOT NULL
+);
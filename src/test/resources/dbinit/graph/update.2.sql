@@ -0,0 +1,2 @@
+-- @depends 1
+INSERT INTO PROJECT (ID, NAME) VALUES (1, 'P1');
@@ -0,0 +1,6 @@
+-- @depends
+CREATE TABLE BRANCH (
+	ID INTEGER NOT NULL,
+	PROJECT INTEGER NOT NULL,
+	NAME VARCHAR(40) NOT NULL
+);
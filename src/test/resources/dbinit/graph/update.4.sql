@@ -0,0 +1,2 @@
+-- @depends 2, 3
+INSERT INTO BRANCH (ID, PROJECT, NAME) SELECT ID, ID, 'B' || ID FROM PROJECT;
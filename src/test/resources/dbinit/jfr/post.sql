@@ -0,0 +1 @@
+DELETE FROM PROJECT WHERE ID > 100;
@@ -0,0 +1,3 @@
+INSERT INTO PROJECT (ID, NAME) VALUES (1, 'One');
+INSERT INTO PROJECT (ID, NAME) VALUES (2, 'Two');
+INSERT INTO PROJECT (ID, NAME) VALUES (3, 'Three');
@@ -0,0 +1 @@
+UPDATE PROJECT SET NAME = UPPER(NAME);
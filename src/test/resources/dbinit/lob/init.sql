@@ -0,0 +1,15 @@
+CREATE TABLE VERSION (
+	VALUE INTEGER NOT NULL,
+	VALUE_DATE TIMESTAMP NOT NULL
+);
+
+CREATE TABLE DOC (
+	ID INTEGER NOT NULL,
+	NAME VARCHAR(40),
+	BODY CLOB,
+	IMAGE BLOB,
+	CONSTRAINT PK_DOC PRIMARY KEY(ID)
+);
+
+INSERT INTO DOC (ID, NAME) VALUES (1, 'One');
+-- @lob table=DOC key=1 column=IMAGE file=/dbinit/lob/image.bin
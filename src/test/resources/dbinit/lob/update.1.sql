@@ -0,0 +1,3 @@
+-- @lob table=DOC key=1 column=BODY file=/dbinit/lob/doc1.json
+-- @lob table=DOC key=2 column=BODY file=/dbinit/lob/doc2.json
+UPDATE DOC SET NAME = 'Loaded' WHERE BODY IS NOT NULL;
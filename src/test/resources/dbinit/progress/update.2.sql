@@ -0,0 +1,2 @@
+CREATE ALIAS SLEEP FOR "java.lang.Thread.sleep";
+CALL SLEEP(200);
@@ -0,0 +1,2 @@
+INSERT INTO PROJECT (ID, NAME) VALUES (1, 'P1');
+INSERT INTO PROJECT (ID, NAME) VALUES (2, 'P2');
@@ -0,0 +1,24 @@
+CREATE TABLE VERSION (
+	VALUE INTEGER NOT NULL,
+	VALUE_DATE TIMESTAMP NOT NULL,
+	CONSTRAINT PK_VERSION PRIMARY KEY(VALUE)
+);
+
+CREATE TABLE COUNTRY (
+	CODE VARCHAR(2) NOT NULL,
+	NAME VARCHAR(40) NOT NULL,
+	RANK INTEGER,
+	CONSTRAINT PK_COUNTRY PRIMARY KEY(CODE)
+);
+
+CREATE TABLE CURRENCY (
+	CODE VARCHAR(3) NOT NULL,
+	NAME VARCHAR(40) NOT NULL,
+	CONSTRAINT PK_CURRENCY PRIMARY KEY(CODE)
+);
+
+-- @refdata COUNTRY CODE
+CODE,NAME,RANK
+BE,Belgium,1
+FR,France,2
+LU,Luxembourg,
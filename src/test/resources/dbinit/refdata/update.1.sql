@@ -0,0 +1,5 @@
+-- @refdata COUNTRY CODE
+CODE,NAME,RANK
+BE,Belgium,1
+FR,"France, Republic of",2
+NL,Netherlands,3
@@ -0,0 +1,11 @@
+-- @refdata COUNTRY CODE
+CODE,NAME,RANK
+BE,Belgium,1
+
+INSERT INTO CURRENCY (CODE, NAME) VALUES ('EUR', 'Euro');
+
+-- @test-refdata COUNTRY CODE
+CODE,NAME,RANK
+BE,Belgium (test),1
+-- @end
+INSERT INTO CURRENCY (CODE, NAME) VALUES ('USD', 'Dollar');
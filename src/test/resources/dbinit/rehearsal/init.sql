@@ -0,0 +1,12 @@
+CREATE TABLE VERSION (
+	VALUE INTEGER NOT NULL,
+	VALUE_DATE TIMESTAMP NOT NULL
+);
+
+CREATE TABLE ITEM (
+	ID INTEGER NOT NULL,
+	NAME VARCHAR(40) NOT NULL,
+	CONSTRAINT PK_ITEM PRIMARY KEY(ID)
+);
+
+CREATE INDEX IDX_ITEM_NAME ON ITEM (NAME);
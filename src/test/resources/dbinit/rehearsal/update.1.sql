@@ -0,0 +1,2 @@
+ALTER TABLE ITEM ADD PRICE DECIMAL(10,2);
+UPDATE ITEM SET PRICE = ID * 2;
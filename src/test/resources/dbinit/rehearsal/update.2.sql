@@ -0,0 +1 @@
+INSERT INTO MISSING (ID) VALUES (1);
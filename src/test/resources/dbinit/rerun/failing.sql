@@ -0,0 +1,6 @@
+INSERT INTO RUNS (NAME) VALUES ('failing');
+
+INSERT INTO MISSING (NAME) VALUES ('failing');
+
+-- @Rollback
+INSERT INTO RUNS (NAME) VALUES ('rollback');
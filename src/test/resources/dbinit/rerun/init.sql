@@ -0,0 +1,9 @@
+CREATE TABLE VERSION (
+	VALUE INTEGER NOT NULL,
+	VALUE_DATE TIMESTAMP NOT NULL,
+	CONSTRAINT PK_VERSION PRIMARY KEY(VALUE)
+);
+
+CREATE TABLE RUNS (
+	NAME VARCHAR(40) NOT NULL
+);
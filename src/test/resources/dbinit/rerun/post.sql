@@ -0,0 +1 @@
+INSERT INTO RUNS (NAME) VALUES ('post');
@@ -0,0 +1,5 @@
+CREATE TABLE IF NOT EXISTS PRE_RUNS (
+	NAME VARCHAR(40) NOT NULL
+);
+
+INSERT INTO PRE_RUNS (NAME) VALUES ('pre');
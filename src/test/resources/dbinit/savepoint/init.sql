@@ -0,0 +1,10 @@
+CREATE TABLE VERSION (
+	VALUE INTEGER NOT NULL,
+	VALUE_DATE TIMESTAMP NOT NULL
+);
+
+CREATE TABLE PROJECT (
+	ID INTEGER NOT NULL,
+	NAME VARCHAR(40) NOT NULL,
+	CONSTRAINT PK_PROJECT PRIMARY KEY(ID)
+);
@@ -0,0 +1 @@
+INSERT INTO PROJECT (ID, NAME) VALUES (1, 'One');
@@ -0,0 +1,4 @@
+-- @onerror skip
+INSERT INTO PROJECT (ID, NAME) VALUES (2, 'Two');
+INSERT INTO PROJECT (ID, NAME) VALUES (1, 'Duplicate');
+INSERT INTO PROJECT (ID, NAME) VALUES (3, 'Three');
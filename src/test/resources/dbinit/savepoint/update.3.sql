@@ -0,0 +1,3 @@
+-- @onerror retry 2
+INSERT INTO PROJECT (ID, NAME) VALUES (4, 'Four');
+INSERT INTO PROJECT (ID, NAME) VALUES (1, 'Duplicate');
@@ -0,0 +1,34 @@
+CREATE TABLE VERSION (
+	VALUE INTEGER NOT NULL,
+	VALUE_DATE TIMESTAMP NOT NULL,
+	CONSTRAINT PK_VERSION PRIMARY KEY(VALUE)
+);
+
+CREATE TABLE PROJECT (
+	ID INTEGER NOT NULL,
+	NAME VARCHAR(40) NOT NULL
+);
+
+ALTER TABLE PROJECT ADD CONSTRAINT PK_PROJECT PRIMARY KEY(ID);
+
+CREATE UNIQUE INDEX UQ_PROJECT_NAME ON PROJECT(NAME);
+
+CREATE TABLE BRANCH (
+	ID INTEGER NOT NULL,
+	PROJECT INTEGER NOT NULL,
+	NAME VARCHAR(40) NOT NULL
+);
+
+ALTER TABLE BRANCH ADD CONSTRAINT PK_BRANCH PRIMARY KEY(ID);
+
+ALTER TABLE BRANCH ADD CONSTRAINT FK_BRANCH_PROJECT FOREIGN KEY (PROJECT) REFERENCES PROJECT(ID);
+
+CREATE INDEX IDX_BRANCH_NAME ON BRANCH(NAME);
+
+INSERT INTO PROJECT (ID, NAME) VALUES (1, 'P1');
+INSERT INTO PROJECT (ID, NAME) VALUES (2, 'P2');
+INSERT INTO BRANCH (ID, PROJECT, NAME) VALUES (1, 1, 'B1');
+INSERT INTO BRANCH (ID, PROJECT, NAME) VALUES (2, 2, 'B2');
+
+
+CREATE INDEX IDX_BRANCH_MISSING ON BRANCH(MISSING);
@@ -0,0 +1,11 @@
+CREATE TABLE VERSION (
+	VALUE INTEGER NOT NULL,
+	VALUE_DATE TIMESTAMP NOT NULL,
+	CONSTRAINT PK_VERSION PRIMARY KEY(VALUE)
+);
+
+CREATE TABLE TUNING (
+	VALUE INTEGER
+);
+
+INSERT INTO TUNING (VALUE) VALUES (@SESSION_TUNED);
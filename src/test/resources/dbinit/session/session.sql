@@ -0,0 +1,10 @@
+-- @session
+SET UNDO_LOG 0;
+SET @SESSION_TUNED = 1;
+
+-- @session-restore
+SET UNDO_LOG 1;
+SET @SESSION_TUNED = 0;
+
+-- @other-session
+SET @SESSION_TUNED = 2;
@@ -0,0 +1,2 @@
+INSERT INTO TUNING (VALUE) VALUES (@SESSION_TUNED);
+INSERT INTO UNKNOWN (VALUE) VALUES (1);
@@ -0,0 +1,2 @@
+INSERT INTO PROJECT (ID, NAME) VALUES (1, 'One');
+INSERT INTO PROJECT (ID, NAME) VALUES (2, 'Two');
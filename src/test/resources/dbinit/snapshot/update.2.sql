@@ -0,0 +1,4 @@
+ALTER TABLE PROJECT ADD COLUMN CODE VARCHAR(10);
+CREATE TABLE TASK (ID INTEGER NOT NULL, PROJECT INTEGER NOT NULL);
+UPDATE PROJECT SET NAME = 'Changed';
+INSERT INTO TASK (ID, PROJECT) VALUES (1, 1);
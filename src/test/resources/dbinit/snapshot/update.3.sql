@@ -0,0 +1,2 @@
+INSERT INTO TASK (ID, PROJECT) VALUES (2, 1);
+INSERT INTO MISSING (ID) VALUES (1);